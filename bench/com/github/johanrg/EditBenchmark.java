@@ -0,0 +1,95 @@
+package com.github.johanrg;
+
+import com.github.johanrg.ast.ASTScope;
+import com.github.johanrg.frontend.CompilerException;
+import com.github.johanrg.frontend.IncrementalParser;
+import com.github.johanrg.frontend.Lexer;
+import com.github.johanrg.frontend.Parser;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Times parsing a file again after edits of single lines spread over the file, against lexing and parsing the whole
+ * file. Every edit makes a multiplication by 2 in the file one character longer or shorter, so the text after it moves
+ * and the edits pile up in the line table.
+ * <p>
+ * Usage: EditBenchmark [file] [edits] [lazy]
+ *
+ * @author johan
+ * @since 2016-08-05.
+ */
+public class EditBenchmark {
+    private static final String TARGET = "* 2";
+
+    public static void main(String[] args) {
+        String file = args.length > 0 ? args[0] : "scriptfile";
+        int edits = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        boolean lazy = args.length > 2 && Boolean.parseBoolean(args[2]);
+        try {
+            String text = Main.readFile(file, Charset.forName("utf8"));
+            List<Integer> targets = new ArrayList<>();
+            for (int i = text.indexOf(TARGET); i >= 0; i = text.indexOf(TARGET, i + 1)) {
+                targets.add(i + TARGET.length() - 1);
+            }
+            if (targets.isEmpty()) {
+                System.err.println("no '" + TARGET + "' to edit in " + file);
+                return;
+            }
+
+            long full = Long.MAX_VALUE;
+            IncrementalParser parser = null;
+            for (int i = 0; i < 20; ++i) {
+                long start = System.nanoTime();
+                Lexer lexer = new Lexer();
+                lexer.lex(file, text);
+                parser = new IncrementalParser(lexer.getTokens(),
+                        (ASTScope) new Parser(lexer.getTokens(), lazy).getRoot());
+                full = Math.min(full, System.nanoTime() - start);
+            }
+
+            // NOTE(Johan): the targets are kept as offsets in the current text, every edit moves the ones after it.
+            Random random = new Random(1);
+            long[] times = new long[edits];
+            for (int i = 0; i < edits; ++i) {
+                int target = random.nextInt(targets.size());
+                int offset = targets.get(target);
+                boolean longer = text.charAt(offset + 1) != '2';
+                int end = longer ? offset + 1 : offset + 2;
+                String replacement = longer ? "22" : "2";
+                text = text.substring(0, offset) + replacement + text.substring(end);
+                int delta = longer ? 1 : -1;
+                for (int j = target + 1; j < targets.size(); ++j) {
+                    targets.set(j, targets.get(j) + delta);
+                }
+                long start = System.nanoTime();
+                parser.reparse(text, offset, end);
+                times[i] = System.nanoTime() - start;
+            }
+
+            int first = Math.min(100, edits);
+            System.out.printf("%s: %d characters, %s, full lex and parse %.2f ms%n", file, text.length(),
+                    lazy ? "lazy" : "eager", full / 1e6);
+            System.out.printf("%d edits: first %d %.3f ms, last %d %.3f ms per edit%n", edits, first,
+                    average(times, 0, first), first, average(times, edits - first, edits));
+            long[] sorted = times.clone();
+            Arrays.sort(sorted);
+            System.out.printf("median %.3f ms, 99th percentile %.3f ms, max %.3f ms%n", sorted[edits / 2] / 1e6,
+                    sorted[edits * 99 / 100] / 1e6, sorted[edits - 1] / 1e6);
+        } catch (CompilerException | IOException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    private static double average(long[] times, int from, int to) {
+        long sum = 0;
+        for (int i = from; i < to; ++i) {
+            sum += times[i];
+        }
+        return sum / 1e6 / (to - from);
+    }
+}
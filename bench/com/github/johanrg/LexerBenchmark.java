@@ -0,0 +1,66 @@
+package com.github.johanrg;
+
+import com.github.johanrg.frontend.CompilerException;
+import com.github.johanrg.frontend.Lexer;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Times the lexer engines with and without bulk scanning, and the parallel lexer, over both the mapped bytes and the
+ * decoded text of a file.
+ * <p>
+ * Usage: LexerBenchmark [file] [rounds]
+ *
+ * @author johan
+ * @since 2016-07-19.
+ */
+public class LexerBenchmark {
+    public static void main(String[] args) {
+        String file = args.length > 0 ? args[0] : "scriptfile";
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        try {
+            MappedByteBuffer bytes = Main.mapFile(file);
+            String text = Main.readFile(file, Charset.forName("utf8"));
+            System.out.printf("%s: %d bytes, best of %d rounds%n", file, bytes.limit(), rounds);
+            for (Lexer.Engine engine : Lexer.Engine.values()) {
+                for (boolean bulkScanning : new boolean[]{false, true}) {
+                    long bytesTime = Long.MAX_VALUE;
+                    long textTime = Long.MAX_VALUE;
+                    for (int i = 0; i < rounds; ++i) {
+                        Lexer lexer = new Lexer(engine);
+                        lexer.setBulkScanning(bulkScanning);
+                        long start = System.nanoTime();
+                        lexer.lex(file, bytes);
+                        bytesTime = Math.min(bytesTime, System.nanoTime() - start);
+
+                        lexer = new Lexer(engine);
+                        lexer.setBulkScanning(bulkScanning);
+                        start = System.nanoTime();
+                        lexer.lex(file, text);
+                        textTime = Math.min(textTime, System.nanoTime() - start);
+                    }
+                    System.out.printf("%-13s %-6s bytes %8.2f ms %8.1f MB/s   text %8.2f ms %8.1f MB/s%n", engine,
+                            bulkScanning ? "bulk" : "scalar", bytesTime / 1e6, bytes.limit() * 1e3 / bytesTime,
+                            textTime / 1e6, bytes.limit() * 1e3 / textTime);
+                }
+            }
+            long bytesTime = Long.MAX_VALUE;
+            long textTime = Long.MAX_VALUE;
+            for (int i = 0; i < rounds; ++i) {
+                long start = System.nanoTime();
+                new Lexer().lexParallel(file, bytes);
+                bytesTime = Math.min(bytesTime, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                new Lexer().lexParallel(file, text);
+                textTime = Math.min(textTime, System.nanoTime() - start);
+            }
+            System.out.printf("%-13s %-6s bytes %8.2f ms %8.1f MB/s   text %8.2f ms %8.1f MB/s%n", "PARALLEL", "bulk",
+                    bytesTime / 1e6, bytes.limit() * 1e3 / bytesTime, textTime / 1e6, bytes.limit() * 1e3 / textTime);
+        } catch (CompilerException | IOException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.github.johanrg;
+
+import com.github.johanrg.ast.ASTFunction;
+import com.github.johanrg.ast.ASTNode;
+import com.github.johanrg.ast.ASTScope;
+import com.github.johanrg.frontend.CompilerException;
+import com.github.johanrg.frontend.Lexer;
+import com.github.johanrg.frontend.Parser;
+import com.github.johanrg.frontend.TokenBuffer;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Times parsing a lexed file eagerly, with lazy function bodies, with the lazy bodies all parsed afterwards, and with
+ * the bodies parsed in parallel, and measures the heap the tree keeps alive after each.
+ * <p>
+ * Usage: ParserBenchmark [file] [rounds] [threads]
+ *
+ * @author johan
+ * @since 2016-08-05.
+ */
+public class ParserBenchmark {
+    private enum Mode {
+        EAGER,
+        LAZY,
+        LAZY_BODIES,
+        PARALLEL
+    }
+
+    public static void main(String[] args) {
+        String file = args.length > 0 ? args[0] : "scriptfile";
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            Lexer lexer = new Lexer();
+            lexer.lex(file, Main.readFile(file, Charset.forName("utf8")));
+            TokenBuffer tokens = lexer.getTokens();
+            System.out.printf("%s: %d tokens, best of %d rounds, %d threads%n", file, tokens.size(), rounds, threads);
+            ASTNode root = null;
+            for (Mode mode : Mode.values()) {
+                // NOTE(Johan): the tree of the mode before is still reachable until here.
+                root = null;
+                long time = Long.MAX_VALUE;
+                for (int i = 0; i < rounds; ++i) {
+                    long start = System.nanoTime();
+                    parse(tokens, mode, pool);
+                    time = Math.min(time, System.nanoTime() - start);
+                }
+                long before = usedMemory();
+                root = parse(tokens, mode, pool);
+                long retained = usedMemory() - before;
+                System.out.printf("%-12s %8.2f ms %8.1f MB retained (%d statements)%n", mode, time / 1e6,
+                        retained / 1e6, ((ASTScope) root).getStatements().size());
+            }
+        } catch (CompilerException | IOException e) {
+            System.err.println(e.getMessage());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static ASTNode parse(TokenBuffer tokens, Mode mode, ForkJoinPool pool) throws CompilerException {
+        switch (mode) {
+            case EAGER:
+                return new Parser(tokens).getRoot();
+            case LAZY:
+                return new Parser(tokens, true).getRoot();
+            case LAZY_BODIES: {
+                ASTNode root = new Parser(tokens, true).getRoot();
+                for (ASTNode statement : ((ASTScope) root).getStatements()) {
+                    if (statement instanceof ASTFunction) {
+                        ((ASTFunction) statement).parseBody();
+                    }
+                }
+                return root;
+            }
+            default:
+                return new Parser(tokens, pool).getRoot();
+        }
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; ++i) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
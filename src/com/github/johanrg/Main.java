@@ -1,12 +1,23 @@
 package com.github.johanrg;
 
 import com.github.johanrg.backend.Diagram;
+import com.github.johanrg.ast.ASTFactory;
+import com.github.johanrg.ast.ASTScope;
 import com.github.johanrg.frontend.CompilerException;
+import com.github.johanrg.frontend.Diagnostics;
 import com.github.johanrg.frontend.Lexer;
 import com.github.johanrg.frontend.Parser;
+import com.github.johanrg.ir.IRBuilder;
+import com.github.johanrg.ir.IRProgram;
+import com.github.johanrg.optimizer.PassManager;
 
 import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 
 
 public class Main {
@@ -23,17 +34,43 @@ public class Main {
         }
     }
 
+    static MappedByteBuffer mapFile(String file) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Compiles the scriptfile and shows its tree. With --dump, the tokens, what the passes did and the IR are printed
+     * too.
+     */
     public static void main(String[] args) {
+        boolean dump = Arrays.asList(args).contains("--dump");
         try {
             //String source = readFile("/home/johan/sourcefile", Charset.forName("utf8"));
-            String source = readFile("scriptfile", Charset.forName("utf8"));
+            MappedByteBuffer source = mapFile("scriptfile");
+            Diagnostics diagnostics = new Diagnostics();
             Lexer lexer = new Lexer();
+            lexer.setDiagnostics(diagnostics);
             lexer.lex("Lexer.java", source);
-            lexer.getTokens().forEach(System.out::println);
-            if (lexer.getErrors().size() > 0) {
-                lexer.getErrors().forEach(System.out::println);
+            if (dump) {
+                lexer.getTokens().forEach(System.out::println);
+            }
+            ASTFactory factory = new ASTFactory();
+            Parser parser = new Parser(lexer.getTokens(), false, factory, diagnostics);
+            if (diagnostics.hasErrors()) {
+                diagnostics.getErrors().forEach(System.out::println);
             } else {
-                Parser parser = new Parser(lexer.getTokens());
+                PassManager<ASTScope> passes = PassManager.standard(factory, lexer.getTokens().getConstants());
+                passes.run((ASTScope) parser.getRoot());
+                IRProgram program = IRBuilder.lower((ASTScope) parser.getRoot(), lexer.getTokens().getConstants());
+                PassManager<IRProgram> ssaPasses = PassManager.ssa();
+                ssaPasses.run(program);
+                if (dump) {
+                    System.out.print(passes.report());
+                    System.out.print(ssaPasses.report());
+                    System.out.print(program);
+                }
                 new Diagram(parser.getRoot());
             }
         } catch (CompilerException | IOException e) {
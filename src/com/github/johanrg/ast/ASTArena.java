@@ -0,0 +1,399 @@
+package com.github.johanrg.ast;
+
+import com.github.johanrg.frontend.ConstantPool;
+import com.github.johanrg.frontend.DataType;
+import com.github.johanrg.frontend.LineTable;
+import com.github.johanrg.frontend.Location;
+import com.github.johanrg.frontend.SymbolTable;
+
+import java.util.Arrays;
+
+/**
+ * A tree kept as parallel int arrays instead of one object per node. A node is an int handle into the arrays, holding
+ * its kind, its first child, its next sibling, a payload and its offset in the source. Nodes that need more than one
+ * int of payload keep the index of their data in a side array. Nodes are added in the order the tree is walked, so a
+ * walk reads the arrays mostly front to back, and the whole tree is dropped by dropping the arena.
+ * <p>
+ * An identifier has one node, its declaration, which is only a child of the tree if it's a function. Every use of it
+ * is a REFERENCE node with the handle of the declaration as payload.
+ *
+ * @author johan
+ * @since 2016-07-28.
+ */
+public class ASTArena {
+    public static final int NONE = -1;
+
+    /**
+     * The payload and the children of each kind of node.
+     */
+    public enum Kind {
+        /**
+         * Data: frame size, declaration count and the declarations. Children: the statements.
+         */
+        SCOPE,
+        /**
+         * Payload: index in the constant pool.
+         */
+        LITERAL,
+        /**
+         * Payload: the declaration.
+         */
+        REFERENCE,
+        /**
+         * Data: symbol, depth, slot and data type.
+         */
+        VARIABLE,
+        /**
+         * Data: symbol, depth, slot and data type.
+         */
+        CONSTANT,
+        /**
+         * Data: symbol, depth, slot, return data type and parameter count. Children: the parameters and the body.
+         */
+        FUNCTION,
+        /**
+         * Payload: the operator type. Children: the left and the right operand.
+         */
+        BINARY_OPERATOR,
+        /**
+         * Payload: the operator type. Children: the operand.
+         */
+        UNARY_OPERATOR,
+        /**
+         * Children: the condition, the if scope and the else scope if there is one.
+         */
+        IF,
+        /**
+         * Children: the condition and the scope.
+         */
+        WHILE,
+        /**
+         * Payload: FOR_INIT, FOR_CONDITION and FOR_INCREMENT for the parts that are there. Children: those parts in
+         * that order and the scope.
+         */
+        FOR,
+        /**
+         * Children: the assignment of the range to the variable and the scope.
+         */
+        FOR_RANGE,
+        /**
+         * Payload: the declaration of the function. Children: the arguments.
+         */
+        CALL,
+        /**
+         * Children: the value returned, if there is one.
+         */
+        RETURN
+    }
+
+    public static final int FOR_INIT = 1;
+    public static final int FOR_CONDITION = 2;
+    public static final int FOR_INCREMENT = 4;
+
+    /**
+     * Walks a tree depth first.
+     */
+    public interface Visitor {
+        /**
+         * @return false to skip the children of the node.
+         */
+        boolean enter(ASTArena arena, int node);
+
+        /**
+         * Called after the children, for every node that was entered.
+         */
+        void exit(ASTArena arena, int node);
+    }
+
+    private static final int INITIAL_CAPACITY = 256;
+    private static final Kind[] KINDS = Kind.values();
+    private static final ASTOperator.Type[] OPERATORS = ASTOperator.Type.values();
+    private static final DataType[] DATA_TYPES = DataType.values();
+
+    private final SymbolTable symbols;
+    private final ConstantPool constants;
+    private final LineTable lineTable;
+    private byte[] kinds = new byte[INITIAL_CAPACITY];
+    private int[] firstChildren = new int[INITIAL_CAPACITY];
+    private int[] nextSiblings = new int[INITIAL_CAPACITY];
+    private int[] payloads = new int[INITIAL_CAPACITY];
+    private int[] positions = new int[INITIAL_CAPACITY];
+    private int size = 0;
+    private int[] data = new int[INITIAL_CAPACITY];
+    private int dataSize = 0;
+
+    /**
+     * @param symbols   The symbol table of the compilation, for the names of identifiers.
+     * @param constants The constant pool of the compilation, for the values of literals.
+     * @param lineTable The line table of the file, for the locations of nodes.
+     */
+    public ASTArena(SymbolTable symbols, ConstantPool constants, LineTable lineTable) {
+        this.symbols = symbols;
+        this.constants = constants;
+        this.lineTable = lineTable;
+    }
+
+    /**
+     * Adds a node without children.
+     *
+     * @param kind     The kind of node.
+     * @param payload  The payload, or the index of its data.
+     * @param position Offset of the node in the source, or -1 if it has none.
+     * @return The handle of the node.
+     */
+    int add(Kind kind, int payload, int position) {
+        if (size == kinds.length) {
+            int capacity = Math.max(INITIAL_CAPACITY, size * 2);
+            kinds = Arrays.copyOf(kinds, capacity);
+            firstChildren = Arrays.copyOf(firstChildren, capacity);
+            nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+            payloads = Arrays.copyOf(payloads, capacity);
+            positions = Arrays.copyOf(positions, capacity);
+        }
+        kinds[size] = (byte) kind.ordinal();
+        firstChildren[size] = NONE;
+        nextSiblings[size] = NONE;
+        payloads[size] = payload;
+        positions[size] = position;
+        return size++;
+    }
+
+    /**
+     * Reserves room in the data array.
+     *
+     * @return The index of the first int.
+     */
+    int allocateData(int count) {
+        if (dataSize + count > data.length) {
+            data = Arrays.copyOf(data, Math.max(dataSize + count, Math.max(INITIAL_CAPACITY, data.length * 2)));
+        }
+        dataSize += count;
+        return dataSize - count;
+    }
+
+    void setData(int index, int value) {
+        data[index] = value;
+    }
+
+    /**
+     * Links a child in after the last one linked.
+     *
+     * @param parent   The parent node.
+     * @param previous The last child linked so far, NONE for the first child.
+     * @param child    The new child.
+     * @return The child, to pass as previous for the next one.
+     */
+    int link(int parent, int previous, int child) {
+        if (previous == NONE) {
+            firstChildren[parent] = child;
+        } else {
+            nextSiblings[previous] = child;
+        }
+        return child;
+    }
+
+    /**
+     * Shrinks the arrays to the nodes there are, for a tree that is done.
+     */
+    public void trimToSize() {
+        kinds = Arrays.copyOf(kinds, size);
+        firstChildren = Arrays.copyOf(firstChildren, size);
+        nextSiblings = Arrays.copyOf(nextSiblings, size);
+        payloads = Arrays.copyOf(payloads, size);
+        positions = Arrays.copyOf(positions, size);
+        data = Arrays.copyOf(data, dataSize);
+    }
+
+    /**
+     * Drops all nodes but keeps the arrays for the next tree.
+     */
+    public void clear() {
+        size = 0;
+        dataSize = 0;
+    }
+
+    /**
+     * @return The number of nodes.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The first node added, the root of a converted tree.
+     */
+    public int getRoot() {
+        return size > 0 ? 0 : NONE;
+    }
+
+    public Kind getKind(int node) {
+        return KINDS[kinds[node]];
+    }
+
+    public int getFirstChild(int node) {
+        return firstChildren[node];
+    }
+
+    public int getNextSibling(int node) {
+        return nextSiblings[node];
+    }
+
+    /**
+     * @return The child at the index, or NONE if there are not that many children.
+     */
+    public int getChild(int node, int index) {
+        int child = firstChildren[node];
+        while (child != NONE && index-- > 0) {
+            child = nextSiblings[child];
+        }
+        return child;
+    }
+
+    public int getChildCount(int node) {
+        int count = 0;
+        for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) {
+            ++count;
+        }
+        return count;
+    }
+
+    public int getPayload(int node) {
+        return payloads[node];
+    }
+
+    /**
+     * @return Offset of the node in the source, or -1 if it has none.
+     */
+    public int getPosition(int node) {
+        return positions[node];
+    }
+
+    public Location getLocation(int node) {
+        return positions[node] < 0 ? null : lineTable.getLocation(positions[node]);
+    }
+
+    /**
+     * @return The operator type of an operator node.
+     */
+    public ASTOperator.Type getOperator(int node) {
+        return OPERATORS[payloads[node]];
+    }
+
+    /**
+     * @return The constant pool index of a literal node.
+     */
+    public int getConstant(int node) {
+        return payloads[node];
+    }
+
+    public ConstantPool getConstants() {
+        return constants;
+    }
+
+    /**
+     * @return The declaration a reference or a call refers to.
+     */
+    public int getDeclaration(int node) {
+        return payloads[node];
+    }
+
+    /**
+     * @return The symbol id of a declaration.
+     */
+    public int getSymbol(int declaration) {
+        return data[payloads[declaration]];
+    }
+
+    /**
+     * @return The name of a declaration.
+     */
+    public String getIdentifier(int declaration) {
+        return symbols.getName(getSymbol(declaration));
+    }
+
+    public int getDepth(int declaration) {
+        return data[payloads[declaration] + 1];
+    }
+
+    public int getSlot(int declaration) {
+        return data[payloads[declaration] + 2];
+    }
+
+    /**
+     * @return The data type of a declaration, the return data type of a function or the data type of a literal.
+     */
+    public DataType getDataType(int node) {
+        if (getKind(node) == Kind.LITERAL) {
+            return constants.getDataType(payloads[node]);
+        }
+        int dataType = data[payloads[node] + 3];
+        return dataType < 0 ? null : DATA_TYPES[dataType];
+    }
+
+    public int getParameterCount(int function) {
+        return data[payloads[function] + 4];
+    }
+
+    /**
+     * @return The body of a function.
+     */
+    public int getBody(int function) {
+        return getChild(function, getParameterCount(function));
+    }
+
+    public int getFrameSize(int scope) {
+        return data[payloads[scope]];
+    }
+
+    /**
+     * @return The number of identifiers declared in a scope.
+     */
+    public int getDeclarationCount(int scope) {
+        return data[payloads[scope] + 1];
+    }
+
+    /**
+     * @return The identifier at the index in the declaration order of a scope.
+     */
+    public int getDeclaration(int scope, int index) {
+        return data[payloads[scope] + 2 + index];
+    }
+
+    /**
+     * Walks the tree below a node depth first, without recursion.
+     *
+     * @param root    The node to start at.
+     * @param visitor The visitor.
+     */
+    public void walk(int root, Visitor visitor) {
+        int[] stack = new int[16];
+        int top = 0;
+        int node = root;
+        while (true) {
+            if (visitor.enter(this, node) && firstChildren[node] != NONE) {
+                if (top == stack.length) {
+                    stack = Arrays.copyOf(stack, top * 2);
+                }
+                stack[top++] = node;
+                node = firstChildren[node];
+                continue;
+            }
+            visitor.exit(this, node);
+            while (node != root && nextSiblings[node] == NONE) {
+                node = stack[--top];
+                visitor.exit(this, node);
+            }
+            if (node == root) {
+                return;
+            }
+            node = nextSiblings[node];
+        }
+    }
+
+    /**
+     * @return A cursor at the node.
+     */
+    public ASTCursor cursor(int node) {
+        return new ASTCursor(this, node);
+    }
+}
@@ -11,7 +11,7 @@ public class ASTBinaryOperator extends ASTOperator {
     private final ASTNode right;
 
     public ASTBinaryOperator(Type type, ASTNode left, ASTNode right, Location location) {
-        super(type, location);
+        super(Kind.BINARY_OPERATOR, type, location);
         this.left = left;
         this.right = right;
     }
@@ -23,4 +23,9 @@ public class ASTBinaryOperator extends ASTOperator {
     public ASTNode getRight() {
         return right;
     }
+
+    @Override
+    protected int computeStructuralHash() {
+        return ((getType().ordinal() + 1) * 31 + left.getStructuralHash()) * 31 + right.getStructuralHash();
+    }
 }
@@ -0,0 +1,31 @@
+package com.github.johanrg.ast;
+
+import com.github.johanrg.frontend.Location;
+
+import java.util.List;
+
+/**
+ * A call of a function with arguments, written name(arguments). The name of a function on its own is a reference to
+ * the function and not a call.
+ *
+ * @author johan
+ * @since 2016-08-02.
+ */
+public class ASTCall extends ASTNode {
+    private final ASTFunction function;
+    private final List<ASTNode> arguments;
+
+    public ASTCall(ASTFunction function, List<ASTNode> arguments, Location location) {
+        super(Kind.CALL, location);
+        this.function = function;
+        this.arguments = arguments;
+    }
+
+    public ASTFunction getFunction() {
+        return function;
+    }
+
+    public List<ASTNode> getArguments() {
+        return arguments;
+    }
+}
@@ -0,0 +1,184 @@
+package com.github.johanrg.ast;
+
+import com.github.johanrg.frontend.CompilerException;
+import com.github.johanrg.frontend.Location;
+import com.github.johanrg.frontend.TokenBuffer;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copies a tree of AST objects into an ASTArena. Each identifier gets one declaration node, the first time it's seen.
+ *
+ * @author johan
+ * @since 2016-07-28.
+ */
+public class ASTConverter {
+    private final ASTArena arena;
+    private final Map<Identifier, Integer> declarations = new IdentityHashMap<>();
+
+    private ASTConverter(ASTArena arena) {
+        this.arena = arena;
+    }
+
+    /**
+     * Converts a parsed file. The bodies of functions that haven't been parsed yet are parsed first.
+     *
+     * @param root   The root scope.
+     * @param tokens The tokens the tree was parsed from.
+     * @return The arena, with the root scope as its root.
+     */
+    public static ASTArena convert(ASTScope root, TokenBuffer tokens) throws CompilerException {
+        ASTArena arena = new ASTArena(tokens.getSymbols(), tokens.getConstants(), tokens.getLineTable());
+        new ASTConverter(arena).scope(root);
+        arena.trimToSize();
+        return arena;
+    }
+
+    private int scope(ASTScope scope) throws CompilerException {
+        Map<Integer, Identifier> identifiers = scope.getIdentifiers();
+        int data = arena.allocateData(2 + identifiers.size());
+        arena.setData(data, scope.getFrameSize());
+        arena.setData(data + 1, identifiers.size());
+        int node = arena.add(ASTArena.Kind.SCOPE, data, position(scope));
+        children(node, ASTArena.NONE, scope.getStatements());
+        // NOTE(Johan): after the statements, so the declarations are added where they are first used.
+        int index = data + 2;
+        for (Identifier identifier : identifiers.values()) {
+            arena.setData(index++, declaration(identifier));
+        }
+        return node;
+    }
+
+    private int children(int parent, int previous, List<ASTNode> nodes) throws CompilerException {
+        for (ASTNode node : nodes) {
+            int child = node.getKind() == ASTNode.Kind.FUNCTION ? declaration((Identifier) node) : node(node);
+            previous = arena.link(parent, previous, child);
+        }
+        return previous;
+    }
+
+    private int node(ASTNode node) throws CompilerException {
+        int result;
+        switch (node.getKind()) {
+            case SCOPE:
+                return scope((ASTScope) node);
+            case LITERAL:
+                return arena.add(ASTArena.Kind.LITERAL, ((ASTLiteral) node).getConstant(), position(node));
+            case VARIABLE:
+            case CONSTANT:
+            case FUNCTION:
+                return arena.add(ASTArena.Kind.REFERENCE, declaration((Identifier) node), position(node));
+            case BINARY_OPERATOR: {
+                ASTBinaryOperator operator = (ASTBinaryOperator) node;
+                result = arena.add(ASTArena.Kind.BINARY_OPERATOR, operator.getType().ordinal(), position(node));
+                arena.link(result, arena.link(result, ASTArena.NONE, node(operator.getLeft())),
+                        node(operator.getRight()));
+                return result;
+            }
+            case UNARY_OPERATOR: {
+                ASTUnaryOperator operator = (ASTUnaryOperator) node;
+                result = arena.add(ASTArena.Kind.UNARY_OPERATOR, operator.getType().ordinal(), position(node));
+                arena.link(result, ASTArena.NONE, node(operator.getSingleNode()));
+                return result;
+            }
+            case IF: {
+                ASTIfStatement statement = (ASTIfStatement) node;
+                result = arena.add(ASTArena.Kind.IF, 0, position(node));
+                int previous = arena.link(result, ASTArena.NONE, node(statement.getExpression()));
+                previous = arena.link(result, previous, node(statement.getIfScope()));
+                if (statement.getElseScope() != null) {
+                    arena.link(result, previous, node(statement.getElseScope()));
+                }
+                return result;
+            }
+            case WHILE: {
+                ASTWhileStatement statement = (ASTWhileStatement) node;
+                result = arena.add(ASTArena.Kind.WHILE, 0, position(node));
+                arena.link(result, arena.link(result, ASTArena.NONE, node(statement.getExpression())),
+                        node(statement.getWhileScope()));
+                return result;
+            }
+            case FOR: {
+                ASTForStatement statement = (ASTForStatement) node;
+                int parts = (statement.getInit() != null ? ASTArena.FOR_INIT : 0) |
+                        (statement.getCondition() != null ? ASTArena.FOR_CONDITION : 0) |
+                        (statement.getIncrement() != null ? ASTArena.FOR_INCREMENT : 0);
+                result = arena.add(ASTArena.Kind.FOR, parts, position(node));
+                int previous = ASTArena.NONE;
+                for (ASTNode part : new ASTNode[]{statement.getInit(), statement.getCondition(),
+                        statement.getIncrement()}) {
+                    if (part != null) {
+                        previous = arena.link(result, previous, node(part));
+                    }
+                }
+                arena.link(result, previous, node(statement.getForScope()));
+                return result;
+            }
+            case FOR_RANGE: {
+                ASTForRangeStatement statement = (ASTForRangeStatement) node;
+                result = arena.add(ASTArena.Kind.FOR_RANGE, 0, position(node));
+                arena.link(result, arena.link(result, ASTArena.NONE, node(statement.getRange())),
+                        node(statement.getForScope()));
+                return result;
+            }
+            case CALL: {
+                ASTCall call = (ASTCall) node;
+                result = arena.add(ASTArena.Kind.CALL, declaration(call.getFunction()), position(node));
+                int previous = ASTArena.NONE;
+                for (ASTNode argument : call.getArguments()) {
+                    previous = arena.link(result, previous, node(argument));
+                }
+                return result;
+            }
+            case RETURN: {
+                ASTReturnStatement statement = (ASTReturnStatement) node;
+                result = arena.add(ASTArena.Kind.RETURN, 0, position(node));
+                if (statement.getExpression() != null) {
+                    arena.link(result, ASTArena.NONE, node(statement.getExpression()));
+                }
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("can not convert " + node.getKind());
+    }
+
+    /**
+     * @return The declaration node of the identifier, added if it's the first time it's seen.
+     */
+    private int declaration(Identifier identifier) throws CompilerException {
+        Integer node = declarations.get(identifier);
+        if (node != null) {
+            return node;
+        }
+        ASTArena.Kind kind;
+        if (identifier instanceof ASTFunction) {
+            kind = ASTArena.Kind.FUNCTION;
+        } else if (identifier instanceof ASTConstant) {
+            kind = ASTArena.Kind.CONSTANT;
+        } else {
+            kind = ASTArena.Kind.VARIABLE;
+        }
+        int data = arena.allocateData(kind == ASTArena.Kind.FUNCTION ? 5 : 4);
+        arena.setData(data, identifier.getSymbol());
+        arena.setData(data + 1, identifier.getDepth());
+        arena.setData(data + 2, identifier.getSlot());
+        arena.setData(data + 3, ((Type) identifier).getDataType() == null ? -1 :
+                ((Type) identifier).getDataType().ordinal());
+        node = arena.add(kind, data, position((ASTNode) identifier));
+        declarations.put(identifier, node);
+        if (kind == ASTArena.Kind.FUNCTION) {
+            ASTFunction function = (ASTFunction) identifier;
+            arena.setData(data + 4, function.getParameters().size());
+            int previous = children(node, ASTArena.NONE, function.getParameters());
+            arena.link(node, previous, scope(function.parseBody()));
+        }
+        return node;
+    }
+
+    private static int position(ASTNode node) {
+        Location location = node.getLocation();
+        return location == null ? -1 : location.getOffset();
+    }
+}
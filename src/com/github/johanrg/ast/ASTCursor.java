@@ -0,0 +1,82 @@
+package com.github.johanrg.ast;
+
+import java.util.Arrays;
+
+/**
+ * Moves around a tree in an ASTArena. The arena has no parent links, so the cursor keeps the nodes it went down
+ * through.
+ *
+ * @author johan
+ * @since 2016-07-28.
+ */
+public class ASTCursor {
+    private final ASTArena arena;
+    private int node;
+    private int[] parents = new int[16];
+    private int depth = 0;
+
+    ASTCursor(ASTArena arena, int node) {
+        this.arena = arena;
+        this.node = node;
+    }
+
+    public ASTArena getArena() {
+        return arena;
+    }
+
+    public int getNode() {
+        return node;
+    }
+
+    public ASTArena.Kind getKind() {
+        return arena.getKind(node);
+    }
+
+    /**
+     * @return How many times the cursor went down from where it started.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Goes down to the first child.
+     *
+     * @return false if there is none, the cursor doesn't move.
+     */
+    public boolean firstChild() {
+        int child = arena.getFirstChild(node);
+        if (child == ASTArena.NONE) {
+            return false;
+        }
+        if (depth == parents.length) {
+            parents = Arrays.copyOf(parents, depth * 2);
+        }
+        parents[depth++] = node;
+        node = child;
+        return true;
+    }
+
+    /**
+     * @return false if there is no next sibling, the cursor doesn't move.
+     */
+    public boolean nextSibling() {
+        int sibling = arena.getNextSibling(node);
+        if (depth == 0 || sibling == ASTArena.NONE) {
+            return false;
+        }
+        node = sibling;
+        return true;
+    }
+
+    /**
+     * @return false if the cursor is where it started, the cursor doesn't move.
+     */
+    public boolean parent() {
+        if (depth == 0) {
+            return false;
+        }
+        node = parents[--depth];
+        return true;
+    }
+}
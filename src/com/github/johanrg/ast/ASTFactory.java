@@ -0,0 +1,146 @@
+package com.github.johanrg.ast;
+
+import com.github.johanrg.frontend.ConstantPool;
+import com.github.johanrg.frontend.Location;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Creates the expression nodes of the parser. With hash consing, an expression without side effects that is
+ * structurally equal to one created before is not created again, the earlier node is shared instead. The children of a
+ * shared node are shared too, so two nodes are equal when their operators or values are equal and their children are
+ * the same nodes, and equal expressions anywhere in a tree are the same node.
+ * <p>
+ * A shared node stands for every occurrence of the expression, so with hash consing the nodes that can be shared are
+ * created without a location. The parser reports errors in an expression at the tokens of the occurrence instead.
+ * Assignments, increments, decrements and calls are never shared and keep their locations.
+ *
+ * @author johan
+ * @since 2016-07-29.
+ */
+public class ASTFactory {
+    /**
+     * Wraps a node to compare it on structure in the table.
+     */
+    private static class Key {
+        private final ASTNode node;
+
+        private Key(ASTNode node) {
+            this.node = node;
+        }
+
+        @Override
+        public int hashCode() {
+            return node.getStructuralHash();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            ASTNode other = ((Key) o).node;
+            if (node.getKind() != other.getKind() || node.getStructuralHash() != other.getStructuralHash()) {
+                return false;
+            }
+            switch (node.getKind()) {
+                case LITERAL:
+                    ASTLiteral literal = (ASTLiteral) node;
+                    ASTLiteral otherLiteral = (ASTLiteral) other;
+                    return literal.getDataType() == otherLiteral.getDataType() &&
+                            literal.getBits() == otherLiteral.getBits();
+                case BINARY_OPERATOR:
+                    ASTBinaryOperator binary = (ASTBinaryOperator) node;
+                    ASTBinaryOperator otherBinary = (ASTBinaryOperator) other;
+                    return binary.getType() == otherBinary.getType() && binary.getLeft() == otherBinary.getLeft() &&
+                            binary.getRight() == otherBinary.getRight();
+                case UNARY_OPERATOR:
+                    ASTUnaryOperator unary = (ASTUnaryOperator) node;
+                    ASTUnaryOperator otherUnary = (ASTUnaryOperator) other;
+                    return unary.getType() == otherUnary.getType() &&
+                            unary.getSingleNode() == otherUnary.getSingleNode();
+                default:
+                    return node == other;
+            }
+        }
+    }
+
+    // NOTE(Johan): null without hash consing. Concurrent since function bodies can be parsed in parallel.
+    private final ConcurrentMap<Key, ASTNode> nodes;
+
+    /**
+     * A factory that creates a new node every time.
+     */
+    public ASTFactory() {
+        this(false);
+    }
+
+    /**
+     * @param hashConsing true to share structurally equal expressions.
+     */
+    public ASTFactory(boolean hashConsing) {
+        nodes = hashConsing ? new ConcurrentHashMap<>() : null;
+    }
+
+    public boolean isHashConsing() {
+        return nodes != null;
+    }
+
+    /**
+     * @return The number of distinct nodes that can be shared.
+     */
+    public int size() {
+        return nodes == null ? 0 : nodes.size();
+    }
+
+    public ASTLiteral literal(ConstantPool constants, int constant, Location location) {
+        return share(new ASTLiteral(constants, constant, shared(location)));
+    }
+
+    public ASTNode binaryOperator(ASTOperator.Type type, ASTNode left, ASTNode right, Location location) {
+        if (type.getGroup() == ASTOperator.Group.ASSIGNMENT) {
+            return new ASTBinaryOperator(type, left, right, location);
+        }
+        return share(new ASTBinaryOperator(type, left, right, shared(location)));
+    }
+
+    public ASTNode unaryOperator(ASTOperator.Type type, ASTNode singleNode, Location location) {
+        switch (type) {
+            case UNARY_PRE_INCREMENT:
+            case UNARY_PRE_DECREMENT:
+            case UNARY_POST_INCREMENT:
+            case UNARY_POST_DECREMENT:
+                return new ASTUnaryOperator(type, singleNode, location);
+            default:
+                return share(new ASTUnaryOperator(type, singleNode, shared(location)));
+        }
+    }
+
+    /**
+     * A call is never shared, whether the function has side effects isn't known while parsing.
+     */
+    public ASTCall call(ASTFunction function, List<ASTNode> arguments, Location location) {
+        return new ASTCall(function, arguments, location);
+    }
+
+    /**
+     * @return The location of a node that can be shared, none with hash consing.
+     */
+    private Location shared(Location location) {
+        return nodes == null ? location : null;
+    }
+
+    /**
+     * @return The node created before that is structurally equal to the node, or the node if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends ASTNode> T share(T node) {
+        if (nodes == null) {
+            return node;
+        }
+        ASTNode shared = nodes.putIfAbsent(new Key(node), node);
+        return shared == null ? node : (T) shared;
+    }
+}
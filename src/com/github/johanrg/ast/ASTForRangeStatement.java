@@ -11,7 +11,7 @@ public class ASTForRangeStatement extends ASTNode {
     private final ASTNode forScope;
 
     public ASTForRangeStatement(ASTNode range, ASTNode forScope, Location location) {
-        super(location);
+        super(Kind.FOR_RANGE, location);
         this.range = range;
         this.forScope = forScope;
     }
@@ -13,7 +13,7 @@ public class ASTForStatement extends ASTNode {
     private final ASTScope forScope;
 
     public ASTForStatement(ASTNode init, ASTNode condition, ASTNode increment, ASTScope forScope, Location location) {
-        super(location);
+        super(Kind.FOR, location);
         this.init = init;
         this.condition = condition;
         this.increment = increment;
@@ -31,4 +31,8 @@ public class ASTForStatement extends ASTNode {
     public ASTNode getIncrement() {
         return increment;
     }
+
+    public ASTScope getForScope() {
+        return forScope;
+    }
 }
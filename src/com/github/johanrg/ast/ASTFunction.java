@@ -1,5 +1,6 @@
 package com.github.johanrg.ast;
 
+import com.github.johanrg.frontend.CompilerException;
 import com.github.johanrg.frontend.DataType;
 import com.github.johanrg.frontend.Location;
 
@@ -10,28 +11,90 @@ import java.util.List;
  * @since 2016-06-30.
  */
 public class ASTFunction extends ASTNode implements Identifier, Type {
+    /**
+     * Parses the body of a function that was declared without parsing it.
+     */
+    public interface Body {
+        ASTScope parse() throws CompilerException;
+    }
+
+    private final int symbol;
     private final String identifier;
+    private int depth = -1;
+    private int slot = -1;
     private final List<ASTNode> parameters;
-    private final ASTScope functionStatement;
+    private ASTScope functionStatement;
+    private Body body;
     private final DataType returnDataType;
 
-    public ASTFunction(String identifier, List<ASTNode> parameters, ASTScope functionStatement, DataType returnDataType, Location location) {
-        super(location);
+    public ASTFunction(int symbol, String identifier, List<ASTNode> parameters, ASTScope functionStatement,
+                       DataType returnDataType, Location location) {
+        super(Kind.FUNCTION, location);
+        this.symbol = symbol;
         this.parameters = parameters;
         this.functionStatement = functionStatement;
         this.identifier = identifier;
         this.returnDataType = returnDataType;
     }
 
+    public ASTFunction(int symbol, String identifier, List<ASTNode> parameters, Body body, DataType returnDataType,
+                       Location location) {
+        this(symbol, identifier, parameters, (ASTScope) null, returnDataType, location);
+        this.body = body;
+    }
+
+    @Override
+    public int getSymbol() {
+        return symbol;
+    }
+
+    @Override
     public String getIdentifier() {
         return identifier;
     }
 
+    @Override
+    public int getDepth() {
+        return depth;
+    }
+
+    @Override
+    public int getSlot() {
+        return slot;
+    }
+
+    @Override
+    public void setAddress(int depth, int slot) {
+        this.depth = depth;
+        this.slot = slot;
+    }
+
     public List<ASTNode> getParameters() {
         return parameters;
     }
 
-    public ASTNode getFunctionStatement() {
+    /**
+     * @return The body, or null if it hasn't been parsed yet.
+     */
+    public synchronized ASTNode getFunctionStatement() {
+        return functionStatement;
+    }
+
+    public synchronized boolean isBodyParsed() {
+        return body == null;
+    }
+
+    /**
+     * Parses and type checks the body if it was skipped when the function was declared. A body can only refer to
+     * functions declared before it, so bodies parsed on different threads never wait on each other in a cycle.
+     *
+     * @return The body.
+     */
+    public synchronized ASTScope parseBody() throws CompilerException {
+        if (body != null) {
+            functionStatement = body.parse();
+            body = null;
+        }
         return functionStatement;
     }
 
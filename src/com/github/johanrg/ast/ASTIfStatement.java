@@ -12,7 +12,7 @@ public class ASTIfStatement extends ASTNode {
     private final ASTScope elseScope;
 
     public ASTIfStatement(ASTNode expression, ASTScope ifScope, ASTScope elseScope, Location location ) {
-        super(location);
+        super(Kind.IF, location);
         this.expression = expression;
         this.ifScope = ifScope;
         this.elseScope = elseScope;
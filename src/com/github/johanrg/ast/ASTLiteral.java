@@ -1,26 +1,52 @@
 package com.github.johanrg.ast;
 
+import com.github.johanrg.frontend.ConstantPool;
 import com.github.johanrg.frontend.DataType;
 import com.github.johanrg.frontend.Location;
 
 /**
+ * A literal keeps its data type and the raw bits of its value from the constant pool, so the primitive values are read
+ * straight from the node without going through the pool or boxing them.
+ *
  * @author johan
  * @since 2016-06-30.
  */
 public class ASTLiteral extends ASTNode implements Type {
+    private final ConstantPool constants;
+    private final int constant;
+    private final DataType dataType;
+    private final long bits;
 
+    /**
+     * @param constants The constant pool of the compilation.
+     * @param constant  Index of the value in the constant pool.
+     * @param location  Location of the literal.
+     */
+    public ASTLiteral(ConstantPool constants, int constant, Location location) {
+        super(Kind.LITERAL, location);
+        this.constants = constants;
+        this.constant = constant;
+        this.dataType = constants.getDataType(constant);
+        this.bits = constants.getBits(constant);
+    }
 
-    private final Object value;
-    private final DataType dataType;
+    public ConstantPool getConstants() {
+        return constants;
+    }
+
+    public int getConstant() {
+        return constant;
+    }
 
-    public ASTLiteral(Object value, DataType dataType, Location location) {
-        super(location);
-        this.value = value;
-        this.dataType = dataType;
+    /**
+     * @return The value as raw bits, the same for equal values of the same data type.
+     */
+    public long getBits() {
+        return bits;
     }
 
     public Object getValue() {
-        return value;
+        return constants.getValue(constant);
     }
 
     @Override
@@ -28,6 +54,11 @@ public class ASTLiteral extends ASTNode implements Type {
         return dataType;
     }
 
+    @Override
+    protected int computeStructuralHash() {
+        return (dataType.ordinal() + 1) * 31 + Long.hashCode(bits);
+    }
+
     public static DataType typeForName(String name) {
         for (DataType t : DataType.values()) {
             if (t.toString().toLowerCase().equals(name)) {
@@ -38,28 +69,32 @@ public class ASTLiteral extends ASTNode implements Type {
     }
 
     public boolean getBoolean() {
-        assert dataType == DataType.BOOLEAN : "Literal is not a boolean";
-        return (Boolean) value;
+        assert dataType == DataType.BOOLEAN : "Constant is not a boolean";
+        return bits != 0;
     }
 
     public int getInt() {
-        assert dataType == DataType.INT : "Literal is not an integer";
-        return (Integer) value;
+        assert dataType == DataType.INT : "Constant is not an integer";
+        return (int) bits;
     }
 
     public float getFloat() {
-        assert dataType == DataType.FLOAT : "Literal is not a float";
-        return (Float) value;
+        assert dataType == DataType.FLOAT : "Constant is not a float";
+        return Float.intBitsToFloat((int) bits);
     }
 
     public double getDouble() {
-        assert dataType == DataType.DOUBLE : "Literal is not a double";
-        return (Double) value;
+        assert dataType == DataType.DOUBLE : "Constant is not a double";
+        return Double.longBitsToDouble(bits);
+    }
+
+    public char getChar() {
+        assert dataType == DataType.CHAR : "Constant is not a char";
+        return (char) bits;
     }
 
     public String getString() {
-        assert dataType == DataType.STRING : "Literal is not a double";
-        return (String) value;
+        return constants.getString(constant);
     }
 
     public static Object defaultValueForType(DataType dataType) {
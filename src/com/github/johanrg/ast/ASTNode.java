@@ -1,5 +1,6 @@
 package com.github.johanrg.ast;
 
+import com.github.johanrg.frontend.DataType;
 import com.github.johanrg.frontend.Location;
 
 /**
@@ -7,13 +8,70 @@ import com.github.johanrg.frontend.Location;
  * @since 2016-06-30.
  */
 public class ASTNode {
+    /**
+     * Tag for the class of a node, so passes can switch on it.
+     */
+    public enum Kind {
+        SCOPE,
+        LITERAL,
+        VARIABLE,
+        CONSTANT,
+        FUNCTION,
+        BINARY_OPERATOR,
+        UNARY_OPERATOR,
+        IF,
+        WHILE,
+        FOR,
+        FOR_RANGE,
+        CALL,
+        RETURN
+    }
+
+    private final Kind kind;
     private final Location location;
+    private DataType annotatedDataType;
+    private int structuralHash;
 
-    public ASTNode(Location location) {
+    public ASTNode(Kind kind, Location location) {
+        this.kind = kind;
         this.location = location;
     }
 
+    public Kind getKind() {
+        return kind;
+    }
+
     public Location getLocation() {
         return location;
     }
+
+    /**
+     * @return The data type worked out by the type annotation, null if the node hasn't been annotated.
+     */
+    public DataType getAnnotatedDataType() {
+        return annotatedDataType;
+    }
+
+    public void setAnnotatedDataType(DataType annotatedDataType) {
+        this.annotatedDataType = annotatedDataType;
+    }
+
+    /**
+     * @return A hash of the structure of the node, worked out once. Structurally equal nodes have the same hash.
+     */
+    public int getStructuralHash() {
+        int hash = structuralHash;
+        if (hash == 0) {
+            hash = computeStructuralHash();
+            structuralHash = hash;
+        }
+        return hash;
+    }
+
+    /**
+     * A node is only structurally equal to itself unless a subclass says otherwise.
+     */
+    protected int computeStructuralHash() {
+        return System.identityHashCode(this);
+    }
 }
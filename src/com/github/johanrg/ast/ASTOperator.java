@@ -71,6 +71,10 @@ public class ASTOperator extends ASTNode {
             this.associativity = associativity;
         }
 
+        public String getSymbol() {
+            return symbol;
+        }
+
         public Group getGroup() {
             return group;
         }
@@ -86,20 +90,11 @@ public class ASTOperator extends ASTNode {
 
     private final Type type;
 
-    public ASTOperator(Type type, Location location) {
-        super(location);
+    public ASTOperator(Kind kind, Type type, Location location) {
+        super(kind, location);
         this.type = type;
     }
 
-    public static Type match(String symbol) {
-        for(ASTOperator.Type type : ASTOperator.Type.values()) {
-            if (type.symbol.equals(symbol)) {
-                return type;
-            }
-        }
-        return null;
-    }
-
     public Type getType() {
         return type;
     }
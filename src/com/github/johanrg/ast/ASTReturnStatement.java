@@ -0,0 +1,26 @@
+package com.github.johanrg.ast;
+
+import com.github.johanrg.frontend.Location;
+
+/**
+ * @author johan
+ * @since 2016-08-02.
+ */
+public class ASTReturnStatement extends ASTNode {
+    private final ASTNode expression;
+
+    /**
+     * @param expression The value returned, null in a void function.
+     */
+    public ASTReturnStatement(ASTNode expression, Location location) {
+        super(Kind.RETURN, location);
+        this.expression = expression;
+    }
+
+    /**
+     * @return The value returned, null in a void function.
+     */
+    public ASTNode getExpression() {
+        return expression;
+    }
+}
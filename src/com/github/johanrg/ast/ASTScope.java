@@ -1,5 +1,7 @@
 package com.github.johanrg.ast;
 
+import com.github.johanrg.frontend.Location;
+
 import java.util.List;
 import java.util.Map;
 
@@ -8,20 +10,55 @@ import java.util.Map;
  * @since 2016-07-02.
  */
 public class ASTScope extends ASTNode {
-    private final List<ASTNode> statements;
-    private final Map<String, Identifier> identifiers;
+    private List<ASTNode> statements;
+    private Map<Integer, Identifier> identifiers;
+    private int frameSize;
+    private Location location;
 
-    public ASTScope(List<ASTNode> statements, Map<String, Identifier> identifiers) {
-        super(null);
+    public ASTScope(List<ASTNode> statements, Map<Integer, Identifier> identifiers, int frameSize, Location location) {
+        super(Kind.SCOPE, null);
         this.statements = statements;
         this.identifiers = identifiers;
+        this.frameSize = frameSize;
+        this.location = location;
+    }
+
+    /**
+     * @return The location of the first token of the scope.
+     */
+    @Override
+    public Location getLocation() {
+        return location;
     }
 
     public List<ASTNode> getStatements() {
         return statements;
     }
 
-    public Map<String, Identifier> getIdentifiers() {
+    /**
+     * @return The identifiers declared in the scope, keyed on symbol id.
+     */
+    public Map<Integer, Identifier> getIdentifiers() {
         return identifiers;
     }
+
+    /**
+     * @return The number of slots the identifiers declared in the scope need.
+     */
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    /**
+     * Takes over the contents of a scope parsed again after an edit, so the nodes that refer to this scope don't have
+     * to change.
+     *
+     * @param scope The new scope.
+     */
+    public void replaceWith(ASTScope scope) {
+        statements = scope.statements;
+        identifiers = scope.identifiers;
+        frameSize = scope.frameSize;
+        location = scope.location;
+    }
 }
@@ -10,11 +10,16 @@ public class ASTUnaryOperator extends ASTOperator {
     private final ASTNode singleNode;
 
     public ASTUnaryOperator(Type type, ASTNode singleNode, Location location) {
-        super(type, location);
+        super(Kind.UNARY_OPERATOR, type, location);
         this.singleNode = singleNode;
     }
 
     public ASTNode getSingleNode() {
         return singleNode;
     }
+
+    @Override
+    protected int computeStructuralHash() {
+        return (getType().ordinal() + 1) * 31 + singleNode.getStructuralHash();
+    }
 }
@@ -8,20 +8,45 @@ import com.github.johanrg.frontend.Location;
  * @since 2016-06-30.
  */
 public class ASTVariable extends ASTNode implements Identifier, Type {
+    private final int symbol;
     private final String identifier;
+    private int depth = -1;
+    private int slot = -1;
     private final DataType dataType;
 
-    public ASTVariable(String identifier, DataType dataType, Location location) {
-        super(location);
+    public ASTVariable(int symbol, String identifier, DataType dataType, Location location) {
+        super(Kind.VARIABLE, location);
+        this.symbol = symbol;
         this.identifier = identifier;
         this.dataType = dataType;
     }
 
+    @Override
+    public int getSymbol() {
+        return symbol;
+    }
+
     @Override
     public String getIdentifier() {
         return identifier;
     }
 
+    @Override
+    public int getDepth() {
+        return depth;
+    }
+
+    @Override
+    public int getSlot() {
+        return slot;
+    }
+
+    @Override
+    public void setAddress(int depth, int slot) {
+        this.depth = depth;
+        this.slot = slot;
+    }
+
     @Override
     public DataType getDataType() {
         return dataType;
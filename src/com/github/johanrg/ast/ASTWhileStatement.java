@@ -11,7 +11,7 @@ public class ASTWhileStatement extends ASTNode {
    private final ASTScope whileScope;
 
    public ASTWhileStatement(ASTNode expression, ASTScope whileScope, Location location) {
-      super(location);
+      super(Kind.WHILE, location);
       this.expression = expression;
       this.whileScope = whileScope;
    }
@@ -5,5 +5,25 @@ package com.github.johanrg.ast;
  * @since 2016-06-30.
  */
 public interface Identifier {
+    /**
+     * @return The symbol id of the name in the symbol table of the compilation.
+     */
+    int getSymbol();
+
     String getIdentifier();
+
+    /**
+     * @return Depth of the scope the identifier is declared in, 0 is the outermost scope.
+     */
+    int getDepth();
+
+    /**
+     * @return Slot of the identifier in the frame of the scope it's declared in.
+     */
+    int getSlot();
+
+    /**
+     * Sets the lexical address, done once when the identifier is declared.
+     */
+    void setAddress(int depth, int slot);
 }
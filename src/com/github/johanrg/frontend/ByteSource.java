@@ -0,0 +1,119 @@
+package com.github.johanrg.frontend;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Source text read directly from UTF-8 encoded bytes, typically a MappedByteBuffer from FileChannel.map. Bytes are
+ * handed to the lexer as is, so ASCII is classified without decoding, and only the text asked for through substring is
+ * decoded, like identifiers and string literals.
+ * <p>
+ * The bulk scans look at eight bytes at a time as a long (SIMD within a register) and finish the last few bytes one
+ * at a time.
+ *
+ * @author johan
+ * @since 2016-07-17.
+ */
+public class ByteSource implements Source {
+    private static final long ONES = 0x0101010101010101L;
+    private static final long LOW_BITS = 0x7f7f7f7f7f7f7f7fL;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    private final ByteBuffer bytes;
+    private final ByteBuffer words;
+    private final int length;
+
+    public ByteSource(ByteBuffer bytes) {
+        this.bytes = bytes;
+        this.words = bytes.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        this.length = bytes.limit();
+    }
+
+    @Override
+    public char charAt(int pos) {
+        return pos < length ? (char) (bytes.get(pos) & 0xff) : EOF;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public String substring(int start, int end) {
+        end = Math.min(end, length);
+        start = Math.min(start, end);
+        byte[] data = new byte[end - start];
+        ByteBuffer range = bytes.duplicate();
+        range.position(start);
+        range.get(data);
+        return new String(data, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public boolean startsWith(String valid, int offset) {
+        if (offset < 0 || length - offset < valid.length()) {
+            return false;
+        }
+        for (int i = 0; i < valid.length(); ++i) {
+            if (bytes.get(offset + i) != valid.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean continuesCharacter(int pos) {
+        return pos < length && (bytes.get(pos) & 0xc0) == 0x80;
+    }
+
+    @Override
+    public int find(int pos, char a, char b, char c) {
+        long patternA = ONES * a;
+        long patternB = ONES * b;
+        long patternC = ONES * c;
+        for (; pos + 8 <= length; pos += 8) {
+            long word = words.getLong(pos);
+            long found = (equal(word, patternA) | equal(word, patternB) | equal(word, patternC) | equal(word, 0));
+            if (found != 0) {
+                return pos + (Long.numberOfTrailingZeros(found) >>> 3);
+            }
+        }
+        return Source.super.find(pos, a, b, c);
+    }
+
+    @Override
+    public int skipAlphanumeric(int pos) {
+        for (; pos + 8 <= length; pos += 8) {
+            long word = words.getLong(pos);
+            long ascii = word & LOW_BITS;
+            long alphanumeric = (inRange(ascii, 'a', 'z') | inRange(ascii, 'A', 'Z') | inRange(ascii, '0', '9') |
+                    equal(word, ONES * '_')) & ~word & HIGH_BITS;
+            long other = ~alphanumeric & HIGH_BITS;
+            if (other != 0) {
+                return pos + (Long.numberOfTrailingZeros(other) >>> 3);
+            }
+        }
+        return Source.super.skipAlphanumeric(pos);
+    }
+
+    /**
+     * Sets the high bit of every byte in word that is equal to the corresponding byte in pattern. Exact for every
+     * byte, not only the first match.
+     */
+    private static long equal(long word, long pattern) {
+        long x = word ^ pattern;
+        return ~(((x & LOW_BITS) + LOW_BITS) | x) & HIGH_BITS;
+    }
+
+    /**
+     * Sets the high bit of every byte in ascii, where all high bits are clear, that lies in the range from - to.
+     */
+    private static long inRange(long ascii, char from, char to) {
+        long atLeastFrom = ascii + ONES * (128 - from);
+        long aboveTo = ascii + ONES * (127 - to);
+        return atLeastFrom & ~aboveTo & HIGH_BITS;
+    }
+}
@@ -5,8 +5,29 @@ package com.github.johanrg.frontend;
  * @since 7/12/2016.
  */
 public class CompilerErrorHandler {
-    static void error(String error, Location location) throws CompilerException {
-        throw new CompilerException(String.format("%s : error : (%d,%d) %s", location.getFileName(), location.getLine(), location.getColumn(),
-                error));
+    private Diagnostics diagnostics;
+
+    /**
+     * Reports an error to the diagnostics and returns, the caller then has to recover. Without diagnostics the error
+     * is thrown.
+     */
+    void error(String error, Location location) throws CompilerException {
+        if (diagnostics == null) {
+            throw new CompilerException(message(error, location));
+        }
+        diagnostics.report(error, location);
+    }
+
+    public static String message(String error, Location location) {
+        return String.format("%s : error : (%d,%d) %s", location.getFileName(), location.getLine(),
+                location.getColumn(), error);
+    }
+
+    Diagnostics getDiagnostics() {
+        return diagnostics;
+    }
+
+    void setDiagnostics(Diagnostics diagnostics) {
+        this.diagnostics = diagnostics;
     }
 }
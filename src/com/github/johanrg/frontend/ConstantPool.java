@@ -0,0 +1,230 @@
+package com.github.johanrg.frontend;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The literal values of a compilation. Numbers and chars are kept unboxed as raw bits in a long slot and strings are
+ * stored once however many times they occur. Literal tokens and ASTLiteral refer to a value by its index in the pool.
+ * <p>
+ * The pool is shared by function bodies parsed in parallel, which add folded constants to it, so it's synchronized.
+ *
+ * @author johan
+ * @since 2016-07-22.
+ */
+public class ConstantPool {
+    private static final int INITIAL_CAPACITY = 256;
+    private static final DataType[] DATA_TYPES = DataType.values();
+
+    private byte[] types = new byte[INITIAL_CAPACITY];
+    private long[] values = new long[INITIAL_CAPACITY];
+    private int size = 0;
+    private final List<String> strings = new ArrayList<>();
+    private final Map<String, Integer> stringConstants = new HashMap<>();
+
+    private int add(DataType dataType, long value) {
+        if (size == types.length) {
+            types = Arrays.copyOf(types, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        types[size] = (byte) dataType.ordinal();
+        values[size] = value;
+        return size++;
+    }
+
+    public synchronized int addBoolean(boolean value) {
+        return add(DataType.BOOLEAN, value ? 1 : 0);
+    }
+
+    public synchronized int addInt(int value) {
+        return add(DataType.INT, value);
+    }
+
+    public synchronized int addFloat(float value) {
+        return add(DataType.FLOAT, Float.floatToRawIntBits(value));
+    }
+
+    public synchronized int addDouble(double value) {
+        return add(DataType.DOUBLE, Double.doubleToRawLongBits(value));
+    }
+
+    public synchronized int addChar(char value) {
+        return add(DataType.CHAR, value);
+    }
+
+    /**
+     * @param value The string.
+     * @return The index of the string, the same index for equal strings.
+     */
+    public synchronized int addString(String value) {
+        Integer index = stringConstants.get(value);
+        if (index == null) {
+            index = add(DataType.STRING, strings.size());
+            strings.add(value);
+            stringConstants.put(value, index);
+        }
+        return index;
+    }
+
+    /**
+     * Copies a value from another pool.
+     *
+     * @param constants The other pool.
+     * @param index     Index of the value in the other pool.
+     * @return The index of the value in this pool.
+     */
+    synchronized int add(ConstantPool constants, int index) {
+        DataType dataType = constants.getDataType(index);
+        if (dataType == DataType.STRING) {
+            return addString(constants.getString(index));
+        }
+        return add(dataType, constants.values[index]);
+    }
+
+    /**
+     * Decodes the text of a literal token and adds the value.
+     *
+     * @param dataType The data type of the literal.
+     * @param source   The source.
+     * @param start    Start offset of the literal text.
+     * @param end      End offset (exclusive) of the literal text.
+     * @return The index of the value.
+     * @throws NumberFormatException If the text is not a valid number of the type.
+     */
+    int add(DataType dataType, Source source, int start, int end) {
+        switch (dataType) {
+            case INT:
+                return addInt(parseInt(source, start, end, 10));
+            case FLOAT:
+                return addFloat(Float.parseFloat(source.substring(start, end)));
+            case DOUBLE:
+                return addDouble(Double.parseDouble(source.substring(start, end)));
+            case CHAR:
+                // NOTE(Johan): escape codes are not decoded yet, the value is the first character of the literal.
+                return addChar(source.substring(start, end).charAt(0));
+            case STRING:
+                return addString(source.substring(start, end));
+        }
+        throw new IllegalArgumentException(String.format("%s can not be a literal", dataType));
+    }
+
+    /**
+     * Parses an int straight from the source without creating a substring.
+     *
+     * @param source The source.
+     * @param start  Start offset of the digits.
+     * @param end    End offset (exclusive) of the digits.
+     * @param radix  10 or 16.
+     * @return The value.
+     * @throws NumberFormatException If there are no digits or the value is too large for an int.
+     */
+    static int parseInt(Source source, int start, int end, int radix) {
+        if (start >= end) {
+            throw new NumberFormatException("no digits");
+        }
+        long value = 0;
+        for (int i = start; i < end; ++i) {
+            int digit = Character.digit(source.charAt(i), radix);
+            if (digit < 0) {
+                throw new NumberFormatException("not a digit");
+            }
+            value = value * radix + digit;
+            if (value > Integer.MAX_VALUE) {
+                throw new NumberFormatException("out of range");
+            }
+        }
+        return (int) value;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized DataType getDataType(int index) {
+        return DATA_TYPES[types[index]];
+    }
+
+    /**
+     * @return The value as raw bits, the same for equal values of the same data type.
+     */
+    public synchronized long getBits(int index) {
+        return values[index];
+    }
+
+    public synchronized boolean getBoolean(int index) {
+        assert types[index] == DataType.BOOLEAN.ordinal() : "Constant is not a boolean";
+        return values[index] != 0;
+    }
+
+    public synchronized int getInt(int index) {
+        assert types[index] == DataType.INT.ordinal() : "Constant is not an integer";
+        return (int) values[index];
+    }
+
+    public synchronized float getFloat(int index) {
+        assert types[index] == DataType.FLOAT.ordinal() : "Constant is not a float";
+        return Float.intBitsToFloat((int) values[index]);
+    }
+
+    public synchronized double getDouble(int index) {
+        assert types[index] == DataType.DOUBLE.ordinal() : "Constant is not a double";
+        return Double.longBitsToDouble(values[index]);
+    }
+
+    public synchronized char getChar(int index) {
+        assert types[index] == DataType.CHAR.ordinal() : "Constant is not a char";
+        return (char) values[index];
+    }
+
+    public synchronized String getString(int index) {
+        assert types[index] == DataType.STRING.ordinal() : "Constant is not a string";
+        return strings.get((int) values[index]);
+    }
+
+    /**
+     * Adds a value from its raw bits, as they are given by getBits.
+     *
+     * @param dataType The data type of the value.
+     * @param bits     The bits of the value, for a string the bits of a string in this pool.
+     * @return The index of the value.
+     */
+    public synchronized int addBits(DataType dataType, long bits) {
+        if (dataType == DataType.STRING) {
+            return addString(stringOf(bits));
+        }
+        return add(dataType, bits);
+    }
+
+    /**
+     * @param bits The bits of a string value.
+     * @return The string.
+     */
+    synchronized String stringOf(long bits) {
+        return strings.get((int) bits);
+    }
+
+    /**
+     * @param index Index of the value.
+     * @return The value boxed, for diagnostics and tools.
+     */
+    public synchronized Object getValue(int index) {
+        switch (getDataType(index)) {
+            case BOOLEAN:
+                return getBoolean(index);
+            case INT:
+                return getInt(index);
+            case FLOAT:
+                return getFloat(index);
+            case DOUBLE:
+                return getDouble(index);
+            case CHAR:
+                return getChar(index);
+            case STRING:
+                return getString(index);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,70 @@
+package com.github.johanrg.frontend;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Collects the errors of a compilation. The lexer and the parser report into it and carry on with the next line or
+ * statement, instead of throwing at the first error, so all errors are found in one pass.
+ * <p>
+ * Only the first error on a line is kept, the ones after it on the same line are most often caused by it. Function
+ * bodies parsed in parallel report into the same diagnostics, so it's synchronized, and the errors are sorted in
+ * source order.
+ *
+ * @author johan
+ * @since 2016-07-30.
+ */
+public class Diagnostics {
+    private static class Error {
+        private final int file;
+        private final int offset;
+        private final String message;
+
+        private Error(int file, int offset, String message) {
+            this.file = file;
+            this.offset = offset;
+            this.message = message;
+        }
+    }
+
+    private final List<Error> errors = new ArrayList<>();
+    private final Map<String, Integer> files = new HashMap<>();
+    private final Set<Long> lines = new HashSet<>();
+
+    public synchronized void report(String error, Location location) {
+        Integer file = files.get(location.getFileName());
+        if (file == null) {
+            file = files.size();
+            files.put(location.getFileName(), file);
+        }
+        if (lines.add((long) file << 32 | location.getLine())) {
+            errors.add(new Error(file, location.getOffset(), CompilerErrorHandler.message(error, location)));
+        }
+    }
+
+    public synchronized boolean hasErrors() {
+        return !errors.isEmpty();
+    }
+
+    public synchronized int getErrorCount() {
+        return errors.size();
+    }
+
+    /**
+     * @return The messages, in the order of the files and of the offsets in each file.
+     */
+    public synchronized List<String> getErrors() {
+        List<Error> sorted = new ArrayList<>(errors);
+        sorted.sort((a, b) -> a.file != b.file ? Integer.compare(a.file, b.file) : Integer.compare(a.offset,
+                b.offset));
+        List<String> messages = new ArrayList<>();
+        for (Error error : sorted) {
+            messages.add(error.message);
+        }
+        return messages;
+    }
+}
@@ -2,51 +2,141 @@ package com.github.johanrg.frontend;
 
 import com.github.johanrg.ast.*;
 
+import java.util.List;
+
 /**
  * @author johan
  * @since 2016-07-08.
  */
-class Expression extends CompilerErrorHandler {
-    static DataType typeCheck(ASTNode node) throws CompilerException {
-        if (node instanceof Type) {
-            return ((Type) node).getDataType();
-        } else if (node instanceof ASTUnaryOperator) {
-            return typeCheck(((ASTUnaryOperator) node).getSingleNode());
-        } else if (node instanceof ASTBinaryOperator) {
-            DataType left = typeCheck(((ASTBinaryOperator) node).getLeft());
-            DataType right = typeCheck(((ASTBinaryOperator) node).getRight());
-            if (left != null && !left.equals(right)) {
-                error("type mismatch", node.getLocation());
-            }
-            if (((ASTBinaryOperator) node).getType().getGroup() == ASTOperator.Group.RELATIONAL) {
-                return DataType.BOOLEAN;
-            } else {
-                return left;
-            }
+class Expression {
+    private final ASTFactory factory;
+    private final CompilerErrorHandler errors;
+
+    /**
+     * @param factory Creates the literals of folded expressions.
+     * @param errors  Where errors are reported.
+     */
+    Expression(ASTFactory factory, CompilerErrorHandler errors) {
+        this.factory = factory;
+        this.errors = errors;
+    }
+
+    /**
+     * Works out the data type of a node and stores it on the node, along with the data types of the nodes below it
+     * that haven't been annotated yet. Annotated nodes are never visited again, so each node is checked once however
+     * many expressions it ends up in. Statements and scopes have no value and are void.
+     *
+     * @return The data type.
+     */
+    DataType annotate(ASTNode node) throws CompilerException {
+        DataType dataType = node.getAnnotatedDataType();
+        if (dataType != null) {
+            return dataType;
+        }
+        switch (node.getKind()) {
+            case LITERAL:
+            case VARIABLE:
+            case CONSTANT:
+            case FUNCTION:
+                dataType = ((Type) node).getDataType();
+                break;
+            case UNARY_OPERATOR:
+                dataType = annotate(((ASTUnaryOperator) node).getSingleNode());
+                break;
+            case BINARY_OPERATOR:
+                dataType = checkOperands((ASTBinaryOperator) node, node.getLocation());
+                break;
+            case CALL:
+                dataType = checkArguments((ASTCall) node, null);
+                break;
+            default:
+                dataType = DataType.VOID;
         }
+        node.setAnnotatedDataType(dataType);
+        return dataType;
+    }
 
-        assert false : "Node not supported";
-        return null;
+    /**
+     * Annotates a binary operator where the parser uses it. The operands are checked at this use every time, also when
+     * the node is shared with an equal expression that was annotated at another use.
+     *
+     * @param location The location of the operator at this use.
+     * @return The data type.
+     */
+    DataType annotate(ASTNode node, Location location) throws CompilerException {
+        DataType dataType = checkOperands((ASTBinaryOperator) node, location);
+        node.setAnnotatedDataType(dataType);
+        return dataType;
     }
 
-    static DataType typeCheckVsDataType(ASTNode node, Token dataTypeToken, DataType dataType)
+    /**
+     * Annotates a call where the parser uses it, with the arguments checked at the locations they were parsed at.
+     *
+     * @param argumentLocations The locations of the first tokens of the arguments.
+     * @return The data type.
+     */
+    DataType annotate(ASTCall call, List<Location> argumentLocations) throws CompilerException {
+        DataType dataType = checkArguments(call, argumentLocations);
+        call.setAnnotatedDataType(dataType);
+        return dataType;
+    }
+
+    private DataType checkOperands(ASTBinaryOperator operator, Location location) throws CompilerException {
+        DataType left = annotate(operator.getLeft());
+        DataType right = annotate(operator.getRight());
+        if (left != null && !left.equals(right)) {
+            errors.error("type mismatch", location);
+        }
+        return operator.getType().getGroup() == ASTOperator.Group.RELATIONAL ? DataType.BOOLEAN : left;
+    }
+
+    /**
+     * @param argumentLocations The locations of the arguments, or null to take them from the argument nodes.
+     */
+    private DataType checkArguments(ASTCall call, List<Location> argumentLocations) throws CompilerException {
+        List<ASTNode> parameters = call.getFunction().getParameters();
+        List<ASTNode> arguments = call.getArguments();
+        if (arguments.size() != parameters.size()) {
+            errors.error(String.format("expected %d arguments", parameters.size()), call.getLocation());
+        }
+        for (int i = 0; i < arguments.size(); ++i) {
+            DataType argument = annotate(arguments.get(i));
+            if (i < parameters.size() && argument != ((Type) parameters.get(i)).getDataType()) {
+                errors.error("argument type mismatch", argumentLocations != null ? argumentLocations.get(i) :
+                        arguments.get(i).getLocation());
+            }
+        }
+        return call.getFunction().getDataType();
+    }
+
+    /**
+     * Checks an expression against the data type it's given, AUTO takes the data type of the expression.
+     *
+     * @param location         The location of the first token of the expression where it's used.
+     * @param dataTypeLocation The location of the data type, or null.
+     * @return The data type.
+     */
+    DataType typeCheckVsDataType(ASTNode node, Location location, Location dataTypeLocation, DataType dataType)
             throws CompilerException {
-        DataType expressionDataType = Expression.typeCheck(node);
+        DataType expressionDataType = annotate(node);
         if (dataType == DataType.AUTO) {
             dataType = expressionDataType;
         } else if (dataType == DataType.VOID) {
-            error("data type can not be void", dataTypeToken.getLocation());
+            errors.error("data type can not be void", dataTypeLocation);
         } else if (dataType != expressionDataType) {
-            error(String.format("expected expression of type: '%s", dataType.toString().toLowerCase()),
-                    node.getLocation());
+            errors.error(String.format("expected expression of type: '%s", dataType.toString().toLowerCase()),
+                    location);
         }
         return dataType;
     }
 
-    static ASTNode simplifyExpression(ASTNode node) throws CompilerException {
+    /**
+     * @param location The location of the first token of the expression where it's used, errors are reported there.
+     */
+    ASTNode simplifyExpression(ASTNode node, Location location) throws CompilerException {
         if (node == null) return null;
 
-        ASTNode result = simplifyExpressionIfPossible(node);
+        ASTNode result = simplifyExpressionIfPossible(node, location);
         if (result != null) {
             return result;
         } else {
@@ -54,7 +144,7 @@ class Expression extends CompilerErrorHandler {
         }
     }
 
-    private static ASTLiteral simplifyExpressionIfPossible(ASTNode node) throws CompilerException {
+    private ASTLiteral simplifyExpressionIfPossible(ASTNode node, Location location) throws CompilerException {
         if (node instanceof ASTFunction) {
             return null;
         } else if (node instanceof ASTVariable) {
@@ -62,166 +152,57 @@ class Expression extends CompilerErrorHandler {
         } else if (node instanceof ASTLiteral) {
             return (ASTLiteral) node;
         } else if (node instanceof ASTBinaryOperator) {
-            ASTLiteral left = simplifyExpressionIfPossible(((ASTBinaryOperator) node).getLeft());
-            ASTLiteral right = simplifyExpressionIfPossible(((ASTBinaryOperator) node).getRight());
+            ASTLiteral left = simplifyExpressionIfPossible(((ASTBinaryOperator) node).getLeft(), location);
+            ASTLiteral right = simplifyExpressionIfPossible(((ASTBinaryOperator) node).getRight(), location);
             if (left == null || right == null) {
                 return null;
             }
 
-            switch (((ASTBinaryOperator) node).getType()) {
+            ASTOperator.Type type = ((ASTBinaryOperator) node).getType();
+            switch (type) {
                 case BINARY_ADD:
-                    return solveAdd(left, right);
                 case BINARY_SUB:
-                    return solveSub(left, right);
                 case BINARY_MUL:
-                    return solveMul(left, right);
                 case BINARY_DIV:
-                    return solveDiv(left, right);
                 case BINARY_MOD:
-                    return solveMod(left, right);
                 case BINARY_POW:
-                    return solvePow(left, right);
+                    return solve(type, left, right, location);
             }
         }
         return null;
     }
 
-    private static ASTLiteral solveAdd(ASTLiteral left, ASTLiteral right) throws CompilerException {
-        switch (left.getDataType()) {
-            case BOOLEAN:
-                error("binary addition not allowed with boolean type", left.getLocation());
-                break;
-            case INT:
-                return new ASTLiteral(left.getInt() + right.getInt(), DataType.INT, left.getLocation());
-            case FLOAT:
-                return new ASTLiteral(left.getFloat() + right.getFloat(), DataType.FLOAT, left.getLocation());
-            case DOUBLE:
-                return new ASTLiteral(left.getDouble() + right.getDouble(), DataType.DOUBLE, left.getLocation());
-            case CHAR:
-                error("binary additon not allwoed with char type", left.getLocation());
-                break;
-            case STRING:
-                return new ASTLiteral(left.getString() + right.getString(), DataType.STRING, left.getLocation());
-            default:
-                assert false : "binary add does not support this type.";
-        }
-        return null;
-    }
-
-    private static ASTLiteral solveSub(ASTLiteral left, ASTLiteral right) throws CompilerException {
-        switch (left.getDataType()) {
-            case BOOLEAN:
-                error("binary subtraction not allowed with boolean type", left.getLocation());
-                break;
-            case INT:
-                return new ASTLiteral(left.getInt() - right.getInt(), DataType.INT, left.getLocation());
-            case FLOAT:
-                return new ASTLiteral(left.getFloat() - right.getFloat(), DataType.FLOAT, left.getLocation());
-            case DOUBLE:
-                return new ASTLiteral(left.getDouble() - right.getDouble(), DataType.DOUBLE, left.getLocation());
-            case CHAR:
-                error("binary subtractions not allowed with char", left.getLocation());
-                break;
-            case STRING:
-                error("binary subtractions not allowed with string", left.getLocation());
-                break;
-            default:
-                assert false : "binary subtraction does not support this type";
-        }
-        return null;
-    }
-
-    private static ASTLiteral solveMul(ASTLiteral left, ASTLiteral right) throws CompilerException {
-        switch (left.getDataType()) {
-            case BOOLEAN:
-                error("binary multiplication not allowed with boolean type", left.getLocation());
-                break;
-            case INT:
-                return new ASTLiteral(left.getInt() * right.getInt(), DataType.INT, left.getLocation());
-            case FLOAT:
-                return new ASTLiteral(left.getFloat() * right.getFloat(), DataType.FLOAT, left.getLocation());
-            case DOUBLE:
-                return new ASTLiteral(left.getDouble() * right.getDouble(), DataType.DOUBLE, left.getLocation());
-            case CHAR:
-                error("binary multiplication not allowed with char", left.getLocation());
-                break;
-            case STRING:
-                error("binary multiplication not allowed with string", left.getLocation());
-                break;
+    private static String operatorName(ASTOperator.Type type) {
+        switch (type) {
+            case BINARY_ADD:
+                return "addition";
+            case BINARY_SUB:
+                return "subtraction";
+            case BINARY_MUL:
+                return "multiplication";
+            case BINARY_DIV:
+                return "division";
+            case BINARY_MOD:
+                return "modulus";
             default:
-                assert false : "binary multiplication does not support this type";
+                return "exponent";
         }
-        return null;
     }
 
-    private static ASTLiteral solveDiv(ASTLiteral left, ASTLiteral right) throws CompilerException {
-        switch (left.getDataType()) {
-            case BOOLEAN:
-                error("binary division not allowed with boolean type", left.getLocation());
-                break;
-            case INT:
-                return new ASTLiteral(left.getInt() / right.getInt(), DataType.INT, left.getLocation());
-            case FLOAT:
-                return new ASTLiteral(left.getFloat() / right.getFloat(), DataType.FLOAT, left.getLocation());
-            case DOUBLE:
-                return new ASTLiteral(left.getDouble() / right.getDouble(), DataType.DOUBLE, left.getLocation());
-            case CHAR:
-                error("binary division not allowed with char", left.getLocation());
-                break;
-            case STRING:
-                error("binary division not allowed with string", left.getLocation());
-                break;
-            default:
-                assert false : "binary division does not support this type";
-        }
-        return null;
-    }
-
-    private static ASTLiteral solveMod(ASTLiteral left, ASTLiteral right) throws CompilerException {
-        switch (left.getDataType()) {
-            case BOOLEAN:
-                error("binary modulus not allowed with boolean type", left.getLocation());
-                break;
-            case INT:
-                return new ASTLiteral(left.getInt() % right.getInt(), DataType.INT, left.getLocation());
-            case FLOAT:
-                return new ASTLiteral(left.getFloat() % right.getFloat(), DataType.FLOAT, left.getLocation());
-            case DOUBLE:
-                return new ASTLiteral(left.getDouble() % right.getDouble(), DataType.DOUBLE, left.getLocation());
-            case CHAR:
-                error("binary modulus not allowed with char", left.getLocation());
-                break;
-            case STRING:
-                error("binary modulus not allowed with string", left.getLocation());
-                break;
-            default:
-                assert false : "binary modulus does not support this type";
+    private ASTLiteral solve(ASTOperator.Type type, ASTLiteral left, ASTLiteral right, Location location)
+            throws CompilerException {
+        DataType dataType = left.getDataType();
+        // NOTE(Johan): the type check reports operands of different data types.
+        if (dataType != right.getDataType()) {
+            return null;
         }
-        return null;
-    }
-
-    private static ASTLiteral solvePow(ASTLiteral left, ASTLiteral right) throws CompilerException {
-        switch (left.getDataType()) {
-            case BOOLEAN:
-                error("binary exponent not allowed with boolean type", left.getLocation());
-                break;
-            case INT:
-                return new ASTLiteral((int) Math.pow((double) left.getInt(), (double) right.getInt()), DataType.INT,
-                        left.getLocation());
-            case FLOAT:
-                return new ASTLiteral((float) Math.pow(left.getFloat(), right.getFloat()), DataType.FLOAT,
-                        left.getLocation());
-            case DOUBLE:
-                return new ASTLiteral(Math.pow(left.getDouble(), right.getDouble()), DataType.DOUBLE, left.getLocation());
-            case CHAR:
-                error("binary exponent not allowed with char", left.getLocation());
-                break;
-            case STRING:
-                error("binary exponent not allowed with string", left.getLocation());
-                break;
-            default:
-                assert false : "binary exponent does not support this type";
+        if (!FoldingTable.canFold(type, dataType)) {
+            errors.error(String.format("binary %s not allowed with %s type", operatorName(type),
+                    dataType.toString().toLowerCase()), location);
+            return null;
         }
-        return null;
+        ConstantPool constants = left.getConstants();
+        int constant = FoldingTable.fold(type, dataType, constants, left.getBits(), right.getBits());
+        return constant < 0 ? null : factory.literal(constants, constant, left.getLocation());
     }
 }
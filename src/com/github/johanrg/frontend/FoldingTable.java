@@ -0,0 +1,232 @@
+package com.github.johanrg.frontend;
+
+import com.github.johanrg.ast.ASTOperator;
+
+/**
+ * The operators that can be folded on literals, in one table keyed by operator and data type. Operands and results are
+ * the raw bits the constant pool keeps its values as, so nothing is boxed on the way. An operator that isn't in the
+ * table for a data type doesn't apply to it.
+ * <p>
+ * Nothing is folded that would behave differently at run time: integer division by zero is left alone.
+ *
+ * @author johan
+ * @since 2016-08-01.
+ */
+public final class FoldingTable {
+    private interface Unary {
+        /**
+         * @return The bits of the result.
+         */
+        long apply(ConstantPool constants, long a);
+    }
+
+    private interface Binary {
+        /**
+         * @return The bits of the result.
+         * @throws ArithmeticException If the result is undefined, like for integer division by zero.
+         */
+        long apply(ConstantPool constants, long a, long b);
+    }
+
+    private static final int OPERATORS = ASTOperator.Type.values().length;
+    private static final int DATA_TYPES = DataType.values().length;
+    private static final Unary[] UNARY = new Unary[OPERATORS * DATA_TYPES];
+    private static final Binary[] BINARY = new Binary[OPERATORS * DATA_TYPES];
+
+    static {
+        unary(ASTOperator.Type.UNARY_MINUS, DataType.INT, (c, a) -> -(int) a);
+        unary(ASTOperator.Type.UNARY_MINUS, DataType.FLOAT, (c, a) -> fromFloat(-toFloat(a)));
+        unary(ASTOperator.Type.UNARY_MINUS, DataType.DOUBLE, (c, a) -> fromDouble(-toDouble(a)));
+        unary(ASTOperator.Type.UNARY_LOGICAL_NEGATION, DataType.BOOLEAN, (c, a) -> fromBoolean(a == 0));
+
+        binary(ASTOperator.Type.LOGICAL_AND, DataType.BOOLEAN, (c, a, b) -> fromBoolean(a != 0 && b != 0));
+        binary(ASTOperator.Type.LOGICAL_OR, DataType.BOOLEAN, (c, a, b) -> fromBoolean(a != 0 || b != 0));
+        binary(ASTOperator.Type.RELATIONAL_EQUAL, DataType.BOOLEAN, (c, a, b) -> fromBoolean(a == b));
+        binary(ASTOperator.Type.RELATIONAL_NOT_EQUAL, DataType.BOOLEAN, (c, a, b) -> fromBoolean(a != b));
+
+        binary(ASTOperator.Type.BINARY_ADD, DataType.INT, (c, a, b) -> (int) a + (int) b);
+        binary(ASTOperator.Type.BINARY_SUB, DataType.INT, (c, a, b) -> (int) a - (int) b);
+        binary(ASTOperator.Type.BINARY_MUL, DataType.INT, (c, a, b) -> (int) a * (int) b);
+        binary(ASTOperator.Type.BINARY_DIV, DataType.INT, (c, a, b) -> (int) a / (int) b);
+        binary(ASTOperator.Type.BINARY_MOD, DataType.INT, (c, a, b) -> (int) a % (int) b);
+        binary(ASTOperator.Type.BINARY_POW, DataType.INT, (c, a, b) -> pow((int) a, (int) b));
+
+        binary(ASTOperator.Type.BINARY_ADD, DataType.FLOAT, (c, a, b) -> fromFloat(toFloat(a) + toFloat(b)));
+        binary(ASTOperator.Type.BINARY_SUB, DataType.FLOAT, (c, a, b) -> fromFloat(toFloat(a) - toFloat(b)));
+        binary(ASTOperator.Type.BINARY_MUL, DataType.FLOAT, (c, a, b) -> fromFloat(toFloat(a) * toFloat(b)));
+        binary(ASTOperator.Type.BINARY_DIV, DataType.FLOAT, (c, a, b) -> fromFloat(toFloat(a) / toFloat(b)));
+        binary(ASTOperator.Type.BINARY_MOD, DataType.FLOAT, (c, a, b) -> fromFloat(toFloat(a) % toFloat(b)));
+        binary(ASTOperator.Type.BINARY_POW, DataType.FLOAT,
+                (c, a, b) -> fromFloat((float) Math.pow(toFloat(a), toFloat(b))));
+
+        binary(ASTOperator.Type.BINARY_ADD, DataType.DOUBLE, (c, a, b) -> fromDouble(toDouble(a) + toDouble(b)));
+        binary(ASTOperator.Type.BINARY_SUB, DataType.DOUBLE, (c, a, b) -> fromDouble(toDouble(a) - toDouble(b)));
+        binary(ASTOperator.Type.BINARY_MUL, DataType.DOUBLE, (c, a, b) -> fromDouble(toDouble(a) * toDouble(b)));
+        binary(ASTOperator.Type.BINARY_DIV, DataType.DOUBLE, (c, a, b) -> fromDouble(toDouble(a) / toDouble(b)));
+        binary(ASTOperator.Type.BINARY_MOD, DataType.DOUBLE, (c, a, b) -> fromDouble(toDouble(a) % toDouble(b)));
+        binary(ASTOperator.Type.BINARY_POW, DataType.DOUBLE,
+                (c, a, b) -> fromDouble(Math.pow(toDouble(a), toDouble(b))));
+
+        binary(ASTOperator.Type.BINARY_ADD, DataType.STRING,
+                (c, a, b) -> c.getBits(c.addString(c.stringOf(a) + c.stringOf(b))));
+        // NOTE(Johan): equal strings are stored once, so they have the same bits.
+        binary(ASTOperator.Type.RELATIONAL_EQUAL, DataType.STRING, (c, a, b) -> fromBoolean(a == b));
+        binary(ASTOperator.Type.RELATIONAL_NOT_EQUAL, DataType.STRING, (c, a, b) -> fromBoolean(a != b));
+
+        // NOTE(Johan): ints and chars are kept sign and zero extended, so their bits compare like their values.
+        for (DataType dataType : new DataType[]{DataType.INT, DataType.CHAR}) {
+            binary(ASTOperator.Type.RELATIONAL_EQUAL, dataType, (c, a, b) -> fromBoolean(a == b));
+            binary(ASTOperator.Type.RELATIONAL_NOT_EQUAL, dataType, (c, a, b) -> fromBoolean(a != b));
+            binary(ASTOperator.Type.RELATIONAL_LT, dataType, (c, a, b) -> fromBoolean(a < b));
+            binary(ASTOperator.Type.RELATIONAL_LTE, dataType, (c, a, b) -> fromBoolean(a <= b));
+            binary(ASTOperator.Type.RELATIONAL_GT, dataType, (c, a, b) -> fromBoolean(a > b));
+            binary(ASTOperator.Type.RELATIONAL_GTE, dataType, (c, a, b) -> fromBoolean(a >= b));
+        }
+        binary(ASTOperator.Type.RELATIONAL_EQUAL, DataType.FLOAT, (c, a, b) -> fromBoolean(toFloat(a) == toFloat(b)));
+        binary(ASTOperator.Type.RELATIONAL_NOT_EQUAL, DataType.FLOAT,
+                (c, a, b) -> fromBoolean(toFloat(a) != toFloat(b)));
+        binary(ASTOperator.Type.RELATIONAL_LT, DataType.FLOAT, (c, a, b) -> fromBoolean(toFloat(a) < toFloat(b)));
+        binary(ASTOperator.Type.RELATIONAL_LTE, DataType.FLOAT, (c, a, b) -> fromBoolean(toFloat(a) <= toFloat(b)));
+        binary(ASTOperator.Type.RELATIONAL_GT, DataType.FLOAT, (c, a, b) -> fromBoolean(toFloat(a) > toFloat(b)));
+        binary(ASTOperator.Type.RELATIONAL_GTE, DataType.FLOAT, (c, a, b) -> fromBoolean(toFloat(a) >= toFloat(b)));
+        binary(ASTOperator.Type.RELATIONAL_EQUAL, DataType.DOUBLE,
+                (c, a, b) -> fromBoolean(toDouble(a) == toDouble(b)));
+        binary(ASTOperator.Type.RELATIONAL_NOT_EQUAL, DataType.DOUBLE,
+                (c, a, b) -> fromBoolean(toDouble(a) != toDouble(b)));
+        binary(ASTOperator.Type.RELATIONAL_LT, DataType.DOUBLE, (c, a, b) -> fromBoolean(toDouble(a) < toDouble(b)));
+        binary(ASTOperator.Type.RELATIONAL_LTE, DataType.DOUBLE,
+                (c, a, b) -> fromBoolean(toDouble(a) <= toDouble(b)));
+        binary(ASTOperator.Type.RELATIONAL_GT, DataType.DOUBLE, (c, a, b) -> fromBoolean(toDouble(a) > toDouble(b)));
+        binary(ASTOperator.Type.RELATIONAL_GTE, DataType.DOUBLE,
+                (c, a, b) -> fromBoolean(toDouble(a) >= toDouble(b)));
+    }
+
+    private FoldingTable() {
+    }
+
+    private static void unary(ASTOperator.Type type, DataType dataType, Unary fold) {
+        UNARY[type.ordinal() * DATA_TYPES + dataType.ordinal()] = fold;
+    }
+
+    private static void binary(ASTOperator.Type type, DataType dataType, Binary fold) {
+        BINARY[type.ordinal() * DATA_TYPES + dataType.ordinal()] = fold;
+    }
+
+    /**
+     * @return true if the operator applies to operands of the data type and can be folded.
+     */
+    public static boolean canFold(ASTOperator.Type type, DataType dataType) {
+        int index = type.ordinal() * DATA_TYPES + dataType.ordinal();
+        return type.getGroup() == ASTOperator.Group.UNARY ? UNARY[index] != null : BINARY[index] != null;
+    }
+
+    /**
+     * @return The data type of the result of the operator on operands of the data type.
+     */
+    public static DataType getResultType(ASTOperator.Type type, DataType dataType) {
+        return type.getGroup() == ASTOperator.Group.RELATIONAL ? DataType.BOOLEAN : dataType;
+    }
+
+    /**
+     * Applies a unary operator that can be folded for the data type.
+     *
+     * @param dataType  The data type of the operand.
+     * @param constants The constant pool strings are looked up in and added to.
+     * @param a         The bits of the operand.
+     * @return The bits of the result.
+     */
+    public static long apply(ASTOperator.Type type, DataType dataType, ConstantPool constants, long a) {
+        return UNARY[type.ordinal() * DATA_TYPES + dataType.ordinal()].apply(constants, a);
+    }
+
+    /**
+     * Applies a binary operator that can be folded for the data type, on two operands of that data type.
+     *
+     * @param dataType  The data type of the operands.
+     * @param constants The constant pool strings are looked up in and added to.
+     * @param a         The bits of the left operand.
+     * @param b         The bits of the right operand.
+     * @return The bits of the result.
+     * @throws ArithmeticException If the result is undefined, like for integer division by zero.
+     */
+    public static long apply(ASTOperator.Type type, DataType dataType, ConstantPool constants, long a, long b) {
+        return BINARY[type.ordinal() * DATA_TYPES + dataType.ordinal()].apply(constants, a, b);
+    }
+
+    /**
+     * Folds a unary operator.
+     *
+     * @param dataType  The data type of the operand.
+     * @param constants The constant pool the operand is in and the result is added to.
+     * @param a         The bits of the operand.
+     * @return The constant pool index of the result, or -1 if it can't be folded.
+     */
+    public static int fold(ASTOperator.Type type, DataType dataType, ConstantPool constants, long a) {
+        if (!canFold(type, dataType)) {
+            return -1;
+        }
+        return constants.addBits(dataType, apply(type, dataType, constants, a));
+    }
+
+    /**
+     * Folds a binary operator on two operands of the same data type.
+     *
+     * @param dataType  The data type of the operands.
+     * @param constants The constant pool the operands are in and the result is added to.
+     * @param a         The bits of the left operand.
+     * @param b         The bits of the right operand.
+     * @return The constant pool index of the result, or -1 if it can't be folded.
+     */
+    public static int fold(ASTOperator.Type type, DataType dataType, ConstantPool constants, long a, long b) {
+        if (!canFold(type, dataType)) {
+            return -1;
+        }
+        try {
+            return constants.addBits(getResultType(type, dataType), apply(type, dataType, constants, a, b));
+        } catch (ArithmeticException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Exact int exponentiation by squaring, which wraps around on overflow like int multiplication. A negative
+     * exponent gives the integer part of the reciprocal.
+     */
+    private static int pow(int base, int exponent) {
+        if (exponent < 0) {
+            if (base == 0) {
+                throw new ArithmeticException("zero to a negative power");
+            }
+            return base == 1 ? 1 : base == -1 ? ((exponent & 1) == 0 ? 1 : -1) : 0;
+        }
+        int result = 1;
+        while (exponent != 0) {
+            if ((exponent & 1) != 0) {
+                result *= base;
+            }
+            exponent >>>= 1;
+            base *= base;
+        }
+        return result;
+    }
+
+    private static long fromBoolean(boolean value) {
+        return value ? 1 : 0;
+    }
+
+    private static float toFloat(long bits) {
+        return Float.intBitsToFloat((int) bits);
+    }
+
+    private static long fromFloat(float value) {
+        return Float.floatToRawIntBits(value);
+    }
+
+    private static double toDouble(long bits) {
+        return Double.longBitsToDouble(bits);
+    }
+
+    private static long fromDouble(double value) {
+        return Double.doubleToRawLongBits(value);
+    }
+}
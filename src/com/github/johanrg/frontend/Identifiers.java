@@ -2,62 +2,322 @@ package com.github.johanrg.frontend;
 
 import com.github.johanrg.ast.Identifier;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Stack;
 
 /**
+ * Flat table of the identifiers in scope, indexed on symbol id. Declaring an identifier shadows the binding of the
+ * name and logs the old binding, closing a scope undoes the log back to where the scope started. A lookup is one array
+ * read however deep the scopes are nested.
+ * <p>
+ * Every declaration is given its lexical address, the depth of the scope it's declared in and a slot in the frame of
+ * that scope.
+ * <p>
+ * The body of a function that is parsed later sees the identifiers through a Visible, which shares the scopes that
+ * were open when the body was skipped instead of copying the table.
+ *
  * @author johan
  * @since 2016-07-08.
  */
 public class Identifiers {
-    private final Stack<Map<String, Identifier>> scopeStack = new Stack<>();
-    private Map<String, Identifier> currentScope = null;
+    /**
+     * The identifiers of the scopes that were open at one point of the parse. A scope can only grow at the end while it
+     * is open, so it's enough to remember how many identifiers it had then.
+     */
+    public static final class Visible {
+        private final Frame frame;
+        private final int size;
 
-    public void newScope() {
-        if (currentScope != null) {
-            scopeStack.push(currentScope);
+        private Visible(Frame frame, int size) {
+            this.frame = frame;
+            this.size = size;
+        }
+
+        /**
+         * @param count The number of identifiers to keep, at most the number in the innermost scope.
+         * @return The first identifiers of the innermost scope, and the scopes around it.
+         */
+        Visible first(int count) {
+            return new Visible(frame, count);
+        }
+
+        private Identifier find(int symbol) {
+            for (Visible visible = this; visible != null; visible = visible.frame.parent) {
+                Identifier identifier = visible.frame.find(symbol, visible.size);
+                if (identifier != null) {
+                    return identifier;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * The identifiers declared in one scope in declaration order, copied from the log when a body is skipped. Bodies
+     * parsed on other threads look identifiers up in it, so it's synchronized.
+     */
+    private static final class Frame {
+        private final Visible parent;
+        private final int depth;
+        private int[] symbols = new int[4];
+        private Identifier[] identifiers = new Identifier[4];
+        private int size = 0;
+        // NOTE(Johan): filled in on lookup, the last declaration of a symbol and per declaration the one before.
+        private final Map<Integer, Integer> last = new HashMap<>();
+        private int[] previous = new int[4];
+        private int indexed = 0;
+
+        private Frame(Visible parent, int depth) {
+            this.parent = parent;
+            this.depth = depth;
+        }
+
+        private synchronized void add(int symbol, Identifier identifier) {
+            if (size == symbols.length) {
+                symbols = Arrays.copyOf(symbols, size * 2);
+                identifiers = Arrays.copyOf(identifiers, size * 2);
+                previous = Arrays.copyOf(previous, size * 2);
+            }
+            symbols[size] = symbol;
+            identifiers[size] = identifier;
+            ++size;
+        }
+
+        /**
+         * @return The last identifier declared with the symbol among the first count, or null.
+         */
+        private synchronized Identifier find(int symbol, int count) {
+            for (; indexed < size; ++indexed) {
+                Integer before = last.put(symbols[indexed], indexed);
+                previous[indexed] = before != null ? before : -1;
+            }
+            Integer index = last.get(symbol);
+            int i = index != null ? index : -1;
+            while (i >= count) {
+                i = previous[i];
+            }
+            return i >= 0 ? identifiers[i] : null;
+        }
+    }
+
+    /**
+     * The bindings of a released table, which are all empty again once its scopes are closed.
+     */
+    private static final class Spare {
+        private final Identifier[] bindings;
+        private final int[] bindingDepths;
+
+        private Spare(Identifier[] bindings, int[] bindingDepths) {
+            this.bindings = bindings;
+            this.bindingDepths = bindingDepths;
         }
-        currentScope = new HashMap<>();
     }
 
-    public Map<String, Identifier> popScope() {
-        if (scopeStack.isEmpty()) {
-            Map<String, Identifier> scope = currentScope;
-            currentScope = null;
-            return scope;
+    // NOTE(Johan): a table for a body takes over the bindings of the last table released on the thread instead of
+    // every body growing arrays as large as the symbol ids.
+    private static final ThreadLocal<Spare> SPARE = new ThreadLocal<>();
+
+    private Identifier[] bindings;
+    private int[] bindingDepths;
+
+    // NOTE(Johan): undo log, the symbol declared, the identifier declared and the binding it shadowed.
+    private int[] logSymbols = new int[64];
+    private Identifier[] logDeclared = new Identifier[64];
+    private Identifier[] logIdentifiers = new Identifier[64];
+    private int[] logDepths = new int[64];
+    private int logSize = 0;
+
+    // NOTE(Johan): per open scope, where in the log it starts. The frame size is the number of entries since then.
+    private int[] scopeMarks = new int[16];
+    private int depth = -1;
+
+    // NOTE(Johan): the scopes outside of this table, and per open scope the frame bodies skipped in it share.
+    private final Visible outer;
+    private Frame[] frames = new Frame[16];
+
+    public Identifiers() {
+        this(null);
+    }
+
+    /**
+     * Starts a table on top of the visible identifiers, at their depth. Identifiers not declared in the table are
+     * looked up there.
+     *
+     * @param outer The identifiers visible around the table, or null.
+     */
+    public Identifiers(Visible outer) {
+        this.outer = outer;
+        Spare spare = outer != null ? SPARE.get() : null;
+        if (spare != null) {
+            SPARE.set(null);
+            bindings = spare.bindings;
+            bindingDepths = spare.bindingDepths;
         } else {
-            Map<String, Identifier> scope = currentScope;
-            currentScope = scopeStack.pop();
-            return scope;
+            bindings = new Identifier[64];
+            bindingDepths = new int[64];
+        }
+        if (outer != null) {
+            depth = outer.frame.depth;
+            scopeMarks = new int[Math.max(16, depth + 2)];
+            frames = new Frame[scopeMarks.length];
         }
     }
 
+    public void newScope() {
+        if (++depth == scopeMarks.length) {
+            scopeMarks = Arrays.copyOf(scopeMarks, depth * 2);
+            frames = Arrays.copyOf(frames, depth * 2);
+        }
+        scopeMarks[depth] = logSize;
+    }
+
+    /**
+     * Closes the current scope and brings back the bindings it shadowed.
+     *
+     * @return The identifiers declared in the scope, keyed on symbol id in declaration order.
+     */
+    public Map<Integer, Identifier> popScope() {
+        Map<Integer, Identifier> scope = new LinkedHashMap<>();
+        int mark = scopeMarks[depth];
+        for (int i = mark; i < logSize; ++i) {
+            scope.put(logSymbols[i], bindings[logSymbols[i]]);
+        }
+        for (int i = logSize - 1; i >= mark; --i) {
+            bindings[logSymbols[i]] = logIdentifiers[i];
+            bindingDepths[logSymbols[i]] = logDepths[i];
+            logDeclared[i] = null;
+            logIdentifiers[i] = null;
+        }
+        logSize = mark;
+        frames[depth] = null;
+        --depth;
+        return scope;
+    }
+
+    /**
+     * Lets the next table started on top of visible identifiers on this thread take over the arrays of this one. All
+     * the scopes opened in the table must be closed, and the table is not used again.
+     */
+    public void release() {
+        assert logSize == 0 : "scopes are still open";
+        Spare spare = SPARE.get();
+        if (spare == null || spare.bindings.length < bindings.length) {
+            SPARE.set(new Spare(bindings, bindingDepths));
+        }
+    }
+
+    /**
+     * @return The number of slots in the frame of the current scope so far.
+     */
+    public int getFrameSize() {
+        return logSize - scopeMarks[depth];
+    }
+
+    /**
+     * Declares the identifier in the current scope and gives it the next slot in the frame.
+     *
+     * @param identifier The identifier to declare.
+     * @return false if the name is already declared in the current scope.
+     */
     public boolean addIdentifier(Identifier identifier) {
-        if (currentScope.get(identifier.getIdentifier()) == null) {
-            currentScope.put(identifier.getIdentifier(), identifier);
-            return true;
-        } else {
-           return false;
+        int symbol = identifier.getSymbol();
+        reserve(symbol);
+        if (bindings[symbol] != null && bindingDepths[symbol] == depth) {
+            return false;
         }
+        identifier.setAddress(depth, logSize - scopeMarks[depth]);
+        log(symbol, identifier);
+        bindings[symbol] = identifier;
+        bindingDepths[symbol] = depth;
+        return true;
     }
 
-    public Identifier find(String name) {
-        Identifier identifier = null;
+    private void reserve(int symbol) {
+        if (symbol >= bindings.length) {
+            int length = Math.max(symbol + 1, bindings.length * 2);
+            bindings = Arrays.copyOf(bindings, length);
+            bindingDepths = Arrays.copyOf(bindingDepths, length);
+        }
+    }
 
-        if (currentScope != null) {
-            identifier = currentScope.get(name);
-            if (identifier == null) {
-                // Note(Johan): Java goes from oldest in stack to newest for som strange reason, so
-                // go through it all to find the latest.
-                for (Map<String, Identifier> map : scopeStack) {
-                    Identifier find = map.get(name);
-                    if (find != null) {
-                        identifier = find;
-                    }
-                }
+    private void log(int symbol, Identifier identifier) {
+        if (logSize == logSymbols.length) {
+            logSymbols = Arrays.copyOf(logSymbols, logSize * 2);
+            logDeclared = Arrays.copyOf(logDeclared, logSize * 2);
+            logIdentifiers = Arrays.copyOf(logIdentifiers, logSize * 2);
+            logDepths = Arrays.copyOf(logDepths, logSize * 2);
+        }
+        logSymbols[logSize] = symbol;
+        logDeclared[logSize] = identifier;
+        logIdentifiers[logSize] = bindings[symbol];
+        logDepths[logSize] = bindingDepths[symbol];
+        ++logSize;
+    }
+
+    /**
+     * Brings an identifier that was declared earlier back into the current scope, with the lexical address it already
+     * has.
+     *
+     * @param identifier The identifier.
+     */
+    void restore(Identifier identifier) {
+        int symbol = identifier.getSymbol();
+        reserve(symbol);
+        log(symbol, identifier);
+        bindings[symbol] = identifier;
+        bindingDepths[symbol] = depth;
+    }
+
+    /**
+     * Captures the identifiers visible right now, for a table started on top of them later. Only the declarations made
+     * since the last capture in the open scopes are copied, into frames that all captures in a scope share.
+     *
+     * @return The visible identifiers.
+     */
+    public Visible capture() {
+        Visible visible = outer;
+        for (int d = outer != null ? outer.frame.depth + 1 : 0; d <= depth; ++d) {
+            Frame frame = frames[d];
+            if (frame == null) {
+                frame = new Frame(visible, d);
+                frames[d] = frame;
             }
+            int end = d < depth ? scopeMarks[d + 1] : logSize;
+            for (int i = scopeMarks[d] + frame.size; i < end; ++i) {
+                frame.add(logSymbols[i], logDeclared[i]);
+            }
+            visible = new Visible(frame, frame.size);
+        }
+        return visible;
+    }
+
+    /**
+     * Captures the identifiers declared in the outermost scope of a tree that was parsed before, for tables started on
+     * top of the ones declared before some point.
+     *
+     * @param scope The identifiers in declaration order, with their lexical addresses.
+     * @return The identifiers, as the outermost scope.
+     */
+    static Visible capture(Collection<Identifier> scope) {
+        Frame frame = new Frame(null, 0);
+        for (Identifier identifier : scope) {
+            frame.add(identifier.getSymbol(), identifier);
+        }
+        return new Visible(frame, frame.size);
+    }
+
+    /**
+     * @param symbol Symbol id of the name, -1 is never found.
+     * @return The innermost identifier declared with the name or null.
+     */
+    public Identifier find(int symbol) {
+        if (symbol < 0) {
+            return null;
         }
-        return identifier;
+        Identifier identifier = symbol < bindings.length ? bindings[symbol] : null;
+        return identifier == null && outer != null ? outer.find(symbol) : identifier;
     }
 }
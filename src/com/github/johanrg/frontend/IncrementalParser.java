@@ -0,0 +1,416 @@
+package com.github.johanrg.frontend;
+
+import com.github.johanrg.ast.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses a file again after an edit by lexing and parsing only the innermost scope around the edit. Scopes are
+ * delimited by indentation, so as long as the edited lines still form a scope at the same level nothing outside of it
+ * can change. The token buffer, the line table and the tree are updated in place, and everything outside the scope is
+ * kept as it is, identifiers and their lexical addresses included. The body of a function that hasn't been parsed yet
+ * is only lexed again.
+ * <p>
+ * When the edited lines don't fit the scope, like when the indentation of its first line changes or a comment is left
+ * open, the next scope out is tried, and the whole file as the last resort.
+ * <p>
+ * The top level of a large file has too many statements and identifiers to go through on every edit. The statements
+ * with scopes of their own and the identifiers are indexed in source order, and the index is kept until the top level
+ * itself is parsed again.
+ *
+ * @author johan
+ * @since 2016-07-27.
+ */
+public class IncrementalParser {
+    /**
+     * A scope of the tree and its tokens.
+     */
+    private static class Region {
+        private ASTScope scope;
+        private ASTFunction function;
+        // NOTE(Johan): the function the scope is the body of, whether the body has been parsed or not.
+        private ASTFunction bodyOf;
+        private boolean target;
+        private int from;
+        private int to;
+        private int scopeLevel;
+        private int start;
+        private int end;
+        private boolean endOfFile;
+    }
+
+    private final TokenBuffer tokens;
+    private final LineTable lineTable;
+    private final ASTScope root;
+
+    // NOTE(Johan): after an error the tokens may not match the text, or the tree may not match the tokens.
+    private boolean lexAll = false;
+    private Location dirtyStart = null;
+    private Location dirtyEnd = null;
+
+    // NOTE(Johan): the index of the top level, built for the statement list and the identifiers the root has now.
+    private List<ASTNode> indexedStatements = null;
+    private final List<ASTNode> scopeStatements = new ArrayList<>();
+    private Map<Integer, Identifier> indexedIdentifiers = null;
+    private final List<Identifier> declared = new ArrayList<>();
+    private Identifiers.Visible declaredVisible;
+
+    /**
+     * @param tokens All the tokens of the file.
+     * @param root   The tree parsed from the tokens.
+     */
+    public IncrementalParser(TokenBuffer tokens, ASTScope root) {
+        this.tokens = tokens;
+        this.lineTable = tokens.getLineTable();
+        this.root = root;
+    }
+
+    public ASTScope getRoot() {
+        return root;
+    }
+
+    /**
+     * Updates the tokens and the tree after an edit. If an error is thrown, the tokens and the tree are brought up to
+     * date by the next call.
+     *
+     * @param text  The whole text after the edit.
+     * @param start Start offset of the edited text, in the text before the edit.
+     * @param end   End offset (exclusive) of the edited text, in the text before the edit.
+     * @return The scope that was parsed again, or the function if only the tokens of its body had to be replaced.
+     */
+    public ASTNode reparse(String text, int start, int end) throws CompilerException {
+        Source source = new StringSource(text);
+        int delta = text.length() - tokens.getSource().length();
+        List<Region> path = new ArrayList<>();
+        path.add(rootRegion());
+        if (!lexAll) {
+            int first = start;
+            int last = end;
+            if (dirtyStart != null) {
+                first = Math.min(first, dirtyStart.getOffset());
+                last = Math.max(last, dirtyEnd.getOffset());
+            }
+            Region region = path.get(0);
+            while ((region = findChild(region, first, last)) != null) {
+                path.add(region);
+            }
+        }
+        lineTable.addEdit(start, end, delta);
+        lexAll = true;
+
+        for (int i = path.size() - 1; i >= 0; --i) {
+            Region region = path.get(i);
+            if (!region.target) {
+                continue;
+            }
+            LineTable lines = new LineTable(lineTable, region.start, source);
+            TokenBuffer lexed = new TokenBuffer(lines, source, tokens.getSymbols(), tokens.getConstants());
+            TableLexer lexer = new TableLexer(source, lines, tokens.getSymbols(), tokens.getConstants(), lexed, true);
+            lexer.startAt(region.start);
+            int newEnd = region.endOfFile ? source.length() : region.end + delta;
+            boolean endOfFile = !lexer.lexLines(region.endOfFile ? Integer.MAX_VALUE : newEnd);
+            if (i > 0 && (endOfFile != region.endOfFile || lexer.getPosition() != newEnd ||
+                    !isScope(lexed, region, endOfFile))) {
+                continue;
+            }
+            tokens.replace(region.from, region.to, lexed, delta, source);
+            lineTable.replace(region.start, region.end, lines, delta, source);
+            lexAll = false;
+            if (region.function != null) {
+                return region.function;
+            }
+
+            try {
+                ASTScope scope = Parser.parseScope(tokens, visibleIdentifiers(path, i), region.from,
+                        region.scopeLevel, returnDataType(path, i));
+                region.scope.replaceWith(scope);
+            } catch (CompilerException e) {
+                dirtyStart = lineTable.getLocation(region.start);
+                dirtyEnd = lineTable.getLocation(newEnd);
+                throw e;
+            }
+            dirtyStart = null;
+            dirtyEnd = null;
+            return region.scope;
+        }
+        throw new IllegalStateException("the whole file can always be lexed again");
+    }
+
+    private Region rootRegion() {
+        Region region = new Region();
+        region.scope = root;
+        region.target = true;
+        region.from = 0;
+        region.to = tokens.size();
+        region.scopeLevel = 0;
+        region.start = 0;
+        region.end = tokens.getSource().length();
+        region.endOfFile = true;
+        return region;
+    }
+
+    /**
+     * Finds the scope directly inside a region that holds the whole edit.
+     *
+     * @return The region of the scope or null if there is none.
+     */
+    private Region findChild(Region parent, int start, int end) {
+        if (parent.scope == null) {
+            return null;
+        }
+        Region found = null;
+        List<ASTNode> statements = parent.scope == root ? topLevelStatementAt(start) : parent.scope.getStatements();
+        for (ASTNode statement : statements) {
+            List<Region> children = new ArrayList<>();
+            if (statement instanceof ASTScope) {
+                children.add(scopeRegion((ASTScope) statement, true));
+            } else if (statement instanceof ASTFunction) {
+                children.add(functionRegion((ASTFunction) statement));
+            } else if (statement instanceof ASTIfStatement) {
+                children.add(scopeRegion((ASTScope) ((ASTIfStatement) statement).getIfScope(), true));
+                if (((ASTIfStatement) statement).getElseScope() != null) {
+                    children.add(scopeRegion((ASTScope) ((ASTIfStatement) statement).getElseScope(), true));
+                }
+            } else if (statement instanceof ASTWhileStatement) {
+                children.add(scopeRegion(((ASTWhileStatement) statement).getWhileScope(), true));
+            } else if (statement instanceof ASTForStatement) {
+                // NOTE(Johan): the variable of a for scope is declared before the scope starts, so only the scopes
+                // inside of it can be parsed on their own.
+                children.add(scopeRegion(((ASTForStatement) statement).getForScope(), false));
+            } else if (statement instanceof ASTForRangeStatement) {
+                children.add(scopeRegion((ASTScope) ((ASTForRangeStatement) statement).getForScope(), false));
+            }
+            for (Region child : children) {
+                if (child == null) {
+                    continue;
+                }
+                if (child.start > start) {
+                    return found;
+                }
+                if (end <= child.end || child.endOfFile) {
+                    found = child;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * The edit can only be in the scopes of the last statement with scopes of its own that starts before it. Those
+     * statements start with a keyword or a name, which is never a node shared with other statements.
+     *
+     * @return The statement, or nothing if there is none.
+     */
+    private List<ASTNode> topLevelStatementAt(int offset) {
+        if (root.getStatements() != indexedStatements) {
+            indexedStatements = root.getStatements();
+            scopeStatements.clear();
+            for (ASTNode statement : indexedStatements) {
+                if (statement instanceof ASTScope || statement instanceof ASTFunction ||
+                        statement instanceof ASTIfStatement || statement instanceof ASTWhileStatement ||
+                        statement instanceof ASTForStatement || statement instanceof ASTForRangeStatement) {
+                    scopeStatements.add(statement);
+                }
+            }
+        }
+        int low = 0;
+        int high = scopeStatements.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (scopeStatements.get(middle).getLocation().getOffset() <= offset) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low > 0 ? Collections.singletonList(scopeStatements.get(low - 1)) : Collections.emptyList();
+    }
+
+    /**
+     * @return The region of the scope, or null for an empty scope which has no tokens of its own.
+     */
+    private Region scopeRegion(ASTScope scope, boolean target) {
+        if (scope.getStatements().isEmpty()) {
+            return null;
+        }
+        Region region = tokenRegion(tokens.indexOf(scope.getLocation().getOffset()));
+        region.scope = scope;
+        region.target &= target;
+        return region;
+    }
+
+    /**
+     * The body of a parsed function is an ordinary scope, for a function that is still lazy the body starts after the
+     * end of the declaration line.
+     */
+    private Region functionRegion(ASTFunction function) {
+        if (function.isBodyParsed()) {
+            Region region = scopeRegion((ASTScope) function.getFunctionStatement(), true);
+            if (region != null) {
+                region.bodyOf = function;
+            }
+            return region;
+        }
+        int index = tokens.indexOf(function.getLocation().getOffset());
+        while (tokens.getType(index) != Token.Type.END_OF_STATEMENT) {
+            ++index;
+        }
+        Region region = tokenRegion(index + 1);
+        region.function = function;
+        region.bodyOf = function;
+        return region;
+    }
+
+    /**
+     * The tokens of a scope are the tokens from its first token up to the first token with a lower scope level. It can
+     * only be lexed on its own if it starts and ends at lines that have nothing but indentation before the first token,
+     * which can't be inside a comment.
+     *
+     * @param from Index of the first token of the scope.
+     */
+    private Region tokenRegion(int from) {
+        Region region = new Region();
+        region.from = from;
+        region.scopeLevel = tokens.getScopeLevel(from);
+        int to = from;
+        while (tokens.getType(to) != Token.Type.EOF && tokens.getScopeLevel(to) >= region.scopeLevel) {
+            ++to;
+        }
+        region.start = lineTable.getLineStart(tokens.getOffset(from));
+        region.target = isIndentation(region.start, tokens.getOffset(from));
+        if (tokens.getType(to) == Token.Type.EOF) {
+            region.to = to + 1;
+            region.end = tokens.getSource().length();
+            region.endOfFile = true;
+        } else {
+            region.to = to;
+            region.end = lineTable.getLineStart(tokens.getOffset(to));
+            region.target &= isIndentation(region.end, tokens.getOffset(to));
+        }
+        return region;
+    }
+
+    private boolean isIndentation(int start, int end) {
+        Source source = tokens.getSource();
+        for (int i = start; i < end; ++i) {
+            char c = source.charAt(i);
+            if (c != ' ' && c != '\t') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The scopes around the region only see the level of the token after it, which for a region at the end of the file
+     * is the end of file token.
+     *
+     * @return boolean true if the tokens all belong to one scope at the scope level of the region.
+     */
+    private boolean isScope(TokenBuffer lexed, Region region, boolean endOfFile) {
+        int scopeLevel = region.scopeLevel;
+        int count = lexed.size();
+        if (endOfFile) {
+            if (lexed.getScopeLevel(--count) != tokens.getScopeLevel(region.to - 1)) {
+                return false;
+            }
+        }
+        if (count <= 0 || lexed.getScopeLevel(0) != scopeLevel) {
+            return false;
+        }
+        for (int i = 0; i < count; ++i) {
+            if (lexed.getScopeLevel(i) < scopeLevel || lexed.getType(i) == Token.Type.EOF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Declares the identifiers visible at the start of a region again, with the lexical addresses they already have.
+     * Those are the identifiers declared before the region in the scopes around it, except for the functions whose
+     * bodies it's in, which are only declared after their bodies. The parameters of those functions are declared in
+     * a scope of their own around each body.
+     */
+    private Identifiers visibleIdentifiers(List<Region> path, int index) {
+        if (index == 0) {
+            return new Identifiers();
+        }
+        int start = path.get(index).start;
+        Identifiers identifiers = new Identifiers(topLevelIdentifiers(path, index, start));
+        for (int i = 1; i <= index; ++i) {
+            ASTFunction bodyOf = path.get(i).bodyOf;
+            if (bodyOf != null) {
+                identifiers.newScope();
+                for (ASTNode parameter : bodyOf.getParameters()) {
+                    identifiers.restore((Identifier) parameter);
+                }
+            }
+            if (i == index) {
+                break;
+            }
+            identifiers.newScope();
+            for (Identifier identifier : path.get(i).scope.getIdentifiers().values()) {
+                if (((ASTNode) identifier).getLocation().getOffset() < start && !isEnclosingFunction(path, index,
+                        identifier)) {
+                    identifiers.restore(identifier);
+                }
+            }
+        }
+        return identifiers;
+    }
+
+    /**
+     * The identifiers of the top level are declared in source order, so the ones declared before an offset come first.
+     * The function whose body the region is in comes last among them.
+     */
+    private Identifiers.Visible topLevelIdentifiers(List<Region> path, int index, int offset) {
+        if (root.getIdentifiers() != indexedIdentifiers) {
+            indexedIdentifiers = root.getIdentifiers();
+            declared.clear();
+            declared.addAll(indexedIdentifiers.values());
+            declaredVisible = Identifiers.capture(declared);
+        }
+        int low = 0;
+        int high = declared.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (((ASTNode) declared.get(middle)).getLocation().getOffset() < offset) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        while (low > 0 && isEnclosingFunction(path, index, declared.get(low - 1))) {
+            --low;
+        }
+        return declaredVisible.first(low);
+    }
+
+    /**
+     * @return The return data type of the innermost function the region is in, null if it's not in a function.
+     */
+    private static DataType returnDataType(List<Region> path, int index) {
+        for (int i = index; i > 0; --i) {
+            if (path.get(i).bodyOf != null) {
+                return path.get(i).bodyOf.getDataType();
+            }
+        }
+        return null;
+    }
+
+    private static boolean isEnclosingFunction(List<Region> path, int index, Identifier identifier) {
+        if (!(identifier instanceof ASTFunction)) {
+            return false;
+        }
+        for (int i = 1; i <= index; ++i) {
+            if (((ASTFunction) identifier).getFunctionStatement() == path.get(i).scope) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,16 +1,26 @@
 package com.github.johanrg.frontend;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 /**
- * The class lexes source files into tokens.
+ * The class lexes source files into tokens. The whole file can be lexed up front with lex, or the lexer can be used as
+ * a TokenStream after open, in which case tokens are only lexed as far as the parser has asked for them.
+ * <p>
+ * There are two engines producing identical tokens, the functional state machine in this class and the table driven
+ * TableLexer.
  *
  * @author johan
  * @since 2016-06-29.
  */
-public class Lexer extends CompilerErrorHandler {
+public class Lexer extends CompilerErrorHandler implements TokenStream {
+    public enum Engine {
+        STATE_MACHINE,
+        TABLE;
+    }
+
     /**
      * Used for the functional state machine
      */
@@ -20,7 +30,7 @@ public class Lexer extends CompilerErrorHandler {
     }
 
     // Constants
-    private static final char EOF = '\0';
+    private static final char EOF = Source.EOF;
     private static final char NEW_LINE = '\n';
     private static final char CITATION = '"';
     private static final char APOSTROPHE = '\'';
@@ -34,18 +44,43 @@ public class Lexer extends CompilerErrorHandler {
     private static final char[] DELIMITER = new char[]{',', ':', '[', ']', '{', '}', '(', ')', ';', '@'};
     private static final char[] OPERATOR = new char[]{'+', '-', '*', '/', '!', '%', '&', '|', '=', '<', '>', '^', '.'};
 
-    private final List<Token> tokens = new LinkedList<>();
-    private final List<String> errors = new ArrayList<>();
-    private String fileName;
-    private String source;
+    private TokenBuffer tokens;
+    private LineTable lineTable;
+    private Source source;
     private int start;
     private int pos;
-    private int line;
-    private int column;
-    private Location location;
+    private int lineStart;
+    private int tokenStart;
     private Token.Type tokenType;
     private int scopeLevel = 0;
     private boolean writtenToken = false;
+    private State state = null;
+    private final Engine engine;
+    private final SymbolTable symbols;
+    private final ConstantPool constants;
+    private TableLexer tableLexer;
+    private boolean tableLexerDone;
+    private boolean bulkScanning = true;
+    private boolean recovering = false;
+
+    public Lexer() {
+        this(Engine.STATE_MACHINE);
+    }
+
+    public Lexer(Engine engine) {
+        this(engine, new SymbolTable(), new ConstantPool());
+    }
+
+    /**
+     * @param engine    The lexing engine.
+     * @param symbols   Symbol table to intern identifiers into, shared by all files of a compilation.
+     * @param constants Constant pool for the literal values, shared by all files of a compilation.
+     */
+    public Lexer(Engine engine, SymbolTable symbols, ConstantPool constants) {
+        this.engine = engine;
+        this.symbols = symbols;
+        this.constants = constants;
+    }
 
     /**
      * WIP params will change.
@@ -54,15 +89,113 @@ public class Lexer extends CompilerErrorHandler {
      * @param source
      */
     public void lex(String fileName, String source) throws CompilerException {
-        this.fileName = fileName;
-        this.source = source + EOF;
+        open(fileName, source);
+        fill(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Lexes UTF-8 encoded bytes, like a file mapped with FileChannel.map, without decoding the whole file.
+     *
+     * @param fileName
+     * @param source
+     */
+    public void lex(String fileName, ByteBuffer source) throws CompilerException {
+        open(fileName, source);
+        fill(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Lexes the whole source in parallel on the common ForkJoinPool, see lexParallel(String, Source, ForkJoinPool).
+     *
+     * @param fileName
+     * @param source
+     */
+    public void lexParallel(String fileName, String source) throws CompilerException {
+        lexParallel(fileName, new StringSource(source), ForkJoinPool.commonPool());
+    }
+
+    public void lexParallel(String fileName, ByteBuffer source) throws CompilerException {
+        lexParallel(fileName, new ByteSource(source), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Lexes the whole source split into chunks at line boundaries on the pool. The tokens are exactly the same as from
+     * lex, the chunks are always lexed with the table engine.
+     *
+     * @param fileName
+     * @param source
+     * @param pool     The pool to lex the chunks on.
+     */
+    public void lexParallel(String fileName, Source source, ForkJoinPool pool) throws CompilerException {
+        open(fileName, source);
+        state = null;
+        tableLexerDone = true;
+        new ParallelLexer(source, lineTable, symbols, constants, tokens, bulkScanning, getDiagnostics()).lex(pool);
+    }
+
+    /**
+     * Prepares the lexer for the source file without lexing anything, tokens are then pulled through fill.
+     *
+     * @param fileName
+     * @param source
+     */
+    public void open(String fileName, String source) {
+        open(fileName, new StringSource(source));
+    }
+
+    public void open(String fileName, ByteBuffer source) {
+        open(fileName, new ByteSource(source));
+    }
+
+    public void open(String fileName, Source source) {
+        this.source = source;
+        lineTable = new LineTable(fileName, source);
+        tokens = new TokenBuffer(lineTable, source, symbols, constants);
         start = 0;
         pos = 0;
-        line = 1;
-        column = 1;
+        lineStart = 0;
+        scopeLevel = 0;
+        writtenToken = false;
+        recovering = false;
+        if (engine == Engine.TABLE) {
+            state = null;
+            tableLexer = new TableLexer(source, lineTable, symbols, constants, tokens, bulkScanning);
+            tableLexer.setDiagnostics(getDiagnostics());
+            tableLexerDone = false;
+        } else {
+            state = this::lexStart;
+        }
+    }
+
+    /**
+     * Runs the state machine until the token at index has been lexed or the end of file is reached.
+     *
+     * @param index Absolute token index.
+     * @return The token buffer.
+     */
+    @Override
+    public TokenBuffer fill(int index) throws CompilerException {
+        if (engine == Engine.TABLE) {
+            while (!tableLexerDone && tokens.size() <= index) {
+                tableLexerDone = !tableLexer.step();
+            }
+            return tokens;
+        }
 
         // The functional state machine loop
-        for (State state = this::lexStart; state != null; state = state.lex()) ;
+        while (state != null && tokens.size() <= index) {
+            state = state.lex();
+            if (recovering) {
+                recovering = false;
+                state = this::skipLine;
+            }
+        }
+        return tokens;
+    }
+
+    @Override
+    public void release(int index) {
+        tokens.release(index);
     }
 
     /**
@@ -84,10 +217,8 @@ public class Lexer extends CompilerErrorHandler {
             return this::lexDecimalNumber;
         } else if (acceptRange(ALPHA_RANGE)) {
             return this::lexIdentifier;
-        } else if (accept(OPERATOR)) {
-            return this::lexOperator;
-        } else if (accept(DELIMITER)) {
-            return this::lexDelimiter;
+        } else if (check(OPERATOR) || check(DELIMITER)) {
+            return this::lexPunctuator;
         } else if (accept(CITATION)) {
             return this::lexString;
         } else if (accept(APOSTROPHE)) {
@@ -101,13 +232,24 @@ public class Lexer extends CompilerErrorHandler {
         return null;
     }
 
+    /**
+     * Skips the rest of the line after an error was reported, lexing starts over at the new line.
+     *
+     * @return A new functional state.
+     */
+    private State skipLine() {
+        skipTo(source.findLineEnd(pos));
+        ignore();
+        return this::lexStart;
+    }
+
     /**
      * Handles white spaces
      *
      * @return A new functional state.
      */
     private State handleWhiteSpaces() throws CompilerException {
-        if (column == 1) {
+        if (pos == lineStart) {
             int spaces = 0;
             int tabs = 0;
             while (accept(' ')) {
@@ -118,10 +260,12 @@ public class Lexer extends CompilerErrorHandler {
             }
             if (tabs > 0 && spaces > 0) {
                 error("mixed tabs and spaces");
+                return this::lexStart;
             }
             if (spaces > 0) {
                 if (spaces % 4 != 0) {
                     error("indentation spaces must be in multiples of 4");
+                    return this::lexStart;
                 }
                 scopeLevel = spaces / 4;
             } else if (tabs > 0) {
@@ -146,8 +290,8 @@ public class Lexer extends CompilerErrorHandler {
                 ignore();
             }
             writtenToken = false;
-            ++line;
-            column = 1;
+            lineStart = pos;
+            lineTable.addLine(pos);
             scopeLevel = 0;
         }
         return this::lexStart;
@@ -159,7 +303,11 @@ public class Lexer extends CompilerErrorHandler {
      * @return a new functional state.
      */
     private State handleLineComment() throws CompilerException {
-        while (not(NEW_LINE)) ;
+        if (bulkScanning) {
+            skipTo(source.findLineEnd(pos));
+        } else {
+            while (not(NEW_LINE)) ;
+        }
         ignore();
         return this::lexStart;
     }
@@ -172,11 +320,16 @@ public class Lexer extends CompilerErrorHandler {
     private State handleMultiLineComment() throws CompilerException {
         int nested = 0;
         for (; ; ) {
-            while (not('/', '*', NEW_LINE)) ;
+            if (bulkScanning) {
+                skipTo(source.find(pos, '/', '*', NEW_LINE));
+            } else {
+                while (not('/', '*', NEW_LINE)) ;
+            }
             if (check(NEW_LINE)) {
                 handleNewLine();
             } else if (check(EOF)) {
                 error("unclosed comment");
+                return this::lexStart;
             } else if (accept('*') && accept('/') && --nested == 0) {
                 break;
             } else if (accept('/') && accept('*')) {
@@ -193,17 +346,20 @@ public class Lexer extends CompilerErrorHandler {
      * @return A new functional state.
      */
     private State handleEndOfFile() {
+        // NOTE(Johan): EOF is not part of the source, so don't let the token cover it.
+        backup();
         newToken(Token.Type.EOF);
         return null;
     }
 
     private State lexDecimalNumber() throws CompilerException {
         if (match("0x") || match("0X")) {
-            skip();
-            skip();
+            next();
+            next();
             lexHexadecimalNumber();
-            addLiteralHex();
-            return this::lexStart;
+            if (!recovering) {
+                addLiteralHex();
+            }
         } else {
             lexUnsignedDigitSequence(false);
             if (!match("..") && accept('.')) {
@@ -213,6 +369,9 @@ public class Lexer extends CompilerErrorHandler {
                 return this::lexStart;
             }
             lexScaleFactor();
+            if (recovering) {
+                return this::lexStart;
+            }
             if (accept('f', 'F')) {
                 addLiteral(DataType.FLOAT);
             } else {
@@ -248,22 +407,45 @@ public class Lexer extends CompilerErrorHandler {
     private void addLiteralHex() throws CompilerException {
         if (Character.isAlphabetic(peek())) {
             error("bad number syntax");
+            return;
         }
-        String value = source.substring(start, pos);
+        int value = 0;
         try {
-            value = Integer.toString(Integer.parseInt(value, 16));
+            value = ConstantPool.parseInt(source, start + 2, pos, 16);
         } catch (NumberFormatException e) {
             error("bad hexadecimal syntax");
+            return;
         }
-        tokens.add(new Token(Token.Type.LITERAL, DataType.INT, value, scopeLevel, location));
-        ignore();
+        addConstant(constants.addInt(value));
     }
 
+    /**
+     * Decodes the literal into the constant pool and adds the token.
+     *
+     * @param dataType The data type of the literal.
+     */
     private void addLiteral(DataType dataType) throws CompilerException {
         if (Character.isAlphabetic(peek())) {
             error("bad number syntax");
+            return;
         }
-        tokens.add(new Token(Token.Type.LITERAL, dataType, source.substring(start, pos), scopeLevel, location));
+        int constant;
+        try {
+            constant = constants.add(dataType, source, start, pos);
+        } catch (NumberFormatException e) {
+            error(String.format("literal is not a valid %s", dataType.toString()));
+            return;
+        }
+        addConstant(constant);
+    }
+
+    /**
+     * Adds a literal token, unlike other tokens literals don't mark the statement as written.
+     *
+     * @param constant Constant pool index of the value.
+     */
+    private void addConstant(int constant) {
+        tokens.add(Token.Type.LITERAL, start, pos, scopeLevel, constant);
         ignore();
     }
 
@@ -273,34 +455,35 @@ public class Lexer extends CompilerErrorHandler {
      * @return A new functional state.
      */
     private State lexIdentifier() {
-        while (acceptRange(ALPHANUMERIC_RANGE)) ;
-        Symbols.Keyword keyword = Symbols.match(source.substring(start, pos));
+        if (bulkScanning) {
+            skipTo(source.skipAlphanumeric(pos));
+        } else {
+            while (acceptRange(ALPHANUMERIC_RANGE)) ;
+        }
+        Symbols.Keyword keyword = Symbols.match(source, start, pos);
         if (keyword == null) {
-            newToken(Token.Type.IDENTIFIER);
+            addToken(Token.Type.IDENTIFIER, symbols.intern(source, start, pos));
         } else {
-            newToken(Token.Type.KEYWORD, keyword);
+            addToken(Token.Type.KEYWORD, keyword.ordinal());
         }
         return this::lexStart;
     }
 
     /**
-     * Lexes operators
+     * Lexes operators and delimiters like + == , : () -> etc. by taking the longest symbol that matches.
      *
      * @return A new functional state.
      */
-    private State lexOperator() {
-        while (accept(OPERATOR)) ;
-        newToken(Token.Type.OPERATOR);
-        return this::lexStart;
-    }
-
-    /**
-     * Lexes delimiters like , : () {} etc.
-     *
-     * @return A new functional state.
-     */
-    private State lexDelimiter() {
-        newToken(Token.Type.DELIMITER);
+    private State lexPunctuator() {
+        Symbols.Punctuator punctuator = Symbols.matchPunctuator(source, pos);
+        if (punctuator == null) {
+            // NOTE(Johan): a lone operator character like & that is not an operator on its own, the parser reports it.
+            next();
+            newToken(Token.Type.OPERATOR);
+        } else {
+            skipTo(pos + punctuator.symbol.length());
+            addToken(punctuator.type, punctuator.code);
+        }
         return this::lexStart;
     }
 
@@ -312,10 +495,15 @@ public class Lexer extends CompilerErrorHandler {
     private State lexString() throws CompilerException {
         ignore();
         do {
-            while (not(BACKSLASH, CITATION, NEW_LINE)) ;
+            if (bulkScanning) {
+                skipTo(source.find(pos, BACKSLASH, CITATION, NEW_LINE));
+            } else {
+                while (not(BACKSLASH, CITATION, NEW_LINE)) ;
+            }
 
-            if (accept(EOF, NEW_LINE)) {
+            if (check(EOF, NEW_LINE)) {
                 error("illegal line end in string literal");
+                return this::lexStart;
             }
             if (accept(BACKSLASH)) {
                 accept(CITATION);
@@ -339,7 +527,9 @@ public class Lexer extends CompilerErrorHandler {
         ignore();
         do {
             while (not(BACKSLASH, APOSTROPHE, NEW_LINE)) {
-                ++size;
+                if (!source.continuesCharacter(pos - 1)) {
+                    ++size;
+                }
             }
 
             if (accept(BACKSLASH)) {
@@ -351,15 +541,18 @@ public class Lexer extends CompilerErrorHandler {
                     ++size;
                 } else {
                     error("illegal escape code");
+                    return this::lexStart;
                 }
             }
-            if (accept(EOF, NEW_LINE)) {
+            if (check(EOF, NEW_LINE)) {
                 error("illegal line end in char literal");
+                return this::lexStart;
             }
         } while (!check(APOSTROPHE));
 
-        if (size > 1) {
+        if (size != 1) {
             error("illegal literal character length");
+            return this::lexStart;
         }
         addLiteral(DataType.CHAR);
         skip();
@@ -368,24 +561,25 @@ public class Lexer extends CompilerErrorHandler {
     }
 
     /**
-     * Updates the location object to the current position in the source file, to set the token to the correct
-     * line and column in newToken.
+     * Remembers where the token starts, errors are reported at this position.
      */
     private void updateLocation() {
-        location = new Location(fileName, line, column);
+        tokenStart = pos;
     }
 
     /**
-     * Error handling in the lexer
+     * Error handling in the lexer. With diagnostics the error is reported and the rest of the line is skipped once the
+     * current state returns, so a state returns right after an error.
      *
      * @param error The error message
      */
     private void error(String error) throws CompilerException {
-        error(error, location);
+        error(error, new Location(lineTable, tokenStart));
+        recovering = true;
     }
 
-    private void addToken(Token token) {
-        tokens.add(token);
+    private void addToken(Token.Type type, int code) {
+        tokens.add(type, start, pos, scopeLevel, code);
         ignore();
         writtenToken = true;
     }
@@ -396,17 +590,7 @@ public class Lexer extends CompilerErrorHandler {
      * @param type The type of token to be created.
      */
     private void newToken(Token.Type type) {
-        addToken(new Token(type, source.substring(start, pos), scopeLevel, location));
-    }
-
-    private void newToken(Token.Type type, Symbols.Keyword keyword) {
-        addToken(new Token(type, keyword, source.substring(start, pos), scopeLevel, location));
-    }
-
-    private String save() {
-        String s = source.substring(start, pos);
-        ignore();
-        return s;
+        addToken(type, -1);
     }
 
     /**
@@ -424,7 +608,15 @@ public class Lexer extends CompilerErrorHandler {
         if (start > pos) {
             start = pos;
         }
-        --column;
+    }
+
+    /**
+     * Moves the position forward to end, used after a run of characters has been matched at once.
+     *
+     * @param end The new position.
+     */
+    private void skipTo(int end) {
+        pos = end;
     }
 
     /**
@@ -432,7 +624,6 @@ public class Lexer extends CompilerErrorHandler {
      */
     private void skip() {
         ++pos;
-        ++column;
         ignore();
     }
 
@@ -451,9 +642,7 @@ public class Lexer extends CompilerErrorHandler {
      * @return the current char at the source position.
      */
     private char next() {
-        char c = source.charAt(pos++);
-        ++column;
-        return c;
+        return source.charAt(pos++);
     }
 
     /**
@@ -557,14 +746,49 @@ public class Lexer extends CompilerErrorHandler {
      * @return boolean true if there is a match.
      */
     private boolean match(String valid) {
-        return (source.length() - pos - 1 >= valid.length() && source.substring(pos, pos + valid.length()).equals(valid));
+        return source.startsWith(valid, pos);
     }
 
+    /**
+     * Chooses between scanning comments, identifiers and string literals with the bulk scans of the Source, or one
+     * character at a time. Must be set before open.
+     *
+     * @param bulkScanning true to use the bulk scans, which is the default.
+     */
+    public void setBulkScanning(boolean bulkScanning) {
+        this.bulkScanning = bulkScanning;
+    }
+
+    /**
+     * Reports errors to the diagnostics and carries on at the next line instead of throwing at the first error. Must
+     * be set before open.
+     *
+     * @param diagnostics The diagnostics, or null to throw.
+     */
+    public void setDiagnostics(Diagnostics diagnostics) {
+        super.setDiagnostics(diagnostics);
+    }
+
+    /**
+     * @return The errors reported to the diagnostics, empty without diagnostics.
+     */
     public List<String> getErrors() {
-        return errors;
+        return getDiagnostics() == null ? new ArrayList<>() : getDiagnostics().getErrors();
     }
 
-    public List<Token> getTokens() {
+    public TokenBuffer getTokens() {
         return tokens;
     }
+
+    public ConstantPool getConstants() {
+        return constants;
+    }
+
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    public LineTable getLineTable() {
+        return lineTable;
+    }
 }
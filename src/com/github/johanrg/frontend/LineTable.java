@@ -0,0 +1,193 @@
+package com.github.johanrg.frontend;
+
+import java.util.Arrays;
+
+/**
+ * The start offsets of the lines in a source file, filled in by the lexer as it passes each new line. Tokens and
+ * locations only keep a source offset, the line and column are looked up here when they are actually needed, which is
+ * mostly for error messages.
+ * <p>
+ * When the source is edited the table is updated in place and the edit is logged, so locations made before the edit
+ * still point at the same text.
+ *
+ * @author johan
+ * @since 2016-07-20.
+ */
+public class LineTable {
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final String fileName;
+    private Source source;
+    private int[] lineStarts = new int[INITIAL_CAPACITY];
+    private int count = 1;
+
+    // NOTE(Johan): the edits made to the source, the replaced range and how much the text after it moved.
+    private int[] editStarts = new int[0];
+    private int[] editEnds = new int[0];
+    private int[] editDeltas = new int[0];
+    private int editCount = 0;
+
+    LineTable(String fileName, Source source) {
+        this.fileName = fileName;
+        this.source = source;
+    }
+
+    /**
+     * Starts a table for lexing an edited source again from the start of a line, with the lines before it taken from
+     * the table of the file so that errors get the right line numbers.
+     *
+     * @param lines  The table of the file.
+     * @param start  Offset of a line start before the edit.
+     * @param source The edited source.
+     */
+    LineTable(LineTable lines, int start, Source source) {
+        this(lines.fileName, source);
+        count = lines.lineAfter(start);
+        lineStarts = Arrays.copyOf(lines.lineStarts, Math.max(INITIAL_CAPACITY, count * 2));
+    }
+
+    /**
+     * Adds a new line, the offsets must be added in increasing order.
+     *
+     * @param start Offset of the first character after the new line character.
+     */
+    void addLine(int start) {
+        assert start > lineStarts[count - 1] : "line starts must be increasing";
+        if (count == lineStarts.length) {
+            lineStarts = Arrays.copyOf(lineStarts, count * 2);
+        }
+        lineStarts[count++] = start;
+    }
+
+    /**
+     * Adds the lines of a table that was filled in separately for a later part of the same file.
+     *
+     * @param lines The line table of the part.
+     */
+    void append(LineTable lines) {
+        for (int i = 1; i < lines.count; ++i) {
+            addLine(lines.lineStarts[i]);
+        }
+    }
+
+    /**
+     * Replaces the lines between start and end with the lines of a table that was filled in for the edited text there.
+     *
+     * @param start  Offset of a line start before the edit.
+     * @param end    Offset of a line start after the edit, or the end of the source, in the text before the edit.
+     * @param lines  The table filled in while lexing the edited text from start, started with the constructor above.
+     * @param delta  How much the text after end moved.
+     * @param source The edited source.
+     */
+    void replace(int start, int end, LineTable lines, int delta, Source source) {
+        int first = lineAfter(start);
+        int last = lineAfter(end);
+        int added = lines.count - first;
+        int newCount = count - (last - first) + added;
+        if (newCount > lineStarts.length) {
+            lineStarts = Arrays.copyOf(lineStarts, Math.max(newCount, lineStarts.length * 2));
+        }
+        System.arraycopy(lineStarts, last, lineStarts, first + added, count - last);
+        System.arraycopy(lines.lineStarts, first, lineStarts, first, added);
+        for (int i = first + added; i < newCount; ++i) {
+            lineStarts[i] += delta;
+        }
+        count = newCount;
+        this.source = source;
+    }
+
+    /**
+     * @return The index of the first line that starts after offset.
+     */
+    private int lineAfter(int offset) {
+        int index = Arrays.binarySearch(lineStarts, 0, count, offset);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    /**
+     * Logs an edit of the source, the range start to end was replaced and the text after it moved delta.
+     */
+    void addEdit(int start, int end, int delta) {
+        if (editCount == editStarts.length) {
+            int length = Math.max(8, editCount * 2);
+            editStarts = Arrays.copyOf(editStarts, length);
+            editEnds = Arrays.copyOf(editEnds, length);
+            editDeltas = Arrays.copyOf(editDeltas, length);
+        }
+        editStarts[editCount] = start;
+        editEnds[editCount] = end;
+        editDeltas[editCount] = delta;
+        ++editCount;
+    }
+
+    int getEditCount() {
+        return editCount;
+    }
+
+    /**
+     * Moves an offset through the edits made since it was taken. An offset inside replaced text ends up at the start
+     * of the replacement.
+     *
+     * @param offset Source offset.
+     * @param edit   The edit count when the offset was taken.
+     * @return The offset in the current source.
+     */
+    int mapOffset(int offset, int edit) {
+        for (int i = edit; i < editCount; ++i) {
+            if (offset >= editEnds[i]) {
+                offset += editDeltas[i];
+            } else if (offset > editStarts[i]) {
+                offset = editStarts[i];
+            }
+        }
+        return offset;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * @return The number of lines seen so far.
+     */
+    public int getLineCount() {
+        return count;
+    }
+
+    /**
+     * @param offset Source offset.
+     * @return The line of the offset, starting at 1.
+     */
+    public int getLine(int offset) {
+        int index = Arrays.binarySearch(lineStarts, 0, count, offset);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    /**
+     * Counts the characters from the start of the line, so that multi byte UTF-8 characters only count once.
+     *
+     * @param offset Source offset.
+     * @return The column of the offset, starting at 1.
+     */
+    public int getColumn(int offset) {
+        int column = 1;
+        for (int i = getLineStart(offset); i < offset; ++i) {
+            if (!source.continuesCharacter(i)) {
+                ++column;
+            }
+        }
+        return column;
+    }
+
+    /**
+     * @param offset Source offset.
+     * @return The offset of the start of the line the offset is on.
+     */
+    int getLineStart(int offset) {
+        return lineStarts[getLine(offset) - 1];
+    }
+
+    public Location getLocation(int offset) {
+        return new Location(this, offset);
+    }
+}
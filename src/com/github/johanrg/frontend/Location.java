@@ -1,29 +1,42 @@
 package com.github.johanrg.frontend;
 
 /**
+ * A position in a source file. Only the offset is kept, the line and column are looked up in the line table of the file
+ * when asked for. If the source is edited afterwards, the offset is moved through the edits in the line table, and kept
+ * as the offset after the last of them so the next lookup only has to go through the edits made since.
+ *
  * @author johan
  * @since 2016-06-30.
  */
 public class Location {
-    private final String fileName;
-    private final int line;
-    private final int column;
+    private final LineTable lineTable;
+    private int offset;
+    private int edit;
 
-    public Location(String fileName, int line, int column) {
-        this.fileName = fileName;
-        this.line = line;
-        this.column = column;
+    Location(LineTable lineTable, int offset) {
+        this.lineTable = lineTable;
+        this.offset = offset;
+        this.edit = lineTable.getEditCount();
     }
 
     public String getFileName() {
-        return fileName;
+        return lineTable.getFileName();
+    }
+
+    public synchronized int getOffset() {
+        int edits = lineTable.getEditCount();
+        if (edit != edits) {
+            offset = lineTable.mapOffset(offset, edit);
+            edit = edits;
+        }
+        return offset;
     }
 
     public int getLine() {
-        return line;
+        return lineTable.getLine(getOffset());
     }
 
     public int getColumn() {
-        return column;
+        return lineTable.getColumn(getOffset());
     }
 }
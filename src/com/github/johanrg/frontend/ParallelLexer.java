@@ -0,0 +1,146 @@
+package com.github.johanrg.frontend;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Lexes a large source in chunks on a ForkJoinPool. The source is split right after new lines and every chunk is lexed
+ * with its own TableLexer, token buffer, line table, symbol table and constant pool, on the guess that the chunk starts
+ * a new line outside of any comment. The chunks are then stitched together in order into the real buffers.
+ * <p>
+ * A guess is only trusted when the lexing before it stopped exactly at the start of the chunk. A chunk that starts
+ * inside a multi line comment, or that ran into an error, is lexed again sequentially from where the previous part
+ * stopped, so the tokens, symbol ids, constants and errors are exactly the same as from the sequential lexers. The
+ * chunks always throw at their first error, only the sequential lexing reports to the diagnostics.
+ *
+ * @author johan
+ * @since 2016-07-23.
+ */
+class ParallelLexer {
+    private static final int MIN_CHUNK_SIZE = 1 << 16;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /**
+     * The result of lexing one chunk on its own.
+     */
+    private static class Chunk {
+        private TokenBuffer tokens;
+        private LineTable lines;
+        private int end;
+        private boolean endOfFile;
+        private boolean failed;
+    }
+
+    private final Source source;
+    private final LineTable lineTable;
+    private final SymbolTable symbols;
+    private final ConstantPool constants;
+    private final TokenBuffer tokens;
+    private final boolean bulkScanning;
+    private final Diagnostics diagnostics;
+
+    ParallelLexer(Source source, LineTable lineTable, SymbolTable symbols, ConstantPool constants, TokenBuffer tokens,
+                  boolean bulkScanning, Diagnostics diagnostics) {
+        this.source = source;
+        this.lineTable = lineTable;
+        this.symbols = symbols;
+        this.constants = constants;
+        this.tokens = tokens;
+        this.bulkScanning = bulkScanning;
+        this.diagnostics = diagnostics;
+    }
+
+    void lex(ForkJoinPool pool) throws CompilerException {
+        int[] boundaries = split(pool.getParallelism() * CHUNKS_PER_THREAD);
+        List<ForkJoinTask<Chunk>> chunks = new ArrayList<>();
+        for (int i = 1; i < boundaries.length - 1; ++i) {
+            int start = boundaries[i];
+            int end = boundaries[i + 1];
+            chunks.add(pool.submit(() -> lexChunk(start, end)));
+        }
+
+        TableLexer lexer = new TableLexer(source, lineTable, symbols, constants, tokens, bulkScanning);
+        lexer.setDiagnostics(diagnostics);
+        int pos = 0;
+        int next = 1;
+        for (; ; ) {
+            // NOTE(Johan): pos is always the start of a line outside of comments, if a chunk starts there it's valid.
+            while (next < boundaries.length - 1 && boundaries[next] < pos) {
+                chunks.get(next - 1).cancel(false);
+                ++next;
+            }
+            if (next < boundaries.length - 1 && boundaries[next] == pos) {
+                Chunk chunk = chunks.get(next - 1).join();
+                if (!chunk.failed) {
+                    lineTable.append(chunk.lines);
+                    tokens.append(chunk.tokens);
+                    if (chunk.endOfFile) {
+                        break;
+                    }
+                    pos = chunk.end;
+                    ++next;
+                    continue;
+                }
+            }
+            // NOTE(Johan): lex sequentially up to the next chunk, errors are thrown from here with the right location.
+            lexer.startAt(pos);
+            if (!lexer.lexLines(next < boundaries.length ? boundaries[next] : source.length())) {
+                break;
+            }
+            pos = lexer.getPosition();
+        }
+        for (ForkJoinTask<Chunk> chunk : chunks) {
+            chunk.cancel(false);
+        }
+    }
+
+    /**
+     * Splits the source right after new lines into about the number of chunks asked for.
+     *
+     * @param count The number of chunks wanted.
+     * @return The start offsets of the chunks, followed by the source length.
+     */
+    private int[] split(int count) {
+        int length = source.length();
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, length / Math.max(1, count));
+        List<Integer> starts = new ArrayList<>();
+        starts.add(0);
+        int pos = chunkSize;
+        while (pos < length) {
+            int lineEnd = source.findLineEnd(pos);
+            if (source.charAt(lineEnd) != '\n' || lineEnd + 1 >= length) {
+                break;
+            }
+            starts.add(lineEnd + 1);
+            pos = lineEnd + 1 + chunkSize;
+        }
+        int[] boundaries = new int[starts.size() + 1];
+        for (int i = 0; i < starts.size(); ++i) {
+            boundaries[i] = starts.get(i);
+        }
+        boundaries[starts.size()] = length;
+        return boundaries;
+    }
+
+    private Chunk lexChunk(int start, int end) {
+        Chunk chunk = new Chunk();
+        SymbolTable chunkSymbols = new SymbolTable();
+        ConstantPool chunkConstants = new ConstantPool();
+        chunk.lines = new LineTable(lineTable.getFileName(), source);
+        chunk.tokens = new TokenBuffer(chunk.lines, source, chunkSymbols, chunkConstants);
+        TableLexer lexer = new TableLexer(source, chunk.lines, chunkSymbols, chunkConstants, chunk.tokens,
+                bulkScanning);
+        lexer.startAt(start);
+        try {
+            chunk.endOfFile = !lexer.lexLines(end);
+            chunk.end = lexer.getPosition();
+        } catch (CompilerException | RuntimeException e) {
+            // NOTE(Johan): the chunk may not have started where the guess said, the error is reported if it's real
+            // when the chunk is lexed again sequentially.
+            chunk.failed = true;
+        }
+        return chunk;
+    }
+}
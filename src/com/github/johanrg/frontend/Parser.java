@@ -4,7 +4,9 @@ import com.github.johanrg.ast.*;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Stack;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author johan
@@ -12,18 +14,186 @@ import java.util.Stack;
  */
 public class Parser extends CompilerErrorHandler {
     private ASTNode root;
-    private final List<Token> tokens;
-    private final Identifiers identifiers = new Identifiers();
-    private final Stack<ASTOperator> operatorStack = new Stack<>();
-    private final Stack<ASTNode> expressionStack = new Stack<>();
-    private int start = 0;
+    private final TokenStream stream;
+    private TokenBuffer tokens;
+    private final SymbolTable symbols;
+    private final Identifiers identifiers;
+    private final ASTFactory factory;
+    private final Expression expressions;
+    private final int itSymbol;
+    private final boolean releaseTokens;
+    private final boolean lazyFunctions;
+    private final boolean lazyNestedFunctions;
+    // NOTE(Johan): false when every body is parsed right after the top level anyway, then a reference doesn't have to
+    // parse the body of the function it refers to first.
+    private final boolean parseReferencedBodies;
     private int pos = 0;
     private int currentScopeLevel = -1;
+    private int previousScopeLevel = -1;
+    // NOTE(Johan): set by an error reported to the diagnostics, the statement is then left as it is and dropped.
+    private boolean failed = false;
+    // NOTE(Johan): the return data type of the function whose body is parsed, null outside of functions.
+    private DataType returnDataType = null;
 
-    public Parser(List<Token> tokens) throws CompilerException {
+    /**
+     * Parses the tokens pulled from the stream. The stream is told to release tokens at every new statement, so with a
+     * lexer as stream only the tokens of the current statement and the lookahead are kept in memory.
+     *
+     * @param stream The token stream to parse.
+     */
+    public Parser(TokenStream stream) throws CompilerException {
+        this(stream, null);
+    }
+
+    /**
+     * Parses the tokens pulled from the stream, reporting errors to the diagnostics. A statement with an error is
+     * dropped and parsing goes on at the next statement, nested statements included.
+     *
+     * @param stream      The token stream to parse.
+     * @param diagnostics Where errors are reported, or null to throw the first error.
+     */
+    public Parser(TokenStream stream, Diagnostics diagnostics) throws CompilerException {
+        setDiagnostics(diagnostics);
+        this.stream = stream;
+        tokens = stream.fill(0);
+        symbols = tokens.getSymbols();
+        itSymbol = symbols.intern("it");
+        identifiers = new Identifiers();
+        factory = new ASTFactory();
+        expressions = new Expression(factory, this);
+        releaseTokens = true;
+        lazyFunctions = false;
+        lazyNestedFunctions = false;
+        parseReferencedBodies = true;
+        identifiers.newScope();
+        root = parseScope();
+    }
+
+    /**
+     * Parses a fully lexed buffer. With lazy functions only the signatures of functions are parsed, a body is parsed
+     * and type checked the first time the function is referenced or ASTFunction.parseBody is called, so errors in a
+     * body are only reported then.
+     *
+     * @param tokens        All the tokens of the file.
+     * @param lazyFunctions true to skip function bodies until they are needed.
+     */
+    public Parser(TokenBuffer tokens, boolean lazyFunctions) throws CompilerException {
+        this(tokens, lazyFunctions, lazyFunctions, true, new ASTFactory(), null);
+    }
+
+    /**
+     * Parses a fully lexed buffer with the expression nodes created by the factory, which can share equal expressions.
+     * With diagnostics, errors are reported to them and parsing goes on at the next statement.
+     *
+     * @param tokens        All the tokens of the file.
+     * @param lazyFunctions true to skip function bodies until they are needed.
+     * @param factory       The factory for expression nodes.
+     * @param diagnostics   Where errors are reported, or null to throw the first error.
+     */
+    public Parser(TokenBuffer tokens, boolean lazyFunctions, ASTFactory factory, Diagnostics diagnostics)
+            throws CompilerException {
+        this(tokens, lazyFunctions, lazyFunctions, true, factory, diagnostics);
+    }
+
+    /**
+     * Parses a fully lexed buffer with the bodies of the top level functions parsed and type checked in parallel. The
+     * top level is parsed first with the bodies skipped, then every body is parsed on the pool by a parser of its own,
+     * with the identifiers visible at the declaration. An error at the top level is reported before any body is parsed,
+     * otherwise the first error in a body in the source order.
+     *
+     * @param tokens All the tokens of the file.
+     * @param pool   The pool to parse the function bodies on.
+     */
+    public Parser(TokenBuffer tokens, ForkJoinPool pool) throws CompilerException {
+        this(tokens, pool, new ASTFactory(), null);
+    }
+
+    /**
+     * Parses a fully lexed buffer with the bodies of the top level functions parsed in parallel and the expression
+     * nodes created by the factory. With diagnostics, every body reports its errors to them and nothing is thrown.
+     *
+     * @param tokens      All the tokens of the file.
+     * @param pool        The pool to parse the function bodies on.
+     * @param factory     The factory for expression nodes.
+     * @param diagnostics Where errors are reported, or null to throw the first error.
+     */
+    public Parser(TokenBuffer tokens, ForkJoinPool pool, ASTFactory factory, Diagnostics diagnostics)
+            throws CompilerException {
+        this(tokens, true, false, false, factory, diagnostics);
+        List<ASTFunction> functions = new ArrayList<>();
+        for (ASTNode statement : ((ASTScope) root).getStatements()) {
+            if (statement instanceof ASTFunction) {
+                functions.add((ASTFunction) statement);
+            }
+        }
+        // NOTE(Johan): most bodies are small, so every thread takes the next body in source order instead of the pool
+        // getting a task per body. A body that refers to a function that isn't parsed yet parses it first, taking the
+        // bodies in order keeps those from chaining back through the whole file.
+        AtomicInteger next = new AtomicInteger();
+        CompilerException[] errors = new CompilerException[functions.size()];
+        List<ForkJoinTask<?>> threads = new ArrayList<>();
+        for (int i = 0; i < pool.getParallelism(); ++i) {
+            threads.add(pool.submit(() -> {
+                for (int index; (index = next.getAndIncrement()) < functions.size(); ) {
+                    try {
+                        functions.get(index).parseBody();
+                    } catch (CompilerException e) {
+                        errors[index] = e;
+                        next.set(functions.size());
+                    }
+                }
+            }));
+        }
+        for (ForkJoinTask<?> thread : threads) {
+            thread.join();
+        }
+        // NOTE(Johan): the bodies are taken in order, so every body before the first that failed has been parsed.
+        for (CompilerException e : errors) {
+            if (e != null) {
+                throw e;
+            }
+        }
+    }
+
+    private Parser(TokenBuffer tokens, boolean lazyFunctions, boolean lazyNestedFunctions,
+                   boolean parseReferencedBodies, ASTFactory factory, Diagnostics diagnostics)
+            throws CompilerException {
+        setDiagnostics(diagnostics);
+        this.stream = tokens;
         this.tokens = tokens;
+        symbols = tokens.getSymbols();
+        itSymbol = symbols.intern("it");
+        identifiers = new Identifiers();
+        this.factory = factory;
+        expressions = new Expression(factory, this);
+        releaseTokens = false;
+        this.lazyFunctions = lazyFunctions;
+        this.lazyNestedFunctions = lazyNestedFunctions;
+        this.parseReferencedBodies = parseReferencedBodies;
         identifiers.newScope();
-        parseScope();
+        root = parseScope();
+    }
+
+    /**
+     * Sets up a parser for a function body that was skipped by another parser. Nothing is written to the token buffer
+     * or the symbol table, so bodies can be parsed on different threads.
+     */
+    private Parser(TokenBuffer tokens, int itSymbol, Identifiers identifiers, ASTFactory factory,
+                   Diagnostics diagnostics, int pos, int scopeLevel, boolean lazyFunctions) {
+        setDiagnostics(diagnostics);
+        this.stream = tokens;
+        this.tokens = tokens;
+        symbols = tokens.getSymbols();
+        this.itSymbol = itSymbol;
+        this.identifiers = identifiers;
+        this.factory = factory;
+        expressions = new Expression(factory, this);
+        releaseTokens = false;
+        this.lazyFunctions = lazyFunctions;
+        lazyNestedFunctions = lazyFunctions;
+        parseReferencedBodies = true;
+        this.pos = pos;
+        currentScopeLevel = scopeLevel;
     }
 
     private ASTNode parseStatement() throws CompilerException {
@@ -40,268 +210,574 @@ public class Parser extends CompilerErrorHandler {
             } else {
                 node = parseForRangeStatement();
             }
+        } else if (check(Symbols.Keyword.RETURN)) {
+            node = parseReturnStatement();
         } else {
             node = parseExpression();
-            expect(Token.Type.END_OF_STATEMENT);
+            if (!failed) {
+                expect(Token.Type.END_OF_STATEMENT);
+            }
         }
         return node;
     }
 
     private ASTScope parseScope() throws CompilerException {
         List<ASTNode> statements = new ArrayList<>();
-        ++currentScopeLevel;
-        while (!eof() && scopeDiff(0)) {
-            statements.add(parseStatement());
+        int scopeLevel = ++currentScopeLevel;
+        int first = peek(0);
+        Location location = tokens.getLocation(first);
+        // NOTE(Johan): a scope without statements ends at its first token, which belongs to the scopes around it and
+        // is checked against them.
+        if (tokens.getScopeLevel(first) < scopeLevel) {
+            --currentScopeLevel;
+            return new ASTScope(statements, identifiers.popScope(), 0, location);
+        }
+        for (; ; ) {
+            int statementStart = pos;
+            boolean more = !eof() && scopeDiff(0);
+            if (failed) {
+                recover(statementStart, scopeLevel);
+                // NOTE(Johan): only the end of file can't be skipped.
+                if (pos == statementStart) {
+                    break;
+                }
+                continue;
+            }
+            if (!more) {
+                break;
+            }
+            if (releaseTokens) {
+                stream.release(pos);
+            }
+            ASTNode statement = parseStatement();
+            if (failed) {
+                recover(statementStart, scopeLevel);
+                continue;
+            }
+            statements.add(statement);
             if (scopeDiff(1)) {
                 identifiers.newScope();
                 statements.add(parseScope());
             }
+            if (failed) {
+                recover(statementStart, scopeLevel);
+            }
         }
         --currentScopeLevel;
-        return new ASTScope(statements, identifiers.popScope());
+        int frameSize = identifiers.getFrameSize();
+        return new ASTScope(statements, identifiers.popScope(), frameSize, location);
+    }
+
+    /**
+     * Skips the rest of a statement with an error and the statements nested in it, so parsing can go on at the next
+     * statement of the scope.
+     *
+     * @param statementStart Index of the first token of the statement.
+     * @param scopeLevel     The scope level of the scope.
+     */
+    private void recover(int statementStart, int scopeLevel) throws CompilerException {
+        // NOTE(Johan): the tokens are read as they are, without the scope checks of peek and next. A statement of a
+        // scope around this one is left to that scope.
+        tokens = stream.fill(pos);
+        boolean inScope = tokens.getScopeLevel(statementStart) >= scopeLevel;
+        if (inScope && (pos == statementStart || tokens.getType(pos - 1) != Token.Type.END_OF_STATEMENT)) {
+            while (true) {
+                tokens = stream.fill(pos);
+                Token.Type type = tokens.getType(pos);
+                if (type == Token.Type.EOF) {
+                    break;
+                }
+                ++pos;
+                if (type == Token.Type.END_OF_STATEMENT) {
+                    break;
+                }
+            }
+        }
+        for (; ; ) {
+            tokens = stream.fill(pos);
+            if (tokens.getType(pos) == Token.Type.EOF || tokens.getScopeLevel(pos) <= scopeLevel) {
+                break;
+            }
+            ++pos;
+        }
+        currentScopeLevel = scopeLevel;
+        failed = false;
     }
 
     private ASTNode parseIdentifierDeclarationStatement() throws CompilerException {
         DataType identifierDataType;
-        expect(Token.Type.IDENTIFIER);
-        Token identifierToken = save();
+        if (!expect(Token.Type.IDENTIFIER)) {
+            return null;
+        }
+        int identifierToken = save();
+        int identifierSymbol = tokens.getSymbol(identifierToken);
+        String identifierName = symbols.getName(identifierSymbol);
+        Location identifierLocation = tokens.getLocation(identifierToken);
 
-        expect(":");
-        Token dataTypeToken = null;
+        if (!expect(Symbols.Delimiter.COLON)) {
+            return null;
+        }
+        int dataTypeToken = -1;
         if (accept(Token.Type.IDENTIFIER)) {
             dataTypeToken = save();
-            identifierDataType = ASTLiteral.typeForName(dataTypeToken.getData());
+            identifierDataType = ASTLiteral.typeForName(tokens.getData(dataTypeToken));
             if (identifierDataType == null) {
                 error("invalid data type");
+                return null;
             }
         } else {
             identifierDataType = DataType.AUTO;
         }
         // NOTE(Johan): double :: is constant value
-        if (accept(":")) {
+        if (accept(Symbols.Delimiter.COLON)) {
             if (checkIfFunction()) {
                 // NOTE(Johan): read in parameter list
-                expect("(");
+                expect(Symbols.Delimiter.OPEN_PARENTHESES);
                 List<ASTNode> parameters = new ArrayList<>();
-                while (!check(")") & !check(Token.Type.END_OF_STATEMENT, Token.Type.EOF)) {
-                    parameters.add(parseIdentifierDeclarationStatement());
-                    while (accept(",")) {
-                        parameters.add(parseIdentifierDeclarationStatement());
-                    }
+                if (!check(Symbols.Delimiter.CLOSE_PARENTHESES)) {
+                    do {
+                        ASTNode parameter = parseParameter();
+                        if (failed) {
+                            return null;
+                        }
+                        parameters.add(parameter);
+                    } while (accept(Symbols.Delimiter.COMMA));
+                }
+                if (!expect(Symbols.Delimiter.CLOSE_PARENTHESES)) {
+                    return null;
                 }
-                expect(")");
                 DataType returnType = DataType.VOID;
-                if (accept("->")) {
-                    expect(Token.Type.IDENTIFIER);
-                    returnType = ASTLiteral.typeForName(save().getData());
+                if (accept(Symbols.Delimiter.ARROW)) {
+                    if (!expect(Token.Type.IDENTIFIER)) {
+                        return null;
+                    }
+                    returnType = ASTLiteral.typeForName(tokens.getData(save()));
                     if (returnType == null) {
                         error("expected valid data type");
+                        return null;
                     } else if (returnType == DataType.AUTO) {
                         backup();
                         error("return data type for function can not be auto");
+                        return null;
                     }
                 }
-                expect(Token.Type.END_OF_STATEMENT);
+                if (!expect(Token.Type.END_OF_STATEMENT)) {
+                    return null;
+                }
                 if (scopeDiff(1)) {
+                    // NOTE(Johan): the parameters are declared in a scope of their own around the body.
                     identifiers.newScope();
-                    ASTScope compoundStatement = parseScope();
-                    ASTFunction function = new ASTFunction(identifierToken.getData(), parameters, compoundStatement,
-                            returnType, identifierToken.getLocation());
+                    for (ASTNode parameter : parameters) {
+                        if (!identifiers.addIdentifier((Identifier) parameter)) {
+                            error(String.format("'%s' is already declared in this scope.",
+                                    ((Identifier) parameter).getIdentifier()), parameter.getLocation());
+                            identifiers.popScope();
+                            return null;
+                        }
+                    }
+                    ASTFunction function;
+                    if (lazyFunctions) {
+                        function = new ASTFunction(identifierSymbol, identifierName, parameters,
+                                skipFunctionBody(returnType), returnType, identifierLocation);
+                    } else {
+                        DataType outerReturnDataType = returnDataType;
+                        returnDataType = returnType;
+                        identifiers.newScope();
+                        ASTScope compoundStatement = parseScope();
+                        returnDataType = outerReturnDataType;
+                        function = new ASTFunction(identifierSymbol, identifierName, parameters, compoundStatement,
+                                returnType, identifierLocation);
+                    }
+                    identifiers.popScope();
                     if (!identifiers.addIdentifier(function)) {
-                        error(String.format("'%s' is already declared in this scope.", identifierToken.getData()),
-                                identifierToken.getLocation());
+                        error(String.format("'%s' is already declared in this scope.", identifierName),
+                                identifierLocation);
                     }
                     return function;
                 } else {
-                    System.out.println("invalid scope");
+                    error("function scope expected", identifierLocation);
+                    return null;
                 }
             } else {
                 // NOTE(Johan): Constant identifier
+                Location expressionLocation = tokens.getLocation(peek());
                 ASTNode node = parseExpression();
-                expect(Token.Type.END_OF_STATEMENT);
-                return assignExpressionToIdentifierDeclaration(ASTOperator.Type.ASSIGNMENT, identifierToken, dataTypeToken,
-                        identifierDataType, node, true);
+                if (failed || !expect(Token.Type.END_OF_STATEMENT)) {
+                    return null;
+                }
+                return assignExpressionToIdentifierDeclaration(ASTOperator.Type.ASSIGNMENT, identifierSymbol,
+                        identifierLocation, dataTypeToken, identifierDataType, node, expressionLocation, true);
             }
             // NOTE(Johan): variable
-        } else if (accept("=")) {
+        } else if (accept(ASTOperator.Type.ASSIGNMENT)) {
+            Location expressionLocation = tokens.getLocation(peek());
             ASTNode node = parseExpression();
-            if (!check(",")) {
-                expect(Token.Type.END_OF_STATEMENT);
+            if (failed || !check(Symbols.Delimiter.COMMA) && !expect(Token.Type.END_OF_STATEMENT)) {
+                return null;
             }
-            return assignExpressionToIdentifierDeclaration(ASTOperator.Type.ASSIGNMENT, identifierToken, dataTypeToken,
-                    identifierDataType, node, false);
+            return assignExpressionToIdentifierDeclaration(ASTOperator.Type.ASSIGNMENT, identifierSymbol,
+                    identifierLocation, dataTypeToken, identifierDataType, node, expressionLocation, false);
         } else {
             error("data type auto with no expression");
         }
         return null;
     }
 
+    /**
+     * Parses a parameter of a function declaration, a name and a data type like a : int.
+     *
+     * @return The parameter, declared when the body is parsed.
+     */
+    private ASTVariable parseParameter() throws CompilerException {
+        if (!expect(Token.Type.IDENTIFIER)) {
+            return null;
+        }
+        int identifierToken = save();
+        if (!expect(Symbols.Delimiter.COLON) || !expect(Token.Type.IDENTIFIER)) {
+            return null;
+        }
+        DataType dataType = ASTLiteral.typeForName(tokens.getData(save()));
+        if (dataType == null || dataType == DataType.AUTO || dataType == DataType.VOID) {
+            backup();
+            error("expected parameter data type");
+            return null;
+        }
+        int symbol = tokens.getSymbol(identifierToken);
+        return new ASTVariable(symbol, symbols.getName(symbol), dataType, tokens.getLocation(identifierToken));
+    }
+
+    /**
+     * Skips the tokens of a function body, which are all indented further than the declaration. The body is parsed
+     * later with the identifiers visible at the declaration.
+     *
+     * @param returnType The return data type of the function.
+     * @return The body to parse when it's needed.
+     */
+    private ASTFunction.Body skipFunctionBody(DataType returnType) throws CompilerException {
+        TokenBuffer buffer = tokens;
+        int it = itSymbol;
+        boolean lazy = lazyNestedFunctions;
+        Identifiers.Visible visible = identifiers.capture();
+        ASTFactory bodyFactory = factory;
+        Diagnostics diagnostics = getDiagnostics();
+        int scopeLevel = currentScopeLevel;
+        int t = peek();
+        // NOTE(Johan): the end of the declaration line is kept as a location, so it follows the text if the source is
+        // edited before then. The first token of the body can't be kept, text inserted in front of it would be
+        // skipped.
+        Location declarationEnd = tokens.getLocation(t - 1);
+        while (tokens.getType(t) != Token.Type.EOF && tokens.getScopeLevel(t) > scopeLevel) {
+            t = ++pos;
+        }
+        // NOTE(Johan): parse with a new table on top of the visible identifiers, so a body can be parsed again after an
+        // error.
+        return () -> {
+            Parser parser = new Parser(buffer, it, new Identifiers(visible), bodyFactory, diagnostics,
+                    buffer.indexOf(declarationEnd.getOffset()) + 1, scopeLevel, lazy);
+            parser.returnDataType = returnType;
+            parser.identifiers.newScope();
+            ASTScope body = parser.parseScope();
+            parser.identifiers.release();
+            return body;
+        };
+    }
+
+    /**
+     * Parses one scope of a fully lexed buffer, for parsing part of a file again after an edit.
+     *
+     * @param tokens      All the tokens of the file.
+     * @param identifiers The identifiers visible at the start of the scope.
+     * @param from           Index of the first token of the scope.
+     * @param scopeLevel     The scope level of the scope.
+     * @param returnDataType The return data type of the function the scope is in, null outside of functions.
+     * @return The scope, ending at the first token with a lower scope level.
+     */
+    static ASTScope parseScope(TokenBuffer tokens, Identifiers identifiers, int from, int scopeLevel,
+                               DataType returnDataType) throws CompilerException {
+        Parser parser = new Parser(tokens, tokens.getSymbols().intern("it"), identifiers, new ASTFactory(), null,
+                from, scopeLevel - 1, false);
+        parser.returnDataType = returnDataType;
+        parser.identifiers.newScope();
+        return parser.parseScope();
+    }
+
+    /**
+     * Parses an expression by precedence climbing, driven by the precedence and associativity in ASTOperator.Type.
+     *
+     * @return The expression, simplified if it can be and annotated with its data types.
+     */
     private ASTNode parseExpression() throws CompilerException {
-        boolean operator = false;
-        boolean previousWasVariable = false; // NOTE(Johan): used exclusively to keep track of unary pre/post increment/decrement
-        int parentheses = 0;
-        while (!check(Token.Type.EOF, Token.Type.END_OF_STATEMENT) &&
-                !(parentheses == 0 && check(")")) && !check(",")) {
-            if (accept("(")) {
-                if (!operator && !expressionStack.isEmpty()) {
-                    backup();
-                    error("did not expect '('");
-                }
-                ++parentheses;
-                operator = true;
-                previousWasVariable = false;
-                Token t = save();
-                ASTOperator astOperator = new ASTOperator(ASTOperator.Type.OPEN_PARENTHESES, t.getLocation());
-                operatorStack.push(astOperator);
-            }
-
-            if (accept(Token.Type.LITERAL)) {
-                if (!operator && !expressionStack.isEmpty()) {
-                    backup();
-                    error("did not expect literal");
+        Location location = tokens.getLocation(peek());
+        ASTNode node = parseBinary(0);
+        if (failed) {
+            return null;
+        }
+        if (check(Token.Type.LITERAL)) {
+            error("did not expect literal");
+            return null;
+        } else if (check(Symbols.Delimiter.OPEN_PARENTHESES)) {
+            error("did not expect '('");
+            return null;
+        }
+        node = expressions.simplifyExpression(node, location);
+        expressions.annotate(node);
+        return node;
+    }
+
+    /**
+     * Parses an operand followed by any binary and postfix operators that bind at least as hard as minPrecedence.
+     *
+     * @param minPrecedence The lowest precedence of operators to take.
+     * @return The expression.
+     */
+    private ASTNode parseBinary(int minPrecedence) throws CompilerException {
+        ASTNode left = parseUnary();
+        if (failed) {
+            return null;
+        }
+        for (; ; ) {
+            int operatorToken = peek();
+            if (tokens.getType(operatorToken) != Token.Type.OPERATOR) {
+                return left;
+            }
+            ASTOperator.Type op = tokens.getOperator(operatorToken);
+            if (op == null) {
+                error("not a valid operator");
+                return null;
+            }
+            // NOTE(Johan): the lexer only knows pre increment/decrement, after an operand they are post.
+            if (op == ASTOperator.Type.UNARY_PRE_INCREMENT || op == ASTOperator.Type.UNARY_PRE_DECREMENT) {
+                if (!(left instanceof ASTVariable)) {
+                    error(op == ASTOperator.Type.UNARY_PRE_INCREMENT ?
+                            "unary increment can only be used with variables" :
+                            "unary decrement can only be used with variables");
+                    return null;
                 }
-                operator = false;
-                previousWasVariable = false;
-                Token token = save();
-                expressionStack.push(new ASTLiteral(makeLiteralType(token), token.getDataType(), token.getLocation()));
+                op = op == ASTOperator.Type.UNARY_PRE_INCREMENT ?
+                        ASTOperator.Type.UNARY_POST_INCREMENT : ASTOperator.Type.UNARY_POST_DECREMENT;
+            } else if (op.getGroup() == ASTOperator.Group.UNARY) {
+                error("did not expect operator");
+                return null;
             }
-
-            if (accept(Token.Type.IDENTIFIER)) {
-                Token token = save();
-                Identifier identifier = identifiers.find((token.getData()));
-                if (identifier == null) {
-                    error("unknown identifier");
-                } else {
-                    if (identifier instanceof ASTVariable) {
-                        previousWasVariable = true;
-                        expressionStack.push((ASTVariable) identifier);
-                    } else if (identifier instanceof ASTFunction) {
-                        expressionStack.push((ASTFunction) identifier);
-                    } else {
-                        error(String.format("not a valid type '%s'", token.getData()), token.getLocation());
-                    }
+            if (op.getPrecedence() < minPrecedence) {
+                return left;
+            }
+            if (op.getGroup() == ASTOperator.Group.ASSIGNMENT && left instanceof ASTConstant) {
+                error("can not assign to a constant");
+                return null;
+            }
+            next();
+            Location location = tokens.getLocation(operatorToken);
+            if (op.getGroup() == ASTOperator.Group.UNARY) {
+                left = factory.unaryOperator(op, left, location);
+            } else {
+                int rightPrecedence = op.getAssociativity() == ASTOperator.Associativity.LEFT_TO_RIGHT ?
+                        op.getPrecedence() + 1 : op.getPrecedence();
+                ASTNode right = parseBinary(rightPrecedence);
+                if (failed) {
+                    return null;
                 }
+                left = factory.binaryOperator(op, left, right, location);
+                expressions.annotate(left, location);
             }
+        }
+    }
 
-            if (accept(")")) {
-                --parentheses;
-                if (parentheses < 0) {
-                    backup();
-                    break;
-                }
-                while (!operatorStack.isEmpty() && operatorStack.peek().getType() != ASTOperator.Type.OPEN_PARENTHESES) {
-                    popOperatorOntoExpressionStack();
+    /**
+     * Parses prefix operators, + and - in front of an operand are unary.
+     *
+     * @return The expression.
+     */
+    private ASTNode parseUnary() throws CompilerException {
+        int operatorToken = peek();
+        if (tokens.getType(operatorToken) != Token.Type.OPERATOR) {
+            return parsePrimary();
+        }
+        ASTOperator.Type op = tokens.getOperator(operatorToken);
+        if (op == null) {
+            error("not a valid operator");
+            return null;
+        }
+        switch (op) {
+            case BINARY_ADD:
+                op = ASTOperator.Type.UNARY_PLUS;
+                break;
+            case BINARY_SUB:
+                op = ASTOperator.Type.UNARY_MINUS;
+                break;
+            case UNARY_LOGICAL_NEGATION:
+                break;
+            case UNARY_PRE_INCREMENT:
+            case UNARY_PRE_DECREMENT:
+                next();
+                int t = peek();
+                if (!(identifiers.find(tokens.getSymbol(t)) instanceof ASTVariable)) {
+                    error(op == ASTOperator.Type.UNARY_PRE_INCREMENT ?
+                            "unary increment can only be used with variables" :
+                            "unary decrement can only be used with variables");
+                    return null;
                 }
-                operatorStack.pop();
+                backup();
+                break;
+            default:
+                error("did not expect operator");
+                return null;
+        }
+        next();
+        ASTNode operand = parseBinary(op.getPrecedence());
+        if (failed) {
+            return null;
+        }
+        return factory.unaryOperator(op, operand, tokens.getLocation(operatorToken));
+    }
+
+    private ASTNode parsePrimary() throws CompilerException {
+        if (accept(Symbols.Delimiter.OPEN_PARENTHESES)) {
+            ASTNode node = parseBinary(0);
+            if (failed || !expect(Symbols.Delimiter.CLOSE_PARENTHESES)) {
+                return null;
             }
+            return node;
+        }
 
-            if (accept(Token.Type.OPERATOR)) {
-                Token operatorToken = save();
-                ASTOperator.Type op = ASTOperator.match(operatorToken.getData());
-                if (op == null) {
-                    backup();
-                    error("not a valid operator");
-                }
-                // NOTE(Johan): special case, the ASTOperator.match will only find unary pre increment/decrement since
-                // it doesn't understand context. We need to take care of that here and while we're at it, do some extra
-                // syntax check.
-                if (op.getGroup() == ASTOperator.Group.UNARY) {
-                    Token token = peek();
-                    Identifier identifier = identifiers.find(token.getData());
-                    boolean nextIsVariable = identifier != null && identifier instanceof ASTVariable;
-
-                    if (op == ASTOperator.Type.UNARY_PRE_INCREMENT) {
-                        if (previousWasVariable) {
-                            op = ASTOperator.Type.UNARY_POST_INCREMENT;
-                        } else if (!nextIsVariable) {
-                            error("unary increment can only be used with variables");
-                        }
-                    } else if (op == ASTOperator.Type.UNARY_PRE_DECREMENT) {
-                        if (previousWasVariable) {
-                            op = ASTOperator.Type.UNARY_POST_DECREMENT;
-                        } else if (!nextIsVariable) {
-                            error("unary decrement can only be used with variables");
-                        }
-                    }
-                }
+        if (accept(Token.Type.LITERAL)) {
+            int token = save();
+            return factory.literal(tokens.getConstants(), tokens.getConstant(token), tokens.getLocation(token));
+        }
 
-                if (op.getGroup() != ASTOperator.Group.UNARY && (expressionStack.isEmpty() && operator)) {
-                    if (op == ASTOperator.Type.BINARY_ADD) {
-                        op = ASTOperator.Type.UNARY_PLUS;
-                    } else if (op == ASTOperator.Type.BINARY_SUB) {
-                        op = ASTOperator.Type.BINARY_SUB;
-                    } else {
-                        error("did not expect operator");
-                    }
+        if (accept(Token.Type.IDENTIFIER)) {
+            int token = save();
+            Identifier identifier = identifiers.find(tokens.getSymbol(token));
+            if (identifier == null) {
+                backup();
+                error("unknown identifier");
+                return null;
+            } else if (!(identifier instanceof ASTVariable) && !(identifier instanceof ASTConstant) &&
+                    !(identifier instanceof ASTFunction)) {
+                error(String.format("not a valid type '%s'", tokens.getData(token)), tokens.getLocation(token));
+                return null;
+            }
+            if (identifier instanceof ASTFunction) {
+                if (parseReferencedBodies) {
+                    ((ASTFunction) identifier).parseBody();
                 }
-                operator = true;
-                previousWasVariable = false;
-                if (op.getAssociativity() == ASTOperator.Associativity.LEFT_TO_RIGHT) {
-                    while (!operatorStack.isEmpty() &&
-                            operatorStack.peek().getType().getPrecedence() >= op.getPrecedence()) {
-                        popOperatorOntoExpressionStack();
-                    }
-                } else {
-                    while (!operatorStack.isEmpty() &&
-                            operatorStack.peek().getType().getPrecedence() > op.getPrecedence()) {
-                        popOperatorOntoExpressionStack();
-                    }
+                if (accept(Symbols.Delimiter.OPEN_PARENTHESES)) {
+                    return parseCall((ASTFunction) identifier, tokens.getLocation(token));
                 }
-
-                operatorStack.push(new ASTOperator(op, operatorToken.getLocation()));
             }
+            return (ASTNode) identifier;
         }
-        if (parentheses > 0) {
-            error("expected ')'");
-        }
-        while (!operatorStack.isEmpty()) {
-            popOperatorOntoExpressionStack();
+        error("expected expression");
+        return null;
+    }
+
+    /**
+     * Parses the arguments of a call, after the opening parenthesis.
+     *
+     * @return The call.
+     */
+    private ASTNode parseCall(ASTFunction function, Location location) throws CompilerException {
+        List<ASTNode> arguments = new ArrayList<>();
+        List<Location> argumentLocations = new ArrayList<>();
+        if (!check(Symbols.Delimiter.CLOSE_PARENTHESES)) {
+            do {
+                Location argumentLocation = tokens.getLocation(peek());
+                ASTNode argument = parseBinary(0);
+                if (failed) {
+                    return null;
+                }
+                arguments.add(expressions.simplifyExpression(argument, argumentLocation));
+                argumentLocations.add(argumentLocation);
+            } while (accept(Symbols.Delimiter.COMMA));
         }
-        if (expressionStack.isEmpty()) {
-            error("expected expression");
+        if (!expect(Symbols.Delimiter.CLOSE_PARENTHESES)) {
+            return null;
         }
-        return Expression.simplifyExpression(expressionStack.pop());
+        ASTCall call = factory.call(function, arguments, location);
+        expressions.annotate(call, argumentLocations);
+        return call;
     }
 
     private ASTNode parseIfStatement() throws CompilerException {
         expect(Symbols.Keyword.IF);
-        Token ifToken = save();
+        Location ifLocation = tokens.getLocation(save());
+        Location expressionLocation = tokens.getLocation(peek());
         ASTNode expression = parseExpression();
-        if (Expression.typeCheck(expression) != DataType.BOOLEAN) {
-            error("expected boolean expression", expression.getLocation());
+        if (failed) {
+            return null;
+        }
+        if (expressions.annotate(expression) != DataType.BOOLEAN) {
+            report("expected boolean expression", expressionLocation);
+        }
+        if (!expect(Token.Type.END_OF_STATEMENT) || !eofNotExpected()) {
+            return null;
         }
-        expect(Token.Type.END_OF_STATEMENT);
-        eofNotExpected();
         identifiers.newScope();
         ASTScope ifScope = parseScope();
         if (ifScope.getStatements().size() == 0) {
-            error("if scope expected");
+            report("if scope expected", ifLocation);
         }
         ASTScope elseScope = null;
         if (accept(Symbols.Keyword.ELSE)) {
-            expect(Token.Type.END_OF_STATEMENT);
-            eofNotExpected();
+            Location elseLocation = tokens.getLocation(save());
+            if (!expect(Token.Type.END_OF_STATEMENT) || !eofNotExpected()) {
+                return null;
+            }
             identifiers.newScope();
             elseScope = parseScope();
             if (elseScope.getStatements().size() == 0) {
-                error("else scope expected");
+                report("else scope expected", elseLocation);
             }
         }
-        return new ASTIfStatement(expression, ifScope, elseScope, ifToken.getLocation());
+        return new ASTIfStatement(expression, ifScope, elseScope, ifLocation);
     }
 
     private ASTWhileStatement parseWhileStatement() throws CompilerException {
         expect(Symbols.Keyword.WHILE);
-        Token whileToken = save();
+        Location whileLocation = tokens.getLocation(save());
+        Location expressionLocation = tokens.getLocation(peek());
         ASTNode expression = parseExpression();
-        if (Expression.typeCheck(expression) != DataType.BOOLEAN) {
-            error("expected boolean expression", expression.getLocation());
+        if (failed) {
+            return null;
+        }
+        if (expressions.annotate(expression) != DataType.BOOLEAN) {
+            report("expected boolean expression", expressionLocation);
+        }
+        if (!expect(Token.Type.END_OF_STATEMENT) || !eofNotExpected()) {
+            return null;
         }
-        expect(Token.Type.END_OF_STATEMENT);
-        eofNotExpected();
         identifiers.newScope();
         ASTScope whileScope = parseScope();
-        return new ASTWhileStatement(expression, whileScope, whileToken.getLocation());
+        return new ASTWhileStatement(expression, whileScope, whileLocation);
+    }
+
+    private ASTReturnStatement parseReturnStatement() throws CompilerException {
+        expect(Symbols.Keyword.RETURN);
+        Location returnLocation = tokens.getLocation(save());
+        if (returnDataType == null) {
+            error("return outside of a function", returnLocation);
+            return null;
+        }
+        ASTNode expression = null;
+        if (!check(Token.Type.END_OF_STATEMENT, Token.Type.EOF)) {
+            Location expressionLocation = tokens.getLocation(peek());
+            expression = parseExpression();
+            if (failed) {
+                return null;
+            }
+            if (returnDataType == DataType.VOID) {
+                error("void function can not return a value", expressionLocation);
+                return null;
+            }
+            expressions.typeCheckVsDataType(expression, expressionLocation, null, returnDataType);
+        } else if (returnDataType != DataType.VOID) {
+            error("expected return value");
+            return null;
+        }
+        if (failed || !expect(Token.Type.END_OF_STATEMENT)) {
+            return null;
+        }
+        return new ASTReturnStatement(expression, returnLocation);
     }
 
     private ASTForStatement parseForStatement() throws CompilerException {
@@ -310,185 +786,166 @@ public class Parser extends CompilerErrorHandler {
         ASTNode increment = null;
 
         expect(Symbols.Keyword.FOR);
-        Token ifToken = save();
+        Location forLocation = tokens.getLocation(save());
         identifiers.newScope();
         if (checkIfDeclaration()) {
             init = parseIdentifierDeclarationStatement();
-            if (!(init instanceof ASTBinaryOperator) || !(((ASTBinaryOperator) init).getLeft() instanceof ASTVariable)) {
+            if (!failed && (!(init instanceof ASTBinaryOperator) ||
+                    !(((ASTBinaryOperator) init).getLeft() instanceof ASTVariable))) {
                 error("expected variable declaration");
             }
         }
-        expect(",");
-        if (!check(",")) {
+        if (!failed && expect(Symbols.Delimiter.COMMA) && !check(Symbols.Delimiter.COMMA)) {
+            Location conditionLocation = tokens.getLocation(peek());
             condition = parseExpression();
-            if (Expression.typeCheck(condition) != DataType.BOOLEAN) {
-                error("expected boolean expression", condition.getLocation());
+            if (!failed && expressions.annotate(condition) != DataType.BOOLEAN) {
+                report("expected boolean expression", conditionLocation);
             }
         }
-        expect(",");
-        if (!check(Token.Type.END_OF_STATEMENT)) {
+        if (!failed && expect(Symbols.Delimiter.COMMA) && !check(Token.Type.END_OF_STATEMENT)) {
             increment = parseExpression();
-            expect(Token.Type.END_OF_STATEMENT);
+            if (!failed) {
+                expect(Token.Type.END_OF_STATEMENT);
+            }
+        }
+        if (failed) {
+            // NOTE(Johan): the scope of the for variable is popped by the for scope, which won't be parsed.
+            identifiers.popScope();
+            return null;
         }
         ASTScope forScope = parseScope();
-        return new ASTForStatement(init, condition, increment, forScope, ifToken.getLocation());
+        return new ASTForStatement(init, condition, increment, forScope, forLocation);
     }
 
     private ASTForRangeStatement parseForRangeStatement() throws CompilerException {
         expect(Symbols.Keyword.FOR);
-        Token forToken = save();
-        Token identifierToken = null;
+        Location forLocation = tokens.getLocation(save());
+        int identifierToken = -1;
         if (accept(Token.Type.IDENTIFIER)) {
             identifierToken = save();
-            expect(":");
+            expect(Symbols.Delimiter.COLON);
         }
         ASTNode range = parseExpression();
-        DataType rangeType = Expression.typeCheck(range);
+        if (failed || !expect(Token.Type.END_OF_STATEMENT) || !eofNotExpected()) {
+            return null;
+        }
+        DataType rangeType = expressions.annotate(range);
         ASTVariable identifier;
-        if (identifierToken == null) {
-            identifier = new ASTVariable("it", rangeType, forToken.getLocation());
+        if (identifierToken == -1) {
+            identifier = new ASTVariable(itSymbol, symbols.getName(itSymbol), rangeType, forLocation);
         } else {
-            identifier = new ASTVariable(identifierToken.getData(), rangeType, identifierToken.getLocation());
+            int symbol = tokens.getSymbol(identifierToken);
+            identifier = new ASTVariable(symbol, symbols.getName(symbol), rangeType, tokens.getLocation(identifierToken));
         }
         identifiers.newScope();
         identifiers.addIdentifier(identifier);
         ASTNode result = new ASTBinaryOperator(ASTOperator.Type.ASSIGNMENT, identifier, range, identifier.getLocation());
         ASTScope forScope = parseScope();
-        return new ASTForRangeStatement(result, forScope, forToken.getLocation());
+        return new ASTForRangeStatement(result, forScope, forLocation);
     }
 
-    private ASTNode assignExpressionToIdentifierDeclaration(ASTOperator.Type assignmentType, Token identifierToken,
-                                                            Token dataTypeToken, DataType identifierDataType,
-                                                            ASTNode expression, boolean constant) throws CompilerException {
+    private ASTNode assignExpressionToIdentifierDeclaration(ASTOperator.Type assignmentType, int symbol,
+                                                            Location location, int dataTypeToken,
+                                                            DataType identifierDataType, ASTNode expression,
+                                                            Location expressionLocation, boolean constant)
+            throws CompilerException {
         ASTNode result = null;
-        identifierDataType = Expression.typeCheckVsDataType(expression, dataTypeToken, identifierDataType);
+        // NOTE(Johan): the identifier is declared even if the type is wrong, so its uses don't report errors too.
+        identifierDataType = expressions.typeCheckVsDataType(expression, expressionLocation,
+                dataTypeToken == -1 ? null : tokens.getLocation(dataTypeToken), identifierDataType);
 
+        String name = symbols.getName(symbol);
         Identifier identifier;
         if (constant) {
-            identifier = new ASTConstant(identifierToken.getData(), identifierDataType,
-                    identifierToken.getLocation());
+            identifier = new ASTConstant(symbol, name, identifierDataType, location);
         } else {
-            identifier = new ASTVariable(identifierToken.getData(), identifierDataType,
-                    identifierToken.getLocation());
+            identifier = new ASTVariable(symbol, name, identifierDataType, location);
         }
         if (identifiers.addIdentifier(identifier)) {
-            result = new ASTBinaryOperator(assignmentType,
-                    (ASTNode) identifier,
-                    expression, identifierToken.getLocation());
+            result = new ASTBinaryOperator(assignmentType, (ASTNode) identifier, expression, location);
         } else {
-            error(String.format("'%s' is already declared in this scope.", identifierToken.getData()),
-                    identifierToken.getLocation());
+            error(String.format("'%s' is already declared in this scope.", name), location);
         }
         return result;
     }
 
-    private void popOperatorOntoExpressionStack() throws CompilerException {
-        ASTOperator astOperator = operatorStack.pop();
-        if (astOperator.getType().getGroup() == ASTOperator.Group.UNARY) {
-            if (expressionStack.isEmpty()) {
-                error("expected operand");
-            }
-            ASTNode node = expressionStack.pop();
-            expressionStack.push(new ASTUnaryOperator(astOperator.getType(), node, astOperator.getLocation()));
-        } else {
-            if (expressionStack.size() < 2) {
-                error("expected operand");
-            }
-
-            // NOTE(Johan) Careful, observe order
-            ASTNode rightNode = expressionStack.pop();
-            ASTNode leftNode = expressionStack.pop();
-
-            expressionStack.push(new ASTBinaryOperator(astOperator.getType(), leftNode, rightNode,
-                    astOperator.getLocation()));
-        }
-    }
-
-    private Object makeLiteralType(Token token) throws CompilerException {
-        try {
-            switch (token.getDataType()) {
-                case INT:
-                    return Integer.parseInt(token.getData());
-                case FLOAT:
-                    return Float.parseFloat(token.getData());
-                case DOUBLE:
-                    return Double.parseDouble(token.getData());
-                case CHAR:
-                    return token.getData().charAt(0);
-                case STRING:
-                    return token.getData();
-            }
-        } catch (NumberFormatException e) {
-            error(String.format("literal is not a valid %s", token.getDataType().toString()));
-        }
-        assert false : "makeLiteralType could not find the type";
-        return null;
-    }
-
+    // NOTE(Johan): the checkIf methods decide what comes next by looking at a few tokens ahead, nothing is parsed
+    // twice and the position is never moved back.
     private boolean checkIfDeclaration() throws CompilerException {
-        bookmark();
-        boolean isDeclaration = accept(Token.Type.IDENTIFIER) && accept(":");
-        returnToBookmark();
-        return isDeclaration;
+        return check(Token.Type.IDENTIFIER) && checkAhead(1, Symbols.Delimiter.COLON);
     }
 
     private boolean checkIfAssignment() throws CompilerException {
-        bookmark();
-        boolean isAssignment = false;
-        if (accept(Token.Type.IDENTIFIER)) {
-            ASTOperator.Type assignment = ASTOperator.match(next().getData());
-            if (assignment != null) {
-                isAssignment = assignment.getGroup() == ASTOperator.Group.ASSIGNMENT;
-            }
-
+        if (!check(Token.Type.IDENTIFIER)) {
+            return false;
         }
-        returnToBookmark();
-        return isAssignment;
+        int t = peek(1);
+        ASTOperator.Type assignment = tokens.getOperator(t);
+        return assignment != null && assignment.getGroup() == ASTOperator.Group.ASSIGNMENT;
     }
 
     private boolean checkIfFunction() throws CompilerException {
-        bookmark();
-        boolean isFunction = accept("(") && accept(Token.Type.IDENTIFIER) && accept(":");
-        returnToBookmark();
-        if (!isFunction) {
-            isFunction = accept("(") && accept(")");
-            returnToBookmark();
-        }
-        return isFunction;
+        return check(Symbols.Delimiter.OPEN_PARENTHESES) && (checkAhead(1, Symbols.Delimiter.CLOSE_PARENTHESES) ||
+                checkAhead(1, Token.Type.IDENTIFIER) && checkAhead(2, Symbols.Delimiter.COLON));
     }
 
+    /**
+     * A standard for statement either starts with a comma or with a variable declaration assigned with =, like
+     * for i := 0, or for i : int = 0, anything else is a range for statement.
+     *
+     * @return boolean true if the for keyword at the current position starts a standard for statement.
+     */
     private boolean checkIfStandardForStatement() throws CompilerException {
-        boolean isStandardFor = false;
-        bookmark();
-        if (accept(Symbols.Keyword.FOR)) {
-            if (accept(Token.Type.IDENTIFIER) && accept(":")) {
-                if (accept("=")) {
-                    parseExpression();
-                    if (accept(",")) {
-                        isStandardFor = true;
-                    }
-                }
-            } else if (accept(",")) {
-                isStandardFor = true;
-            }
+        if (checkAhead(1, Symbols.Delimiter.COMMA)) {
+            return true;
         }
-        returnToBookmark();
-        return isStandardFor;
+        if (!checkAhead(1, Token.Type.IDENTIFIER) || !checkAhead(2, Symbols.Delimiter.COLON)) {
+            return false;
+        }
+        return checkAhead(3, ASTOperator.Type.ASSIGNMENT) ||
+                checkAhead(3, Token.Type.IDENTIFIER) && checkAhead(4, ASTOperator.Type.ASSIGNMENT);
     }
 
     private void error(String error) throws CompilerException {
-        error(error, peek().getLocation());
+        int t = peek();
+        error(error, tokens.getLocation(t));
+    }
+
+    /**
+     * Only the first error of a statement is reported, the statement is then dropped when it returns to its scope.
+     */
+    @Override
+    void error(String error, Location location) throws CompilerException {
+        if (!failed) {
+            super.error(error, location);
+            failed = true;
+        }
     }
 
-    private void checkScope(Token token) throws CompilerException {
-        int diff = currentScopeLevel - token.getScopeLevel();
+    /**
+     * Reports an error in a statement that can still be parsed to the end, like a condition of the wrong type, so the
+     * errors in the scopes of the statement are reported too.
+     */
+    private void report(String error, Location location) throws CompilerException {
+        if (!failed) {
+            super.error(error, location);
+        }
+    }
+
+    private void checkScope(int token) throws CompilerException {
+        // NOTE(Johan): the end of the file closes all the scopes that are still open.
+        if (tokens.getType(token) == Token.Type.EOF) {
+            return;
+        }
+        int diff = currentScopeLevel - tokens.getScopeLevel(token);
         if (diff > 1 || diff < -1) {
-            error("illegal scope change", token.getLocation());
+            error("illegal scope change", tokens.getLocation(token));
         }
     }
 
     private boolean scopeDiff(int level) throws CompilerException {
-        int diff = peek().getScopeLevel() - currentScopeLevel;
+        int t = peek();
+        int diff = tokens.getScopeLevel(t) - currentScopeLevel;
         return diff == level;
     }
 
@@ -496,45 +953,68 @@ public class Parser extends CompilerErrorHandler {
         return check(Token.Type.EOF);
     }
 
-    private void eofNotExpected() throws CompilerException {
+    private boolean eofNotExpected() throws CompilerException {
         if (check(Token.Type.EOF)) {
             error("unexpected end of file");
+            return false;
         }
+        return true;
     }
 
-    private Token peek() throws CompilerException {
-        Token token = tokens.get(pos);
+    /**
+     * Peeks at the current token without moving the position forward.
+     *
+     * @return The index of the current token.
+     */
+    private int peek() throws CompilerException {
+        int token = pos;
+        tokens = stream.fill(token);
         checkScope(token);
         return token;
     }
 
-    private Token next() throws CompilerException {
-        Token token = tokens.get(pos++);
+    /**
+     * Looks at a token after the current token without moving the position forward.
+     *
+     * @param ahead The number of tokens after the current token.
+     * @return The index of the token.
+     */
+    private int peek(int ahead) throws CompilerException {
+        int token = pos + ahead;
+        tokens = stream.fill(token);
+        return token;
+    }
+
+    /**
+     * Returns the current token and moves the position forward one token.
+     *
+     * @return The index of the current token.
+     */
+    private int next() throws CompilerException {
+        int token = pos++;
+        tokens = stream.fill(token);
         checkScope(token);
-        currentScopeLevel = token.getScopeLevel();
+        previousScopeLevel = currentScopeLevel;
+        currentScopeLevel = tokens.getScopeLevel(token);
         return token;
     }
 
+    /**
+     * Moves the position back to the token next returned last, and the scope level back to where it was before it.
+     */
     private void backup() {
         --pos;
+        currentScopeLevel = previousScopeLevel;
     }
 
-    private void bookmark() {
-        start = pos;
-    }
-
-    private void returnToBookmark() {
-        pos = start;
-    }
-
-    private Token save() {
-        return tokens.get(pos - 1);
+    private int save() {
+        return pos - 1;
     }
 
     private boolean accept(Token.Type... valid) throws CompilerException {
-        Token t = next();
+        int t = next();
         for (Token.Type v : valid) {
-            if (t.getType() == v) {
+            if (tokens.getType(t) == v) {
                 return true;
             }
         }
@@ -543,29 +1023,36 @@ public class Parser extends CompilerErrorHandler {
     }
 
     private boolean accept(Symbols.Keyword valid) throws CompilerException {
-        Token t = next();
-        if (t.getKeyword() == valid) {
+        int t = next();
+        if (tokens.getKeyword(t) == valid) {
             return true;
         }
         backup();
         return false;
     }
 
-    private boolean accept(String... valid) throws CompilerException {
-        String t = next().getData();
-        for (String v : valid) {
-            if (t.equals(v)) {
-                return true;
-            }
+    private boolean accept(Symbols.Delimiter valid) throws CompilerException {
+        int t = next();
+        if (tokens.getDelimiter(t) == valid) {
+            return true;
+        }
+        backup();
+        return false;
+    }
+
+    private boolean accept(ASTOperator.Type valid) throws CompilerException {
+        int t = next();
+        if (tokens.getOperator(t) == valid) {
+            return true;
         }
         backup();
         return false;
     }
 
     private boolean check(Token.Type... valid) throws CompilerException {
-        Token t = peek();
+        int t = peek();
         for (Token.Type v : valid) {
-            if (t.getType() == v) {
+            if (tokens.getType(t) == v) {
                 return true;
             }
         }
@@ -573,22 +1060,33 @@ public class Parser extends CompilerErrorHandler {
     }
 
     private boolean check(Symbols.Keyword valid) throws CompilerException {
-        return peek().getKeyword() == valid;
+        int t = peek();
+        return tokens.getKeyword(t) == valid;
     }
 
-    private boolean check(String... valid) throws CompilerException {
-        String t = peek().getData();
-        for (String v : valid) {
-            if (t.equals(v)) {
-                return true;
-            }
-        }
-        return false;
+    private boolean check(Symbols.Delimiter valid) throws CompilerException {
+        int t = peek();
+        return tokens.getDelimiter(t) == valid;
+    }
+
+    private boolean checkAhead(int ahead, Token.Type valid) throws CompilerException {
+        int t = peek(ahead);
+        return tokens.getType(t) == valid;
+    }
+
+    private boolean checkAhead(int ahead, Symbols.Delimiter valid) throws CompilerException {
+        int t = peek(ahead);
+        return tokens.getDelimiter(t) == valid;
+    }
+
+    private boolean checkAhead(int ahead, ASTOperator.Type valid) throws CompilerException {
+        int t = peek(ahead);
+        return tokens.getOperator(t) == valid;
     }
 
     private boolean expect(Symbols.Keyword valid) throws CompilerException {
-        Token t = next();
-        if (t.getKeyword() == valid) {
+        int t = next();
+        if (tokens.getKeyword(t) == valid) {
             return true;
         }
         backup();
@@ -597,8 +1095,8 @@ public class Parser extends CompilerErrorHandler {
     }
 
     private boolean expect(Token.Type valid) throws CompilerException {
-        Token t = next();
-        if (t.getType() == valid) {
+        int t = next();
+        if (tokens.getType(t) == valid) {
             return true;
         }
         backup();
@@ -606,13 +1104,13 @@ public class Parser extends CompilerErrorHandler {
         return false;
     }
 
-    private boolean expect(String valid) throws CompilerException {
-        String t = next().getData();
-        if (t.equals(valid)) {
+    private boolean expect(Symbols.Delimiter valid) throws CompilerException {
+        int t = next();
+        if (tokens.getDelimiter(t) == valid) {
             return true;
         }
         backup();
-        error(String.format("expected '%s'", valid));
+        error(String.format("expected '%s'", valid.getSymbol()));
         return false;
     }
 
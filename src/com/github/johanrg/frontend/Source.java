@@ -0,0 +1,94 @@
+package com.github.johanrg.frontend;
+
+/**
+ * Read access to the text of a source file for the lexer. Positions are offsets into the underlying storage, which
+ * for a byte source means byte offsets into UTF-8 encoded text.
+ *
+ * @author johan
+ * @since 2016-07-17.
+ */
+public interface Source {
+    /**
+     * The value returned by charAt for positions at or after the end of the source.
+     */
+    char EOF = '\0';
+
+    /**
+     * @param pos Offset into the source.
+     * @return The character at pos, bytes from a byte source are returned as is, or EOF at the end.
+     */
+    char charAt(int pos);
+
+    int length();
+
+    /**
+     * Decodes the text between start and end.
+     *
+     * @param start Start offset.
+     * @param end   End offset (exclusive).
+     * @return The text as a String.
+     */
+    String substring(int start, int end);
+
+    /**
+     * Checks if the source at offset starts with the string, without decoding anything.
+     *
+     * @param valid  The string to match against, must be ASCII.
+     * @param offset Offset into the source.
+     * @return boolean true if there is a match.
+     */
+    boolean startsWith(String valid, int offset);
+
+    /**
+     * Checks if the position is in the middle of a character, like a UTF-8 continuation byte. Used to count
+     * characters rather than storage units in literals.
+     *
+     * @param pos Offset into the source.
+     * @return boolean true if pos does not start a new character.
+     */
+    boolean continuesCharacter(int pos);
+
+    /**
+     * Finds the next new line or EOF character from pos.
+     *
+     * @param pos Offset into the source.
+     * @return The offset of the character, or length if there is none.
+     */
+    default int findLineEnd(int pos) {
+        return find(pos, '\n', '\n', '\n');
+    }
+
+    /**
+     * Finds the next occurrence of any of three ASCII characters, or of an EOF character, from pos.
+     *
+     * @param pos Offset into the source.
+     * @return The offset of the character, or length if there is none.
+     */
+    default int find(int pos, char a, char b, char c) {
+        int length = length();
+        for (; pos < length; ++pos) {
+            char ch = charAt(pos);
+            if (ch == a || ch == b || ch == c || ch == EOF) {
+                return pos;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Skips a run of ASCII letters, digits and underscores.
+     *
+     * @param pos Offset into the source.
+     * @return The offset of the first character from pos that is not part of the run.
+     */
+    default int skipAlphanumeric(int pos) {
+        int length = length();
+        for (; pos < length; ++pos) {
+            char ch = charAt(pos);
+            if (!((ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || (ch >= '0' && ch <= '9') || ch == '_')) {
+                return pos;
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,55 @@
+package com.github.johanrg.frontend;
+
+/**
+ * Source text held in a String.
+ *
+ * @author johan
+ * @since 2016-07-17.
+ */
+public class StringSource implements Source {
+    private final String text;
+    private final boolean containsEof;
+
+    public StringSource(String text) {
+        this.text = text;
+        this.containsEof = text.indexOf(EOF) >= 0;
+    }
+
+    @Override
+    public char charAt(int pos) {
+        return pos < text.length() ? text.charAt(pos) : EOF;
+    }
+
+    @Override
+    public int length() {
+        return text.length();
+    }
+
+    @Override
+    public String substring(int start, int end) {
+        end = Math.min(end, text.length());
+        return text.substring(Math.min(start, end), end);
+    }
+
+    @Override
+    public boolean startsWith(String valid, int offset) {
+        return text.startsWith(valid, offset);
+    }
+
+    @Override
+    public boolean continuesCharacter(int pos) {
+        return false;
+    }
+
+    /**
+     * String.indexOf is a vectorized intrinsic in the JVM, it can be used as long as the text has no EOF characters.
+     */
+    @Override
+    public int findLineEnd(int pos) {
+        if (containsEof) {
+            return Source.super.findLineEnd(pos);
+        }
+        int end = text.indexOf('\n', pos);
+        return end < 0 ? text.length() : end;
+    }
+}
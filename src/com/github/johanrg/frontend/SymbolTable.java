@@ -0,0 +1,108 @@
+package com.github.johanrg.frontend;
+
+import java.util.Arrays;
+
+/**
+ * Interns identifier names for a whole compilation. Every distinct name gets a dense int id, so that the rest of the
+ * front end can compare and look up identifiers by id, and only one String is ever created per name.
+ * <p>
+ * Names are looked up straight from the source, a String is only decoded the first time a name is seen. The hash is
+ * the same as String.hashCode so both kinds of lookups meet in the same table.
+ *
+ * @author johan
+ * @since 2016-07-21.
+ */
+public class SymbolTable {
+    private static final int INITIAL_CAPACITY = 256;
+
+    // NOTE(Johan): open addressing, slots hold id + 1 so that 0 is an empty slot.
+    private int[] slots = new int[INITIAL_CAPACITY * 2];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private String[] names = new String[INITIAL_CAPACITY];
+    private int size = 0;
+
+    /**
+     * @param name The identifier name.
+     * @return The id of the name, a new id if it has not been seen before.
+     */
+    public int intern(String name) {
+        int hash = name.hashCode();
+        int mask = slots.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            int id = slots[i] - 1;
+            if (id < 0) {
+                return add(name, hash, i);
+            }
+            if (hashes[id] == hash && names[id].equals(name)) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * Interns the name between start and end in the source without creating a substring, unless the name is new.
+     *
+     * @param source The source.
+     * @param start  Start offset of the name.
+     * @param end    End offset (exclusive) of the name.
+     * @return The id of the name.
+     */
+    int intern(Source source, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; ++i) {
+            hash = 31 * hash + source.charAt(i);
+        }
+        int mask = slots.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            int id = slots[i] - 1;
+            if (id < 0) {
+                return add(source.substring(start, end), hash, i);
+            }
+            if (hashes[id] == hash && names[id].length() == end - start && source.startsWith(names[id], start)) {
+                return id;
+            }
+        }
+    }
+
+    private int add(String name, int hash, int slot) {
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        int id = size++;
+        names[id] = name;
+        hashes[id] = hash;
+        slots[slot] = id + 1;
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int id = 0; id < size; ++id) {
+            int i = hashes[id] & mask;
+            while (slots[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            slots[i] = id + 1;
+        }
+    }
+
+    /**
+     * @param id Symbol id.
+     * @return The name of the symbol.
+     */
+    public String getName(int id) {
+        return names[id];
+    }
+
+    /**
+     * @return The number of distinct names.
+     */
+    public int size() {
+        return size;
+    }
+}
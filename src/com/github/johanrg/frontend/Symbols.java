@@ -1,5 +1,11 @@
 package com.github.johanrg.frontend;
 
+import com.github.johanrg.ast.ASTOperator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * @author Johan Gustafsson
  * @since 7/11/2016.
@@ -10,6 +16,7 @@ class Symbols {
         ELSE("else"),
         WHILE("while"),
         FOR("for"),
+        RETURN("return"),
         ;
 
         private final String identifier;
@@ -19,11 +26,148 @@ class Symbols {
         }
     }
 
-    static Keyword match(String identifier) {
+    enum Delimiter {
+        COMMA(","),
+        COLON(":"),
+        OPEN_BRACKET("["),
+        CLOSE_BRACKET("]"),
+        OPEN_BRACE("{"),
+        CLOSE_BRACE("}"),
+        OPEN_PARENTHESES("("),
+        CLOSE_PARENTHESES(")"),
+        SEMICOLON(";"),
+        AT("@"),
+        ARROW("->"),
+        ;
+
+        private final String symbol;
+
+        Delimiter(String symbol) {
+            this.symbol = symbol;
+        }
+
+        String getSymbol() {
+            return symbol;
+        }
+    }
+
+    /**
+     * An operator or delimiter symbol with the token type and code the lexer gives it.
+     */
+    static final class Punctuator {
+        final String symbol;
+        final Token.Type type;
+        final int code;
+
+        private Punctuator(String symbol, Token.Type type, int code) {
+            this.symbol = symbol;
+            this.type = type;
+            this.code = code;
+        }
+    }
+
+    // NOTE(Johan): operators and delimiters grouped on their first character, longest first. Operators that share a
+    // symbol, like binary and unary minus, get the code of the first one and the parser sorts them out from context.
+    private static final Punctuator[][] PUNCTUATORS = new Punctuator[128][];
+
+    static {
+        List<Punctuator> punctuators = new ArrayList<>();
+        for (Delimiter delimiter : Delimiter.values()) {
+            punctuators.add(new Punctuator(delimiter.symbol, Token.Type.DELIMITER, delimiter.ordinal()));
+        }
+        for (ASTOperator.Type type : ASTOperator.Type.values()) {
+            if (type.getGroup() != ASTOperator.Group.DELIMITER && !containsSymbol(punctuators, type.getSymbol())) {
+                punctuators.add(new Punctuator(type.getSymbol(), Token.Type.OPERATOR, type.ordinal()));
+            }
+        }
+        punctuators.sort((a, b) -> b.symbol.length() - a.symbol.length());
+        for (Punctuator punctuator : punctuators) {
+            char first = punctuator.symbol.charAt(0);
+            Punctuator[] group = PUNCTUATORS[first] == null ? new Punctuator[0] : PUNCTUATORS[first];
+            group = Arrays.copyOf(group, group.length + 1);
+            group[group.length - 1] = punctuator;
+            PUNCTUATORS[first] = group;
+        }
+    }
+
+    private static boolean containsSymbol(List<Punctuator> punctuators, String symbol) {
+        for (Punctuator punctuator : punctuators) {
+            if (punctuator.symbol.equals(symbol)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds the longest operator or delimiter at pos.
+     *
+     * @param source The source.
+     * @param pos    Offset into the source.
+     * @return The punctuator or null if no operator or delimiter starts at pos.
+     */
+    static Punctuator matchPunctuator(Source source, int pos) {
+        char c = source.charAt(pos);
+        Punctuator[] group = c < 128 ? PUNCTUATORS[c] : null;
+        if (group != null) {
+            for (Punctuator punctuator : group) {
+                if (source.startsWith(punctuator.symbol, pos)) {
+                    return punctuator;
+                }
+            }
+        }
+        return null;
+    }
+
+    // NOTE(Johan): perfect hash on the first and last character and the length of the keyword. The multiplier is
+    // searched for when the class loads, so new keywords only have to be added to the enum.
+    private static final int KEYWORD_TABLE_SIZE = 16;
+    private static final Keyword[] KEYWORD_TABLE = new Keyword[KEYWORD_TABLE_SIZE];
+    private static final int KEYWORD_MULTIPLIER;
+
+    static {
+        int multiplier = 1;
+        while (!fillKeywordTable(multiplier)) {
+            if (++multiplier > 1024) {
+                throw new AssertionError("no perfect hash for the keywords, increase KEYWORD_TABLE_SIZE");
+            }
+        }
+        KEYWORD_MULTIPLIER = multiplier;
+    }
+
+    private static boolean fillKeywordTable(int multiplier) {
+        Arrays.fill(KEYWORD_TABLE, null);
         for (Keyword keyword : Keyword.values()) {
-            if (keyword.identifier.equals(identifier)) {
-                return keyword;
+            String identifier = keyword.identifier;
+            int hash = keywordHash(multiplier, identifier.charAt(0), identifier.charAt(identifier.length() - 1),
+                    identifier.length());
+            if (KEYWORD_TABLE[hash] != null) {
+                return false;
             }
+            KEYWORD_TABLE[hash] = keyword;
+        }
+        return true;
+    }
+
+    private static int keywordHash(int multiplier, char first, char last, int length) {
+        return (first * multiplier + last + length) & (KEYWORD_TABLE_SIZE - 1);
+    }
+
+    /**
+     * Matches the identifier between start and end in the source against the keywords, with one table lookup and at
+     * most one comparison.
+     *
+     * @param source The source.
+     * @param start  Start offset of the identifier.
+     * @param end    End offset (exclusive) of the identifier.
+     * @return The keyword or null if it's not a keyword.
+     */
+    static Keyword match(Source source, int start, int end) {
+        Keyword keyword = KEYWORD_TABLE[keywordHash(KEYWORD_MULTIPLIER, source.charAt(start), source.charAt(end - 1),
+                end - start)];
+        if (keyword != null && keyword.identifier.length() == end - start &&
+                source.startsWith(keyword.identifier, start)) {
+            return keyword;
         }
         return null;
     }
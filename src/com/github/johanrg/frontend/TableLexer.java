@@ -0,0 +1,542 @@
+package com.github.johanrg.frontend;
+
+/**
+ * Table driven lexing engine. Characters are classified through a precomputed class table and numbers are scanned
+ * with a transition table, so the hot loops are plain array lookups without varargs scans or speculative reads that
+ * have to be backed up. Produces exactly the same tokens and errors as the functional state machine in Lexer.
+ *
+ * @author johan
+ * @since 2016-07-18.
+ */
+class TableLexer extends CompilerErrorHandler {
+    // Character classes
+    private static final byte OTHER = 0;
+    private static final byte WHITESPACE = 1;
+    private static final byte NEW_LINE = 2;
+    private static final byte DIGIT = 3;
+    private static final byte ALPHA = 4;
+    private static final byte OPERATOR = 5;
+    private static final byte DELIMITER = 6;
+    private static final byte CITATION = 7;
+    private static final byte APOSTROPHE = 8;
+    private static final byte EOF = 9;
+    private static final byte[] CLASS = new byte[128];
+
+    // Number character classes
+    private static final int N_OTHER = 0;
+    private static final int N_ZERO = 1;
+    private static final int N_DIGIT = 2;
+    private static final int N_HEX = 3;
+    private static final int N_E = 4;
+    private static final int N_F = 5;
+    private static final int N_X = 6;
+    private static final int N_DOT = 7;
+    private static final int N_SIGN = 8;
+    private static final int NUMBER_CLASSES = 9;
+    private static final byte[] NUMBER_CLASS = new byte[128];
+
+    // Number states, the state reached when no transition is possible decides the literal
+    private static final int S_START = 0;
+    private static final int S_ZERO = 1;
+    private static final int S_INT = 2;
+    private static final int S_DOT = 3;
+    private static final int S_RANGE = 4;
+    private static final int S_FRACTION = 5;
+    private static final int S_EXPONENT = 6;
+    private static final int S_EXPONENT_SIGN = 7;
+    private static final int S_EXPONENT_DIGIT = 8;
+    private static final int S_FLOAT = 9;
+    private static final int S_HEX_START = 10;
+    private static final int S_HEX = 11;
+    private static final int[][] NUMBER_TRANSITION = new int[12][NUMBER_CLASSES];
+    private static final int[] NUMBER_ACCEPT = new int[12];
+    private static final int[] NUMBER_TRIM = new int[12];
+
+    // Number accept results
+    private static final int A_INT = 0;
+    private static final int A_DOUBLE = 1;
+    private static final int A_FLOAT = 2;
+    private static final int A_HEX = 3;
+    private static final int A_HEX_ERROR = 4;
+
+    static {
+        for (char c : new char[]{' ', '\t', '\r', '\b', '\f'}) CLASS[c] = WHITESPACE;
+        for (char c = '0'; c <= '9'; ++c) CLASS[c] = DIGIT;
+        for (char c = 'a'; c <= 'z'; ++c) CLASS[c] = ALPHA;
+        for (char c = 'A'; c <= 'Z'; ++c) CLASS[c] = ALPHA;
+        for (char c : "+-*/!%&|=<>^.".toCharArray()) CLASS[c] = OPERATOR;
+        for (char c : ",:[]{}();@".toCharArray()) CLASS[c] = DELIMITER;
+        CLASS['_'] = ALPHA;
+        CLASS['\n'] = NEW_LINE;
+        CLASS['"'] = CITATION;
+        CLASS['\''] = APOSTROPHE;
+        CLASS[Source.EOF] = EOF;
+
+        NUMBER_CLASS['0'] = N_ZERO;
+        for (char c = '1'; c <= '9'; ++c) NUMBER_CLASS[c] = N_DIGIT;
+        for (char c : "abcdABCD".toCharArray()) NUMBER_CLASS[c] = N_HEX;
+        NUMBER_CLASS['e'] = NUMBER_CLASS['E'] = N_E;
+        NUMBER_CLASS['f'] = NUMBER_CLASS['F'] = N_F;
+        NUMBER_CLASS['x'] = NUMBER_CLASS['X'] = N_X;
+        NUMBER_CLASS['.'] = N_DOT;
+        NUMBER_CLASS['+'] = NUMBER_CLASS['-'] = N_SIGN;
+
+        for (int[] row : NUMBER_TRANSITION) {
+            java.util.Arrays.fill(row, -1);
+        }
+        transition(S_START, N_ZERO, S_ZERO);
+        transition(S_START, N_DIGIT, S_INT);
+        transition(S_ZERO, N_X, S_HEX_START);
+        transition(S_ZERO, N_ZERO, S_INT);
+        transition(S_ZERO, N_DIGIT, S_INT);
+        transition(S_ZERO, N_DOT, S_DOT);
+        transition(S_INT, N_ZERO, S_INT);
+        transition(S_INT, N_DIGIT, S_INT);
+        transition(S_INT, N_DOT, S_DOT);
+        // NOTE(Johan): a second dot means the first one started a range operator.
+        transition(S_DOT, N_DOT, S_RANGE);
+        transition(S_DOT, N_ZERO, S_FRACTION);
+        transition(S_DOT, N_DIGIT, S_FRACTION);
+        transition(S_DOT, N_E, S_EXPONENT);
+        transition(S_DOT, N_F, S_FLOAT);
+        transition(S_FRACTION, N_ZERO, S_FRACTION);
+        transition(S_FRACTION, N_DIGIT, S_FRACTION);
+        transition(S_FRACTION, N_E, S_EXPONENT);
+        transition(S_FRACTION, N_F, S_FLOAT);
+        transition(S_EXPONENT, N_SIGN, S_EXPONENT_SIGN);
+        transition(S_EXPONENT, N_ZERO, S_EXPONENT_DIGIT);
+        transition(S_EXPONENT, N_DIGIT, S_EXPONENT_DIGIT);
+        transition(S_EXPONENT, N_F, S_FLOAT);
+        transition(S_EXPONENT_SIGN, N_ZERO, S_EXPONENT_DIGIT);
+        transition(S_EXPONENT_SIGN, N_DIGIT, S_EXPONENT_DIGIT);
+        transition(S_EXPONENT_SIGN, N_F, S_FLOAT);
+        transition(S_EXPONENT_DIGIT, N_ZERO, S_EXPONENT_DIGIT);
+        transition(S_EXPONENT_DIGIT, N_DIGIT, S_EXPONENT_DIGIT);
+        transition(S_EXPONENT_DIGIT, N_F, S_FLOAT);
+        for (int c : new int[]{N_ZERO, N_DIGIT, N_HEX, N_E, N_F}) {
+            transition(S_HEX_START, c, S_HEX);
+            transition(S_HEX, c, S_HEX);
+        }
+
+        NUMBER_ACCEPT[S_ZERO] = A_INT;
+        NUMBER_ACCEPT[S_INT] = A_INT;
+        NUMBER_ACCEPT[S_DOT] = A_DOUBLE;
+        NUMBER_ACCEPT[S_RANGE] = A_INT;
+        NUMBER_TRIM[S_RANGE] = 2;
+        NUMBER_ACCEPT[S_FRACTION] = A_DOUBLE;
+        NUMBER_ACCEPT[S_EXPONENT] = A_DOUBLE;
+        NUMBER_ACCEPT[S_EXPONENT_SIGN] = A_DOUBLE;
+        NUMBER_ACCEPT[S_EXPONENT_DIGIT] = A_DOUBLE;
+        NUMBER_ACCEPT[S_FLOAT] = A_FLOAT;
+        NUMBER_ACCEPT[S_HEX_START] = A_HEX_ERROR;
+        NUMBER_ACCEPT[S_HEX] = A_HEX;
+    }
+
+    private static void transition(int from, int numberClass, int to) {
+        NUMBER_TRANSITION[from][numberClass] = to;
+    }
+
+    private final Source source;
+    private final LineTable lineTable;
+    private final SymbolTable symbols;
+    private final ConstantPool constants;
+    private final TokenBuffer tokens;
+    private final boolean bulkScanning;
+    private int start = 0;
+    private int pos = 0;
+    private int lineStart = 0;
+    private int tokenStart;
+    private int scopeLevel = 0;
+    private boolean writtenToken = false;
+    private boolean recovering = false;
+
+    TableLexer(Source source, LineTable lineTable, SymbolTable symbols, ConstantPool constants, TokenBuffer tokens,
+               boolean bulkScanning) {
+        this.source = source;
+        this.lineTable = lineTable;
+        this.symbols = symbols;
+        this.constants = constants;
+        this.tokens = tokens;
+        this.bulkScanning = bulkScanning;
+    }
+
+    /**
+     * Moves the lexer to the start of a line, the lexer then continues as if the file started there.
+     *
+     * @param offset Offset of the first character of a line.
+     */
+    void startAt(int offset) {
+        start = offset;
+        pos = offset;
+        lineStart = offset;
+        scopeLevel = 0;
+        writtenToken = false;
+        recovering = false;
+    }
+
+    int getPosition() {
+        return pos;
+    }
+
+    /**
+     * Lexes whole lines until the start of the first line at or after end, or until the end of file. The lexer is
+     * then in the same state as at the start of a file.
+     *
+     * @param end Offset to stop at.
+     * @return boolean false when the end of file token has been added.
+     */
+    boolean lexLines(int end) throws CompilerException {
+        do {
+            if (!step()) {
+                return false;
+            }
+        } while (pos < end || pos != lineStart);
+        return true;
+    }
+
+    private static byte classOf(char c) {
+        return c < 128 ? CLASS[c] : OTHER;
+    }
+
+    private static boolean isAlphanumeric(char c) {
+        return c < 128 && (CLASS[c] == ALPHA || CLASS[c] == DIGIT);
+    }
+
+    /**
+     * Lexes from the current position up to and including the next token, or the next piece of whitespace or comment.
+     *
+     * @return boolean false when the end of file token has been added.
+     */
+    boolean step() throws CompilerException {
+        tokenStart = pos;
+        char c = source.charAt(pos);
+        switch (classOf(c)) {
+            case WHITESPACE:
+                lexWhiteSpaces();
+                break;
+            case NEW_LINE:
+                ++pos;
+                lexNewLine();
+                break;
+            case DIGIT:
+                lexNumber();
+                break;
+            case ALPHA:
+                lexIdentifier();
+                break;
+            case OPERATOR:
+                if (c == '/' && source.charAt(pos + 1) == '/') {
+                    lexLineComment();
+                } else if (c == '/' && source.charAt(pos + 1) == '*') {
+                    lexMultiLineComment();
+                } else {
+                    lexPunctuator();
+                }
+                break;
+            case DELIMITER:
+                lexPunctuator();
+                break;
+            case CITATION:
+                lexString();
+                break;
+            case APOSTROPHE:
+                lexChar();
+                break;
+            case EOF:
+                addToken(Token.Type.EOF, -1);
+                return false;
+            default:
+                error("syntax error");
+        }
+        if (recovering) {
+            // NOTE(Johan): an error was reported to the diagnostics, carry on at the next line.
+            recovering = false;
+            pos = source.findLineEnd(pos);
+            start = pos;
+        }
+        return true;
+    }
+
+    private void lexWhiteSpaces() throws CompilerException {
+        if (pos == lineStart) {
+            int spaces = 0;
+            int tabs = 0;
+            while (source.charAt(pos) == ' ') {
+                ++pos;
+                ++spaces;
+            }
+            while (source.charAt(pos) == '\t') {
+                ++pos;
+                ++tabs;
+            }
+            if (tabs > 0 && spaces > 0) {
+                error("mixed tabs and spaces");
+                return;
+            }
+            if (spaces > 0) {
+                if (spaces % 4 != 0) {
+                    error("indentation spaces must be in multiples of 4");
+                    return;
+                }
+                scopeLevel = spaces / 4;
+            } else if (tabs > 0) {
+                scopeLevel = tabs;
+            }
+        }
+        while (classOf(source.charAt(pos)) == WHITESPACE) {
+            ++pos;
+        }
+        start = pos;
+    }
+
+    /**
+     * Handles a new line, the new line character has already been read.
+     */
+    private void lexNewLine() {
+        if (writtenToken) {
+            tokens.add(Token.Type.END_OF_STATEMENT, start, pos, scopeLevel, -1);
+        }
+        start = pos;
+        writtenToken = false;
+        lineStart = pos;
+        lineTable.addLine(pos);
+        scopeLevel = 0;
+    }
+
+    private void lexLineComment() {
+        if (bulkScanning) {
+            pos = source.findLineEnd(pos);
+        } else {
+            char c;
+            while ((c = source.charAt(pos)) != '\n' && c != Source.EOF) {
+                ++pos;
+            }
+        }
+        start = pos;
+    }
+
+    private void lexMultiLineComment() throws CompilerException {
+        int nested = 0;
+        for (; ; ) {
+            char c = source.charAt(pos);
+            if (c == '\n') {
+                ++pos;
+                lexNewLine();
+            } else if (c == Source.EOF) {
+                error("unclosed comment");
+                return;
+            } else if (c == '*') {
+                ++pos;
+                if (source.charAt(pos) == '/') {
+                    ++pos;
+                    if (--nested == 0) {
+                        break;
+                    }
+                    if (source.charAt(pos) == '/' && source.charAt(pos + 1) == '*') {
+                        pos += 2;
+                        ++nested;
+                    } else if (source.charAt(pos) == '/') {
+                        ++pos;
+                    }
+                }
+            } else if (c == '/') {
+                ++pos;
+                if (source.charAt(pos) == '*') {
+                    ++pos;
+                    ++nested;
+                }
+            } else if (bulkScanning) {
+                pos = source.find(pos, '/', '*', '\n');
+            } else {
+                ++pos;
+            }
+        }
+        start = pos;
+    }
+
+    /**
+     * Lexes the longest operator or delimiter, or a single operator character that isn't a known operator.
+     */
+    private void lexPunctuator() {
+        Symbols.Punctuator punctuator = Symbols.matchPunctuator(source, pos);
+        if (punctuator == null) {
+            ++pos;
+            addToken(Token.Type.OPERATOR, -1);
+        } else {
+            pos += punctuator.symbol.length();
+            addToken(punctuator.type, punctuator.code);
+        }
+    }
+
+    /**
+     * Runs the number transition table from the current position and adds the literal of the state it stops in.
+     */
+    private void lexNumber() throws CompilerException {
+        int state = S_START;
+        for (; ; ) {
+            char c = source.charAt(pos);
+            int next = NUMBER_TRANSITION[state][c < 128 ? NUMBER_CLASS[c] : N_OTHER];
+            if (next < 0) {
+                break;
+            }
+            state = next;
+            ++pos;
+        }
+        pos -= NUMBER_TRIM[state];
+        switch (NUMBER_ACCEPT[state]) {
+            case A_INT:
+                addLiteral(DataType.INT);
+                break;
+            case A_DOUBLE:
+                addLiteral(DataType.DOUBLE);
+                break;
+            case A_FLOAT:
+                addLiteral(DataType.FLOAT);
+                break;
+            case A_HEX:
+                if (Character.isAlphabetic(source.charAt(pos))) {
+                    error("bad number syntax");
+                    return;
+                }
+                int value;
+                try {
+                    value = ConstantPool.parseInt(source, start + 2, pos, 16);
+                } catch (NumberFormatException e) {
+                    error("bad hexadecimal syntax");
+                    return;
+                }
+                addConstant(constants.addInt(value));
+                break;
+            case A_HEX_ERROR:
+                error("expected hexadecimal digit");
+        }
+    }
+
+    private void addLiteral(DataType dataType) throws CompilerException {
+        if (Character.isAlphabetic(source.charAt(pos))) {
+            error("bad number syntax");
+            return;
+        }
+        int constant;
+        try {
+            constant = constants.add(dataType, source, start, pos);
+        } catch (NumberFormatException e) {
+            error(String.format("literal is not a valid %s", dataType.toString()));
+            return;
+        }
+        addConstant(constant);
+    }
+
+    private void addConstant(int constant) {
+        tokens.add(Token.Type.LITERAL, start, pos, scopeLevel, constant);
+        start = pos;
+    }
+
+    private void lexIdentifier() {
+        if (bulkScanning) {
+            pos = source.skipAlphanumeric(pos + 1);
+        } else {
+            while (isAlphanumeric(source.charAt(++pos))) ;
+        }
+        Symbols.Keyword keyword = Symbols.match(source, start, pos);
+        if (keyword == null) {
+            addToken(Token.Type.IDENTIFIER, symbols.intern(source, start, pos));
+        } else {
+            addToken(Token.Type.KEYWORD, keyword.ordinal());
+        }
+    }
+
+    /**
+     * Lexes string literal "...", escaped citations are kept as is in the literal.
+     */
+    private void lexString() throws CompilerException {
+        start = ++pos;
+        char c;
+        do {
+            if (bulkScanning) {
+                pos = source.find(pos, '\\', '"', '\n');
+                c = source.charAt(pos);
+            } else {
+                while ((c = source.charAt(pos)) != '\\' && c != '"' && c != '\n' && c != Source.EOF) {
+                    ++pos;
+                }
+            }
+            if (c == '\n' || c == Source.EOF) {
+                error("illegal line end in string literal");
+                return;
+            }
+            if (c == '\\') {
+                if (source.charAt(++pos) == '"') {
+                    ++pos;
+                }
+            }
+        } while ((c = source.charAt(pos)) != '"' && c != Source.EOF && ++pos > 0);
+        addLiteral(DataType.STRING);
+        if (recovering) {
+            return;
+        }
+        start = ++pos;
+    }
+
+    /**
+     * Lexes char literal ' ' but does not verify that it only contains one character.
+     */
+    private void lexChar() throws CompilerException {
+        int size = 0;
+        start = ++pos;
+        char c;
+        do {
+            while ((c = source.charAt(pos)) != '\\' && c != '\'' && c != '\n' && c != Source.EOF) {
+                if (!source.continuesCharacter(pos)) {
+                    ++size;
+                }
+                ++pos;
+            }
+            if (c == '\\') {
+                c = source.charAt(++pos);
+                if (c == 't' || c == 'r' || c == 'n' || c == 'b' || c == 'f') {
+                    ++pos;
+                    ++size;
+                } else if (classOf(c) == DIGIT) {
+                    ++pos;
+                    if (classOf(source.charAt(pos)) == DIGIT) {
+                        ++pos;
+                    }
+                    if (classOf(source.charAt(pos)) == DIGIT) {
+                        ++pos;
+                    }
+                    ++size;
+                } else {
+                    error("illegal escape code");
+                    return;
+                }
+            }
+            c = source.charAt(pos);
+            if (c == '\n' || c == Source.EOF) {
+                error("illegal line end in char literal");
+                return;
+            }
+        } while (source.charAt(pos) != '\'');
+
+        if (size != 1) {
+            error("illegal literal character length");
+            return;
+        }
+        addLiteral(DataType.CHAR);
+        start = ++pos;
+    }
+
+    private void addToken(Token.Type type, int code) {
+        tokens.add(type, start, pos, scopeLevel, code);
+        start = pos;
+        writtenToken = true;
+    }
+
+    /**
+     * With diagnostics the error is reported and step skips the rest of the line, so the caller returns right after.
+     */
+    private void error(String error) throws CompilerException {
+        error(error, new Location(lineTable, tokenStart));
+        recovering = true;
+    }
+}
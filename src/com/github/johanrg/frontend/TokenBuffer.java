@@ -0,0 +1,338 @@
+package com.github.johanrg.frontend;
+
+import com.github.johanrg.ast.ASTOperator;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Random access token storage kept as parallel int arrays instead of a list of Token objects. Token objects are only
+ * created on demand, typically for diagnostics.
+ * <p>
+ * Tokens are addressed by their absolute index. When the buffer is used as a sliding window, released tokens are
+ * dropped from the front of the arrays the next time the buffer runs out of room.
+ *
+ * @author johan
+ * @since 2016-07-15.
+ */
+public class TokenBuffer implements TokenStream, Iterable<Token> {
+    private static final int INITIAL_CAPACITY = 256;
+    private static final Token.Type[] TYPES = Token.Type.values();
+    private static final Symbols.Keyword[] KEYWORDS = Symbols.Keyword.values();
+    private static final ASTOperator.Type[] OPERATORS = ASTOperator.Type.values();
+    private static final Symbols.Delimiter[] DELIMITERS = Symbols.Delimiter.values();
+
+    private final LineTable lineTable;
+    private Source source;
+    private final SymbolTable symbols;
+    private final ConstantPool constants;
+    private int base = 0;
+    private int size = 0;
+    private int released = 0;
+    private int[] types = new int[INITIAL_CAPACITY];
+    private int[] starts = new int[INITIAL_CAPACITY];
+    private int[] lengths = new int[INITIAL_CAPACITY];
+    private int[] scopeLevels = new int[INITIAL_CAPACITY];
+    private int[] codes = new int[INITIAL_CAPACITY];
+
+    TokenBuffer(LineTable lineTable, Source source, SymbolTable symbols, ConstantPool constants) {
+        this.lineTable = lineTable;
+        this.source = source;
+        this.symbols = symbols;
+        this.constants = constants;
+    }
+
+    /**
+     * Adds a token to the end of the buffer.
+     *
+     * @param type       The token type.
+     * @param start      Start offset in the source.
+     * @param end        End offset (exclusive) in the source.
+     * @param scopeLevel The indentation scope level of the line.
+     * @param code       Keyword ordinal for keywords, constant pool index for literals, symbol id for identifiers,
+     *                   operator type or delimiter ordinal for operators and delimiters, -1 otherwise.
+     */
+    void add(Token.Type type, int start, int end, int scopeLevel, int code) {
+        if (size == types.length) {
+            compact();
+            if (size > types.length / 2) {
+                grow();
+            }
+        }
+        types[size] = type.ordinal();
+        starts[size] = start;
+        lengths[size] = end - start;
+        scopeLevels[size] = scopeLevel;
+        codes[size] = code;
+        ++size;
+    }
+
+    /**
+     * Appends the tokens of a buffer that was lexed separately for a later part of the same source. Identifiers and
+     * literals are moved over to the symbol table and constant pool of this buffer, in token order so that they get
+     * the same ids as if the tokens had been lexed straight into this buffer.
+     *
+     * @param chunk The tokens of the later part.
+     */
+    void append(TokenBuffer chunk) {
+        int[] symbolMap = new int[chunk.symbols.size()];
+        Arrays.fill(symbolMap, -1);
+        for (int i = 0; i < chunk.size; ++i) {
+            int code = chunk.codes[i];
+            if (chunk.types[i] == Token.Type.IDENTIFIER.ordinal()) {
+                if (symbolMap[code] < 0) {
+                    symbolMap[code] = symbols.intern(chunk.symbols.getName(code));
+                }
+                code = symbolMap[code];
+            } else if (chunk.types[i] == Token.Type.LITERAL.ordinal() && code >= 0) {
+                code = constants.add(chunk.constants, code);
+            }
+            int start = chunk.starts[i];
+            add(TYPES[chunk.types[i]], start, start + chunk.lengths[i], chunk.scopeLevels[i], code);
+        }
+    }
+
+    /**
+     * Moves the unreleased tokens to the front of the arrays.
+     */
+    private void compact() {
+        int drop = released - base;
+        if (drop <= 0) {
+            return;
+        }
+        size -= drop;
+        System.arraycopy(types, drop, types, 0, size);
+        System.arraycopy(starts, drop, starts, 0, size);
+        System.arraycopy(lengths, drop, lengths, 0, size);
+        System.arraycopy(scopeLevels, drop, scopeLevels, 0, size);
+        System.arraycopy(codes, drop, codes, 0, size);
+        base = released;
+    }
+
+    /**
+     * Replaces the tokens from index from up to to with the tokens of a buffer lexed from the edited source with the
+     * same symbol table and constant pool. The tokens after to are moved in after the new ones and their offsets are
+     * moved with the text. Only for buffers that hold the whole file.
+     *
+     * @param from        Index of the first token to replace.
+     * @param to          Index after the last token to replace.
+     * @param replacement The new tokens.
+     * @param delta       How much the text after the replaced tokens moved.
+     * @param source      The edited source.
+     */
+    void replace(int from, int to, TokenBuffer replacement, int delta, Source source) {
+        assert base == 0 : "only a buffer with all the tokens can be edited";
+        int added = replacement.size;
+        int newSize = size - (to - from) + added;
+        while (newSize > types.length) {
+            grow();
+        }
+        int tail = size - to;
+        System.arraycopy(types, to, types, from + added, tail);
+        System.arraycopy(starts, to, starts, from + added, tail);
+        System.arraycopy(lengths, to, lengths, from + added, tail);
+        System.arraycopy(scopeLevels, to, scopeLevels, from + added, tail);
+        System.arraycopy(codes, to, codes, from + added, tail);
+        System.arraycopy(replacement.types, 0, types, from, added);
+        System.arraycopy(replacement.starts, 0, starts, from, added);
+        System.arraycopy(replacement.lengths, 0, lengths, from, added);
+        System.arraycopy(replacement.scopeLevels, 0, scopeLevels, from, added);
+        System.arraycopy(replacement.codes, 0, codes, from, added);
+        for (int i = from + added; i < newSize; ++i) {
+            starts[i] += delta;
+        }
+        size = newSize;
+        released = Math.min(released, newSize);
+        this.source = source;
+    }
+
+    private void grow() {
+        int capacity = types.length * 2;
+        types = Arrays.copyOf(types, capacity);
+        starts = Arrays.copyOf(starts, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        scopeLevels = Arrays.copyOf(scopeLevels, capacity);
+        codes = Arrays.copyOf(codes, capacity);
+    }
+
+    @Override
+    public TokenBuffer fill(int index) {
+        return this;
+    }
+
+    @Override
+    public void release(int index) {
+        if (index > released) {
+            released = Math.min(index, base + size);
+        }
+    }
+
+    /**
+     * @return The absolute index after the last token in the buffer.
+     */
+    public int size() {
+        return base + size;
+    }
+
+    Token.Type getType(int index) {
+        return TYPES[types[index - base]];
+    }
+
+    int getScopeLevel(int index) {
+        return scopeLevels[index - base];
+    }
+
+    Symbols.Keyword getKeyword(int index) {
+        return types[index - base] == Token.Type.KEYWORD.ordinal() ? KEYWORDS[codes[index - base]] : null;
+    }
+
+    DataType getDataType(int index) {
+        return types[index - base] == Token.Type.LITERAL.ordinal() ? constants.getDataType(codes[index - base]) : null;
+    }
+
+    /**
+     * @param index Token index.
+     * @return The constant pool index of the value of a literal token, -1 for other tokens.
+     */
+    int getConstant(int index) {
+        return types[index - base] == Token.Type.LITERAL.ordinal() ? codes[index - base] : -1;
+    }
+
+    /**
+     * @param index Token index.
+     * @return The operator type, for operators like ++ that can be either pre or post it's the first in the
+     * ASTOperator.Type table. Null for other tokens and operator characters that aren't operators.
+     */
+    ASTOperator.Type getOperator(int index) {
+        int i = index - base;
+        return types[i] == Token.Type.OPERATOR.ordinal() && codes[i] >= 0 ? OPERATORS[codes[i]] : null;
+    }
+
+    Symbols.Delimiter getDelimiter(int index) {
+        return types[index - base] == Token.Type.DELIMITER.ordinal() ? DELIMITERS[codes[index - base]] : null;
+    }
+
+    /**
+     * @param index Token index.
+     * @return The symbol id of an identifier token, -1 for other tokens.
+     */
+    int getSymbol(int index) {
+        return types[index - base] == Token.Type.IDENTIFIER.ordinal() ? codes[index - base] : -1;
+    }
+
+    String getData(int index) {
+        int i = index - base;
+        return source.substring(starts[i], starts[i] + lengths[i]);
+    }
+
+    /**
+     * Compares the token text with a string without creating a substring.
+     *
+     * @param index Token index.
+     * @param data  The string to compare with.
+     * @return boolean true if the token text is equal to data.
+     */
+    boolean dataEquals(int index, String data) {
+        int i = index - base;
+        return lengths[i] == data.length() && source.startsWith(data, starts[i]);
+    }
+
+    /**
+     * The source offset of the token. String and char literals start at the opening quote, which is not part of the
+     * token text.
+     *
+     * @param index Token index.
+     * @return The source offset.
+     */
+    int getOffset(int index) {
+        int i = index - base;
+        if (types[i] == Token.Type.LITERAL.ordinal()) {
+            DataType dataType = constants.getDataType(codes[i]);
+            if (dataType == DataType.STRING || dataType == DataType.CHAR) {
+                return starts[i] - 1;
+            }
+        }
+        return starts[i];
+    }
+
+    /**
+     * @param offset Source offset.
+     * @return The index of the first token at or after the offset.
+     */
+    int indexOf(int offset) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (starts[middle] < offset) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return base + low;
+    }
+
+    Location getLocation(int index) {
+        return new Location(lineTable, getOffset(index));
+    }
+
+    Source getSource() {
+        return source;
+    }
+
+    public ConstantPool getConstants() {
+        return constants;
+    }
+
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    public LineTable getLineTable() {
+        return lineTable;
+    }
+
+    /**
+     * Creates a Token object for the token at index, mostly intended for diagnostics.
+     *
+     * @param index Token index.
+     * @return A new Token.
+     */
+    public Token get(int index) {
+        if (index < base || index >= base + size) {
+            throw new IndexOutOfBoundsException(String.format("index %d, window %d-%d", index, base, base + size));
+        }
+        Token.Type type = getType(index);
+        int scopeLevel = getScopeLevel(index);
+        switch (type) {
+            case KEYWORD:
+                return new Token(type, getKeyword(index), getData(index), scopeLevel, getLocation(index));
+            case LITERAL:
+                return new Token(type, getDataType(index), getData(index), scopeLevel, getLocation(index));
+            default:
+                return new Token(type, getData(index), scopeLevel, getLocation(index));
+        }
+    }
+
+    @Override
+    public Iterator<Token> iterator() {
+        return new Iterator<Token>() {
+            private int index = base;
+
+            @Override
+            public boolean hasNext() {
+                return index < base + size;
+            }
+
+            @Override
+            public Token next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return get(index++);
+            }
+        };
+    }
+}
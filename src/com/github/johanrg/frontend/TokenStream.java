@@ -0,0 +1,25 @@
+package com.github.johanrg.frontend;
+
+/**
+ * A source of tokens for the parser. Tokens are addressed by their absolute index in the file, but a stream only has
+ * to keep a window of them around: everything from the oldest unreleased token up to the furthest token filled.
+ *
+ * @author johan
+ * @since 2016-07-16.
+ */
+public interface TokenStream {
+    /**
+     * Makes sure the token at index is available, producing more tokens if needed.
+     *
+     * @param index Absolute token index.
+     * @return The buffer currently holding the token.
+     */
+    TokenBuffer fill(int index) throws CompilerException;
+
+    /**
+     * Tells the stream that tokens before index will not be accessed again.
+     *
+     * @param index Absolute token index.
+     */
+    void release(int index);
+}
@@ -0,0 +1,167 @@
+package com.github.johanrg.ir;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * The dominator tree of a function. A block dominates another when every path from the entry to the other block goes
+ * through it. The immediate dominators are found by iterating over the blocks in reverse postorder until nothing
+ * changes, which takes a couple of rounds for the graphs lowered from the tree.
+ * <p>
+ * The tree is worked out once, it isn't kept up to date when the blocks change.
+ *
+ * @author johan
+ * @since 2016-08-03.
+ */
+public class DominatorTree {
+    private final List<IRBlock> reversePostorder = new ArrayList<>();
+    // NOTE(Johan): indexed by the index of the block, -1 for blocks that can't be reached.
+    private final int[] order;
+    private final IRBlock[] immediateDominators;
+    private final List<List<IRBlock>> children;
+    private final int[] enter;
+    private final int[] exit;
+
+    public DominatorTree(IRFunction function) {
+        int size = function.getBlocks().size();
+        order = new int[size];
+        Arrays.fill(order, -1);
+        immediateDominators = new IRBlock[size];
+        children = new ArrayList<>(size);
+        for (int i = 0; i < size; ++i) {
+            children.add(new ArrayList<>(2));
+        }
+        enter = new int[size];
+        exit = new int[size];
+        IRBlock entry = function.getEntry();
+        postorder(entry, new boolean[size]);
+        Collections.reverse(reversePostorder);
+        for (int i = 0; i < reversePostorder.size(); ++i) {
+            order[reversePostorder.get(i).getIndex()] = i;
+        }
+        immediateDominators[entry.getIndex()] = entry;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 1; i < reversePostorder.size(); ++i) {
+                IRBlock block = reversePostorder.get(i);
+                IRBlock dominator = null;
+                for (IRBlock predecessor : block.getPredecessors()) {
+                    if (immediateDominators[predecessor.getIndex()] != null) {
+                        dominator = dominator == null ? predecessor : intersect(predecessor, dominator);
+                    }
+                }
+                if (immediateDominators[block.getIndex()] != dominator) {
+                    immediateDominators[block.getIndex()] = dominator;
+                    changed = true;
+                }
+            }
+        }
+        for (int i = 1; i < reversePostorder.size(); ++i) {
+            IRBlock block = reversePostorder.get(i);
+            children.get(immediateDominators[block.getIndex()].getIndex()).add(block);
+        }
+        number(entry);
+    }
+
+    /**
+     * Adds the blocks reached from the entry in postorder, with an explicit stack since a long function has deep
+     * chains of blocks.
+     */
+    private void postorder(IRBlock entry, boolean[] visited) {
+        Deque<IRBlock> blocks = new ArrayDeque<>();
+        Deque<Integer> next = new ArrayDeque<>();
+        visited[entry.getIndex()] = true;
+        blocks.push(entry);
+        next.push(0);
+        while (!blocks.isEmpty()) {
+            IRBlock block = blocks.peek();
+            int successor = next.pop();
+            if (successor < block.getSuccessors().size()) {
+                next.push(successor + 1);
+                IRBlock target = block.getSuccessors().get(successor);
+                if (!visited[target.getIndex()]) {
+                    visited[target.getIndex()] = true;
+                    blocks.push(target);
+                    next.push(0);
+                }
+            } else {
+                reversePostorder.add(blocks.pop());
+            }
+        }
+    }
+
+    /**
+     * @return The nearest common dominator of two blocks, walking up from the one later in reverse postorder.
+     */
+    private IRBlock intersect(IRBlock a, IRBlock b) {
+        while (a != b) {
+            while (order[a.getIndex()] > order[b.getIndex()]) {
+                a = immediateDominators[a.getIndex()];
+            }
+            while (order[b.getIndex()] > order[a.getIndex()]) {
+                b = immediateDominators[b.getIndex()];
+            }
+        }
+        return a;
+    }
+
+    /**
+     * Numbers the blocks in the order they're entered and left in a walk of the tree, so dominance is a range check.
+     */
+    private void number(IRBlock root) {
+        Deque<IRBlock> blocks = new ArrayDeque<>();
+        Deque<Integer> next = new ArrayDeque<>();
+        int number = 0;
+        enter[root.getIndex()] = number++;
+        blocks.push(root);
+        next.push(0);
+        while (!blocks.isEmpty()) {
+            List<IRBlock> blockChildren = children.get(blocks.peek().getIndex());
+            int child = next.pop();
+            if (child < blockChildren.size()) {
+                next.push(child + 1);
+                enter[blockChildren.get(child).getIndex()] = number++;
+                blocks.push(blockChildren.get(child));
+                next.push(0);
+            } else {
+                exit[blocks.pop().getIndex()] = number++;
+            }
+        }
+    }
+
+    /**
+     * @return The blocks that can be reached from the entry, every block after its dominators.
+     */
+    public List<IRBlock> getReversePostorder() {
+        return reversePostorder;
+    }
+
+    /**
+     * @return The immediate dominator, the entry for the entry itself, null for a block that can't be reached.
+     */
+    public IRBlock getImmediateDominator(IRBlock block) {
+        return immediateDominators[block.getIndex()];
+    }
+
+    /**
+     * @return The blocks the block is the immediate dominator of.
+     */
+    public List<IRBlock> getChildren(IRBlock block) {
+        return children.get(block.getIndex());
+    }
+
+    /**
+     * @return true if a dominates b, a block dominates itself.
+     */
+    public boolean dominates(IRBlock a, IRBlock b) {
+        if (order[a.getIndex()] < 0 || order[b.getIndex()] < 0) {
+            return false;
+        }
+        return enter[a.getIndex()] <= enter[b.getIndex()] && exit[b.getIndex()] <= exit[a.getIndex()];
+    }
+}
@@ -0,0 +1,124 @@
+package com.github.johanrg.ir;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A basic block: phis first, then instructions run in order, ended by a jump, branch or return.
+ *
+ * @author johan
+ * @since 2016-08-03.
+ */
+public class IRBlock {
+    private final IRFunction function;
+    private int index = -1;
+    private final List<IRInstruction> instructions = new ArrayList<>();
+    private final List<IRBlock> predecessors = new ArrayList<>(2);
+    private final List<IRBlock> successors = new ArrayList<>(2);
+
+    IRBlock(IRFunction function) {
+        this.function = function;
+    }
+
+    public IRFunction getFunction() {
+        return function;
+    }
+
+    /**
+     * @return The position of the block in its function, -1 if it hasn't been added to it.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    void setIndex(int index) {
+        this.index = index;
+    }
+
+    public List<IRInstruction> getInstructions() {
+        return instructions;
+    }
+
+    public List<IRBlock> getPredecessors() {
+        return predecessors;
+    }
+
+    /**
+     * @return The blocks the terminator goes to, the true successor first for a branch.
+     */
+    public List<IRBlock> getSuccessors() {
+        return successors;
+    }
+
+    /**
+     * @return The last instruction if it ends the block, null otherwise.
+     */
+    public IRInstruction getTerminator() {
+        if (instructions.isEmpty()) {
+            return null;
+        }
+        IRInstruction last = instructions.get(instructions.size() - 1);
+        return last.getOp().isTerminator() ? last : null;
+    }
+
+    /**
+     * Adds an instruction at the end of the block, or before the terminator if the block has one.
+     *
+     * @return The instruction.
+     */
+    public IRInstruction add(IRInstruction instruction) {
+        int at = getTerminator() == null ? instructions.size() : instructions.size() - 1;
+        instructions.add(at, instruction);
+        instruction.setBlock(this);
+        return instruction;
+    }
+
+    /**
+     * Adds a phi after the other phis of the block.
+     *
+     * @return The phi.
+     */
+    public IRInstruction addPhi(IRInstruction phi) {
+        int at = 0;
+        while (at < instructions.size() && instructions.get(at).getOp() == IRInstruction.Op.PHI) {
+            ++at;
+        }
+        instructions.add(at, phi);
+        phi.setBlock(this);
+        return phi;
+    }
+
+    /**
+     * Adds an instruction right before another one of the block.
+     *
+     * @return The instruction.
+     */
+    public IRInstruction addBefore(IRInstruction instruction, IRInstruction before) {
+        instructions.add(instructions.indexOf(before), instruction);
+        instruction.setBlock(this);
+        return instruction;
+    }
+
+    /**
+     * Adds an edge from this block to another, the terminator decides when it's taken.
+     */
+    public void addSuccessor(IRBlock successor) {
+        successors.add(successor);
+        successor.predecessors.add(this);
+    }
+
+    /**
+     * Removes the edge from this block to another, along with the operands the phis of the other block had for it.
+     */
+    public void removeSuccessor(IRBlock successor) {
+        int at = successor.predecessors.indexOf(this);
+        for (IRInstruction instruction : successor.instructions) {
+            if (instruction.getOp() != IRInstruction.Op.PHI) {
+                break;
+            }
+            instruction.removeOperand(at);
+        }
+        successor.predecessors.remove(at);
+        successors.remove(successor);
+    }
+}
@@ -0,0 +1,599 @@
+package com.github.johanrg.ir;
+
+import com.github.johanrg.ast.*;
+import com.github.johanrg.frontend.CompilerErrorHandler;
+import com.github.johanrg.frontend.CompilerException;
+import com.github.johanrg.frontend.ConstantPool;
+import com.github.johanrg.frontend.DataType;
+import com.github.johanrg.frontend.FoldingTable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Lowers a parsed tree to SSA form, the root scope and every function reached from it. The SSA form is built in the
+ * same walk: a variable read in a block is looked up in the block, then in its predecessors, with a phi where more
+ * than one predecessor meets. A block is sealed once all its predecessors are known, and a read in a block that isn't
+ * sealed yet, like a loop header, gets a phi that is completed when it is. Phis that turn out to pick the same value
+ * every time are left to copy propagation, like the copies made for assignments.
+ * <p>
+ * A variable that a nested function also uses is kept in memory with loads and stores, since any call can change it.
+ * A range for statement runs its variable from the first value of the range up to and including the last.
+ *
+ * @author johan
+ * @since 2016-08-03.
+ */
+public class IRBuilder {
+    private final IRProgram program;
+    private final ConstantPool constants;
+    private final Set<Identifier> memory = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Map<ASTFunction, IRFunction> functions = new IdentityHashMap<>();
+    private final Deque<ASTFunction> pending = new ArrayDeque<>();
+
+    // NOTE(Johan): the function being lowered, current is null after a return until the end of the scope.
+    private IRFunction function;
+    private IRBlock current;
+    private final Map<IRBlock, Map<Identifier, IRInstruction>> definitions = new IdentityHashMap<>();
+    private final Map<IRBlock, Map<Identifier, IRInstruction>> incompletePhis = new IdentityHashMap<>();
+    private final Set<IRBlock> sealed = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private IRBuilder(ConstantPool constants) {
+        this.constants = constants;
+        program = new IRProgram(constants);
+    }
+
+    /**
+     * @param root      The root scope, after the tree passes if they're run.
+     * @param constants The constant pool of the compilation, folded constants are added to it.
+     * @return The program, with the root scope as its main function.
+     */
+    public static IRProgram lower(ASTScope root, ConstantPool constants) throws CompilerException {
+        IRBuilder builder = new IRBuilder(constants);
+        builder.findMemoryVariables(root, -1);
+        IRFunction main = new IRFunction("main", null, DataType.VOID, constants);
+        builder.program.getFunctions().add(main);
+        builder.body(main, root);
+        while (!builder.pending.isEmpty()) {
+            ASTFunction declaration = builder.pending.poll();
+            builder.body(builder.functions.get(declaration), declaration.parseBody());
+        }
+        return builder.program;
+    }
+
+    /**
+     * Finds the variables used by functions declared deeper than them.
+     *
+     * @param depth The depth of the innermost function around the node, anything declared at or above it is outside.
+     */
+    private void findMemoryVariables(ASTNode node, int depth) throws CompilerException {
+        if (node == null) {
+            return;
+        }
+        switch (node.getKind()) {
+            case SCOPE:
+                for (ASTNode statement : ((ASTScope) node).getStatements()) {
+                    if (statement != null && statement.getKind() == ASTNode.Kind.FUNCTION) {
+                        ASTFunction function = (ASTFunction) statement;
+                        findMemoryVariables(function.parseBody(), function.getDepth());
+                    } else {
+                        findMemoryVariables(statement, depth);
+                    }
+                }
+                break;
+            case VARIABLE:
+            case CONSTANT:
+                if (((Identifier) node).getDepth() <= depth) {
+                    memory.add((Identifier) node);
+                }
+                break;
+            case UNARY_OPERATOR:
+                findMemoryVariables(((ASTUnaryOperator) node).getSingleNode(), depth);
+                break;
+            case BINARY_OPERATOR:
+                findMemoryVariables(((ASTBinaryOperator) node).getLeft(), depth);
+                findMemoryVariables(((ASTBinaryOperator) node).getRight(), depth);
+                break;
+            case CALL:
+                for (ASTNode argument : ((ASTCall) node).getArguments()) {
+                    findMemoryVariables(argument, depth);
+                }
+                break;
+            case IF:
+                findMemoryVariables(((ASTIfStatement) node).getExpression(), depth);
+                findMemoryVariables(((ASTIfStatement) node).getIfScope(), depth);
+                findMemoryVariables(((ASTIfStatement) node).getElseScope(), depth);
+                break;
+            case WHILE:
+                findMemoryVariables(((ASTWhileStatement) node).getExpression(), depth);
+                findMemoryVariables(((ASTWhileStatement) node).getWhileScope(), depth);
+                break;
+            case FOR: {
+                ASTForStatement statement = (ASTForStatement) node;
+                findMemoryVariables(statement.getInit(), depth);
+                findMemoryVariables(statement.getCondition(), depth);
+                findMemoryVariables(statement.getIncrement(), depth);
+                findMemoryVariables(statement.getForScope(), depth);
+                break;
+            }
+            case FOR_RANGE:
+                findMemoryVariables(((ASTForRangeStatement) node).getRange(), depth);
+                findMemoryVariables(((ASTForRangeStatement) node).getForScope(), depth);
+                break;
+            case RETURN:
+                findMemoryVariables(((ASTReturnStatement) node).getExpression(), depth);
+                break;
+        }
+    }
+
+    /**
+     * @return The function of a declaration, which is lowered after the function being lowered.
+     */
+    private IRFunction function(ASTFunction declaration) {
+        IRFunction function = functions.get(declaration);
+        if (function == null) {
+            function = new IRFunction(declaration.getIdentifier(), declaration, declaration.getDataType(), constants);
+            functions.put(declaration, function);
+            program.getFunctions().add(function);
+            pending.add(declaration);
+        }
+        return function;
+    }
+
+    private void body(IRFunction function, ASTScope body) throws CompilerException {
+        this.function = function;
+        definitions.clear();
+        incompletePhis.clear();
+        sealed.clear();
+        IRBlock entry = start(function.newBlock());
+        seal(entry);
+        if (function.getDeclaration() != null) {
+            List<ASTNode> parameters = function.getDeclaration().getParameters();
+            for (int i = 0; i < parameters.size(); ++i) {
+                Identifier parameter = (Identifier) parameters.get(i);
+                IRInstruction value = emit(IRInstruction.parameter(dataType(parameter), i, parameter));
+                function.getParameters().add(value);
+                if (memory.contains(parameter)) {
+                    emit(IRInstruction.store(parameter, value));
+                } else {
+                    write(parameter, entry, value);
+                }
+            }
+        }
+        scope(body);
+        if (current != null) {
+            // NOTE(Johan): the parser doesn't check that every path returns, the end of a function returns zero.
+            DataType returnDataType = function.getReturnDataType();
+            IRInstruction value = returnDataType == DataType.VOID ? null : emit(zero(returnDataType));
+            current.add(IRInstruction.ret(value));
+            current = null;
+        }
+    }
+
+    private void scope(ASTScope scope) throws CompilerException {
+        for (ASTNode statement : scope.getStatements()) {
+            // NOTE(Johan): the statements after a return are never run.
+            if (current == null) {
+                return;
+            }
+            if (statement != null) {
+                statement(statement);
+            }
+        }
+    }
+
+    private void statement(ASTNode statement) throws CompilerException {
+        switch (statement.getKind()) {
+            case SCOPE:
+                scope((ASTScope) statement);
+                break;
+            case FUNCTION:
+                function((ASTFunction) statement);
+                break;
+            case IF:
+                ifStatement((ASTIfStatement) statement);
+                break;
+            case WHILE:
+                whileStatement((ASTWhileStatement) statement);
+                break;
+            case FOR:
+                forStatement((ASTForStatement) statement);
+                break;
+            case FOR_RANGE:
+                forRangeStatement((ASTForRangeStatement) statement);
+                break;
+            case RETURN: {
+                ASTNode expression = ((ASTReturnStatement) statement).getExpression();
+                current.add(IRInstruction.ret(expression == null ? null : expression(expression)));
+                current = null;
+                break;
+            }
+            default:
+                expression(statement);
+        }
+    }
+
+    private void ifStatement(ASTIfStatement statement) throws CompilerException {
+        IRInstruction condition = expression(statement.getExpression());
+        IRBlock ifBlock = function.newBlock();
+        IRBlock elseBlock = statement.getElseScope() == null ? null : function.newBlock();
+        IRBlock join = function.newBlock();
+        branch(condition, ifBlock, elseBlock == null ? join : elseBlock);
+        enter(ifBlock);
+        scope((ASTScope) statement.getIfScope());
+        jump(join);
+        if (elseBlock != null) {
+            enter(elseBlock);
+            scope((ASTScope) statement.getElseScope());
+            jump(join);
+        }
+        enter(join);
+    }
+
+    private void whileStatement(ASTWhileStatement statement) throws CompilerException {
+        IRBlock header = function.newBlock();
+        jump(header);
+        start(header);
+        IRInstruction condition = expression(statement.getExpression());
+        IRBlock body = function.newBlock();
+        IRBlock exit = function.newBlock();
+        branch(condition, body, exit);
+        enter(body);
+        scope(statement.getWhileScope());
+        jump(header);
+        seal(header);
+        enter(exit);
+    }
+
+    private void forStatement(ASTForStatement statement) throws CompilerException {
+        if (statement.getInit() != null) {
+            expression(statement.getInit());
+        }
+        IRBlock header = function.newBlock();
+        jump(header);
+        start(header);
+        IRBlock body = function.newBlock();
+        IRBlock exit = null;
+        if (statement.getCondition() != null) {
+            exit = function.newBlock();
+            branch(expression(statement.getCondition()), body, exit);
+        } else {
+            jump(body);
+        }
+        enter(body);
+        scope(statement.getForScope());
+        if (current != null && statement.getIncrement() != null) {
+            expression(statement.getIncrement());
+        }
+        jump(header);
+        seal(header);
+        if (exit != null) {
+            enter(exit);
+        }
+    }
+
+    private void forRangeStatement(ASTForRangeStatement statement) throws CompilerException {
+        ASTBinaryOperator declaration = (ASTBinaryOperator) statement.getRange();
+        Identifier variable = (Identifier) declaration.getLeft();
+        ASTNode range = declaration.getRight();
+        if (!(range instanceof ASTBinaryOperator) ||
+                ((ASTBinaryOperator) range).getType() != ASTOperator.Type.BINARY_RANGE) {
+            throw error("expected a range", range);
+        }
+        DataType dataType = dataType(variable);
+        if (!FoldingTable.canFold(ASTOperator.Type.BINARY_ADD, dataType) ||
+                !FoldingTable.canFold(ASTOperator.Type.RELATIONAL_LTE, dataType)) {
+            throw error(String.format("can not count over a range of %s", dataType.toString().toLowerCase()), range);
+        }
+        assign(variable, expression(((ASTBinaryOperator) range).getLeft()));
+        IRInstruction last = expression(((ASTBinaryOperator) range).getRight());
+        IRBlock header = function.newBlock();
+        jump(header);
+        start(header);
+        IRInstruction condition = emit(IRInstruction.binary(ASTOperator.Type.RELATIONAL_LTE, DataType.BOOLEAN,
+                read(variable), last));
+        IRBlock body = function.newBlock();
+        IRBlock exit = function.newBlock();
+        branch(condition, body, exit);
+        enter(body);
+        scope((ASTScope) statement.getForScope());
+        if (current != null) {
+            assign(variable, emit(IRInstruction.binary(ASTOperator.Type.BINARY_ADD, dataType, read(variable),
+                    one(dataType, statement))));
+        }
+        jump(header);
+        seal(header);
+        enter(exit);
+    }
+
+    /**
+     * @return The value of the expression.
+     */
+    private IRInstruction expression(ASTNode node) throws CompilerException {
+        switch (node.getKind()) {
+            case LITERAL:
+                return literal((ASTLiteral) node);
+            case VARIABLE:
+            case CONSTANT:
+                return read((Identifier) node);
+            case FUNCTION: {
+                // NOTE(Johan): the name of a function on its own calls it.
+                ASTFunction declaration = (ASTFunction) node;
+                if (!declaration.getParameters().isEmpty()) {
+                    throw error(String.format("expected %d arguments", declaration.getParameters().size()), node);
+                }
+                return emit(IRInstruction.call(function(declaration), Collections.emptyList()));
+            }
+            case CALL: {
+                ASTCall call = (ASTCall) node;
+                List<IRInstruction> arguments = new ArrayList<>(call.getArguments().size());
+                for (ASTNode argument : call.getArguments()) {
+                    arguments.add(expression(argument));
+                }
+                return emit(IRInstruction.call(function(call.getFunction()), arguments));
+            }
+            case UNARY_OPERATOR:
+                return unaryOperator((ASTUnaryOperator) node);
+            case BINARY_OPERATOR:
+                return binaryOperator((ASTBinaryOperator) node);
+            default:
+                throw error(String.format("can not lower %s", node.getKind().toString().toLowerCase()), node);
+        }
+    }
+
+    private IRInstruction literal(ASTLiteral literal) {
+        DataType dataType = literal.getDataType();
+        if (literal.getConstants() == constants) {
+            return emit(IRInstruction.constant(dataType, literal.getConstant(), literal.getBits()));
+        }
+        int constant = dataType == DataType.STRING ? constants.addString(literal.getString()) :
+                constants.addBits(dataType, literal.getBits());
+        return emit(IRInstruction.constant(dataType, constant, constants.getBits(constant)));
+    }
+
+    private IRInstruction unaryOperator(ASTUnaryOperator operator) throws CompilerException {
+        ASTNode operand = operator.getSingleNode();
+        switch (operator.getType()) {
+            case UNARY_PLUS:
+                return expression(operand);
+            case UNARY_PRE_INCREMENT:
+            case UNARY_PRE_DECREMENT:
+            case UNARY_POST_INCREMENT:
+            case UNARY_POST_DECREMENT: {
+                ASTOperator.Type type = operator.getType() == ASTOperator.Type.UNARY_PRE_INCREMENT ||
+                        operator.getType() == ASTOperator.Type.UNARY_POST_INCREMENT ?
+                        ASTOperator.Type.BINARY_ADD : ASTOperator.Type.BINARY_SUB;
+                Identifier variable = (Identifier) operand;
+                DataType dataType = dataType(variable);
+                IRInstruction old = read(variable);
+                IRInstruction value = assign(variable, emit(IRInstruction.binary(type, dataType, old,
+                        one(dataType, operator))));
+                return operator.getType() == ASTOperator.Type.UNARY_PRE_INCREMENT ||
+                        operator.getType() == ASTOperator.Type.UNARY_PRE_DECREMENT ? value : old;
+            }
+            default:
+                return emit(IRInstruction.unary(operator.getType(), dataType(operand), expression(operand)));
+        }
+    }
+
+    private IRInstruction binaryOperator(ASTBinaryOperator operator) throws CompilerException {
+        ASTNode left = operator.getLeft();
+        switch (operator.getType()) {
+            case ASSIGNMENT:
+                return assign((Identifier) left, expression(operator.getRight()));
+            case ADD_ASSIGNMENT:
+                return assign((Identifier) left, ASTOperator.Type.BINARY_ADD, operator.getRight());
+            case SUB_ASSIGNMENT:
+                return assign((Identifier) left, ASTOperator.Type.BINARY_SUB, operator.getRight());
+            case MUL_ASSIGNMENT:
+                return assign((Identifier) left, ASTOperator.Type.BINARY_MUL, operator.getRight());
+            case DIV_ASSIGNMENT:
+                return assign((Identifier) left, ASTOperator.Type.BINARY_DIV, operator.getRight());
+            case LOGICAL_AND:
+            case LOGICAL_OR:
+                return logicalOperator(operator);
+            case BINARY_RANGE:
+                throw error("range outside of a for statement", operator);
+            default: {
+                DataType dataType = dataType(left);
+                IRInstruction leftValue = expression(left);
+                IRInstruction rightValue = expression(operator.getRight());
+                return emit(IRInstruction.binary(operator.getType(),
+                        FoldingTable.getResultType(operator.getType(), dataType), leftValue, rightValue));
+            }
+        }
+    }
+
+    /**
+     * The right operand is only evaluated when the left one doesn't decide the result, the results meet in a phi.
+     */
+    private IRInstruction logicalOperator(ASTBinaryOperator operator) throws CompilerException {
+        boolean and = operator.getType() == ASTOperator.Type.LOGICAL_AND;
+        IRInstruction left = expression(operator.getLeft());
+        IRInstruction decided = constant(DataType.BOOLEAN, and ? 0 : 1);
+        IRBlock leftEnd = current;
+        IRBlock right = function.newBlock();
+        IRBlock join = function.newBlock();
+        branch(left, and ? right : join, and ? join : right);
+        enter(right);
+        IRInstruction value = expression(operator.getRight());
+        jump(join);
+        enter(join);
+        IRInstruction phi = join.addPhi(IRInstruction.phi(DataType.BOOLEAN));
+        for (IRBlock predecessor : join.getPredecessors()) {
+            phi.addOperand(predecessor == leftEnd ? decided : value);
+        }
+        return phi;
+    }
+
+    private IRInstruction assign(Identifier variable, ASTOperator.Type type, ASTNode right)
+            throws CompilerException {
+        IRInstruction old = read(variable);
+        IRInstruction value = expression(right);
+        return assign(variable, emit(IRInstruction.binary(type, dataType(variable), old, value)));
+    }
+
+    /**
+     * @return The value of the variable after the assignment.
+     */
+    private IRInstruction assign(Identifier variable, IRInstruction value) {
+        if (memory.contains(variable)) {
+            emit(IRInstruction.store(variable, value));
+            return value;
+        }
+        IRInstruction copy = emit(IRInstruction.copy(value));
+        write(variable, current, copy);
+        return copy;
+    }
+
+    private IRInstruction read(Identifier variable) {
+        if (memory.contains(variable)) {
+            return emit(IRInstruction.load(variable, dataType(variable)));
+        }
+        return read(variable, current);
+    }
+
+    private void write(Identifier variable, IRBlock block, IRInstruction value) {
+        definitions.computeIfAbsent(block, b -> new IdentityHashMap<>()).put(variable, value);
+    }
+
+    /**
+     * @return The value of the variable at the end of the block.
+     */
+    private IRInstruction read(Identifier variable, IRBlock block) {
+        Map<Identifier, IRInstruction> values = definitions.get(block);
+        IRInstruction value = values == null ? null : values.get(variable);
+        return value != null ? value : readFromPredecessors(variable, block);
+    }
+
+    private IRInstruction readFromPredecessors(Identifier variable, IRBlock block) {
+        List<IRBlock> predecessors = block.getPredecessors();
+        IRInstruction value;
+        if (!sealed.contains(block)) {
+            value = block.addPhi(IRInstruction.phi(dataType(variable)));
+            incompletePhis.computeIfAbsent(block, b -> new LinkedHashMap<>()).put(variable, value);
+        } else if (predecessors.size() == 1) {
+            value = read(variable, predecessors.get(0));
+        } else if (predecessors.isEmpty()) {
+            // NOTE(Johan): only the entry block has no predecessors, a variable read before it's written is zero.
+            value = block.add(zero(dataType(variable)));
+        } else {
+            value = block.addPhi(IRInstruction.phi(dataType(variable)));
+            // NOTE(Johan): written before the operands are read, so a loop back to the block finds the phi.
+            write(variable, block, value);
+            addPhiOperands(variable, value);
+        }
+        write(variable, block, value);
+        return value;
+    }
+
+    private void addPhiOperands(Identifier variable, IRInstruction phi) {
+        for (IRBlock predecessor : phi.getBlock().getPredecessors()) {
+            phi.addOperand(read(variable, predecessor));
+        }
+    }
+
+    /**
+     * Marks a block as having all its predecessors, and completes the phis made in it before.
+     */
+    private void seal(IRBlock block) {
+        Map<Identifier, IRInstruction> phis = incompletePhis.remove(block);
+        if (phis != null) {
+            for (Map.Entry<Identifier, IRInstruction> phi : phis.entrySet()) {
+                addPhiOperands(phi.getKey(), phi.getValue());
+            }
+        }
+        sealed.add(block);
+    }
+
+    /**
+     * Adds a block to the function and continues in it.
+     */
+    private IRBlock start(IRBlock block) {
+        current = function.addBlock(block);
+        return block;
+    }
+
+    /**
+     * Seals a block all edges to which are known and continues in it, or nowhere if it can't be reached.
+     */
+    private void enter(IRBlock block) {
+        seal(block);
+        if (block.getPredecessors().isEmpty()) {
+            current = null;
+        } else {
+            start(block);
+        }
+    }
+
+    private void jump(IRBlock target) {
+        if (current != null) {
+            current.add(IRInstruction.jump());
+            current.addSuccessor(target);
+            current = null;
+        }
+    }
+
+    private void branch(IRInstruction condition, IRBlock ifTrue, IRBlock ifFalse) {
+        current.add(IRInstruction.branch(condition));
+        current.addSuccessor(ifTrue);
+        current.addSuccessor(ifFalse);
+        current = null;
+    }
+
+    private IRInstruction emit(IRInstruction instruction) {
+        return current.add(instruction);
+    }
+
+    private IRInstruction constant(DataType dataType, long bits) {
+        int constant = constants.addBits(dataType, bits);
+        return emit(IRInstruction.constant(dataType, constant, bits));
+    }
+
+    /**
+     * @return A constant of the value a variable has before it's written, not added to a block.
+     */
+    private IRInstruction zero(DataType dataType) {
+        int constant = dataType == DataType.STRING ? constants.addString("") : constants.addBits(dataType, 0);
+        return IRInstruction.constant(dataType, constant, constants.getBits(constant));
+    }
+
+    private IRInstruction one(DataType dataType, ASTNode node) throws CompilerException {
+        switch (dataType) {
+            case INT:
+                return constant(dataType, 1);
+            case FLOAT:
+                return constant(dataType, Float.floatToRawIntBits(1.0f));
+            case DOUBLE:
+                return constant(dataType, Double.doubleToRawLongBits(1.0));
+            default:
+                throw error(String.format("can not count with %s", dataType.toString().toLowerCase()), node);
+        }
+    }
+
+    /**
+     * @return The data type of the value of an expression.
+     */
+    private static DataType dataType(ASTNode node) {
+        DataType dataType = node.getAnnotatedDataType();
+        if (dataType == null && node instanceof Type) {
+            dataType = ((Type) node).getDataType();
+        }
+        return dataType;
+    }
+
+    private static DataType dataType(Identifier variable) {
+        return ((Type) variable).getDataType();
+    }
+
+    private static CompilerException error(String error, ASTNode node) {
+        return new CompilerException(node.getLocation() == null ? error :
+                CompilerErrorHandler.message(error, node.getLocation()));
+    }
+}
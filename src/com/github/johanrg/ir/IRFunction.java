@@ -0,0 +1,243 @@
+package com.github.johanrg.ir;
+
+import com.github.johanrg.ast.ASTFunction;
+import com.github.johanrg.frontend.ConstantPool;
+import com.github.johanrg.frontend.DataType;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A function in SSA form, as a graph of basic blocks starting at the entry block. The statements of the root scope are
+ * a function too, without a declaration.
+ *
+ * @author johan
+ * @since 2016-08-03.
+ */
+public class IRFunction {
+    private final String name;
+    private final ASTFunction declaration;
+    private final DataType returnDataType;
+    private final ConstantPool constants;
+    private final List<IRInstruction> parameters = new ArrayList<>();
+    private final List<IRBlock> blocks = new ArrayList<>();
+
+    /**
+     * @param declaration The function declaration, null for the root scope.
+     * @param constants   The constant pool the constants of the function are in.
+     */
+    public IRFunction(String name, ASTFunction declaration, DataType returnDataType, ConstantPool constants) {
+        this.name = name;
+        this.declaration = declaration;
+        this.returnDataType = returnDataType;
+        this.constants = constants;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public ASTFunction getDeclaration() {
+        return declaration;
+    }
+
+    public DataType getReturnDataType() {
+        return returnDataType;
+    }
+
+    public ConstantPool getConstants() {
+        return constants;
+    }
+
+    /**
+     * @return The parameter instructions, which are in the entry block.
+     */
+    public List<IRInstruction> getParameters() {
+        return parameters;
+    }
+
+    public List<IRBlock> getBlocks() {
+        return blocks;
+    }
+
+    public IRBlock getEntry() {
+        return blocks.get(0);
+    }
+
+    /**
+     * @return A block of the function that isn't in its list yet, so blocks can be listed in the order they're filled.
+     */
+    public IRBlock newBlock() {
+        return new IRBlock(this);
+    }
+
+    public IRBlock addBlock(IRBlock block) {
+        assert block.getFunction() == this && block.getIndex() == -1 : "Block added twice";
+        block.setIndex(blocks.size());
+        blocks.add(block);
+        return block;
+    }
+
+    /**
+     * Adds a block to the list right before another one.
+     */
+    public IRBlock addBlockBefore(IRBlock block, IRBlock before) {
+        assert block.getFunction() == this && block.getIndex() == -1 : "Block added twice";
+        int at = before.getIndex();
+        blocks.add(at, block);
+        for (int i = at; i < blocks.size(); ++i) {
+            blocks.get(i).setIndex(i);
+        }
+        return block;
+    }
+
+    /**
+     * Removes the blocks that can't be reached from the entry, along with the operands the phis of the other blocks
+     * had for them.
+     *
+     * @return boolean true if any block was removed.
+     */
+    public boolean removeUnreachableBlocks() {
+        Set<IRBlock> reached = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<IRBlock> work = new ArrayDeque<>();
+        reached.add(getEntry());
+        work.push(getEntry());
+        while (!work.isEmpty()) {
+            for (IRBlock successor : work.pop().getSuccessors()) {
+                if (reached.add(successor)) {
+                    work.push(successor);
+                }
+            }
+        }
+        if (reached.size() == blocks.size()) {
+            return false;
+        }
+        List<IRBlock> unreached = new ArrayList<>();
+        for (IRBlock block : blocks) {
+            if (!reached.contains(block)) {
+                unreached.add(block);
+            }
+        }
+        // NOTE(Johan): only unreached blocks use the values of unreached blocks, so once all their operands are
+        // dropped nothing uses them.
+        for (IRBlock block : unreached) {
+            for (IRBlock successor : new ArrayList<>(block.getSuccessors())) {
+                block.removeSuccessor(successor);
+            }
+        }
+        for (IRBlock block : unreached) {
+            for (IRInstruction instruction : block.getInstructions()) {
+                while (!instruction.getOperands().isEmpty()) {
+                    instruction.removeOperand(instruction.getOperands().size() - 1);
+                }
+            }
+        }
+        for (IRBlock block : unreached) {
+            for (IRInstruction instruction : new ArrayList<>(block.getInstructions())) {
+                instruction.remove();
+            }
+            block.setIndex(-1);
+        }
+        blocks.removeAll(unreached);
+        for (int i = 0; i < blocks.size(); ++i) {
+            blocks.get(i).setIndex(i);
+        }
+        return true;
+    }
+
+    /**
+     * @return The instructions as text, one per line, with values numbered in the order they're defined.
+     */
+    @Override
+    public String toString() {
+        Map<IRInstruction, Integer> numbers = new IdentityHashMap<>();
+        for (IRBlock block : blocks) {
+            for (IRInstruction instruction : block.getInstructions()) {
+                if (instruction.getDataType() != DataType.VOID) {
+                    numbers.put(instruction, numbers.size());
+                }
+            }
+        }
+        StringBuilder builder = new StringBuilder();
+        builder.append(name).append('(');
+        for (int i = 0; i < parameters.size(); ++i) {
+            builder.append(i == 0 ? "" : ", ").append(parameters.get(i).getVariable().getIdentifier()).append(" : ")
+                    .append(name(parameters.get(i).getDataType()));
+        }
+        builder.append(") -> ").append(name(returnDataType)).append(System.lineSeparator());
+        for (IRBlock block : blocks) {
+            builder.append("  b").append(block.getIndex()).append(':');
+            if (!block.getPredecessors().isEmpty()) {
+                builder.append(" ; from");
+                for (IRBlock predecessor : block.getPredecessors()) {
+                    builder.append(" b").append(predecessor.getIndex());
+                }
+            }
+            builder.append(System.lineSeparator());
+            for (IRInstruction instruction : block.getInstructions()) {
+                builder.append("    ");
+                append(builder, instruction, numbers);
+                builder.append(System.lineSeparator());
+            }
+        }
+        return builder.toString();
+    }
+
+    private void append(StringBuilder builder, IRInstruction instruction, Map<IRInstruction, Integer> numbers) {
+        if (instruction.getDataType() != DataType.VOID) {
+            builder.append('%').append(numbers.get(instruction)).append(" = ");
+        }
+        IRInstruction.Op op = instruction.getOp();
+        switch (op) {
+            case UNARY:
+            case BINARY:
+                builder.append(instruction.getOperator().getSymbol());
+                break;
+            default:
+                builder.append(op.toString().toLowerCase());
+        }
+        if (instruction.getDataType() != DataType.VOID) {
+            builder.append(' ').append(name(instruction.getDataType()));
+        }
+        switch (op) {
+            case CONSTANT:
+                Object value = constants.getValue(instruction.getConstant());
+                builder.append(' ').append(value instanceof String ? '"' + (String) value + '"' : value);
+                return;
+            case PARAMETER:
+            case LOAD:
+            case STORE:
+                builder.append(' ').append(instruction.getVariable().getIdentifier());
+                break;
+            case CALL:
+                builder.append(' ').append(instruction.getCallee().getName());
+                break;
+        }
+        List<IRInstruction> operands = instruction.getOperands();
+        for (int i = 0; i < operands.size(); ++i) {
+            builder.append(i == 0 ? " " : ", ");
+            Integer number = numbers.get(operands.get(i));
+            builder.append(number == null ? "%?" : "%" + number);
+            if (op == IRInstruction.Op.PHI) {
+                builder.append(" b").append(instruction.getBlock().getPredecessors().get(i).getIndex());
+            }
+        }
+        if (op == IRInstruction.Op.JUMP || op == IRInstruction.Op.BRANCH) {
+            boolean first = operands.isEmpty();
+            for (IRBlock successor : instruction.getBlock().getSuccessors()) {
+                builder.append(first ? " b" : ", b").append(successor.getIndex());
+                first = false;
+            }
+        }
+    }
+
+    private static String name(DataType dataType) {
+        return dataType.toString().toLowerCase();
+    }
+}
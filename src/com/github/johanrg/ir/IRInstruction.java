@@ -0,0 +1,304 @@
+package com.github.johanrg.ir;
+
+import com.github.johanrg.ast.ASTOperator;
+import com.github.johanrg.ast.Identifier;
+import com.github.johanrg.frontend.DataType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An instruction of the SSA form, which is also the value it defines. Every value is defined by exactly one
+ * instruction and the operands are the instructions that define them, so the uses of a value are kept on it too.
+ *
+ * @author johan
+ * @since 2016-08-03.
+ */
+public class IRInstruction {
+    public enum Op {
+        /**
+         * A value of the constant pool.
+         */
+        CONSTANT,
+        /**
+         * An argument of the function.
+         */
+        PARAMETER,
+        /**
+         * Picks the operand of the predecessor the block was entered from, operands in the order of the
+         * predecessors.
+         */
+        PHI,
+        /**
+         * The value of its operand, made for assignments and removed by copy propagation.
+         */
+        COPY,
+        UNARY,
+        BINARY,
+        CALL,
+        /**
+         * Reads a variable that is also used by a nested function, and so isn't in SSA form.
+         */
+        LOAD,
+        /**
+         * Writes a variable that is also used by a nested function.
+         */
+        STORE,
+        JUMP,
+        /**
+         * Goes to the first successor of the block if the operand is true, to the second otherwise.
+         */
+        BRANCH,
+        RETURN;
+
+        public boolean isTerminator() {
+            return this == JUMP || this == BRANCH || this == RETURN;
+        }
+    }
+
+    private final Op op;
+    private final DataType dataType;
+    private final ASTOperator.Type operator;
+    private final int constant;
+    private final long bits;
+    private final Identifier variable;
+    private final IRFunction callee;
+    private final List<IRInstruction> operands = new ArrayList<>(2);
+    private final List<IRInstruction> users = new ArrayList<>(2);
+    private IRBlock block;
+
+    private IRInstruction(Op op, DataType dataType, ASTOperator.Type operator, int constant, long bits,
+                          Identifier variable, IRFunction callee) {
+        this.op = op;
+        this.dataType = dataType;
+        this.operator = operator;
+        this.constant = constant;
+        this.bits = bits;
+        this.variable = variable;
+        this.callee = callee;
+    }
+
+    private IRInstruction(Op op, DataType dataType) {
+        this(op, dataType, null, -1, 0, null, null);
+    }
+
+    /**
+     * @param constant Index of the value in the constant pool.
+     * @param bits     The raw bits of the value.
+     */
+    public static IRInstruction constant(DataType dataType, int constant, long bits) {
+        return new IRInstruction(Op.CONSTANT, dataType, null, constant, bits, null, null);
+    }
+
+    /**
+     * @param index    The position of the parameter.
+     * @param variable The parameter declaration.
+     */
+    public static IRInstruction parameter(DataType dataType, int index, Identifier variable) {
+        return new IRInstruction(Op.PARAMETER, dataType, null, index, 0, variable, null);
+    }
+
+    public static IRInstruction phi(DataType dataType) {
+        return new IRInstruction(Op.PHI, dataType);
+    }
+
+    public static IRInstruction copy(IRInstruction value) {
+        return new IRInstruction(Op.COPY, value.dataType).addOperand(value);
+    }
+
+    /**
+     * @param dataType The data type of the result.
+     */
+    public static IRInstruction unary(ASTOperator.Type operator, DataType dataType, IRInstruction operand) {
+        return new IRInstruction(Op.UNARY, dataType, operator, -1, 0, null, null).addOperand(operand);
+    }
+
+    /**
+     * @param dataType The data type of the result, boolean for relational operators.
+     */
+    public static IRInstruction binary(ASTOperator.Type operator, DataType dataType, IRInstruction left,
+                                       IRInstruction right) {
+        return new IRInstruction(Op.BINARY, dataType, operator, -1, 0, null, null).addOperand(left)
+                .addOperand(right);
+    }
+
+    public static IRInstruction call(IRFunction callee, List<IRInstruction> arguments) {
+        IRInstruction call = new IRInstruction(Op.CALL, callee.getReturnDataType(), null, -1, 0, null, callee);
+        for (IRInstruction argument : arguments) {
+            call.addOperand(argument);
+        }
+        return call;
+    }
+
+    public static IRInstruction load(Identifier variable, DataType dataType) {
+        return new IRInstruction(Op.LOAD, dataType, null, -1, 0, variable, null);
+    }
+
+    public static IRInstruction store(Identifier variable, IRInstruction value) {
+        return new IRInstruction(Op.STORE, DataType.VOID, null, -1, 0, variable, null).addOperand(value);
+    }
+
+    public static IRInstruction jump() {
+        return new IRInstruction(Op.JUMP, DataType.VOID);
+    }
+
+    public static IRInstruction branch(IRInstruction condition) {
+        return new IRInstruction(Op.BRANCH, DataType.VOID).addOperand(condition);
+    }
+
+    /**
+     * @param value The value returned, null in a void function.
+     */
+    public static IRInstruction ret(IRInstruction value) {
+        IRInstruction ret = new IRInstruction(Op.RETURN, DataType.VOID);
+        return value == null ? ret : ret.addOperand(value);
+    }
+
+    public Op getOp() {
+        return op;
+    }
+
+    /**
+     * @return The data type of the value, void for instructions without one.
+     */
+    public DataType getDataType() {
+        return dataType;
+    }
+
+    /**
+     * @return The operator of a unary or binary instruction.
+     */
+    public ASTOperator.Type getOperator() {
+        return operator;
+    }
+
+    /**
+     * @return The constant pool index of a constant, or the position of a parameter.
+     */
+    public int getConstant() {
+        return constant;
+    }
+
+    /**
+     * @return The raw bits of a constant, as the constant pool keeps them.
+     */
+    public long getBits() {
+        return bits;
+    }
+
+    /**
+     * @return The variable of a load, store or parameter.
+     */
+    public Identifier getVariable() {
+        return variable;
+    }
+
+    public IRFunction getCallee() {
+        return callee;
+    }
+
+    public List<IRInstruction> getOperands() {
+        return operands;
+    }
+
+    public IRInstruction getOperand(int index) {
+        return operands.get(index);
+    }
+
+    /**
+     * @return The instructions that use the value, once for every operand that is the value.
+     */
+    public List<IRInstruction> getUsers() {
+        return users;
+    }
+
+    /**
+     * @return The block the instruction is in, null if it has been removed.
+     */
+    public IRBlock getBlock() {
+        return block;
+    }
+
+    void setBlock(IRBlock block) {
+        this.block = block;
+    }
+
+    public IRInstruction addOperand(IRInstruction operand) {
+        operands.add(operand);
+        operand.users.add(this);
+        return this;
+    }
+
+    public void removeOperand(int index) {
+        operands.remove(index).users.remove(this);
+    }
+
+    public void setOperand(int index, IRInstruction operand) {
+        operands.get(index).users.remove(this);
+        operands.set(index, operand);
+        operand.users.add(this);
+    }
+
+    /**
+     * Makes every user of this value use another value instead.
+     */
+    public void replaceAllUsesWith(IRInstruction value) {
+        if (value == this) {
+            return;
+        }
+        for (IRInstruction user : users) {
+            List<IRInstruction> userOperands = user.operands;
+            for (int i = 0; i < userOperands.size(); ++i) {
+                if (userOperands.get(i) == this) {
+                    userOperands.set(i, value);
+                }
+            }
+        }
+        // NOTE(Johan): a user is in the list once per operand, so the counts stay right after the move.
+        value.users.addAll(users);
+        users.clear();
+    }
+
+    /**
+     * Takes the instruction out of its block and adds it to the end of another, before the terminator.
+     */
+    public void moveTo(IRBlock target) {
+        block.getInstructions().remove(this);
+        target.add(this);
+    }
+
+    /**
+     * Takes the instruction out of its block and out of the users of its operands. It must not have users itself.
+     */
+    public void remove() {
+        assert users.isEmpty() : "Removed instruction is still used";
+        for (IRInstruction operand : operands) {
+            operand.users.remove(this);
+        }
+        operands.clear();
+        if (block != null) {
+            block.getInstructions().remove(this);
+            block = null;
+        }
+    }
+
+    /**
+     * @return true if the instruction does something besides defining its value, so it's kept even when it's unused.
+     * Integer division, modulus and exponent are kept since they fail on some operands.
+     */
+    public boolean hasSideEffects() {
+        switch (op) {
+            case CONSTANT:
+            case PHI:
+            case COPY:
+            case UNARY:
+            case LOAD:
+                return false;
+            case BINARY:
+                return dataType == DataType.INT && (operator == ASTOperator.Type.BINARY_DIV ||
+                        operator == ASTOperator.Type.BINARY_MOD || operator == ASTOperator.Type.BINARY_POW);
+            default:
+                return true;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.github.johanrg.ir;
+
+import com.github.johanrg.frontend.ConstantPool;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The functions of a compilation in SSA form, the root scope first.
+ *
+ * @author johan
+ * @since 2016-08-03.
+ */
+public class IRProgram {
+    private final ConstantPool constants;
+    private final List<IRFunction> functions = new ArrayList<>();
+
+    public IRProgram(ConstantPool constants) {
+        this.constants = constants;
+    }
+
+    public ConstantPool getConstants() {
+        return constants;
+    }
+
+    public List<IRFunction> getFunctions() {
+        return functions;
+    }
+
+    /**
+     * @return The function of the statements of the root scope.
+     */
+    public IRFunction getMain() {
+        return functions.get(0);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (IRFunction function : functions) {
+            builder.append(function).append(System.lineSeparator());
+        }
+        return builder.toString();
+    }
+}
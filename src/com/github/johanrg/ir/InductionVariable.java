@@ -0,0 +1,99 @@
+package com.github.johanrg.ir;
+
+import com.github.johanrg.ast.ASTOperator;
+import com.github.johanrg.frontend.DataType;
+
+/**
+ * An int phi of a loop header that starts at a value from before the loop and gets the same step added to or
+ * subtracted from it on the way back from the latch, like the counter of a for statement.
+ *
+ * @author johan
+ * @since 2016-08-04.
+ */
+public class InductionVariable {
+    private final IRInstruction phi;
+    private final IRInstruction start;
+    private final IRInstruction step;
+    private final ASTOperator.Type operator;
+
+    private InductionVariable(IRInstruction phi, IRInstruction start, IRInstruction step, ASTOperator.Type operator) {
+        this.phi = phi;
+        this.start = start;
+        this.step = step;
+        this.operator = operator;
+    }
+
+    /**
+     * @return The induction variable the value is the phi of, or null if it isn't one. Only loops with a preheader
+     * and one latch have them.
+     */
+    public static InductionVariable of(IRInstruction value, Loop loop) {
+        IRBlock header = loop.getHeader();
+        IRBlock preheader = loop.getPreheader();
+        if (value.getOp() != IRInstruction.Op.PHI || value.getBlock() != header ||
+                value.getDataType() != DataType.INT || preheader == null || loop.getLatches().size() != 1 ||
+                header.getPredecessors().size() != 2) {
+            return null;
+        }
+        IRInstruction start = value.getOperand(header.getPredecessors().indexOf(preheader));
+        IRInstruction next = value.getOperand(header.getPredecessors().indexOf(loop.getLatches().get(0)));
+        if (next.getOp() != IRInstruction.Op.BINARY || next.getDataType() != DataType.INT) {
+            return null;
+        }
+        IRInstruction step;
+        if (next.getOperator() == ASTOperator.Type.BINARY_ADD && next.getOperand(0) == value) {
+            step = next.getOperand(1);
+        } else if (next.getOperator() == ASTOperator.Type.BINARY_ADD && next.getOperand(1) == value) {
+            step = next.getOperand(0);
+        } else if (next.getOperator() == ASTOperator.Type.BINARY_SUB && next.getOperand(0) == value) {
+            step = next.getOperand(1);
+        } else {
+            return null;
+        }
+        return loop.isInvariant(step) ? new InductionVariable(value, start, step, next.getOperator()) : null;
+    }
+
+    public IRInstruction getPhi() {
+        return phi;
+    }
+
+    /**
+     * @return The value on entry to the loop.
+     */
+    public IRInstruction getStart() {
+        return start;
+    }
+
+    /**
+     * @return The value added or subtracted on every iteration, defined outside the loop.
+     */
+    public IRInstruction getStep() {
+        return step;
+    }
+
+    /**
+     * @return Add or subtract.
+     */
+    public ASTOperator.Type getOperator() {
+        return operator;
+    }
+
+    /**
+     * @return true if both the start and the step are constants.
+     */
+    public boolean isConstant() {
+        return start.getOp() == IRInstruction.Op.CONSTANT && step.getOp() == IRInstruction.Op.CONSTANT;
+    }
+
+    /**
+     * @return The value after a number of iterations, wrapped like int arithmetic. The start and step must be
+     * constants.
+     */
+    public int valueAfter(long iterations) {
+        int delta = (int) step.getBits();
+        if (operator == ASTOperator.Type.BINARY_SUB) {
+            delta = -delta;
+        }
+        return (int) start.getBits() + (int) iterations * delta;
+    }
+}
@@ -0,0 +1,116 @@
+package com.github.johanrg.ir;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A natural loop: a header that dominates every block of the loop, and latches that go back to it. The blocks of the
+ * loop are the ones a latch can be reached from without going through the header.
+ * <p>
+ * Like the dominator tree the loops are found once, they aren't kept up to date when the blocks change.
+ *
+ * @author johan
+ * @since 2016-08-04.
+ */
+public class Loop {
+    private final IRBlock header;
+    private final List<IRBlock> latches = new ArrayList<>(1);
+    private final Set<IRBlock> blocks = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private Loop(IRBlock header) {
+        this.header = header;
+        blocks.add(header);
+    }
+
+    /**
+     * Finds the loops from the edges that go back to a block that dominates where they come from. The latches of one
+     * header make one loop.
+     *
+     * @return The loops of the function, an inner loop before the loops it's in.
+     */
+    public static List<Loop> find(DominatorTree tree) {
+        Map<IRBlock, Loop> headers = new IdentityHashMap<>();
+        List<Loop> loops = new ArrayList<>();
+        for (IRBlock block : tree.getReversePostorder()) {
+            for (IRBlock successor : block.getSuccessors()) {
+                if (tree.dominates(successor, block)) {
+                    Loop loop = headers.get(successor);
+                    if (loop == null) {
+                        loop = new Loop(successor);
+                        headers.put(successor, loop);
+                        loops.add(loop);
+                    }
+                    loop.addLatch(block, tree);
+                }
+            }
+        }
+        // NOTE(Johan): a loop has fewer blocks than the loops it's in.
+        loops.sort(Comparator.comparingInt(loop -> loop.blocks.size()));
+        return loops;
+    }
+
+    private void addLatch(IRBlock latch, DominatorTree tree) {
+        latches.add(latch);
+        Deque<IRBlock> work = new ArrayDeque<>();
+        if (blocks.add(latch)) {
+            work.push(latch);
+        }
+        while (!work.isEmpty()) {
+            for (IRBlock predecessor : work.pop().getPredecessors()) {
+                if (tree.getImmediateDominator(predecessor) != null && blocks.add(predecessor)) {
+                    work.push(predecessor);
+                }
+            }
+        }
+    }
+
+    public IRBlock getHeader() {
+        return header;
+    }
+
+    /**
+     * @return The blocks of the loop that go back to the header.
+     */
+    public List<IRBlock> getLatches() {
+        return latches;
+    }
+
+    public Set<IRBlock> getBlocks() {
+        return blocks;
+    }
+
+    public boolean contains(IRBlock block) {
+        return blocks.contains(block);
+    }
+
+    /**
+     * @return true if the value is defined outside the loop, so it's the same on every iteration.
+     */
+    public boolean isInvariant(IRInstruction value) {
+        return !blocks.contains(value.getBlock());
+    }
+
+    /**
+     * @return The one block outside the loop that goes to the header, if it goes nowhere else, or null. Every loop
+     * lowered from the tree has one.
+     */
+    public IRBlock getPreheader() {
+        IRBlock preheader = null;
+        for (IRBlock predecessor : header.getPredecessors()) {
+            if (!blocks.contains(predecessor)) {
+                if (preheader != null) {
+                    return null;
+                }
+                preheader = predecessor;
+            }
+        }
+        return preheader != null && preheader.getSuccessors().size() == 1 ? preheader : null;
+    }
+}
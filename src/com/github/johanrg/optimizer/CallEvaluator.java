@@ -0,0 +1,503 @@
+package com.github.johanrg.optimizer;
+
+import com.github.johanrg.ast.*;
+import com.github.johanrg.frontend.ConstantPool;
+import com.github.johanrg.frontend.DataType;
+import com.github.johanrg.frontend.FoldingTable;
+import com.github.johanrg.frontend.Location;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs calls of pure functions with literal arguments at compile time. A function is pure when its result only depends
+ * on its arguments: every variable it uses is a parameter or declared in its body, and every function it calls is pure.
+ * The body is interpreted on the raw bits of the values through the folding table, with the frames laid out by the
+ * lexical addresses of the identifiers. A range for statement counts up to and including its last bound, the way the
+ * IR lowers it. It gives up when it runs out of steps, when an operation is undefined like integer division by zero,
+ * or when it reads a constant without a known value, and the call is then left to run time.
+ * <p>
+ * Results are kept per function and arguments for the whole compilation.
+ *
+ * @author johan
+ * @since 2016-08-02.
+ */
+public class CallEvaluator {
+    public static final int DEFAULT_STEP_BUDGET = 100000;
+
+    /**
+     * A function and the bits of its arguments.
+     */
+    private static class Call {
+        private final ASTFunction function;
+        private final long[] arguments;
+
+        private Call(ASTFunction function, long[] arguments) {
+            this.function = function;
+            this.arguments = arguments;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(function) * 31 + Arrays.hashCode(arguments);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Call && ((Call) o).function == function &&
+                    Arrays.equals(((Call) o).arguments, arguments);
+        }
+    }
+
+    /**
+     * Unwinds an evaluation that gave up.
+     */
+    private static class GiveUp extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private GiveUp() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final GiveUp GIVE_UP = new GiveUp();
+
+    private final ASTFactory factory;
+    private final ConstantPool constants;
+    private final Map<ASTConstant, ASTLiteral> values;
+    private final int stepBudget;
+    private final Map<ASTFunction, Boolean> pure = new IdentityHashMap<>();
+    private final Map<Call, Long> results = new HashMap<>();
+    private int steps;
+
+    // NOTE(Johan): the activation being run, a frame per scope depth starting at the parameters.
+    private long[][] frames = new long[0][];
+    private int baseDepth;
+    private boolean returned;
+    private long returnValue;
+
+    /**
+     * @param factory    Creates the literals of the results.
+     * @param constants  The constant pool of the compilation.
+     * @param values     The known values of the constants declared outside of the functions.
+     * @param stepBudget The number of statements and expressions one call may run before it's left to run time.
+     */
+    public CallEvaluator(ASTFactory factory, ConstantPool constants, Map<ASTConstant, ASTLiteral> values,
+                         int stepBudget) {
+        this.factory = factory;
+        this.constants = constants;
+        this.values = values;
+        this.stepBudget = stepBudget;
+    }
+
+    /**
+     * @param function  The function called.
+     * @param arguments The arguments, all literals.
+     * @param location  Location of the call.
+     * @return The result as a literal, or null if the call can't be run at compile time.
+     */
+    public ASTLiteral evaluate(ASTFunction function, List<ASTNode> arguments, Location location) {
+        List<ASTNode> parameters = function.getParameters();
+        if (function.getDataType() == DataType.VOID || arguments.size() != parameters.size() || !isPure(function)) {
+            return null;
+        }
+        long[] bits = new long[arguments.size()];
+        for (int i = 0; i < bits.length; ++i) {
+            ASTLiteral argument = (ASTLiteral) arguments.get(i);
+            if (argument.getConstants() != constants ||
+                    argument.getDataType() != ((Type) parameters.get(i)).getDataType()) {
+                return null;
+            }
+            bits[i] = argument.getBits();
+        }
+        steps = 0;
+        long result;
+        try {
+            result = call(function, bits);
+        } catch (GiveUp e) {
+            return null;
+        }
+        ASTLiteral literal = factory.literal(constants, constants.addBits(function.getDataType(), result), location);
+        literal.setAnnotatedDataType(literal.getDataType());
+        return literal;
+    }
+
+    /**
+     * @return true if the result of the function only depends on its arguments.
+     */
+    public boolean isPure(ASTFunction function) {
+        Boolean known = pure.get(function);
+        if (known == null) {
+            ASTNode body = function.getFunctionStatement();
+            known = body != null && isPure(body, function.getDepth());
+            pure.put(function, known);
+        }
+        return known;
+    }
+
+    /**
+     * @param depth The depth of the scope the function is declared in, anything declared deeper is its own.
+     */
+    private boolean isPure(ASTNode node, int depth) {
+        if (node == null) {
+            return true;
+        }
+        switch (node.getKind()) {
+            case SCOPE:
+                for (ASTNode statement : ((ASTScope) node).getStatements()) {
+                    // NOTE(Johan): a nested function does nothing until it's called.
+                    if (statement != null && statement.getKind() != ASTNode.Kind.FUNCTION &&
+                            !isPure(statement, depth)) {
+                        return false;
+                    }
+                }
+                return true;
+            case LITERAL:
+                return true;
+            case VARIABLE:
+                return ((Identifier) node).getDepth() > depth;
+            case CONSTANT:
+                // NOTE(Johan): constants never change, one declared outside needs a known value when it's run.
+                return true;
+            case FUNCTION:
+                // NOTE(Johan): the name of a function on its own has no value to run.
+                return false;
+            case CALL:
+                for (ASTNode argument : ((ASTCall) node).getArguments()) {
+                    if (!isPure(argument, depth)) {
+                        return false;
+                    }
+                }
+                return isPure(((ASTCall) node).getFunction());
+            case UNARY_OPERATOR:
+                return isPure(((ASTUnaryOperator) node).getSingleNode(), depth);
+            case BINARY_OPERATOR:
+                return isPure(((ASTBinaryOperator) node).getLeft(), depth) &&
+                        isPure(((ASTBinaryOperator) node).getRight(), depth);
+            case IF:
+                return isPure(((ASTIfStatement) node).getExpression(), depth) &&
+                        isPure(((ASTIfStatement) node).getIfScope(), depth) &&
+                        isPure(((ASTIfStatement) node).getElseScope(), depth);
+            case WHILE:
+                return isPure(((ASTWhileStatement) node).getExpression(), depth) &&
+                        isPure(((ASTWhileStatement) node).getWhileScope(), depth);
+            case FOR:
+                ASTForStatement forStatement = (ASTForStatement) node;
+                return isPure(forStatement.getInit(), depth) && isPure(forStatement.getCondition(), depth) &&
+                        isPure(forStatement.getIncrement(), depth) && isPure(forStatement.getForScope(), depth);
+            case FOR_RANGE:
+                // NOTE(Johan): the range is the declaration of the variable, assigned the range of the bounds.
+                return isPure(((ASTForRangeStatement) node).getRange(), depth) &&
+                        isPure(((ASTForRangeStatement) node).getForScope(), depth);
+            case RETURN:
+                return isPure(((ASTReturnStatement) node).getExpression(), depth);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Runs a call in a new activation.
+     *
+     * @return The bits of the result.
+     */
+    private long call(ASTFunction function, long[] arguments) {
+        Call call = new Call(function, arguments);
+        Long known = results.get(call);
+        if (known != null) {
+            return known;
+        }
+        long[][] outerFrames = frames;
+        int outerBaseDepth = baseDepth;
+        frames = new long[4][];
+        baseDepth = function.getDepth() + 1;
+        frames[0] = arguments.clone();
+        returned = false;
+        try {
+            scope((ASTScope) function.getFunctionStatement(), baseDepth + 1);
+            if (!returned) {
+                throw GIVE_UP;
+            }
+        } finally {
+            frames = outerFrames;
+            baseDepth = outerBaseDepth;
+        }
+        returned = false;
+        results.put(call, returnValue);
+        return returnValue;
+    }
+
+    private void step() {
+        if (++steps > stepBudget) {
+            throw GIVE_UP;
+        }
+    }
+
+    /**
+     * Makes room for the identifiers of a scope at the depth.
+     */
+    private void frame(int depth, int size) {
+        int index = depth - baseDepth;
+        if (index >= frames.length) {
+            frames = Arrays.copyOf(frames, Math.max(index + 1, frames.length * 2));
+        }
+        if (frames[index] == null || frames[index].length < size) {
+            frames[index] = new long[size];
+        }
+    }
+
+    private void scope(ASTScope scope, int depth) {
+        frame(depth, scope.getFrameSize());
+        for (ASTNode statement : scope.getStatements()) {
+            if (statement == null) {
+                continue;
+            }
+            statement(statement, depth);
+            if (returned) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @param depth The depth of the scope the statement is in.
+     */
+    private void statement(ASTNode statement, int depth) {
+        step();
+        switch (statement.getKind()) {
+            case SCOPE:
+                scope((ASTScope) statement, depth + 1);
+                return;
+            case FUNCTION:
+                return;
+            case IF: {
+                ASTIfStatement ifStatement = (ASTIfStatement) statement;
+                if (evaluate(ifStatement.getExpression()) != 0) {
+                    scope((ASTScope) ifStatement.getIfScope(), depth + 1);
+                } else if (ifStatement.getElseScope() != null) {
+                    scope((ASTScope) ifStatement.getElseScope(), depth + 1);
+                }
+                return;
+            }
+            case WHILE: {
+                ASTWhileStatement whileStatement = (ASTWhileStatement) statement;
+                while (!returned && evaluate(whileStatement.getExpression()) != 0) {
+                    step();
+                    scope(whileStatement.getWhileScope(), depth + 1);
+                }
+                return;
+            }
+            case FOR: {
+                ASTForStatement forStatement = (ASTForStatement) statement;
+                // NOTE(Johan): the variable of a for statement is declared in the frame of its scope.
+                frame(depth + 1, forStatement.getForScope().getFrameSize());
+                if (forStatement.getInit() != null) {
+                    evaluate(forStatement.getInit());
+                }
+                while (forStatement.getCondition() == null || evaluate(forStatement.getCondition()) != 0) {
+                    step();
+                    scope(forStatement.getForScope(), depth + 1);
+                    if (returned) {
+                        return;
+                    }
+                    if (forStatement.getIncrement() != null) {
+                        evaluate(forStatement.getIncrement());
+                    }
+                }
+                return;
+            }
+            case FOR_RANGE:
+                forRangeStatement((ASTForRangeStatement) statement, depth);
+                return;
+            case RETURN: {
+                ASTNode expression = ((ASTReturnStatement) statement).getExpression();
+                returnValue = expression == null ? 0 : evaluate(expression);
+                returned = true;
+                return;
+            }
+            default:
+                evaluate(statement);
+        }
+    }
+
+    /**
+     * Counts the variable from the first bound up to and including the last, the way the IR lowers it. The last bound
+     * is evaluated once before the loop.
+     */
+    private void forRangeStatement(ASTForRangeStatement statement, int depth) {
+        ASTBinaryOperator declaration = (ASTBinaryOperator) statement.getRange();
+        Identifier variable = (Identifier) declaration.getLeft();
+        if (!(declaration.getRight() instanceof ASTBinaryOperator) ||
+                ((ASTBinaryOperator) declaration.getRight()).getType() != ASTOperator.Type.BINARY_RANGE) {
+            throw GIVE_UP;
+        }
+        ASTBinaryOperator range = (ASTBinaryOperator) declaration.getRight();
+        DataType dataType = ((Type) variable).getDataType();
+        ASTScope forScope = (ASTScope) statement.getForScope();
+        frame(depth + 1, forScope.getFrameSize());
+        store(variable, evaluate(range.getLeft()));
+        long last = evaluate(range.getRight());
+        while (apply(ASTOperator.Type.RELATIONAL_LTE, dataType, load(variable), last) != 0) {
+            step();
+            scope(forScope, depth + 1);
+            if (returned) {
+                return;
+            }
+            store(variable, apply(ASTOperator.Type.BINARY_ADD, dataType, load(variable), one(dataType)));
+        }
+    }
+
+    /**
+     * @return The bits of the value of the expression.
+     */
+    private long evaluate(ASTNode node) {
+        step();
+        switch (node.getKind()) {
+            case LITERAL:
+                if (((ASTLiteral) node).getConstants() != constants) {
+                    throw GIVE_UP;
+                }
+                return ((ASTLiteral) node).getBits();
+            case VARIABLE:
+                return load((Identifier) node);
+            case CONSTANT: {
+                Identifier constant = (Identifier) node;
+                if (constant.getDepth() >= baseDepth) {
+                    return load(constant);
+                }
+                ASTLiteral value = values.get(node);
+                if (value == null || value.getConstants() != constants) {
+                    throw GIVE_UP;
+                }
+                return value.getBits();
+            }
+            case CALL: {
+                ASTCall call = (ASTCall) node;
+                List<ASTNode> arguments = call.getArguments();
+                long[] bits = new long[arguments.size()];
+                for (int i = 0; i < bits.length; ++i) {
+                    bits[i] = evaluate(arguments.get(i));
+                }
+                return call(call.getFunction(), bits);
+            }
+            case UNARY_OPERATOR:
+                return unaryOperator((ASTUnaryOperator) node);
+            case BINARY_OPERATOR:
+                return binaryOperator((ASTBinaryOperator) node);
+            default:
+                throw GIVE_UP;
+        }
+    }
+
+    private long unaryOperator(ASTUnaryOperator operator) {
+        ASTNode operand = operator.getSingleNode();
+        DataType dataType = dataType(operand);
+        switch (operator.getType()) {
+            case UNARY_PLUS:
+                return evaluate(operand);
+            case UNARY_PRE_INCREMENT:
+            case UNARY_PRE_DECREMENT:
+            case UNARY_POST_INCREMENT:
+            case UNARY_POST_DECREMENT: {
+                ASTOperator.Type type = operator.getType() == ASTOperator.Type.UNARY_PRE_INCREMENT ||
+                        operator.getType() == ASTOperator.Type.UNARY_POST_INCREMENT ?
+                        ASTOperator.Type.BINARY_ADD : ASTOperator.Type.BINARY_SUB;
+                long old = load((Identifier) operand);
+                long value = apply(type, dataType, old, one(dataType));
+                store((Identifier) operand, value);
+                return operator.getType() == ASTOperator.Type.UNARY_PRE_INCREMENT ||
+                        operator.getType() == ASTOperator.Type.UNARY_PRE_DECREMENT ? value : old;
+            }
+            default:
+                if (!FoldingTable.canFold(operator.getType(), dataType)) {
+                    throw GIVE_UP;
+                }
+                return FoldingTable.apply(operator.getType(), dataType, constants, evaluate(operand));
+        }
+    }
+
+    private long binaryOperator(ASTBinaryOperator operator) {
+        ASTNode left = operator.getLeft();
+        switch (operator.getType()) {
+            case ASSIGNMENT: {
+                long value = evaluate(operator.getRight());
+                store((Identifier) left, value);
+                return value;
+            }
+            case ADD_ASSIGNMENT:
+                return assign((Identifier) left, ASTOperator.Type.BINARY_ADD, operator.getRight());
+            case SUB_ASSIGNMENT:
+                return assign((Identifier) left, ASTOperator.Type.BINARY_SUB, operator.getRight());
+            case MUL_ASSIGNMENT:
+                return assign((Identifier) left, ASTOperator.Type.BINARY_MUL, operator.getRight());
+            case DIV_ASSIGNMENT:
+                return assign((Identifier) left, ASTOperator.Type.BINARY_DIV, operator.getRight());
+            case LOGICAL_AND:
+                return evaluate(left) != 0 ? evaluate(operator.getRight()) : 0;
+            case LOGICAL_OR:
+                return evaluate(left) != 0 ? 1 : evaluate(operator.getRight());
+            default:
+                return apply(operator.getType(), dataType(left), evaluate(left), evaluate(operator.getRight()));
+        }
+    }
+
+    private long assign(Identifier identifier, ASTOperator.Type type, ASTNode right) {
+        long value = apply(type, ((Type) identifier).getDataType(), load(identifier), evaluate(right));
+        store(identifier, value);
+        return value;
+    }
+
+    private long apply(ASTOperator.Type type, DataType dataType, long a, long b) {
+        if (dataType == null || !FoldingTable.canFold(type, dataType)) {
+            throw GIVE_UP;
+        }
+        try {
+            return FoldingTable.apply(type, dataType, constants, a, b);
+        } catch (ArithmeticException e) {
+            throw GIVE_UP;
+        }
+    }
+
+    private static long one(DataType dataType) {
+        switch (dataType) {
+            case INT:
+                return 1;
+            case FLOAT:
+                return Float.floatToRawIntBits(1.0f);
+            case DOUBLE:
+                return Double.doubleToRawLongBits(1.0);
+            default:
+                throw GIVE_UP;
+        }
+    }
+
+    private long load(Identifier identifier) {
+        int index = identifier.getDepth() - baseDepth;
+        if (index < 0 || index >= frames.length || frames[index] == null) {
+            throw GIVE_UP;
+        }
+        return frames[index][identifier.getSlot()];
+    }
+
+    private void store(Identifier identifier, long value) {
+        int index = identifier.getDepth() - baseDepth;
+        if (index < 0 || index >= frames.length || frames[index] == null) {
+            throw GIVE_UP;
+        }
+        frames[index][identifier.getSlot()] = value;
+    }
+
+    /**
+     * @return The data type of the value of an expression.
+     */
+    private static DataType dataType(ASTNode node) {
+        DataType dataType = node.getAnnotatedDataType();
+        if (dataType == null && node instanceof Type) {
+            dataType = ((Type) node).getDataType();
+        }
+        return dataType;
+    }
+}
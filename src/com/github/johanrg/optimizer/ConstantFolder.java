@@ -0,0 +1,63 @@
+package com.github.johanrg.optimizer;
+
+import com.github.johanrg.ast.ASTFactory;
+import com.github.johanrg.ast.ASTLiteral;
+import com.github.johanrg.ast.ASTOperator;
+import com.github.johanrg.frontend.ConstantPool;
+import com.github.johanrg.frontend.FoldingTable;
+import com.github.johanrg.frontend.Location;
+
+/**
+ * Works out the value of an operator applied to literals, for every group of operators, through the folding table.
+ * Nothing is folded that would behave differently at run time or that the type check lets through by mistake: operands
+ * of different data types, integer division by zero and operators that don't apply to the data type are left alone.
+ *
+ * @author johan
+ * @since 2016-07-31.
+ */
+public class ConstantFolder {
+    private final ASTFactory factory;
+
+    /**
+     * @param factory Creates the folded literals.
+     */
+    public ConstantFolder(ASTFactory factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * @return The value of a unary operator as a literal, or null if it can't be folded.
+     */
+    public ASTLiteral fold(ASTOperator.Type type, ASTLiteral operand, Location location) {
+        if (type == ASTOperator.Type.UNARY_PLUS) {
+            return FoldingTable.canFold(ASTOperator.Type.UNARY_MINUS, operand.getDataType()) ? operand : null;
+        }
+        ConstantPool constants = operand.getConstants();
+        return literal(constants, FoldingTable.fold(type, operand.getDataType(), constants, operand.getBits()),
+                location);
+    }
+
+    /**
+     * @return The value of a binary operator as a literal, or null if it can't be folded.
+     */
+    public ASTLiteral fold(ASTOperator.Type type, ASTLiteral left, ASTLiteral right, Location location) {
+        if (left.getDataType() != right.getDataType()) {
+            return null;
+        }
+        ConstantPool constants = left.getConstants();
+        return literal(constants, FoldingTable.fold(type, left.getDataType(), constants, left.getBits(),
+                right.getBits()), location);
+    }
+
+    /**
+     * @param constant The constant pool index of the value, or -1 if it couldn't be folded.
+     */
+    private ASTLiteral literal(ConstantPool constants, int constant, Location location) {
+        if (constant < 0) {
+            return null;
+        }
+        ASTLiteral literal = factory.literal(constants, constant, location);
+        literal.setAnnotatedDataType(literal.getDataType());
+        return literal;
+    }
+}
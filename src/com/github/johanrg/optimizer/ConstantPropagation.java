@@ -0,0 +1,150 @@
+package com.github.johanrg.optimizer;
+
+import com.github.johanrg.ast.*;
+import com.github.johanrg.frontend.CompilerException;
+import com.github.johanrg.frontend.ConstantPool;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replaces every use of a constant with its value and folds the operators whose operands are then known, in one walk
+ * of the tree. A constant gets a value when its declaration folds to a literal, and it's always declared before it's
+ * used. Logical operators with a known left operand are cut short the way they would be at run time, and calls of pure
+ * functions with literal arguments are run by the call evaluator.
+ * <p>
+ * Results are kept per node, so an expression shared by hash consing is only folded once however many statements it
+ * is in.
+ *
+ * @author johan
+ * @since 2016-07-31.
+ */
+public class ConstantPropagation extends TreePass {
+    private final ASTFactory factory;
+    private final ConstantFolder folder;
+    private final Map<ASTConstant, ASTLiteral> values = new IdentityHashMap<>();
+    private final Map<ASTNode, ASTNode> folded = new IdentityHashMap<>();
+    private final CallEvaluator calls;
+
+    /**
+     * @param factory   The factory the tree was parsed with.
+     * @param constants The constant pool of the compilation, for the results of calls run at compile time.
+     */
+    public ConstantPropagation(ASTFactory factory, ConstantPool constants) {
+        this.factory = factory;
+        folder = new ConstantFolder(factory);
+        calls = new CallEvaluator(factory, constants, values, CallEvaluator.DEFAULT_STEP_BUDGET);
+    }
+
+    @Override
+    public String getName() {
+        return "constant propagation";
+    }
+
+    @Override
+    public boolean run(ASTScope root) throws CompilerException {
+        values.clear();
+        folded.clear();
+        return super.run(root);
+    }
+
+    @Override
+    protected ASTNode statement(ASTNode statement) throws CompilerException {
+        ASTNode result = super.statement(statement);
+        if (result instanceof ASTBinaryOperator) {
+            ASTBinaryOperator assignment = (ASTBinaryOperator) result;
+            if (assignment.getLeft() instanceof ASTConstant && assignment.getRight() instanceof ASTLiteral) {
+                values.put((ASTConstant) assignment.getLeft(), (ASTLiteral) assignment.getRight());
+            }
+        }
+        return result;
+    }
+
+    @Override
+    protected ASTNode expression(ASTNode node) {
+        ASTNode result = folded.get(node);
+        if (result == null) {
+            result = fold(node);
+            folded.put(node, result);
+        }
+        return result;
+    }
+
+    private ASTNode fold(ASTNode node) {
+        switch (node.getKind()) {
+            case CONSTANT: {
+                ASTLiteral value = values.get(node);
+                return value == null ? node : value;
+            }
+            case UNARY_OPERATOR: {
+                ASTUnaryOperator operator = (ASTUnaryOperator) node;
+                // NOTE(Johan): increments and decrements have a variable as operand, which is never replaced.
+                ASTNode operand = expression(operator.getSingleNode());
+                if (operand instanceof ASTLiteral) {
+                    ASTLiteral literal = folder.fold(operator.getType(), (ASTLiteral) operand, node.getLocation());
+                    if (literal != null) {
+                        return literal;
+                    }
+                }
+                return operand == operator.getSingleNode() ? node :
+                        annotated(factory.unaryOperator(operator.getType(), operand, node.getLocation()), node);
+            }
+            case BINARY_OPERATOR: {
+                ASTBinaryOperator operator = (ASTBinaryOperator) node;
+                ASTOperator.Type type = operator.getType();
+                // NOTE(Johan): the left side of an assignment is what's assigned to, not a value.
+                ASTNode left = type.getGroup() == ASTOperator.Group.ASSIGNMENT ? operator.getLeft() :
+                        expression(operator.getLeft());
+                if ((type == ASTOperator.Type.LOGICAL_AND || type == ASTOperator.Type.LOGICAL_OR) &&
+                        left instanceof ASTLiteral) {
+                    // NOTE(Johan): true && b is b and false && b is false, b is never evaluated in the second case.
+                    boolean value = ((ASTLiteral) left).getBoolean();
+                    return value == (type == ASTOperator.Type.LOGICAL_AND) ? expression(operator.getRight()) : left;
+                }
+                ASTNode right = expression(operator.getRight());
+                if (left instanceof ASTLiteral && right instanceof ASTLiteral) {
+                    ASTLiteral literal = folder.fold(type, (ASTLiteral) left, (ASTLiteral) right,
+                            node.getLocation());
+                    if (literal != null) {
+                        return literal;
+                    }
+                }
+                return left == operator.getLeft() && right == operator.getRight() ? node :
+                        annotated(factory.binaryOperator(type, left, right, node.getLocation()), node);
+            }
+            case CALL: {
+                ASTCall call = (ASTCall) node;
+                List<ASTNode> arguments = new ArrayList<>(call.getArguments().size());
+                boolean same = true;
+                boolean literals = true;
+                for (ASTNode argument : call.getArguments()) {
+                    ASTNode result = expression(argument);
+                    arguments.add(result);
+                    same &= result == argument;
+                    literals &= result instanceof ASTLiteral;
+                }
+                if (literals) {
+                    ASTLiteral literal = calls.evaluate(call.getFunction(), arguments, node.getLocation());
+                    if (literal != null) {
+                        return literal;
+                    }
+                }
+                return same ? node : annotated(factory.call(call.getFunction(), arguments, node.getLocation()), node);
+            }
+            default:
+                return node;
+        }
+    }
+
+    /**
+     * A node created again with new operands has the data type of the node it replaces.
+     */
+    private static ASTNode annotated(ASTNode node, ASTNode original) {
+        if (node.getAnnotatedDataType() == null) {
+            node.setAnnotatedDataType(original.getAnnotatedDataType());
+        }
+        return node;
+    }
+}
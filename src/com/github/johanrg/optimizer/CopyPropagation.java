@@ -0,0 +1,74 @@
+package com.github.johanrg.optimizer;
+
+import com.github.johanrg.ir.IRBlock;
+import com.github.johanrg.ir.IRFunction;
+import com.github.johanrg.ir.IRInstruction;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+
+/**
+ * Replaces every use of a copy with the value copied, and every phi that picks the same value on all its edges with
+ * that value. A phi whose other operands are the phi itself is the same value too, like a variable that a loop doesn't
+ * change. Replacing a phi can make the phis that use it pick one value, so those are looked at again. Values left
+ * without users, like the copy of a variable that is never read, are removed.
+ *
+ * @author johan
+ * @since 2016-08-03.
+ */
+public class CopyPropagation extends FunctionPass {
+    @Override
+    public String getName() {
+        return "copy propagation";
+    }
+
+    @Override
+    protected boolean run(IRFunction function) {
+        Deque<IRInstruction> work = new ArrayDeque<>();
+        for (IRBlock block : function.getBlocks()) {
+            for (IRInstruction instruction : block.getInstructions()) {
+                if (instruction.getOp() == IRInstruction.Op.COPY || instruction.getOp() == IRInstruction.Op.PHI) {
+                    work.add(instruction);
+                }
+            }
+        }
+        boolean changed = false;
+        while (!work.isEmpty()) {
+            IRInstruction instruction = work.poll();
+            if (instruction.getBlock() == null) {
+                continue;
+            }
+            IRInstruction value = instruction.getOp() == IRInstruction.Op.COPY ? instruction.getOperand(0) :
+                    same(instruction);
+            if (value == null) {
+                continue;
+            }
+            for (IRInstruction user : new ArrayList<>(instruction.getUsers())) {
+                if (user.getOp() == IRInstruction.Op.PHI && user != instruction) {
+                    work.add(user);
+                }
+            }
+            replace(instruction, value);
+            changed = true;
+        }
+        return changed;
+    }
+
+    /**
+     * @return The one value a phi picks besides itself, or null if it picks more than one.
+     */
+    static IRInstruction same(IRInstruction phi) {
+        IRInstruction same = null;
+        for (IRInstruction operand : phi.getOperands()) {
+            if (operand == phi || operand == same) {
+                continue;
+            }
+            if (same != null) {
+                return null;
+            }
+            same = operand;
+        }
+        return same;
+    }
+}
@@ -0,0 +1,49 @@
+package com.github.johanrg.optimizer;
+
+import com.github.johanrg.ast.*;
+import com.github.johanrg.frontend.CompilerException;
+import com.github.johanrg.frontend.DataType;
+
+/**
+ * Removes the branches that can never be taken: an if statement with a known condition is replaced by the scope that
+ * is taken, or removed if there is none, and a while statement with a condition known to be false is removed. Run it
+ * after ConstantPropagation, which is what makes the conditions known.
+ *
+ * @author johan
+ * @since 2016-07-31.
+ */
+public class DeadBranchElimination extends TreePass {
+    @Override
+    public String getName() {
+        return "dead branch elimination";
+    }
+
+    @Override
+    protected ASTNode statement(ASTNode statement) throws CompilerException {
+        switch (statement.getKind()) {
+            case IF: {
+                ASTIfStatement ifStatement = (ASTIfStatement) statement;
+                if (!isKnown(ifStatement.getExpression())) {
+                    break;
+                }
+                ASTNode taken = ((ASTLiteral) ifStatement.getExpression()).getBoolean() ? ifStatement.getIfScope() :
+                        ifStatement.getElseScope();
+                // NOTE(Johan): the scope is kept as a scope of its own, the identifiers declared in it stay there.
+                return taken == null ? null : super.statement(taken);
+            }
+            case WHILE: {
+                ASTWhileStatement whileStatement = (ASTWhileStatement) statement;
+                if (isKnown(whileStatement.getExpression()) &&
+                        !((ASTLiteral) whileStatement.getExpression()).getBoolean()) {
+                    return null;
+                }
+                break;
+            }
+        }
+        return super.statement(statement);
+    }
+
+    private static boolean isKnown(ASTNode condition) {
+        return condition instanceof ASTLiteral && ((ASTLiteral) condition).getDataType() == DataType.BOOLEAN;
+    }
+}
@@ -0,0 +1,37 @@
+package com.github.johanrg.optimizer;
+
+import com.github.johanrg.ir.IRBlock;
+import com.github.johanrg.ir.IRFunction;
+import com.github.johanrg.ir.IRInstruction;
+
+import java.util.ArrayList;
+
+/**
+ * Removes the instructions without side effects that nothing uses, along with the operands they were the last user
+ * of. They're left behind when a loop is cut, by values that were hoisted out of it or given to the uses after it.
+ *
+ * @author johan
+ * @since 2016-08-05.
+ */
+public class DeadCodeElimination extends FunctionPass {
+    @Override
+    public String getName() {
+        return "dead code elimination";
+    }
+
+    @Override
+    protected boolean run(IRFunction function) {
+        boolean changed = false;
+        for (IRBlock block : function.getBlocks()) {
+            for (IRInstruction instruction : new ArrayList<>(block.getInstructions())) {
+                // NOTE(Johan): an operand removed along with an instruction before it is no longer in a block.
+                if (instruction.getBlock() != null && instruction.getUsers().isEmpty() &&
+                        !instruction.hasSideEffects()) {
+                    remove(instruction);
+                    changed = true;
+                }
+            }
+        }
+        return changed;
+    }
+}
@@ -0,0 +1,63 @@
+package com.github.johanrg.optimizer;
+
+import com.github.johanrg.frontend.CompilerException;
+import com.github.johanrg.ir.IRFunction;
+import com.github.johanrg.ir.IRInstruction;
+import com.github.johanrg.ir.IRProgram;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Runs over every function of a program in SSA form, one function at a time.
+ *
+ * @author johan
+ * @since 2016-08-03.
+ */
+abstract class FunctionPass implements Pass<IRProgram> {
+    @Override
+    public boolean run(IRProgram program) throws CompilerException {
+        boolean changed = false;
+        for (IRFunction function : program.getFunctions()) {
+            changed |= run(function);
+        }
+        return changed;
+    }
+
+    /**
+     * @return boolean true if anything changed.
+     */
+    protected abstract boolean run(IRFunction function) throws CompilerException;
+
+    /**
+     * Makes the users of an instruction use another value and removes the instruction, along with the operands it was
+     * the last user of.
+     */
+    protected static void replace(IRInstruction instruction, IRInstruction value) {
+        instruction.replaceAllUsesWith(value);
+        remove(instruction);
+    }
+
+    /**
+     * Removes an instruction without users, along with the operands it was the last user of.
+     */
+    protected static void remove(IRInstruction instruction) {
+        Deque<IRInstruction> dead = new ArrayDeque<>();
+        dead.push(instruction);
+        while (!dead.isEmpty()) {
+            IRInstruction next = dead.pop();
+            if (next.getBlock() == null) {
+                continue;
+            }
+            List<IRInstruction> operands = new ArrayList<>(next.getOperands());
+            next.remove();
+            for (IRInstruction operand : operands) {
+                if (operand.getBlock() != null && operand.getUsers().isEmpty() && !operand.hasSideEffects()) {
+                    dead.push(operand);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.github.johanrg.optimizer;
+
+import com.github.johanrg.ast.ASTOperator;
+import com.github.johanrg.frontend.ConstantPool;
+import com.github.johanrg.frontend.DataType;
+import com.github.johanrg.frontend.FoldingTable;
+import com.github.johanrg.ir.DominatorTree;
+import com.github.johanrg.ir.IRBlock;
+import com.github.johanrg.ir.IRFunction;
+import com.github.johanrg.ir.IRInstruction;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Numbers the values of a function so equal values get the same number, and removes the instructions that compute a
+ * value again. The blocks are walked down the dominator tree with a table of the values of the blocks above, so a value
+ * in the table is available wherever it's found again and the second instruction is a common subexpression. Two
+ * instructions are equal when they have the same operator, data type and operands, the operands of commutative
+ * operators in a fixed order, and constants are equal when they have the same bits. Operators on constants are folded
+ * through the folding table before they're numbered.
+ * <p>
+ * Calls, loads and stores are never numbered, since the same one can give another value the next time.
+ *
+ * @author johan
+ * @since 2016-08-03.
+ */
+public class GlobalValueNumbering extends FunctionPass {
+    /**
+     * What makes two instructions compute the same value.
+     */
+    private static class Key {
+        private final IRInstruction.Op op;
+        private final ASTOperator.Type operator;
+        private final DataType dataType;
+        private final long bits;
+        private final IRBlock block;
+        private final int[] operands;
+
+        private Key(IRInstruction instruction, IRBlock block, int[] operands) {
+            op = instruction.getOp();
+            operator = instruction.getOperator();
+            dataType = instruction.getDataType();
+            bits = instruction.getBits();
+            this.block = block;
+            this.operands = operands;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(op, operator, dataType, bits, System.identityHashCode(block)) * 31 +
+                    Arrays.hashCode(operands);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return op == other.op && operator == other.operator && dataType == other.dataType && bits == other.bits &&
+                    block == other.block && Arrays.equals(operands, other.operands);
+        }
+    }
+
+    private final Map<Key, IRInstruction> values = new HashMap<>();
+    private final Map<IRInstruction, Integer> numbers = new IdentityHashMap<>();
+    private boolean changed;
+
+    @Override
+    public String getName() {
+        return "global value numbering";
+    }
+
+    @Override
+    protected boolean run(IRFunction function) {
+        values.clear();
+        numbers.clear();
+        changed = false;
+        DominatorTree tree = new DominatorTree(function);
+        // NOTE(Johan): a walk of the dominator tree with an explicit stack, a block's keys leave the table with it.
+        Deque<IRBlock> blocks = new ArrayDeque<>();
+        Deque<Integer> next = new ArrayDeque<>();
+        Deque<List<Key>> added = new ArrayDeque<>();
+        blocks.push(function.getEntry());
+        next.push(0);
+        added.push(number(function.getEntry(), function.getConstants()));
+        while (!blocks.isEmpty()) {
+            List<IRBlock> children = tree.getChildren(blocks.peek());
+            int child = next.pop();
+            if (child < children.size()) {
+                next.push(child + 1);
+                blocks.push(children.get(child));
+                next.push(0);
+                added.push(number(children.get(child), function.getConstants()));
+            } else {
+                blocks.pop();
+                for (Key key : added.pop()) {
+                    values.remove(key);
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @return The keys added to the table for the block.
+     */
+    private List<Key> number(IRBlock block, ConstantPool constants) {
+        List<Key> keys = new ArrayList<>();
+        for (IRInstruction instruction : new ArrayList<>(block.getInstructions())) {
+            // NOTE(Johan): an instruction left without users by an earlier replacement is already gone.
+            if (instruction.getBlock() == null) {
+                continue;
+            }
+            if (instruction.getOp() == IRInstruction.Op.PHI && CopyPropagation.same(instruction) != null) {
+                replace(instruction, CopyPropagation.same(instruction));
+                changed = true;
+                continue;
+            }
+            IRInstruction folded = fold(instruction, constants);
+            if (folded != null) {
+                block.addBefore(folded, instruction);
+                replace(instruction, folded);
+                instruction = folded;
+                changed = true;
+            }
+            Key key = key(instruction);
+            if (key == null) {
+                continue;
+            }
+            IRInstruction leader = values.get(key);
+            if (leader != null && leader.getBlock() != null) {
+                replace(instruction, leader);
+                changed = true;
+            } else {
+                values.put(key, instruction);
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * @return A constant with the value of an operator on constants, not added to a block, or null.
+     */
+    static IRInstruction fold(IRInstruction instruction, ConstantPool constants) {
+        List<IRInstruction> operands = instruction.getOperands();
+        for (IRInstruction operand : operands) {
+            if (operand.getOp() != IRInstruction.Op.CONSTANT) {
+                return null;
+            }
+        }
+        int constant;
+        if (instruction.getOp() == IRInstruction.Op.UNARY) {
+            constant = FoldingTable.fold(instruction.getOperator(), operands.get(0).getDataType(), constants,
+                    operands.get(0).getBits());
+        } else if (instruction.getOp() == IRInstruction.Op.BINARY &&
+                operands.get(0).getDataType() == operands.get(1).getDataType()) {
+            constant = FoldingTable.fold(instruction.getOperator(), operands.get(0).getDataType(), constants,
+                    operands.get(0).getBits(), operands.get(1).getBits());
+        } else {
+            return null;
+        }
+        return constant < 0 ? null :
+                IRInstruction.constant(instruction.getDataType(), constant, constants.getBits(constant));
+    }
+
+    /**
+     * @return The key of the value of an instruction, or null if it isn't numbered.
+     */
+    private Key key(IRInstruction instruction) {
+        switch (instruction.getOp()) {
+            case CONSTANT:
+                return new Key(instruction, null, new int[0]);
+            case PHI:
+                // NOTE(Johan): phis are only equal in the same block, where they pick from the same edges.
+                return new Key(instruction, instruction.getBlock(), numbers(instruction));
+            case UNARY:
+                return new Key(instruction, null, numbers(instruction));
+            case BINARY: {
+                int[] operands = numbers(instruction);
+                if (isCommutative(instruction) && operands[0] > operands[1]) {
+                    operands = new int[]{operands[1], operands[0]};
+                }
+                return new Key(instruction, null, operands);
+            }
+            default:
+                return null;
+        }
+    }
+
+    private int[] numbers(IRInstruction instruction) {
+        List<IRInstruction> operands = instruction.getOperands();
+        int[] result = new int[operands.size()];
+        for (int i = 0; i < result.length; ++i) {
+            Integer number = numbers.get(operands.get(i));
+            if (number == null) {
+                number = numbers.size();
+                numbers.put(operands.get(i), number);
+            }
+            result[i] = number;
+        }
+        return result;
+    }
+
+    private static boolean isCommutative(IRInstruction instruction) {
+        switch (instruction.getOperator()) {
+            case BINARY_ADD:
+                // NOTE(Johan): adding strings joins them, which depends on the order.
+                return instruction.getDataType() != DataType.STRING;
+            case BINARY_MUL:
+            case RELATIONAL_EQUAL:
+            case RELATIONAL_NOT_EQUAL:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
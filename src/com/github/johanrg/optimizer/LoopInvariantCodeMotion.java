@@ -0,0 +1,95 @@
+package com.github.johanrg.optimizer;
+
+import com.github.johanrg.ast.Identifier;
+import com.github.johanrg.ir.DominatorTree;
+import com.github.johanrg.ir.IRBlock;
+import com.github.johanrg.ir.IRFunction;
+import com.github.johanrg.ir.IRInstruction;
+import com.github.johanrg.ir.Loop;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Moves the instructions of a loop that compute the same value on every iteration to the preheader, so they're
+ * computed once before the loop. An instruction is moved when its operands are defined outside the loop, which they
+ * are once the instructions they're defined by have been moved. Inner loops go first, so a value can be moved out of
+ * every loop it doesn't change in.
+ * <p>
+ * Only instructions without side effects are moved, since the preheader also runs when the loop doesn't. Loads are
+ * moved out of loops that don't store to the variable and don't call anything.
+ *
+ * @author johan
+ * @since 2016-08-04.
+ */
+public class LoopInvariantCodeMotion extends FunctionPass {
+    @Override
+    public String getName() {
+        return "loop invariant code motion";
+    }
+
+    @Override
+    protected boolean run(IRFunction function) {
+        DominatorTree tree = new DominatorTree(function);
+        boolean changed = false;
+        for (Loop loop : Loop.find(tree)) {
+            IRBlock preheader = loop.getPreheader();
+            if (preheader == null) {
+                continue;
+            }
+            Set<Identifier> stored = Collections.newSetFromMap(new IdentityHashMap<>());
+            boolean calls = false;
+            for (IRBlock block : loop.getBlocks()) {
+                for (IRInstruction instruction : block.getInstructions()) {
+                    if (instruction.getOp() == IRInstruction.Op.STORE) {
+                        stored.add(instruction.getVariable());
+                    } else if (instruction.getOp() == IRInstruction.Op.CALL) {
+                        calls = true;
+                    }
+                }
+            }
+            // NOTE(Johan): in reverse postorder a value is looked at before its users, except for phis that are never
+            // moved, so one walk moves everything that can be.
+            for (IRBlock block : tree.getReversePostorder()) {
+                if (!loop.contains(block)) {
+                    continue;
+                }
+                for (IRInstruction instruction : new ArrayList<>(block.getInstructions())) {
+                    if (isInvariant(instruction, loop, stored, calls)) {
+                        instruction.moveTo(preheader);
+                        changed = true;
+                    }
+                }
+            }
+        }
+        return changed;
+    }
+
+    private static boolean isInvariant(IRInstruction instruction, Loop loop, Set<Identifier> stored, boolean calls) {
+        switch (instruction.getOp()) {
+            case CONSTANT:
+                return true;
+            case UNARY:
+            case BINARY:
+                if (instruction.hasSideEffects()) {
+                    return false;
+                }
+                break;
+            case LOAD:
+                if (calls || stored.contains(instruction.getVariable())) {
+                    return false;
+                }
+                break;
+            default:
+                return false;
+        }
+        for (IRInstruction operand : instruction.getOperands()) {
+            if (!loop.isInvariant(operand)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
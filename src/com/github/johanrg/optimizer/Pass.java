@@ -0,0 +1,24 @@
+package com.github.johanrg.optimizer;
+
+import com.github.johanrg.frontend.CompilerException;
+
+/**
+ * A transformation of a parsed tree or of a program in SSA form, run in order with other passes by a PassManager.
+ *
+ * @author johan
+ * @since 2016-07-31.
+ */
+public interface Pass<T> {
+    /**
+     * @return The name of the pass in the timing report.
+     */
+    String getName();
+
+    /**
+     * Rewrites the tree or the program in place. Function bodies that haven't been parsed yet are left as they are.
+     *
+     * @param root The root scope or the program.
+     * @return boolean true if anything changed.
+     */
+    boolean run(T root) throws CompilerException;
+}
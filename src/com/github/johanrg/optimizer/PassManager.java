@@ -0,0 +1,105 @@
+package com.github.johanrg.optimizer;
+
+import com.github.johanrg.ast.ASTFactory;
+import com.github.johanrg.ast.ASTScope;
+import com.github.johanrg.frontend.CompilerException;
+import com.github.johanrg.frontend.ConstantPool;
+import com.github.johanrg.ir.IRProgram;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs passes over a tree or a program in SSA form in the order they were added and keeps the time spent in each of
+ * them. The passes rewrite the tree in place, so it can't be parsed again incrementally after it has been optimized.
+ *
+ * @author johan
+ * @since 2016-07-31.
+ */
+public class PassManager<T> {
+    private final List<Pass<T>> passes = new ArrayList<>();
+    private final List<Long> times = new ArrayList<>();
+    private final List<Boolean> changes = new ArrayList<>();
+
+    /**
+     * The passes run on every compilation: constants are propagated and folded, then the branches they decide are
+     * removed.
+     *
+     * @param factory   The factory the tree was parsed with, so folded expressions are shared the same way.
+     * @param constants The constant pool of the compilation.
+     */
+    public static PassManager<ASTScope> standard(ASTFactory factory, ConstantPool constants) {
+        return new PassManager<ASTScope>()
+                .add(new ConstantPropagation(factory, constants))
+                .add(new DeadBranchElimination());
+    }
+
+    /**
+     * The passes run on the SSA form: copies are propagated so equal values have one definition, then values that
+     * are computed again are numbered and removed. Loops are optimized after that, the values left unused by the loops
+     * that were cut are removed, and the rest of what they leave behind is cleaned up by running the first two passes
+     * again.
+     */
+    public static PassManager<IRProgram> ssa() {
+        return new PassManager<IRProgram>()
+                .add(new CopyPropagation())
+                .add(new GlobalValueNumbering())
+                .add(new LoopInvariantCodeMotion())
+                .add(new StrengthReduction())
+                .add(new TripCountFolding())
+                .add(new DeadCodeElimination())
+                .add(new CopyPropagation())
+                .add(new GlobalValueNumbering());
+    }
+
+    public PassManager<T> add(Pass<T> pass) {
+        passes.add(pass);
+        times.add(0L);
+        changes.add(false);
+        return this;
+    }
+
+    /**
+     * Runs every pass once.
+     *
+     * @param root The root scope or the program.
+     * @return boolean true if any pass changed it.
+     */
+    public boolean run(T root) throws CompilerException {
+        boolean changed = false;
+        for (int i = 0; i < passes.size(); ++i) {
+            long start = System.nanoTime();
+            boolean passChanged = passes.get(i).run(root);
+            times.set(i, times.get(i) + System.nanoTime() - start);
+            changes.set(i, changes.get(i) | passChanged);
+            changed |= passChanged;
+        }
+        return changed;
+    }
+
+    /**
+     * @return Nanoseconds spent in the pass at the index, over all runs.
+     */
+    public long getTime(int index) {
+        return times.get(index);
+    }
+
+    public List<Pass<T>> getPasses() {
+        return passes;
+    }
+
+    /**
+     * @return One line per pass with the time spent in it and whether it changed anything.
+     */
+    public String report() {
+        StringBuilder builder = new StringBuilder();
+        long total = 0;
+        for (int i = 0; i < passes.size(); ++i) {
+            builder.append(String.format("%-28s %8.3f ms%s%n", passes.get(i).getName(), times.get(i) / 1e6,
+                    changes.get(i) ? "" : "  (no change)"));
+            total += times.get(i);
+        }
+        builder.append(String.format("%-28s %8.3f ms%n", "total", total / 1e6));
+        return builder.toString();
+    }
+}
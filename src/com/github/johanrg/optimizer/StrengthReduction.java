@@ -0,0 +1,95 @@
+package com.github.johanrg.optimizer;
+
+import com.github.johanrg.ast.ASTOperator;
+import com.github.johanrg.frontend.ConstantPool;
+import com.github.johanrg.frontend.DataType;
+import com.github.johanrg.ir.DominatorTree;
+import com.github.johanrg.ir.IRBlock;
+import com.github.johanrg.ir.IRFunction;
+import com.github.johanrg.ir.IRInstruction;
+import com.github.johanrg.ir.InductionVariable;
+import com.github.johanrg.ir.Loop;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Replaces an int multiplication of an induction variable by a value that doesn't change in the loop with a new
+ * induction variable, which starts at the start times the factor and steps by the step times the factor. The products
+ * are computed in the preheader, so the loop does an addition per iteration instead of a multiplication. Ints wrap, so
+ * the sum is the product on every iteration even when they overflow.
+ *
+ * @author johan
+ * @since 2016-08-04.
+ */
+public class StrengthReduction extends FunctionPass {
+    @Override
+    public String getName() {
+        return "strength reduction";
+    }
+
+    @Override
+    protected boolean run(IRFunction function) {
+        DominatorTree tree = new DominatorTree(function);
+        boolean changed = false;
+        for (Loop loop : Loop.find(tree)) {
+            // NOTE(Johan): keyed by the phi and then the factor, so equal products share one induction variable.
+            Map<IRInstruction, Map<IRInstruction, IRInstruction>> reduced = new IdentityHashMap<>();
+            for (IRBlock block : tree.getReversePostorder()) {
+                if (!loop.contains(block)) {
+                    continue;
+                }
+                for (IRInstruction instruction : new ArrayList<>(block.getInstructions())) {
+                    if (instruction.getOp() != IRInstruction.Op.BINARY || instruction.getDataType() != DataType.INT ||
+                            instruction.getOperator() != ASTOperator.Type.BINARY_MUL) {
+                        continue;
+                    }
+                    for (int side = 0; side < 2; ++side) {
+                        IRInstruction factor = instruction.getOperand(1 - side);
+                        InductionVariable variable = InductionVariable.of(instruction.getOperand(side), loop);
+                        if (variable == null || !loop.isInvariant(factor)) {
+                            continue;
+                        }
+                        IRInstruction value = reduced.computeIfAbsent(variable.getPhi(), k -> new IdentityHashMap<>())
+                                .computeIfAbsent(factor, k -> reduce(variable, factor, loop, function.getConstants()));
+                        replace(instruction, value);
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @return The phi of the induction variable that is the product.
+     */
+    private static IRInstruction reduce(InductionVariable variable, IRInstruction factor, Loop loop,
+                                        ConstantPool constants) {
+        IRBlock preheader = loop.getPreheader();
+        IRBlock latch = loop.getLatches().get(0);
+        IRInstruction start = preheader.add(multiply(variable.getStart(), factor, constants));
+        IRInstruction step = preheader.add(multiply(variable.getStep(), factor, constants));
+        IRInstruction phi = IRInstruction.phi(DataType.INT);
+        IRInstruction next = latch.add(IRInstruction.binary(variable.getOperator(), DataType.INT, phi, step));
+        for (IRBlock predecessor : loop.getHeader().getPredecessors()) {
+            phi.addOperand(predecessor == latch ? next : start);
+        }
+        return loop.getHeader().addPhi(phi);
+    }
+
+    /**
+     * @return The product, folded if both are constants, not added to a block.
+     */
+    private static IRInstruction multiply(IRInstruction left, IRInstruction right, ConstantPool constants) {
+        IRInstruction product = IRInstruction.binary(ASTOperator.Type.BINARY_MUL, DataType.INT, left, right);
+        IRInstruction folded = GlobalValueNumbering.fold(product, constants);
+        if (folded == null) {
+            return product;
+        }
+        product.remove();
+        return folded;
+    }
+}
@@ -0,0 +1,121 @@
+package com.github.johanrg.optimizer;
+
+import com.github.johanrg.ast.*;
+import com.github.johanrg.frontend.CompilerException;
+
+import java.util.List;
+
+/**
+ * Walks every statement of a tree in source order, function bodies included, and puts back what the pass returns for
+ * it. Scopes are changed in place, statements that hold expressions are created again when an expression changes.
+ * <p>
+ * A lazy body that hasn't been parsed yet is left as it is, a pass never parses bodies that nothing asked for.
+ *
+ * @author johan
+ * @since 2016-07-31.
+ */
+abstract class TreePass implements Pass<ASTScope> {
+    private boolean changed;
+
+    @Override
+    public boolean run(ASTScope root) throws CompilerException {
+        changed = false;
+        scope(root);
+        return changed;
+    }
+
+    protected void scope(ASTScope scope) throws CompilerException {
+        List<ASTNode> statements = scope.getStatements();
+        int size = statements.size();
+        int kept = 0;
+        for (int i = 0; i < size; ++i) {
+            ASTNode statement = statements.get(i);
+            ASTNode result = statement == null ? null : statement(statement);
+            if (result != statement) {
+                changed = true;
+            }
+            if (result != null || statement == null) {
+                statements.set(kept++, result);
+            }
+        }
+        // NOTE(Johan): removed statements are compacted away in one go, so many removals stay linear.
+        if (kept < size) {
+            statements.subList(kept, size).clear();
+        }
+    }
+
+    /**
+     * @return The statement to put back, the statement itself if nothing changed, or null to remove it.
+     */
+    protected ASTNode statement(ASTNode statement) throws CompilerException {
+        switch (statement.getKind()) {
+            case SCOPE:
+                scope((ASTScope) statement);
+                return statement;
+            case FUNCTION: {
+                ASTFunction function = (ASTFunction) statement;
+                if (function.isBodyParsed()) {
+                    scope((ASTScope) function.getFunctionStatement());
+                }
+                return statement;
+            }
+            case IF: {
+                ASTIfStatement ifStatement = (ASTIfStatement) statement;
+                ASTNode expression = expression(ifStatement.getExpression());
+                scope((ASTScope) ifStatement.getIfScope());
+                if (ifStatement.getElseScope() != null) {
+                    scope((ASTScope) ifStatement.getElseScope());
+                }
+                return expression == ifStatement.getExpression() ? statement : new ASTIfStatement(expression,
+                        (ASTScope) ifStatement.getIfScope(), (ASTScope) ifStatement.getElseScope(),
+                        statement.getLocation());
+            }
+            case WHILE: {
+                ASTWhileStatement whileStatement = (ASTWhileStatement) statement;
+                ASTNode expression = expression(whileStatement.getExpression());
+                scope(whileStatement.getWhileScope());
+                return expression == whileStatement.getExpression() ? statement : new ASTWhileStatement(expression,
+                        whileStatement.getWhileScope(), statement.getLocation());
+            }
+            case FOR: {
+                ASTForStatement forStatement = (ASTForStatement) statement;
+                ASTNode init = forStatement.getInit() == null ? null : expression(forStatement.getInit());
+                ASTNode condition = forStatement.getCondition() == null ? null :
+                        expression(forStatement.getCondition());
+                ASTNode increment = forStatement.getIncrement() == null ? null :
+                        expression(forStatement.getIncrement());
+                scope(forStatement.getForScope());
+                if (init == forStatement.getInit() && condition == forStatement.getCondition() &&
+                        increment == forStatement.getIncrement()) {
+                    return statement;
+                }
+                return new ASTForStatement(init, condition, increment, forStatement.getForScope(),
+                        statement.getLocation());
+            }
+            case FOR_RANGE: {
+                ASTForRangeStatement forStatement = (ASTForRangeStatement) statement;
+                ASTNode range = expression(forStatement.getRange());
+                scope((ASTScope) forStatement.getForScope());
+                return range == forStatement.getRange() ? statement : new ASTForRangeStatement(range,
+                        forStatement.getForScope(), statement.getLocation());
+            }
+            case RETURN: {
+                ASTNode expression = ((ASTReturnStatement) statement).getExpression();
+                if (expression == null) {
+                    return statement;
+                }
+                ASTNode result = expression(expression);
+                return result == expression ? statement : new ASTReturnStatement(result, statement.getLocation());
+            }
+            default:
+                return expression(statement);
+        }
+    }
+
+    /**
+     * @return The expression to put back, the expression itself if nothing changed.
+     */
+    protected ASTNode expression(ASTNode expression) throws CompilerException {
+        return expression;
+    }
+}
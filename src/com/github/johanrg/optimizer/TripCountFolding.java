@@ -0,0 +1,252 @@
+package com.github.johanrg.optimizer;
+
+import com.github.johanrg.ast.ASTOperator;
+import com.github.johanrg.frontend.ConstantPool;
+import com.github.johanrg.frontend.DataType;
+import com.github.johanrg.ir.DominatorTree;
+import com.github.johanrg.ir.IRBlock;
+import com.github.johanrg.ir.IRFunction;
+import com.github.johanrg.ir.IRInstruction;
+import com.github.johanrg.ir.InductionVariable;
+import com.github.johanrg.ir.Loop;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Works out how many times a loop runs when it's counted by an induction variable with a constant start and step up
+ * to a constant bound, and it can only be left from the header. After the loop every induction variable with a
+ * constant start and step then has a constant value, which its uses there get instead.
+ * <p>
+ * A loop that runs zero times is replaced by its header, and so is a loop whose instructions have no side effects and
+ * no uses after it, which now computes nothing.
+ *
+ * @author johan
+ * @since 2016-08-04.
+ */
+public class TripCountFolding extends FunctionPass {
+    @Override
+    public String getName() {
+        return "trip count folding";
+    }
+
+    @Override
+    protected boolean run(IRFunction function) {
+        boolean changed = false;
+        boolean removed = true;
+        // NOTE(Johan): the loops are found again after one is removed, since the blocks have changed.
+        while (removed) {
+            removed = false;
+            List<Loop> loops = Loop.find(new DominatorTree(function));
+            for (Loop loop : loops) {
+                long count = tripCount(loop);
+                if (count < 0) {
+                    continue;
+                }
+                changed |= foldExitValues(loop, count, function.getConstants());
+                if (count == 0 || isDead(loop, loops)) {
+                    cut(loop);
+                    changed = true;
+                    removed = true;
+                    break;
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @return The number of times the body of the loop runs, or -1 if it isn't known.
+     */
+    private static long tripCount(Loop loop) {
+        IRBlock header = loop.getHeader();
+        IRInstruction terminator = header.getTerminator();
+        if (terminator == null || terminator.getOp() != IRInstruction.Op.BRANCH ||
+                !loop.contains(header.getSuccessors().get(0)) || loop.contains(header.getSuccessors().get(1))) {
+            return -1;
+        }
+        for (IRBlock block : loop.getBlocks()) {
+            for (IRBlock successor : block.getSuccessors()) {
+                if (block != header && !loop.contains(successor)) {
+                    return -1;
+                }
+            }
+        }
+        IRInstruction condition = terminator.getOperand(0);
+        if (condition.getOp() != IRInstruction.Op.BINARY || condition.getOperand(0).getDataType() != DataType.INT ||
+                condition.getOperator().getGroup() != ASTOperator.Group.RELATIONAL) {
+            return -1;
+        }
+        ASTOperator.Type operator = condition.getOperator();
+        InductionVariable variable = InductionVariable.of(condition.getOperand(0), loop);
+        IRInstruction bound = condition.getOperand(1);
+        if (variable == null) {
+            variable = InductionVariable.of(condition.getOperand(1), loop);
+            bound = condition.getOperand(0);
+            operator = mirror(operator);
+        }
+        if (variable == null || operator == null || !variable.isConstant() ||
+                bound.getOp() != IRInstruction.Op.CONSTANT) {
+            return -1;
+        }
+        long start = (int) variable.getStart().getBits();
+        long step = (int) variable.getStep().getBits();
+        if (variable.getOperator() == ASTOperator.Type.BINARY_SUB) {
+            step = -step;
+        }
+        return count(operator, start, step, (int) bound.getBits());
+    }
+
+    /**
+     * @return The number of times the counter passes the test, or -1 if it doesn't stop without wrapping around.
+     */
+    private static long count(ASTOperator.Type operator, long start, long step, long bound) {
+        if (!test(operator, start, bound)) {
+            return 0;
+        }
+        long count;
+        switch (operator) {
+            case RELATIONAL_LT:
+                count = step > 0 ? (bound - start + step - 1) / step : -1;
+                break;
+            case RELATIONAL_LTE:
+                count = step > 0 ? (bound - start) / step + 1 : -1;
+                break;
+            case RELATIONAL_GT:
+                count = step < 0 ? (start - bound - step - 1) / -step : -1;
+                break;
+            case RELATIONAL_GTE:
+                count = step < 0 ? (start - bound) / -step + 1 : -1;
+                break;
+            case RELATIONAL_NOT_EQUAL:
+                count = step != 0 && (bound - start) % step == 0 && (bound - start) / step > 0 ?
+                        (bound - start) / step : -1;
+                break;
+            case RELATIONAL_EQUAL:
+                // NOTE(Johan): any step moves it off the one value that passes.
+                return step != 0 ? 1 : -1;
+            default:
+                return -1;
+        }
+        if (count < 0) {
+            return -1;
+        }
+        long last = start + count * step;
+        return last >= Integer.MIN_VALUE && last <= Integer.MAX_VALUE ? count : -1;
+    }
+
+    private static boolean test(ASTOperator.Type operator, long a, long b) {
+        switch (operator) {
+            case RELATIONAL_EQUAL:
+                return a == b;
+            case RELATIONAL_NOT_EQUAL:
+                return a != b;
+            case RELATIONAL_LT:
+                return a < b;
+            case RELATIONAL_LTE:
+                return a <= b;
+            case RELATIONAL_GT:
+                return a > b;
+            case RELATIONAL_GTE:
+                return a >= b;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return The operator that gives the same result with the operands swapped, or null if it isn't relational.
+     */
+    private static ASTOperator.Type mirror(ASTOperator.Type operator) {
+        switch (operator) {
+            case RELATIONAL_EQUAL:
+            case RELATIONAL_NOT_EQUAL:
+                return operator;
+            case RELATIONAL_LT:
+                return ASTOperator.Type.RELATIONAL_GT;
+            case RELATIONAL_LTE:
+                return ASTOperator.Type.RELATIONAL_GTE;
+            case RELATIONAL_GT:
+                return ASTOperator.Type.RELATIONAL_LT;
+            case RELATIONAL_GTE:
+                return ASTOperator.Type.RELATIONAL_LTE;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Gives the uses after the loop of the induction variables with a constant start and step their last value.
+     *
+     * @return boolean true if any use was changed.
+     */
+    private static boolean foldExitValues(Loop loop, long count, ConstantPool constants) {
+        boolean changed = false;
+        for (IRInstruction instruction : new ArrayList<>(loop.getHeader().getInstructions())) {
+            if (instruction.getOp() != IRInstruction.Op.PHI) {
+                break;
+            }
+            InductionVariable variable = InductionVariable.of(instruction, loop);
+            if (variable == null || !variable.isConstant()) {
+                continue;
+            }
+            IRInstruction last = null;
+            for (IRInstruction user : new ArrayList<>(instruction.getUsers())) {
+                if (loop.contains(user.getBlock())) {
+                    continue;
+                }
+                if (last == null) {
+                    int constant = constants.addInt(variable.valueAfter(count));
+                    last = loop.getPreheader().add(IRInstruction.constant(DataType.INT, constant,
+                            constants.getBits(constant)));
+                }
+                for (int i = 0; i < user.getOperands().size(); ++i) {
+                    if (user.getOperand(i) == instruction) {
+                        user.setOperand(i, last);
+                    }
+                }
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @return true if nothing the loop does is seen after it, and it has no inner loops that might not stop.
+     */
+    private static boolean isDead(Loop loop, List<Loop> loops) {
+        for (Loop other : loops) {
+            if (other != loop && loop.contains(other.getHeader())) {
+                return false;
+            }
+        }
+        for (IRBlock block : loop.getBlocks()) {
+            for (IRInstruction instruction : block.getInstructions()) {
+                if (instruction.getOp() == IRInstruction.Op.JUMP || instruction.getOp() == IRInstruction.Op.BRANCH) {
+                    continue;
+                }
+                if (instruction.hasSideEffects()) {
+                    return false;
+                }
+                for (IRInstruction user : instruction.getUsers()) {
+                    if (!loop.contains(user.getBlock())) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Makes the header go straight to the exit and removes the rest of the loop.
+     */
+    private static void cut(Loop loop) {
+        IRBlock header = loop.getHeader();
+        IRInstruction branch = header.getTerminator();
+        header.removeSuccessor(header.getSuccessors().get(0));
+        remove(branch);
+        header.add(IRInstruction.jump());
+        header.getFunction().removeUnreachableBlocks();
+    }
+}
@@ -0,0 +1,81 @@
+package com.github.johanrg;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Runs the tests of the classes listed here and exits with status 1 if any of them failed. There are no libraries, so
+ * the sources and the tests are compiled together and run from the output directory:
+ * <pre>
+ * javac -d out/test $(find src test -name '*.java') && java -ea -cp out/test com.github.johanrg.AllTests
+ * </pre>
+ * A test class can be given as an argument to run only that class.
+ *
+ * @author johan
+ * @since 2016-08-05.
+ */
+public class AllTests {
+    private static final String[] CLASSES = {
+            "com.github.johanrg.frontend.TokenBufferTest",
+            "com.github.johanrg.frontend.ByteSourceTest",
+            "com.github.johanrg.frontend.TokenStreamTest",
+            "com.github.johanrg.frontend.TableLexerTest",
+            "com.github.johanrg.frontend.BulkScanningTest",
+            "com.github.johanrg.frontend.LineTableTest",
+            "com.github.johanrg.frontend.SymbolTableTest",
+            "com.github.johanrg.frontend.PunctuatorTest",
+            "com.github.johanrg.frontend.ConstantPoolTest",
+            "com.github.johanrg.frontend.ParallelLexerTest",
+            "com.github.johanrg.frontend.ParserTest",
+            "com.github.johanrg.frontend.ExpressionTest",
+            "com.github.johanrg.frontend.IdentifiersTest",
+            "com.github.johanrg.frontend.LazyParsingTest",
+            "com.github.johanrg.frontend.ParallelParsingTest",
+            "com.github.johanrg.frontend.IncrementalParserTest",
+            "com.github.johanrg.ast.ASTArenaTest",
+            "com.github.johanrg.frontend.TypeAnnotationTest",
+            "com.github.johanrg.optimizer.TreePassTest",
+            "com.github.johanrg.ast.ASTFactoryTest",
+            "com.github.johanrg.frontend.DiagnosticsTest",
+            "com.github.johanrg.optimizer.ConstantPropagationTest",
+            "com.github.johanrg.frontend.FoldingTableTest",
+            "com.github.johanrg.optimizer.CallEvaluatorTest",
+            "com.github.johanrg.ir.IRBuilderTest",
+            "com.github.johanrg.optimizer.GlobalValueNumberingTest",
+            "com.github.johanrg.optimizer.LoopOptimizationTest",
+    };
+
+    public static void main(String[] args) throws ReflectiveOperationException {
+        int run = 0;
+        List<String> failures = new ArrayList<>();
+        for (String name : args.length > 0 ? args : CLASSES) {
+            Class<?> type = Class.forName(name);
+            Method[] methods = type.getMethods();
+            // NOTE(Johan): the order of getMethods is unspecified, tests are run by name so a run can be repeated.
+            Arrays.sort(methods, Comparator.comparing(Method::getName));
+            for (Method method : methods) {
+                if (!method.getName().startsWith("test") || method.getParameterCount() != 0 ||
+                        Modifier.isStatic(method.getModifiers())) {
+                    continue;
+                }
+                ++run;
+                try {
+                    method.invoke(type.getConstructor().newInstance());
+                } catch (InvocationTargetException e) {
+                    failures.add(String.format("%s.%s: %s", type.getSimpleName(), method.getName(), e.getCause()));
+                    e.getCause().printStackTrace(System.out);
+                }
+            }
+        }
+        failures.forEach(System.out::println);
+        System.out.printf("%d tests, %d failures%n", run, failures.size());
+        if (!failures.isEmpty()) {
+            System.exit(1);
+        }
+    }
+}
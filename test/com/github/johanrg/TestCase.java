@@ -0,0 +1,101 @@
+package com.github.johanrg;
+
+import java.util.Objects;
+
+/**
+ * Base class of the tests. Every public method without parameters whose name starts with test is a test, run by
+ * AllTests on a new instance of the class. A test fails by throwing, the assertions throw an AssertionError.
+ *
+ * @author johan
+ * @since 2016-08-05.
+ */
+public abstract class TestCase {
+    /**
+     * A piece of code under test that is expected to throw.
+     */
+    @FunctionalInterface
+    public interface Action {
+        void run() throws Exception;
+    }
+
+    protected static void fail(String message) {
+        throw new AssertionError(message);
+    }
+
+    protected static void assertTrue(String message, boolean condition) {
+        if (!condition) {
+            fail(message);
+        }
+    }
+
+    protected static void assertTrue(boolean condition) {
+        assertTrue("expected true", condition);
+    }
+
+    protected static void assertFalse(boolean condition) {
+        assertTrue("expected false", !condition);
+    }
+
+    protected static void assertEquals(String message, Object expected, Object actual) {
+        if (!Objects.equals(expected, actual)) {
+            fail(String.format("%sexpected <%s> but was <%s>", prefix(message), expected, actual));
+        }
+    }
+
+    protected static void assertEquals(Object expected, Object actual) {
+        assertEquals(null, expected, actual);
+    }
+
+    protected static void assertEquals(String message, long expected, long actual) {
+        if (expected != actual) {
+            fail(String.format("%sexpected <%d> but was <%d>", prefix(message), expected, actual));
+        }
+    }
+
+    protected static void assertEquals(long expected, long actual) {
+        assertEquals(null, expected, actual);
+    }
+
+    protected static void assertSame(Object expected, Object actual) {
+        if (expected != actual) {
+            fail(String.format("expected the same object as <%s> but was <%s>", expected, actual));
+        }
+    }
+
+    protected static void assertNotSame(Object unexpected, Object actual) {
+        if (unexpected == actual) {
+            fail(String.format("expected another object than <%s>", actual));
+        }
+    }
+
+    protected static void assertNull(Object actual) {
+        if (actual != null) {
+            fail(String.format("expected null but was <%s>", actual));
+        }
+    }
+
+    protected static void assertNotNull(Object actual) {
+        if (actual == null) {
+            fail("expected a value but was null");
+        }
+    }
+
+    private static String prefix(String message) {
+        return message == null ? "" : message + ": ";
+    }
+
+    /**
+     * @return The exception thrown by the action, which must be of the type.
+     */
+    protected static <T extends Throwable> T assertThrows(Class<T> type, Action action) {
+        try {
+            action.run();
+        } catch (Throwable e) {
+            if (type.isInstance(e)) {
+                return type.cast(e);
+            }
+            throw new AssertionError(String.format("expected %s but %s was thrown", type.getSimpleName(), e), e);
+        }
+        throw new AssertionError(String.format("expected %s to be thrown", type.getSimpleName()));
+    }
+}
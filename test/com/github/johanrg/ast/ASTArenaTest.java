@@ -0,0 +1,269 @@
+package com.github.johanrg.ast;
+
+import com.github.johanrg.TestCase;
+import com.github.johanrg.frontend.CompilerException;
+import com.github.johanrg.frontend.DataType;
+import com.github.johanrg.frontend.Lexer;
+import com.github.johanrg.frontend.Parser;
+import com.github.johanrg.frontend.TokenBuffer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author johan
+ * @since 2016-08-05.
+ */
+public class ASTArenaTest extends TestCase {
+    private static final String[] SOURCE = {
+            "k :: 10",
+            "s := \"text\"",
+            "f :: (a : int, b : int) -> int",
+            "    c := a * -b + k",
+            "    if c > 100",
+            "        c = c - 1",
+            "    else",
+            "        c++",
+            "    return c",
+            "x := f(1, 2)",
+            "for i := 0, i < 3, i++",
+            "    x += i",
+            "for r : 0..3",
+            "    while x > 0",
+            "        x--",
+            "    x = r"};
+
+    private ASTScope root;
+    private ASTArena arena;
+
+    private void convert(String... lines) throws CompilerException {
+        Lexer lexer = new Lexer();
+        lexer.lex("test", String.join("\n", lines) + "\n");
+        TokenBuffer tokens = lexer.getTokens();
+        root = (ASTScope) new Parser(tokens, true).getRoot();
+        arena = ASTConverter.convert(root, tokens);
+    }
+
+    /**
+     * Prints the tree in an arena the way Trees prints a tree of objects, going through it with a cursor.
+     */
+    private static String print(ASTArena arena) {
+        StringBuilder out = new StringBuilder();
+        print(arena.cursor(arena.getRoot()), out);
+        return out.toString();
+    }
+
+    private static void print(ASTCursor cursor, StringBuilder out) {
+        ASTArena arena = cursor.getArena();
+        int node = cursor.getNode();
+        switch (cursor.getKind()) {
+            case SCOPE:
+                out.append('{');
+                children(cursor, "; ", out);
+                out.append('}');
+                break;
+            case LITERAL: {
+                Object value = arena.getConstants().getValue(arena.getConstant(node));
+                out.append(value instanceof String ? "\"" + value + "\"" : value);
+                break;
+            }
+            case REFERENCE:
+                out.append(arena.getIdentifier(arena.getDeclaration(node)));
+                break;
+            case FUNCTION: {
+                out.append(arena.getIdentifier(node)).append(" :: (");
+                int count = arena.getParameterCount(node);
+                for (int i = 0; i < count; ++i) {
+                    int parameter = arena.getDeclaration(arena.getChild(node, i));
+                    out.append(i > 0 ? ", " : "").append(arena.getIdentifier(parameter)).append(" : ")
+                            .append(arena.getDataType(parameter));
+                }
+                out.append(") -> ").append(arena.getDataType(node)).append(' ');
+                cursor.firstChild();
+                for (int i = 0; i < count; ++i) {
+                    cursor.nextSibling();
+                }
+                print(cursor, out);
+                cursor.parent();
+                break;
+            }
+            case BINARY_OPERATOR:
+                out.append('(');
+                cursor.firstChild();
+                print(cursor, out);
+                out.append(' ').append(arena.getOperator(node).getSymbol()).append(' ');
+                cursor.nextSibling();
+                print(cursor, out);
+                cursor.parent();
+                out.append(')');
+                break;
+            case UNARY_OPERATOR: {
+                ASTOperator.Type type = arena.getOperator(node);
+                boolean post = type == ASTOperator.Type.UNARY_POST_INCREMENT ||
+                        type == ASTOperator.Type.UNARY_POST_DECREMENT;
+                out.append('(').append(post ? "" : type.getSymbol());
+                children(cursor, "", out);
+                out.append(post ? type.getSymbol() : "").append(')');
+                break;
+            }
+            case IF:
+                out.append("if ");
+                cursor.firstChild();
+                print(cursor, out);
+                cursor.nextSibling();
+                out.append(' ');
+                print(cursor, out);
+                if (cursor.nextSibling()) {
+                    out.append(" else ");
+                    print(cursor, out);
+                }
+                cursor.parent();
+                break;
+            case WHILE:
+                out.append("while ");
+                children(cursor, " ", out);
+                break;
+            case FOR: {
+                out.append("for ");
+                int parts = arena.getPayload(node);
+                cursor.firstChild();
+                for (int part : new int[]{ASTArena.FOR_INIT, ASTArena.FOR_CONDITION, ASTArena.FOR_INCREMENT}) {
+                    if ((parts & part) != 0) {
+                        print(cursor, out);
+                        cursor.nextSibling();
+                    } else {
+                        out.append("null");
+                    }
+                    out.append(part == ASTArena.FOR_INCREMENT ? " " : ", ");
+                }
+                print(cursor, out);
+                cursor.parent();
+                break;
+            }
+            case FOR_RANGE:
+                out.append("for ");
+                children(cursor, " ", out);
+                break;
+            case CALL:
+                out.append(arena.getIdentifier(arena.getDeclaration(node))).append('(');
+                children(cursor, ", ", out);
+                out.append(')');
+                break;
+            case RETURN:
+                out.append("return ");
+                if (arena.getFirstChild(node) == ASTArena.NONE) {
+                    out.append("null");
+                }
+                children(cursor, "", out);
+                break;
+            default:
+                throw new IllegalArgumentException(cursor.getKind().toString());
+        }
+    }
+
+    private static void children(ASTCursor cursor, String separator, StringBuilder out) {
+        if (!cursor.firstChild()) {
+            return;
+        }
+        do {
+            print(cursor, out);
+            out.append(separator);
+        } while (cursor.nextSibling());
+        out.setLength(out.length() - separator.length());
+        cursor.parent();
+    }
+
+    public void testArenaHoldsTheSameTree() throws CompilerException {
+        convert(SOURCE);
+        assertEquals(Trees.print(root), print(arena));
+        assertEquals(ASTArena.Kind.SCOPE, arena.getKind(arena.getRoot()));
+    }
+
+    public void testLazyBodiesAreParsedFirst() throws CompilerException {
+        convert("f :: () -> int", "    return 1", "g :: () -> int", "    return 2");
+        assertEquals("{f :: () -> INT {return 1}; g :: () -> INT {return 2}}", print(arena));
+    }
+
+    public void testEveryIdentifierHasOneDeclaration() throws CompilerException {
+        convert(SOURCE);
+        int scope = arena.getRoot();
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < arena.getDeclarationCount(scope); ++i) {
+            int declaration = arena.getDeclaration(scope, i);
+            names.add(arena.getIdentifier(declaration));
+            Identifier identifier = root.getIdentifiers().get(arena.getSymbol(declaration));
+            assertEquals(identifier.getDepth(), arena.getDepth(declaration));
+            assertEquals(identifier.getSlot(), arena.getSlot(declaration));
+        }
+        assertEquals("[k, s, f, x]", names.toString());
+        assertEquals(root.getFrameSize(), arena.getFrameSize(scope));
+        assertEquals(ASTArena.Kind.CONSTANT, arena.getKind(arena.getDeclaration(scope, 0)));
+        assertEquals(DataType.STRING, arena.getDataType(arena.getDeclaration(scope, 1)));
+
+        int f = arena.getDeclaration(scope, 2);
+        int x = arena.getDeclaration(scope, 3);
+        List<Integer> references = new ArrayList<>();
+        arena.walk(scope, new ASTArena.Visitor() {
+            @Override
+            public boolean enter(ASTArena arena, int node) {
+                if (arena.getKind(node) == ASTArena.Kind.REFERENCE || arena.getKind(node) == ASTArena.Kind.CALL) {
+                    references.add(arena.getDeclaration(node));
+                }
+                return true;
+            }
+
+            @Override
+            public void exit(ASTArena arena, int node) {
+            }
+        });
+        assertTrue(references.contains(f));
+        assertEquals(5, references.stream().filter(d -> d == x).count());
+        assertEquals(ASTArena.Kind.SCOPE, arena.getKind(arena.getBody(f)));
+        assertEquals(2, arena.getParameterCount(f));
+    }
+
+    public void testWalkEntersAndExitsInOrder() throws CompilerException {
+        convert(SOURCE);
+        StringBuilder order = new StringBuilder();
+        List<Integer> open = new ArrayList<>();
+        arena.walk(arena.getRoot(), new ASTArena.Visitor() {
+            @Override
+            public boolean enter(ASTArena arena, int node) {
+                open.add(node);
+                order.append('(');
+                // NOTE(Johan): skips the bodies of the functions and the scopes of the statements.
+                return node == arena.getRoot() || arena.getKind(node) != ASTArena.Kind.SCOPE;
+            }
+
+            @Override
+            public void exit(ASTArena arena, int node) {
+                assertEquals(node, (int) open.remove(open.size() - 1));
+                order.append(')');
+            }
+        });
+        assertTrue(open.isEmpty());
+        int count = order.length() / 2;
+        assertTrue(count > 10);
+        assertTrue(count < arena.size());
+    }
+
+    public void testCursorStaysWhereItStarted() throws CompilerException {
+        convert("x := 1 + 2");
+        ASTCursor cursor = arena.cursor(arena.getRoot());
+        assertFalse(cursor.parent());
+        assertFalse(cursor.nextSibling());
+        assertTrue(cursor.firstChild());
+        assertEquals(ASTArena.Kind.BINARY_OPERATOR, cursor.getKind());
+        assertTrue(cursor.firstChild());
+        assertEquals(ASTArena.Kind.REFERENCE, cursor.getKind());
+        assertTrue(cursor.nextSibling());
+        assertEquals(ASTArena.Kind.LITERAL, cursor.getKind());
+        assertFalse(cursor.nextSibling());
+        assertFalse(cursor.firstChild());
+        assertEquals(2, cursor.getDepth());
+        assertTrue(cursor.parent());
+        assertTrue(cursor.parent());
+        assertEquals(arena.getRoot(), cursor.getNode());
+        assertFalse(cursor.parent());
+    }
+}
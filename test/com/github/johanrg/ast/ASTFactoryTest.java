@@ -0,0 +1,82 @@
+package com.github.johanrg.ast;
+
+import com.github.johanrg.TestCase;
+import com.github.johanrg.frontend.CompilerException;
+import com.github.johanrg.frontend.ConstantPool;
+import com.github.johanrg.frontend.DataType;
+import com.github.johanrg.frontend.Lexer;
+import com.github.johanrg.frontend.Parser;
+import com.github.johanrg.frontend.TokenBuffer;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author johan
+ * @since 2016-08-05.
+ */
+public class ASTFactoryTest extends TestCase {
+    private final ConstantPool constants = new ConstantPool();
+    private final ASTVariable x = new ASTVariable(0, "x", DataType.INT, null);
+
+    private ASTLiteral one(ASTFactory factory) {
+        return factory.literal(constants, constants.addInt(1), null);
+    }
+
+    public void testEqualExpressionsAreShared() {
+        ASTFactory factory = new ASTFactory(true);
+        assertTrue(factory.isHashConsing());
+        assertSame(one(factory), one(factory));
+        ASTNode sum = factory.binaryOperator(ASTOperator.Type.BINARY_ADD, x, one(factory), null);
+        assertSame(sum, factory.binaryOperator(ASTOperator.Type.BINARY_ADD, x, one(factory), null));
+        ASTNode minus = factory.unaryOperator(ASTOperator.Type.UNARY_MINUS, sum, null);
+        assertSame(minus, factory.unaryOperator(ASTOperator.Type.UNARY_MINUS, sum, null));
+        assertEquals(3, factory.size());
+    }
+
+    public void testDifferentExpressionsAreNot() {
+        ASTFactory factory = new ASTFactory(true);
+        ASTLiteral two = factory.literal(constants, constants.addInt(2), null);
+        ASTLiteral half = factory.literal(constants, constants.addFloat(1.0f), null);
+        assertNotSame(one(factory), two);
+        assertNotSame(one(factory), half);
+        ASTNode sum = factory.binaryOperator(ASTOperator.Type.BINARY_ADD, x, one(factory), null);
+        assertNotSame(sum, factory.binaryOperator(ASTOperator.Type.BINARY_SUB, x, one(factory), null));
+        assertNotSame(sum, factory.binaryOperator(ASTOperator.Type.BINARY_ADD, one(factory), x, null));
+        assertNotSame(sum, factory.binaryOperator(ASTOperator.Type.BINARY_ADD, x, two, null));
+    }
+
+    public void testSideEffectsAreNeverShared() {
+        ASTFactory factory = new ASTFactory(true);
+        assertNotSame(factory.binaryOperator(ASTOperator.Type.ASSIGNMENT, x, one(factory), null),
+                factory.binaryOperator(ASTOperator.Type.ASSIGNMENT, x, one(factory), null));
+        assertNotSame(factory.binaryOperator(ASTOperator.Type.ADD_ASSIGNMENT, x, one(factory), null),
+                factory.binaryOperator(ASTOperator.Type.ADD_ASSIGNMENT, x, one(factory), null));
+        assertNotSame(factory.unaryOperator(ASTOperator.Type.UNARY_POST_INCREMENT, x, null),
+                factory.unaryOperator(ASTOperator.Type.UNARY_POST_INCREMENT, x, null));
+        ASTFunction f = new ASTFunction(1, "f", Collections.emptyList(), new ASTScope(Collections.emptyList(),
+                Collections.emptyMap(), 0, null), DataType.INT, null);
+        assertNotSame(factory.call(f, Collections.emptyList(), null), factory.call(f, Collections.emptyList(), null));
+    }
+
+    public void testWithoutHashConsingEveryNodeIsNew() {
+        ASTFactory factory = new ASTFactory();
+        assertFalse(factory.isHashConsing());
+        assertNotSame(one(factory), one(factory));
+        assertEquals(0, factory.size());
+    }
+
+    public void testParsedTreeSharesRepeatedExpressions() throws CompilerException {
+        Lexer lexer = new Lexer();
+        lexer.lex("test", "a := 1\nb := a * 2 + 1\nc := a * 2 + 1\nd := -(a * 2)\n");
+        TokenBuffer tokens = lexer.getTokens();
+        ASTScope root = (ASTScope) new Parser(tokens, false, new ASTFactory(true), null).getRoot();
+        List<ASTNode> statements = root.getStatements();
+        ASTBinaryOperator b = (ASTBinaryOperator) ((ASTBinaryOperator) statements.get(1)).getRight();
+        ASTBinaryOperator c = (ASTBinaryOperator) ((ASTBinaryOperator) statements.get(2)).getRight();
+        ASTUnaryOperator d = (ASTUnaryOperator) ((ASTBinaryOperator) statements.get(3)).getRight();
+        assertSame(b, c);
+        assertSame(b.getLeft(), d.getSingleNode());
+        assertEquals("{(a = 1); (b = ((a * 2) + 1)); (c = ((a * 2) + 1)); (d = (-(a * 2)))}", Trees.print(root));
+    }
+}
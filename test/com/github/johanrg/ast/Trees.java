@@ -0,0 +1,165 @@
+package com.github.johanrg.ast;
+
+import java.util.List;
+
+/**
+ * Prints a tree as one line of text, so trees from different ways of parsing can be compared as strings. A function
+ * whose body hasn't been parsed yet is printed with ... as its body.
+ *
+ * @author johan
+ * @since 2016-08-05.
+ */
+public final class Trees {
+    private Trees() {
+    }
+
+    public static String print(ASTNode node) {
+        StringBuilder out = new StringBuilder();
+        print(node, out);
+        return out.toString();
+    }
+
+    private static void print(ASTNode node, StringBuilder out) {
+        if (node == null) {
+            out.append("null");
+            return;
+        }
+        switch (node.getKind()) {
+            case SCOPE: {
+                List<ASTNode> statements = ((ASTScope) node).getStatements();
+                out.append('{');
+                for (int i = 0; i < statements.size(); ++i) {
+                    if (i > 0) {
+                        out.append("; ");
+                    }
+                    if (statements.get(i) instanceof ASTFunction) {
+                        declaration((ASTFunction) statements.get(i), out);
+                    } else {
+                        print(statements.get(i), out);
+                    }
+                }
+                out.append('}');
+                break;
+            }
+            case LITERAL: {
+                ASTLiteral literal = (ASTLiteral) node;
+                Object value = literal.getValue();
+                out.append(value instanceof String ? "\"" + value + "\"" : value);
+                break;
+            }
+            case VARIABLE:
+                out.append(((ASTVariable) node).getIdentifier());
+                break;
+            case CONSTANT:
+                out.append(((ASTConstant) node).getIdentifier());
+                break;
+            case FUNCTION:
+                out.append(((ASTFunction) node).getIdentifier());
+                break;
+            case BINARY_OPERATOR: {
+                ASTBinaryOperator operator = (ASTBinaryOperator) node;
+                out.append('(');
+                print(operator.getLeft(), out);
+                out.append(' ').append(operator.getType().getSymbol()).append(' ');
+                print(operator.getRight(), out);
+                out.append(')');
+                break;
+            }
+            case UNARY_OPERATOR: {
+                ASTUnaryOperator operator = (ASTUnaryOperator) node;
+                boolean post = operator.getType() == ASTOperator.Type.UNARY_POST_INCREMENT ||
+                        operator.getType() == ASTOperator.Type.UNARY_POST_DECREMENT;
+                out.append('(');
+                if (!post) {
+                    out.append(operator.getType().getSymbol());
+                }
+                print(operator.getSingleNode(), out);
+                if (post) {
+                    out.append(operator.getType().getSymbol());
+                }
+                out.append(')');
+                break;
+            }
+            case IF: {
+                ASTIfStatement statement = (ASTIfStatement) node;
+                out.append("if ");
+                print(statement.getExpression(), out);
+                out.append(' ');
+                print(statement.getIfScope(), out);
+                if (statement.getElseScope() != null) {
+                    out.append(" else ");
+                    print(statement.getElseScope(), out);
+                }
+                break;
+            }
+            case WHILE: {
+                ASTWhileStatement statement = (ASTWhileStatement) node;
+                out.append("while ");
+                print(statement.getExpression(), out);
+                out.append(' ');
+                print(statement.getWhileScope(), out);
+                break;
+            }
+            case FOR: {
+                ASTForStatement statement = (ASTForStatement) node;
+                out.append("for ");
+                print(statement.getInit(), out);
+                out.append(", ");
+                print(statement.getCondition(), out);
+                out.append(", ");
+                print(statement.getIncrement(), out);
+                out.append(' ');
+                print(statement.getForScope(), out);
+                break;
+            }
+            case FOR_RANGE: {
+                ASTForRangeStatement statement = (ASTForRangeStatement) node;
+                out.append("for ");
+                print(statement.getRange(), out);
+                out.append(' ');
+                print(statement.getForScope(), out);
+                break;
+            }
+            case CALL: {
+                ASTCall call = (ASTCall) node;
+                out.append(call.getFunction().getIdentifier()).append('(');
+                list(call.getArguments(), ", ", out);
+                out.append(')');
+                break;
+            }
+            case RETURN:
+                out.append("return ");
+                print(((ASTReturnStatement) node).getExpression(), out);
+                break;
+            default:
+                throw new IllegalArgumentException(node.getKind().toString());
+        }
+    }
+
+    /**
+     * A function is printed in full where it's declared, everywhere else it's a reference printed as its name.
+     */
+    private static void declaration(ASTFunction function, StringBuilder out) {
+        out.append(function.getIdentifier()).append(" :: (");
+        for (int i = 0; i < function.getParameters().size(); ++i) {
+            ASTVariable parameter = (ASTVariable) function.getParameters().get(i);
+            out.append(i > 0 ? ", " : "").append(parameter.getIdentifier()).append(" : ")
+                    .append(parameter.getDataType());
+        }
+        out.append(") -> ").append(function.getDataType()).append(' ');
+        if (function.isBodyParsed()) {
+            print(function.getFunctionStatement(), out);
+        } else {
+            out.append("...");
+        }
+    }
+
+    private static void list(List<ASTNode> nodes, String separator, StringBuilder out) {
+        for (int i = 0; i < nodes.size(); ++i) {
+            if (i > 0) {
+                out.append(separator);
+            }
+            print(nodes.get(i), out);
+        }
+    }
+}
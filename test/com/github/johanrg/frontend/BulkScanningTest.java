@@ -0,0 +1,68 @@
+package com.github.johanrg.frontend;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author johan
+ * @since 2016-08-05.
+ */
+public class BulkScanningTest extends LexerTestCase {
+    /**
+     * Comments, identifiers and strings of every length around the eight bytes a bulk scan looks at.
+     */
+    private static String runs() {
+        StringBuilder source = new StringBuilder();
+        for (int length = 1; length <= 20; ++length) {
+            StringBuilder run = new StringBuilder();
+            for (int i = 0; i < length; ++i) {
+                run.append((char) ('a' + i));
+            }
+            source.append("// ").append(run).append('\n');
+            source.append("/* ").append(run).append(" */ ").append(run).append("_").append(length)
+                    .append(" := \"").append(run).append("\\\"").append(run).append("\"\n");
+        }
+        return source.toString();
+    }
+
+    private static TokenBuffer lex(Lexer.Engine engine, boolean bulkScanning, String source, boolean bytes)
+            throws CompilerException {
+        Lexer lexer = new Lexer(engine);
+        lexer.setBulkScanning(bulkScanning);
+        if (bytes) {
+            lexer.lex("test", ByteBuffer.wrap(source.getBytes(StandardCharsets.UTF_8)));
+        } else {
+            lexer.lex("test", source);
+        }
+        return lexer.getTokens();
+    }
+
+    private static void assertSameWithAndWithoutBulkScanning(String source) throws CompilerException {
+        for (Lexer.Engine engine : Lexer.Engine.values()) {
+            for (boolean bytes : new boolean[]{false, true}) {
+                assertSameTokens(lex(engine, false, source, bytes), lex(engine, true, source, bytes));
+            }
+        }
+    }
+
+    public void testTokensAreTheSame() throws CompilerException {
+        assertSameWithAndWithoutBulkScanning(SOURCE);
+    }
+
+    public void testRunsOfEveryLengthAreTheSame() throws CompilerException {
+        assertSameWithAndWithoutBulkScanning(runs());
+    }
+
+    public void testRunsAtTheEndOfTheFileAreTheSame() throws CompilerException {
+        assertSameWithAndWithoutBulkScanning("abcdefghijklmnopq");
+        assertSameWithAndWithoutBulkScanning("x := 1 // abcdefghijklmnopq");
+        assertSameWithAndWithoutBulkScanning("/* abcdefghijklmnopq */");
+    }
+
+    public void testFindLineEndStopsAtAnEofCharacter() {
+        StringSource source = new StringSource("abc\0def\nghi");
+        assertEquals(3, source.findLineEnd(0));
+        assertEquals(7, source.findLineEnd(4));
+        assertEquals(11, source.findLineEnd(8));
+    }
+}
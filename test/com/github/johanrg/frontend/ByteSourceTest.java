@@ -0,0 +1,84 @@
+package com.github.johanrg.frontend;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author johan
+ * @since 2016-08-05.
+ */
+public class ByteSourceTest extends LexerTestCase {
+    private static ByteSource bytes(String text) {
+        return new ByteSource(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public void testLexingBytesGivesTheTokensOfTheText() throws CompilerException {
+        TokenBuffer text = lex(new Lexer(), SOURCE);
+        Lexer lexer = new Lexer();
+        lexer.lex("test", ByteBuffer.wrap(SOURCE.getBytes(StandardCharsets.UTF_8)));
+        assertSameTokens(text, lexer.getTokens());
+    }
+
+    public void testMultiByteCharactersAreDecodedAndCountedOnce() throws CompilerException {
+        String source = "// kommentar p\u00e5 svenska\ns := \"bl\u00e5b\u00e4r \u20ac\"\nc := '\u00f6'\nt := s\n";
+        TokenBuffer text = lex(new Lexer(), source);
+        Lexer lexer = new Lexer();
+        lexer.lex("test", ByteBuffer.wrap(source.getBytes(StandardCharsets.UTF_8)));
+        TokenBuffer bytes = lexer.getTokens();
+        assertEquals(text.size(), bytes.size());
+        for (int i = 0; i < text.size(); ++i) {
+            assertSameToken(text, bytes, i);
+        }
+        assertEquals("bl\u00e5b\u00e4r \u20ac", bytes.getData(3));
+        assertEquals('\u00f6', bytes.getConstants().getChar(bytes.getConstant(8)));
+        // NOTE(Johan): offsets count bytes, the comment, the string and the char take 1, 4 and 1 extra bytes.
+        assertEquals(text.getOffset(11) + 1 + 4 + 1, bytes.getOffset(11));
+    }
+
+    public void testFindMatchesTheScalarLoop() {
+        String text = "abc \"quoted\" and a\nnew line with \u00fcn\u00efc\u00f6d\u00e9 in the middle of a longer line\n\"";
+        ByteSource source = bytes(text);
+        for (int pos = 0; pos <= source.length(); ++pos) {
+            assertEquals("at " + pos, scalarFind(source, pos), source.find(pos, '"', '\\', '\n'));
+        }
+    }
+
+    public void testFindStopsAtEof() {
+        ByteSource source = bytes("abcdefgh\0ijklmnop\"");
+        assertEquals(8, source.find(0, '"', '"', '"'));
+    }
+
+    public void testSkipAlphanumericMatchesTheScalarLoop() {
+        String text = "identifier_with_Numbers123 x_y ab\u00e5cd aVeryLongIdentifierThatSpansSeveralWords_ok+1";
+        ByteSource source = bytes(text);
+        for (int pos = 0; pos <= source.length(); ++pos) {
+            int expected = pos;
+            while (expected < source.length() && isAlphanumeric(source.charAt(expected))) {
+                ++expected;
+            }
+            assertEquals("at " + pos, expected, source.skipAlphanumeric(pos));
+        }
+    }
+
+    public void testSubstringDecodesUtf8() {
+        ByteSource source = bytes("x := \"\u20acuro\"");
+        assertEquals("\u20acuro", source.substring(6, 12));
+        assertTrue(source.continuesCharacter(7));
+        assertFalse(source.continuesCharacter(9));
+        assertEquals(Source.EOF, source.charAt(source.length()));
+    }
+
+    private static int scalarFind(Source source, int pos) {
+        for (; pos < source.length(); ++pos) {
+            char ch = source.charAt(pos);
+            if (ch == '"' || ch == '\\' || ch == '\n' || ch == Source.EOF) {
+                return pos;
+            }
+        }
+        return source.length();
+    }
+
+    private static boolean isAlphanumeric(char ch) {
+        return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || (ch >= '0' && ch <= '9') || ch == '_';
+    }
+}
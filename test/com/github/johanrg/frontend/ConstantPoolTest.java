@@ -0,0 +1,72 @@
+package com.github.johanrg.frontend;
+
+import com.github.johanrg.TestCase;
+
+/**
+ * @author johan
+ * @since 2016-08-05.
+ */
+public class ConstantPoolTest extends TestCase {
+    public void testValuesAreKeptAsRawBits() {
+        ConstantPool constants = new ConstantPool();
+        int b = constants.addBoolean(true);
+        int i = constants.addInt(-7);
+        int f = constants.addFloat(2.5f);
+        int d = constants.addDouble(-0.0);
+        int c = constants.addChar('q');
+        assertTrue(constants.getBoolean(b));
+        assertEquals(-7, constants.getInt(i));
+        assertEquals(2.5f, constants.getFloat(f));
+        assertEquals(Double.doubleToRawLongBits(-0.0), constants.getBits(d));
+        assertEquals('q', constants.getChar(c));
+        assertEquals(DataType.FLOAT, constants.getDataType(f));
+        assertEquals(5, constants.size());
+    }
+
+    public void testEqualStringsAreStoredOnce() {
+        ConstantPool constants = new ConstantPool();
+        int a = constants.addString("text");
+        int b = constants.addString(new String("text"));
+        assertEquals(a, b);
+        assertEquals("text", constants.getString(a));
+        assertEquals(a, constants.addBits(DataType.STRING, constants.getBits(a)));
+    }
+
+    public void testCopyingFromAnotherPool() {
+        ConstantPool from = new ConstantPool();
+        int s = from.addString("moved");
+        int d = from.addDouble(1.25);
+        ConstantPool to = new ConstantPool();
+        to.addInt(1);
+        assertEquals("moved", to.getString(to.add(from, s)));
+        assertEquals(1.25, to.getDouble(to.add(from, d)));
+    }
+
+    public void testIntsAreParsedFromTheSource() {
+        Source source = new StringSource("x := 2147483647 + 1F");
+        assertEquals(Integer.MAX_VALUE, ConstantPool.parseInt(source, 5, 15, 10));
+        assertEquals(31, ConstantPool.parseInt(source, 18, 20, 16));
+        assertThrows(NumberFormatException.class, () -> ConstantPool.parseInt(source, 5, 5, 10));
+        assertThrows(NumberFormatException.class, () -> ConstantPool.parseInt(new StringSource("2147483648"), 0, 10,
+                10));
+        assertThrows(NumberFormatException.class, () -> ConstantPool.parseInt(source, 0, 1, 10));
+    }
+
+    public void testLexerDecodesLiteralsOnce() throws CompilerException {
+        Lexer lexer = new Lexer();
+        lexer.lex("test", "a := 0x1F\nb := 2.5f\nc := 1.5\nd := \"s\"\ne := \"s\"\nf := 'z'\n");
+        TokenBuffer tokens = lexer.getTokens();
+        ConstantPool constants = tokens.getConstants();
+        assertEquals(31, constants.getInt(tokens.getConstant(3)));
+        assertEquals(DataType.FLOAT, tokens.getDataType(8));
+        assertEquals(2.5f, constants.getFloat(tokens.getConstant(8)));
+        assertEquals(1.5, constants.getDouble(tokens.getConstant(13)));
+        assertEquals(tokens.getConstant(18), tokens.getConstant(23));
+        assertEquals('z', constants.getChar(tokens.getConstant(28)));
+    }
+
+    public void testNumberThatDoesNotFitIsAnError() {
+        Lexer lexer = new Lexer();
+        assertThrows(CompilerException.class, () -> lexer.lex("test", "a := 99999999999\n"));
+    }
+}
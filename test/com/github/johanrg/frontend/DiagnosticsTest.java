@@ -0,0 +1,82 @@
+package com.github.johanrg.frontend;
+
+import com.github.johanrg.TestCase;
+import com.github.johanrg.ast.ASTFactory;
+import com.github.johanrg.ast.ASTScope;
+import com.github.johanrg.ast.Trees;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * @author johan
+ * @since 2016-08-05.
+ */
+public class DiagnosticsTest extends TestCase {
+    private static String source(String... lines) {
+        return String.join("\n", lines) + "\n";
+    }
+
+    private static TokenBuffer lex(Lexer.Engine engine, Diagnostics diagnostics, String source)
+            throws CompilerException {
+        Lexer lexer = new Lexer(engine);
+        lexer.setDiagnostics(diagnostics);
+        lexer.lex("test", source);
+        return lexer.getTokens();
+    }
+
+    public void testLexerGoesOnAfterAnError() throws CompilerException {
+        String source = source("x := 1", "y := 0x", "z := 2", "  w := 3", "v := 4");
+        for (Lexer.Engine engine : Lexer.Engine.values()) {
+            Diagnostics diagnostics = new Diagnostics();
+            TokenBuffer tokens = lex(engine, diagnostics, source);
+            assertEquals(engine.toString(), Arrays.asList("test : error : (2,6) expected hexadecimal digit",
+                    "test : error : (4,1) indentation spaces must be in multiples of 4"), diagnostics.getErrors());
+            ASTScope root = (ASTScope) new Parser(tokens, false, new ASTFactory(), diagnostics).getRoot();
+            assertEquals(engine.toString(), "{(x = 1); (z = 2); (v = 4)}", Trees.print(root));
+        }
+    }
+
+    public void testParserReportsEveryStatement() throws CompilerException {
+        Diagnostics diagnostics = new Diagnostics();
+        TokenBuffer tokens = lex(Lexer.Engine.STATE_MACHINE, diagnostics,
+                source("x := 1", "y := z", "x = 1.5f", "if x", "    x = y", "w := x"));
+        ASTScope root = (ASTScope) new Parser(tokens, false, new ASTFactory(), diagnostics).getRoot();
+        assertEquals(Arrays.asList("test : error : (2,6) unknown identifier", "test : error : (3,3) type mismatch",
+                "test : error : (4,4) expected boolean expression", "test : error : (5,9) unknown identifier"),
+                diagnostics.getErrors());
+        assertEquals("{(x = 1); if x {}; (w = x)}", Trees.print(root));
+    }
+
+    public void testOnlyTheFirstErrorOfALineIsKept() throws CompilerException {
+        Diagnostics diagnostics = new Diagnostics();
+        Location location = lex(Lexer.Engine.STATE_MACHINE, null, source("x := 1")).getLocation(0);
+        diagnostics.report("first", location);
+        diagnostics.report("second", location);
+        assertEquals(1, diagnostics.getErrorCount());
+        assertEquals("[test : error : (1,1) first]", diagnostics.getErrors().toString());
+    }
+
+    public void testWithoutDiagnosticsTheFirstErrorIsThrown() {
+        String source = source("y := z", "x = 1");
+        CompilerException e = assertThrows(CompilerException.class,
+                () -> new Parser(lex(Lexer.Engine.STATE_MACHINE, null, source), false));
+        assertTrue(e.getMessage().endsWith("(1,6) unknown identifier"));
+        assertThrows(CompilerException.class, () -> lex(Lexer.Engine.TABLE, null, source("x := 0x")));
+    }
+
+    public void testParallelBodiesReportInSourceOrder() throws CompilerException {
+        String source = source("f :: () -> int", "    return a", "g :: () -> int", "    return 1.5f",
+                "h :: () -> int", "    return b");
+        Diagnostics diagnostics = new Diagnostics();
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            new Parser(lex(Lexer.Engine.STATE_MACHINE, diagnostics, source), pool, new ASTFactory(), diagnostics);
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(Arrays.asList("test : error : (2,12) unknown identifier",
+                "test : error : (4,12) expected expression of type: 'int", "test : error : (6,12) unknown identifier"),
+                diagnostics.getErrors());
+    }
+}
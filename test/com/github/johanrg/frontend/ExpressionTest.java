@@ -0,0 +1,55 @@
+package com.github.johanrg.frontend;
+
+import com.github.johanrg.TestCase;
+
+/**
+ * @author johan
+ * @since 2016-08-05.
+ */
+public class ExpressionTest extends TestCase {
+    private static final String DECLARATIONS = "a := 1\nb := 2\nc := 3";
+
+    /**
+     * @return The printed tree of the expression assigned to x after a, b and c are declared.
+     */
+    private static String expression(String expression) throws CompilerException {
+        String tree = ParserTest.parse(DECLARATIONS, "x := " + expression);
+        return tree.substring("{(a = 1); (b = 2); (c = 3); (x = ".length(), tree.length() - 2);
+    }
+
+    public void testPrecedence() throws CompilerException {
+        assertEquals("((a + (b * c)) - ((a / b) % c))", expression("a + b * c - a / b % c"));
+        assertEquals("(((a < b) && (b < c)) || (a == b))", expression("a < b && b < c || a == b"));
+        assertEquals("((a + b) < (b * c))", expression("a + b < b * c"));
+        assertEquals("((-a) * b)", expression("-a * b"));
+    }
+
+    public void testAssociativity() throws CompilerException {
+        assertEquals("((a - b) - c)", expression("a - b - c"));
+        assertEquals("((a / b) / c)", expression("a / b / c"));
+        assertEquals("(a ^ (b ^ c))", expression("a ^ b ^ c"));
+        assertTrue(ParserTest.parse(DECLARATIONS, "a = b = c").endsWith("; (a = (b = c))}"));
+    }
+
+    public void testParentheses() throws CompilerException {
+        assertEquals("((a + b) * c)", expression("(a + b) * c"));
+        assertEquals("(a - (b - c))", expression("a - (b - c)"));
+        assertEquals("(!(a != b))", expression("!(a != b)"));
+    }
+
+    public void testUnaryOperators() throws CompilerException {
+        assertEquals("((++a) + (b--))", expression("++a + b--"));
+        assertEquals("(--a)", expression("--a"));
+        assertEquals("(-(-a))", expression("- -a"));
+    }
+
+    public void testLiteralExpressionsAreFolded() throws CompilerException {
+        assertEquals("7", expression("1 + 2 * 3"));
+        assertEquals("9", expression("(1 + 2) * 3"));
+    }
+
+    public void testTypeErrors() {
+        assertTrue(ParserTest.error("x := \"a\" + 1").endsWith("(1,10) type mismatch"));
+        assertTrue(ParserTest.error("x := 1.5", "y := x + 1").endsWith("(2,8) type mismatch"));
+    }
+}
@@ -0,0 +1,122 @@
+package com.github.johanrg.frontend;
+
+import com.github.johanrg.TestCase;
+import com.github.johanrg.ast.ASTFactory;
+import com.github.johanrg.ast.ASTLiteral;
+import com.github.johanrg.ast.ASTOperator;
+import com.github.johanrg.optimizer.ConstantFolder;
+
+/**
+ * @author johan
+ * @since 2016-08-05.
+ */
+public class FoldingTableTest extends TestCase {
+    private final ConstantPool constants = new ConstantPool();
+
+    private Object fold(ASTOperator.Type type, int a, int b) {
+        int constant = FoldingTable.fold(type, DataType.INT, constants, a, b);
+        return constant < 0 ? null : constants.getValue(constant);
+    }
+
+    private Object fold(ASTOperator.Type type, float a, float b) {
+        int constant = FoldingTable.fold(type, DataType.FLOAT, constants, Float.floatToRawIntBits(a),
+                Float.floatToRawIntBits(b));
+        return constant < 0 ? null : constants.getValue(constant);
+    }
+
+    private Object fold(ASTOperator.Type type, double a, double b) {
+        int constant = FoldingTable.fold(type, DataType.DOUBLE, constants, Double.doubleToRawLongBits(a),
+                Double.doubleToRawLongBits(b));
+        return constant < 0 ? null : constants.getValue(constant);
+    }
+
+    public void testIntsWrapAroundLikeAtRunTime() {
+        assertEquals(7, fold(ASTOperator.Type.BINARY_ADD, 3, 4));
+        assertEquals(Integer.MIN_VALUE, fold(ASTOperator.Type.BINARY_ADD, Integer.MAX_VALUE, 1));
+        assertEquals(-1, fold(ASTOperator.Type.BINARY_SUB, 3, 4));
+        assertEquals(-3, fold(ASTOperator.Type.BINARY_DIV, -7, 2));
+        assertEquals(-1, fold(ASTOperator.Type.BINARY_MOD, -7, 2));
+        assertEquals(Integer.MAX_VALUE * 3, fold(ASTOperator.Type.BINARY_MUL, Integer.MAX_VALUE, 3));
+    }
+
+    public void testIntPowerIsExact() {
+        assertEquals(1594323, fold(ASTOperator.Type.BINARY_POW, 3, 13));
+        assertEquals(1, fold(ASTOperator.Type.BINARY_POW, 5, 0));
+        assertEquals(Integer.MIN_VALUE, fold(ASTOperator.Type.BINARY_POW, 2, 31));
+        assertEquals(0, fold(ASTOperator.Type.BINARY_POW, 2, 32));
+        // NOTE(Johan): Math.pow with a cast to int would stop at Integer.MAX_VALUE instead of wrapping around.
+        assertEquals(16777217 * 16777217, fold(ASTOperator.Type.BINARY_POW, 16777217, 2));
+        assertEquals(0, fold(ASTOperator.Type.BINARY_POW, 2, -1));
+        assertEquals(-1, fold(ASTOperator.Type.BINARY_POW, -1, -3));
+    }
+
+    public void testUndefinedIntsAreNotFolded() {
+        assertNull(fold(ASTOperator.Type.BINARY_DIV, 1, 0));
+        assertNull(fold(ASTOperator.Type.BINARY_MOD, 1, 0));
+        assertNull(fold(ASTOperator.Type.BINARY_POW, 0, -1));
+    }
+
+    public void testFloatsAndDoubles() {
+        assertEquals(0.1f + 0.2f, fold(ASTOperator.Type.BINARY_ADD, 0.1f, 0.2f));
+        assertEquals(0.1 + 0.2, fold(ASTOperator.Type.BINARY_ADD, 0.1, 0.2));
+        assertEquals(Float.POSITIVE_INFINITY, fold(ASTOperator.Type.BINARY_DIV, 1.0f, 0.0f));
+        assertEquals(1.5 % 1.0, fold(ASTOperator.Type.BINARY_MOD, 1.5, 1.0));
+        assertEquals(Math.pow(2.0, 0.5), fold(ASTOperator.Type.BINARY_POW, 2.0, 0.5));
+        assertEquals(-0.0f, constants.getValue(FoldingTable.fold(ASTOperator.Type.UNARY_MINUS, DataType.FLOAT,
+                constants, Float.floatToRawIntBits(0.0f))));
+    }
+
+    public void testRelationalOperatorsGiveBooleans() {
+        assertEquals(true, fold(ASTOperator.Type.RELATIONAL_LT, -1, 1));
+        assertEquals(false, fold(ASTOperator.Type.RELATIONAL_GTE, -1, 1));
+        assertEquals(false, fold(ASTOperator.Type.RELATIONAL_EQUAL, Float.NaN, Float.NaN));
+        assertEquals(true, fold(ASTOperator.Type.RELATIONAL_NOT_EQUAL, Double.NaN, Double.NaN));
+        assertEquals(true, fold(ASTOperator.Type.RELATIONAL_EQUAL, 0.0, -0.0));
+        int a = constants.addChar('a');
+        int b = constants.addChar('b');
+        assertEquals(true, constants.getValue(FoldingTable.fold(ASTOperator.Type.RELATIONAL_LT, DataType.CHAR,
+                constants, constants.getBits(a), constants.getBits(b))));
+        assertEquals(DataType.BOOLEAN, FoldingTable.getResultType(ASTOperator.Type.RELATIONAL_LT, DataType.INT));
+        assertEquals(DataType.INT, FoldingTable.getResultType(ASTOperator.Type.BINARY_ADD, DataType.INT));
+    }
+
+    public void testStrings() {
+        long hello = constants.getBits(constants.addString("hello "));
+        long world = constants.getBits(constants.addString("world"));
+        int joined = FoldingTable.fold(ASTOperator.Type.BINARY_ADD, DataType.STRING, constants, hello, world);
+        assertEquals("hello world", constants.getString(joined));
+        long again = constants.getBits(constants.addString("hello world"));
+        assertEquals(true, constants.getValue(FoldingTable.fold(ASTOperator.Type.RELATIONAL_EQUAL, DataType.STRING,
+                constants, constants.getBits(joined), again)));
+    }
+
+    public void testOperatorsThatDoNotApplyAreNotFolded() {
+        assertFalse(FoldingTable.canFold(ASTOperator.Type.BINARY_SUB, DataType.STRING));
+        assertFalse(FoldingTable.canFold(ASTOperator.Type.BINARY_ADD, DataType.BOOLEAN));
+        assertFalse(FoldingTable.canFold(ASTOperator.Type.RELATIONAL_LT, DataType.BOOLEAN));
+        assertFalse(FoldingTable.canFold(ASTOperator.Type.UNARY_LOGICAL_NEGATION, DataType.INT));
+        assertTrue(FoldingTable.canFold(ASTOperator.Type.UNARY_MINUS, DataType.DOUBLE));
+        assertEquals(-1, FoldingTable.fold(ASTOperator.Type.BINARY_SUB, DataType.STRING, constants, 0, 0));
+    }
+
+    public void testLiteralsDecodeTheirBits() {
+        ASTFactory factory = new ASTFactory();
+        ASTLiteral f = factory.literal(constants, constants.addFloat(2.5f), null);
+        ASTLiteral d = factory.literal(constants, constants.addDouble(-0.25), null);
+        ASTLiteral c = factory.literal(constants, constants.addChar('z'), null);
+        assertEquals(2.5f, f.getFloat());
+        assertEquals(-0.25, d.getDouble());
+        assertEquals('z', c.getChar());
+        assertEquals(DataType.DOUBLE, d.getDataType());
+
+        ConstantFolder folder = new ConstantFolder(factory);
+        ASTLiteral product = folder.fold(ASTOperator.Type.BINARY_MUL, f, f, null);
+        assertEquals(6.25f, product.getFloat());
+        assertEquals(0.25, folder.fold(ASTOperator.Type.UNARY_MINUS, d, null).getDouble());
+    }
+
+    public void testParserFoldsThroughTheTable() throws CompilerException {
+        assertEquals("{(x = 1024); (y = (1 / 0)); (z = 2.5)}", ParserTest.parse("x := 2 ^ 10", "y := 1 / 0",
+                "z := 1.0f + 1.5f"));
+    }
+}
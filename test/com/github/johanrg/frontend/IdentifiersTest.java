@@ -0,0 +1,131 @@
+package com.github.johanrg.frontend;
+
+import com.github.johanrg.TestCase;
+import com.github.johanrg.ast.ASTFunction;
+import com.github.johanrg.ast.ASTScope;
+import com.github.johanrg.ast.ASTVariable;
+import com.github.johanrg.ast.Identifier;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * @author johan
+ * @since 2016-08-05.
+ */
+public class IdentifiersTest extends TestCase {
+    private static ASTVariable variable(int symbol) {
+        return new ASTVariable(symbol, "v" + symbol, DataType.INT, null);
+    }
+
+    public void testDeclarationsGetDepthAndSlot() {
+        Identifiers identifiers = new Identifiers();
+        identifiers.newScope();
+        ASTVariable a = variable(0);
+        ASTVariable b = variable(1);
+        assertTrue(identifiers.addIdentifier(a));
+        assertTrue(identifiers.addIdentifier(b));
+        identifiers.newScope();
+        ASTVariable c = variable(2);
+        assertTrue(identifiers.addIdentifier(c));
+        assertEquals(0, a.getDepth());
+        assertEquals(0, a.getSlot());
+        assertEquals(1, b.getSlot());
+        assertEquals(1, c.getDepth());
+        assertEquals(0, c.getSlot());
+        assertEquals(1, identifiers.getFrameSize());
+    }
+
+    public void testInnerDeclarationsShadowUntilTheScopeIsClosed() {
+        Identifiers identifiers = new Identifiers();
+        identifiers.newScope();
+        ASTVariable outer = variable(3);
+        identifiers.addIdentifier(outer);
+        identifiers.newScope();
+        ASTVariable inner = variable(3);
+        assertTrue(identifiers.addIdentifier(inner));
+        assertSame(inner, identifiers.find(3));
+        Map<Integer, Identifier> scope = identifiers.popScope();
+        assertEquals(1, scope.size());
+        assertSame(inner, scope.get(3));
+        assertSame(outer, identifiers.find(3));
+    }
+
+    public void testNameCanOnlyBeDeclaredOncePerScope() {
+        Identifiers identifiers = new Identifiers();
+        identifiers.newScope();
+        assertTrue(identifiers.addIdentifier(variable(0)));
+        assertFalse(identifiers.addIdentifier(variable(0)));
+        assertEquals(1, identifiers.getFrameSize());
+    }
+
+    public void testScopeListsItsIdentifiersInDeclarationOrder() {
+        Identifiers identifiers = new Identifiers();
+        identifiers.newScope();
+        for (int symbol : new int[]{500, 7, 100}) {
+            identifiers.addIdentifier(variable(symbol));
+        }
+        assertEquals(Arrays.asList(500, 7, 100), Arrays.asList(identifiers.popScope().keySet().toArray()));
+        assertNull(identifiers.find(500));
+        assertNull(identifiers.find(-1));
+        assertNull(identifiers.find(100_000));
+    }
+
+    public void testTableOnTopOfCapturedIdentifiers() {
+        Identifiers identifiers = new Identifiers();
+        identifiers.newScope();
+        ASTVariable a = variable(0);
+        ASTVariable b = variable(1);
+        identifiers.addIdentifier(a);
+        identifiers.addIdentifier(b);
+        identifiers.newScope();
+        ASTVariable inner = variable(0);
+        identifiers.addIdentifier(inner);
+        Identifiers.Visible visible = identifiers.capture();
+        ASTVariable later = variable(2);
+        identifiers.addIdentifier(later);
+
+        Identifiers body = new Identifiers(visible);
+        assertSame(inner, body.find(0));
+        assertSame(b, body.find(1));
+        assertNull(body.find(2));
+        body.newScope();
+        ASTVariable shadow = variable(1);
+        assertTrue(body.addIdentifier(shadow));
+        assertEquals(2, shadow.getDepth());
+        assertEquals(0, shadow.getSlot());
+        assertSame(shadow, body.find(1));
+        body.popScope();
+        assertSame(b, body.find(1));
+        body.release();
+
+        Identifiers.Visible after = identifiers.capture();
+        Identifiers next = new Identifiers(after);
+        assertSame(later, next.find(2));
+        assertSame(b, next.find(1));
+        identifiers.popScope();
+        assertSame(a, new Identifiers(identifiers.capture()).find(0));
+    }
+
+    public void testParserGivesLexicalAddresses() throws CompilerException {
+        Lexer lexer = new Lexer();
+        lexer.lex("test", "a := 1\nf :: (x : int) -> int\n    y := x + a\n    return y\nb := f(a)\n");
+        ASTScope root = (ASTScope) new Parser(lexer.getTokens()).getRoot();
+        SymbolTable symbols = lexer.getSymbols();
+        Identifier a = root.getIdentifiers().get(symbols.intern("a"));
+        Identifier f = root.getIdentifiers().get(symbols.intern("f"));
+        Identifier b = root.getIdentifiers().get(symbols.intern("b"));
+        assertEquals(0, a.getDepth());
+        assertEquals(0, a.getSlot());
+        assertEquals(1, f.getSlot());
+        assertEquals(2, b.getSlot());
+        assertEquals(3, root.getFrameSize());
+        ASTScope body = ((ASTFunction) f).parseBody();
+        Identifier y = body.getIdentifiers().get(symbols.intern("y"));
+        assertEquals(2, y.getDepth());
+        assertEquals(0, y.getSlot());
+        ASTVariable x = (ASTVariable) ((ASTFunction) f).getParameters().get(0);
+        assertEquals(1, x.getDepth());
+        assertEquals(0, x.getSlot());
+    }
+}
@@ -0,0 +1,109 @@
+package com.github.johanrg.frontend;
+
+import com.github.johanrg.TestCase;
+import com.github.johanrg.ast.ASTFunction;
+import com.github.johanrg.ast.ASTScope;
+import com.github.johanrg.ast.Trees;
+
+import java.util.Random;
+
+/**
+ * @author johan
+ * @since 2016-08-05.
+ */
+public class IncrementalParserTest extends TestCase {
+    private static final String SOURCE = "f :: (a : int) -> int\n    y := 5\n    return a\n";
+
+    private String text;
+    private IncrementalParser parser;
+
+    private void open(String source, boolean lazy) throws CompilerException {
+        Lexer lexer = new Lexer();
+        lexer.lex("test", source);
+        text = source;
+        parser = new IncrementalParser(lexer.getTokens(), (ASTScope) new Parser(lexer.getTokens(), lazy).getRoot());
+    }
+
+    private void edit(int start, int end, String replacement) throws CompilerException {
+        text = text.substring(0, start) + replacement + text.substring(end);
+        parser.reparse(text, start, end);
+    }
+
+    private String tree() throws CompilerException {
+        LazyParsingTest.parseBodies(parser.getRoot());
+        return Trees.print(parser.getRoot());
+    }
+
+    private String parsed() throws CompilerException {
+        Lexer lexer = new Lexer();
+        lexer.lex("test", text);
+        return Trees.print(new Parser(lexer.getTokens()).getRoot());
+    }
+
+    public void testInsertionAtStartOfLazyBody() throws CompilerException {
+        open(SOURCE, true);
+        edit(22, 22, "    x := 1\n");
+        assertEquals("{f :: (a : INT) -> INT {(x = 1); (y = 5); return a}}", tree());
+    }
+
+    public void testInsertionAtStartOfParsedBody() throws CompilerException {
+        open(SOURCE, false);
+        edit(22, 22, "    x := 1\n");
+        assertEquals(parsed(), tree());
+    }
+
+    public void testEditsOfLazyBodyMatchParsingAgain() throws CompilerException {
+        open(SOURCE + "g :: () -> int\n    return 2\n", true);
+        edit(22, 22, "    x := 1\n");
+        edit(text.indexOf("y := 5"), text.indexOf("y := 5") + 6, "y := a * 2");
+        edit(text.indexOf("    return 2"), text.indexOf("    return 2"), "    z := 3\n");
+        assertEquals(parsed(), tree());
+        ASTFunction g = (ASTFunction) parser.getRoot().getStatements().get(1);
+        assertEquals("{(z = 3); return 2}", Trees.print(g.parseBody()));
+    }
+
+    /**
+     * Every function calls the one before it and uses a variable declared at the top.
+     */
+    private static String functions(int count) {
+        StringBuilder source = new StringBuilder("k := 3\nf0 :: (a : int) -> int\n    return a * 2\n");
+        for (int i = 1; i < count; ++i) {
+            source.append("f").append(i).append(" :: (a : int) -> int\n");
+            source.append("    b := a * 2 + k\n");
+            source.append("    if b > 100\n");
+            source.append("        b = b - f").append(i - 1).append("(a)\n");
+            source.append("    return b\n");
+        }
+        return source.toString();
+    }
+
+    public void testEditsAcrossTheTopLevel() throws CompilerException {
+        for (boolean lazy : new boolean[]{false, true}) {
+            open(functions(300), lazy);
+            Random random = new Random(7);
+            for (int i = 0; i < 200; ++i) {
+                int offset = text.indexOf("* 2", random.nextInt(text.length() - 10)) + 2;
+                if (offset < 2) {
+                    continue;
+                }
+                boolean longer = text.charAt(offset + 1) != '2';
+                edit(offset, longer ? offset + 1 : offset + 2, longer ? "22" : "2");
+            }
+            assertEquals(parsed(), tree());
+        }
+    }
+
+    public void testBodyOnlySeesTopLevelDeclaredBeforeIt() throws CompilerException {
+        open(functions(20), false);
+        int offset = text.indexOf("return b", text.indexOf("f5 ::"));
+        edit(offset, offset + 8, "return f4(b)");
+        assertEquals(parsed(), tree());
+        assertTrue(assertThrows(CompilerException.class, () -> edit(offset, offset + 12, "return f6(b)"))
+                .getMessage().endsWith("unknown identifier"));
+        assertTrue(assertThrows(CompilerException.class, () -> edit(offset, offset + 12, "return f5(b)"))
+                .getMessage().endsWith("unknown identifier"));
+        edit(offset, offset + 12, "return b");
+        assertEquals(functions(20), text);
+        assertEquals(parsed(), tree());
+    }
+}
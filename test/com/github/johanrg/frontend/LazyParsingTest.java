@@ -0,0 +1,61 @@
+package com.github.johanrg.frontend;
+
+import com.github.johanrg.TestCase;
+import com.github.johanrg.ast.ASTFunction;
+import com.github.johanrg.ast.ASTNode;
+import com.github.johanrg.ast.ASTScope;
+import com.github.johanrg.ast.Trees;
+
+/**
+ * @author johan
+ * @since 2016-08-05.
+ */
+public class LazyParsingTest extends TestCase {
+    private static final String[] SOURCE = {
+            "a := 1",
+            "f :: (x : int) -> int",
+            "    a := x * 2",
+            "    g :: (y : int) -> int",
+            "        return y + a",
+            "    return g(a)",
+            "b := f(a)",
+            "h :: () -> int",
+            "    return f(b) + a"};
+
+    private static TokenBuffer lex(String... lines) throws CompilerException {
+        Lexer lexer = new Lexer();
+        lexer.lex("test", String.join("\n", lines) + "\n");
+        return lexer.getTokens();
+    }
+
+    static void parseBodies(ASTScope scope) throws CompilerException {
+        for (ASTNode statement : scope.getStatements()) {
+            if (statement instanceof ASTFunction) {
+                parseBodies(((ASTFunction) statement).parseBody());
+            }
+        }
+    }
+
+    public void testBodiesAreSkippedUntilReferenced() throws CompilerException {
+        ASTScope root = (ASTScope) new Parser(lex(SOURCE), true).getRoot();
+        assertEquals("{(a = 1); f :: (x : INT) -> INT {(a = (x * 2)); g :: (y : INT) -> INT {return (y + a)}; " +
+                "return g(a)}; (b = f(a)); h :: () -> INT ...}", Trees.print(root));
+        parseBodies(root);
+        assertEquals(ParserTest.parse(SOURCE), Trees.print(root));
+    }
+
+    public void testBodyOnlySeesIdentifiersDeclaredBeforeIt() throws CompilerException {
+        String[] source = {"f :: () -> int", "    return y", "y := 1"};
+        ASTScope root = (ASTScope) new Parser(lex(source), true).getRoot();
+        CompilerException e = assertThrows(CompilerException.class, () -> parseBodies(root));
+        assertEquals(ParserTest.error(source), e.getMessage());
+    }
+
+    public void testBodyCanBeParsedAgainAfterAnError() throws CompilerException {
+        ASTScope root = (ASTScope) new Parser(lex("f :: () -> int", "    return 1.5"), true).getRoot();
+        ASTFunction f = (ASTFunction) root.getStatements().get(0);
+        String first = assertThrows(CompilerException.class, f::parseBody).getMessage();
+        assertEquals(first, assertThrows(CompilerException.class, f::parseBody).getMessage());
+        assertFalse(f.isBodyParsed());
+    }
+}
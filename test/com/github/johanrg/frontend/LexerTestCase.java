@@ -0,0 +1,70 @@
+package com.github.johanrg.frontend;
+
+import com.github.johanrg.TestCase;
+
+/**
+ * Base class of the tests that compare the tokens of different ways of lexing the same source.
+ *
+ * @author johan
+ * @since 2016-08-05.
+ */
+public abstract class LexerTestCase extends TestCase {
+    /**
+     * Covers every kind of token, comments, indentation and escapes.
+     */
+    protected static final String SOURCE = "/* header /* nested */ comment\n" +
+            "*/\n" +
+            "// line comment\n" +
+            "x := 10\n" +
+            "y : int = 0x1F + 3 * (2 - x)\n" +
+            "z := 1.5e3 + 2.0\n" +
+            "w := 2.5f\n" +
+            "s := \"hello \\\" world\"\n" +
+            "c := 'a'\n" +
+            "k :: 10\n" +
+            "for i := 0, i < 10, i++\n" +
+            "    j :: 10\n" +
+            "    y += i % 3\n" +
+            "while x > 0 && !(x == 5)\n" +
+            "    x = x - 1\n" +
+            "if x <= 0 || x >= 10\n" +
+            "    y = 2 ^ 3 ^ 2\n" +
+            "else\n" +
+            "    y = -y\n" +
+            "add :: (a : int, b : float) -> int\n" +
+            "    return a\n" +
+            "for r : 0..3\n" +
+            "    n := ++x\n" +
+            "long_identifier_name_1 := true != false\n";
+
+    protected static TokenBuffer lex(Lexer lexer, String source) throws CompilerException {
+        lexer.lex("test", source);
+        return lexer.getTokens();
+    }
+
+    /**
+     * Fails unless the buffers hold the same tokens at the same offsets.
+     */
+    protected static void assertSameTokens(TokenBuffer expected, TokenBuffer actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); ++i) {
+            assertSameToken(expected, actual, i);
+            assertEquals(expected.getOffset(i), actual.getOffset(i));
+        }
+    }
+
+    /**
+     * Fails unless the tokens are the same apart from the offset, which differs between text and bytes.
+     */
+    protected static void assertSameToken(TokenBuffer expected, TokenBuffer actual, int index) {
+        Location expectedLocation = expected.getLocation(index);
+        Location actualLocation = actual.getLocation(index);
+        if (expected.getType(index) != actual.getType(index) ||
+                !expected.getData(index).equals(actual.getData(index)) ||
+                expected.getScopeLevel(index) != actual.getScopeLevel(index) ||
+                expectedLocation.getLine() != actualLocation.getLine() ||
+                expectedLocation.getColumn() != actualLocation.getColumn()) {
+            fail(String.format("token %d: expected <%s> but was <%s>", index, expected.get(index), actual.get(index)));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.johanrg.frontend;
+
+import com.github.johanrg.TestCase;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author johan
+ * @since 2016-08-05.
+ */
+public class LineTableTest extends TestCase {
+    private static final String SOURCE = "a := 1\n/* two\nlines */ b := 2\n\n    c := 3\n";
+
+    private static TokenBuffer lex(String source) throws CompilerException {
+        Lexer lexer = new Lexer();
+        lexer.lex("test.bs", source);
+        return lexer.getTokens();
+    }
+
+    public void testLinesAreCountedWhileLexing() throws CompilerException {
+        LineTable lines = lex(SOURCE).getLineTable();
+        assertEquals(6, lines.getLineCount());
+        assertEquals("test.bs", lines.getFileName());
+    }
+
+    public void testLineAndColumnOfOffsets() throws CompilerException {
+        LineTable lines = lex(SOURCE).getLineTable();
+        assertEquals(1, lines.getLine(0));
+        assertEquals(1, lines.getColumn(0));
+        assertEquals(1, lines.getLine(6));
+        assertEquals(7, lines.getColumn(6));
+        assertEquals(2, lines.getLine(7));
+        assertEquals(1, lines.getColumn(7));
+        assertEquals(3, lines.getLine(23));
+        assertEquals(10, lines.getColumn(23));
+        assertEquals(5, lines.getLine(35));
+        assertEquals(5, lines.getColumn(35));
+    }
+
+    public void testTokenLocations() throws CompilerException {
+        TokenBuffer tokens = lex(SOURCE);
+        Location b = tokens.getLocation(5);
+        assertEquals("b", tokens.getData(5));
+        assertEquals(3, b.getLine());
+        assertEquals(10, b.getColumn());
+        assertEquals(23, b.getOffset());
+        assertEquals("test.bs", b.getFileName());
+        Location c = tokens.getLocation(10);
+        assertEquals("c", tokens.getData(10));
+        assertEquals(5, c.getLine());
+        assertEquals(5, c.getColumn());
+    }
+
+    public void testColumnsCountCharactersNotBytes() throws CompilerException {
+        String source = "s := \"\u00e5\u00e4\u00f6\" // \u20ac\nt := s\n";
+        Lexer lexer = new Lexer();
+        lexer.lex("test.bs", ByteBuffer.wrap(source.getBytes(StandardCharsets.UTF_8)));
+        TokenBuffer tokens = lexer.getTokens();
+        LineTable lines = tokens.getLineTable();
+        // NOTE(Johan): the new line is five bytes further in than in the text.
+        int end = source.indexOf('\n') + 5;
+        assertEquals(1, lines.getLine(end));
+        assertEquals(source.indexOf('\n') + 1, lines.getColumn(end));
+        assertEquals(2, tokens.getLocation(5).getLine());
+        assertEquals(1, tokens.getLocation(5).getColumn());
+    }
+
+    public void testLocationsFollowEdits() throws CompilerException {
+        TokenBuffer tokens = lex(SOURCE);
+        LineTable lines = tokens.getLineTable();
+        Location read = tokens.getLocation(10);
+        Location unread = tokens.getLocation(10);
+        lines.addEdit(0, 1, 3);
+        assertEquals(38, read.getOffset());
+        lines.addEdit(38, 40, -1);
+        lines.addEdit(2, 2, 10);
+        assertEquals(lines.mapOffset(35, 0), read.getOffset());
+        assertEquals(read.getOffset(), unread.getOffset());
+        assertEquals(48, unread.getOffset());
+    }
+}
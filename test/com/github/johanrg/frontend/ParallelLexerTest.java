@@ -0,0 +1,84 @@
+package com.github.johanrg.frontend;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * @author johan
+ * @since 2016-08-05.
+ */
+public class ParallelLexerTest extends LexerTestCase {
+    /**
+     * Large enough to be split into several chunks.
+     */
+    private static String large(String between) {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; source.length() < 300_000; ++i) {
+            source.append(SOURCE.replace("x", "x" + i)).append(between);
+        }
+        return source.toString();
+    }
+
+    private static TokenBuffer lexParallel(String source) throws CompilerException {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Lexer lexer = new Lexer();
+            lexer.lexParallel("test", new StringSource(source), pool);
+            return lexer.getTokens();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static void assertSameAsSequential(String source) throws CompilerException {
+        TokenBuffer expected = lex(new Lexer(), source);
+        TokenBuffer actual = lexParallel(source);
+        assertSameTokens(expected, actual);
+        for (int i = 0; i < expected.size(); ++i) {
+            if (expected.getType(i) == Token.Type.IDENTIFIER) {
+                assertEquals(expected.getSymbol(i), actual.getSymbol(i));
+            } else if (expected.getType(i) == Token.Type.LITERAL) {
+                assertEquals(expected.getConstant(i), actual.getConstant(i));
+            }
+        }
+        assertEquals(expected.getSymbols().size(), actual.getSymbols().size());
+        assertEquals(expected.getConstants().size(), actual.getConstants().size());
+        assertEquals(expected.getLineTable().getLineCount(), actual.getLineTable().getLineCount());
+    }
+
+    public void testTokensAreTheSameAsFromSequentialLexing() throws CompilerException {
+        assertSameAsSequential(large(""));
+    }
+
+    public void testCommentsAcrossChunksAreTheSame() throws CompilerException {
+        assertSameAsSequential(large("/*\n\nx := 1\n\n*/\n"));
+        StringBuilder comment = new StringBuilder("/* a comment longer than a chunk\n");
+        for (int i = 0; i < 10_000; ++i) {
+            comment.append("y := ").append(i).append('\n');
+        }
+        assertSameAsSequential(SOURCE + comment + "*/\n" + large(""));
+    }
+
+    public void testBytesAreTheSameAsText() throws CompilerException {
+        String source = large("");
+        Lexer lexer = new Lexer();
+        lexer.lexParallel("test", ByteBuffer.wrap(source.getBytes(StandardCharsets.UTF_8)));
+        assertSameTokens(lex(new Lexer(), source), lexer.getTokens());
+    }
+
+    public void testErrorsAreTheSameAsFromSequentialLexing() throws CompilerException {
+        String source = large("a := \"unterminated\nb := 1.2.3\n");
+        Lexer sequential = new Lexer();
+        Diagnostics expected = new Diagnostics();
+        sequential.setDiagnostics(expected);
+        sequential.lex("test", source);
+        Lexer parallel = new Lexer();
+        Diagnostics actual = new Diagnostics();
+        parallel.setDiagnostics(actual);
+        parallel.lexParallel("test", source);
+        assertTrue(expected.getErrorCount() > 10);
+        assertEquals(expected.getErrors(), actual.getErrors());
+        assertSameTokens(sequential.getTokens(), parallel.getTokens());
+    }
+}
@@ -0,0 +1,57 @@
+package com.github.johanrg.frontend;
+
+import com.github.johanrg.TestCase;
+import com.github.johanrg.ast.Trees;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * @author johan
+ * @since 2016-08-05.
+ */
+public class ParallelParsingTest extends TestCase {
+    private static TokenBuffer lex(String source) throws CompilerException {
+        Lexer lexer = new Lexer();
+        lexer.lex("test", source);
+        return lexer.getTokens();
+    }
+
+    /**
+     * Every function calls the one declared before it, so a body parsed out of order parses the whole chain before it.
+     */
+    private static String chain(int count) {
+        StringBuilder source = new StringBuilder("f0 :: (a : int) -> int\n    return a\n");
+        for (int i = 1; i < count; ++i) {
+            source.append("f").append(i).append(" :: (a : int) -> int\n");
+            source.append("    b := a * ").append(i).append('\n');
+            source.append("    return f").append(i - 1).append("(b) + 1\n");
+        }
+        return source.append("x := f").append(count - 1).append("(1)\n").toString();
+    }
+
+    private static String parallel(String source, int threads) throws CompilerException {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            return Trees.print(new Parser(lex(source), pool).getRoot());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public void testParallelTreeMatchesEagerTree() throws CompilerException {
+        String source = chain(5000);
+        String eager = Trees.print(new Parser(lex(source), false).getRoot());
+        assertEquals(eager, parallel(source, 4));
+        assertEquals(eager, parallel(source, 1));
+    }
+
+    public void testFirstErrorInSourceOrderIsThrown() {
+        String source = chain(1000) + "g :: (a : int) -> int\n    return a + 0.5\n" + chain(1000).replace("f", "h").replace("x", "y") +
+                "k :: () -> int\n    return 1.5\n";
+        String expected = assertThrows(CompilerException.class, () -> new Parser(lex(source), false)).getMessage();
+        assertTrue(expected.endsWith("(3002,14) type mismatch"));
+        for (int i = 0; i < 5; ++i) {
+            assertEquals(expected, assertThrows(CompilerException.class, () -> parallel(source, 4)).getMessage());
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.github.johanrg.frontend;
+
+import com.github.johanrg.TestCase;
+import com.github.johanrg.ast.ASTFactory;
+import com.github.johanrg.ast.ASTScope;
+import com.github.johanrg.ast.Trees;
+
+/**
+ * @author johan
+ * @since 2016-08-05.
+ */
+public class ParserTest extends TestCase {
+    static String parse(String... lines) throws CompilerException {
+        Lexer lexer = new Lexer();
+        lexer.lex("test", String.join("\n", lines) + "\n");
+        return Trees.print(new Parser(lexer.getTokens()).getRoot());
+    }
+
+    static String error(String... lines) {
+        return assertThrows(CompilerException.class, () -> parse(lines)).getMessage();
+    }
+
+    public void testDeclarations() throws CompilerException {
+        assertEquals("{(k = 10); (x = k); (y = 1.0); (z = x)}",
+                parse("k :: 10", "x : int = k", "y : float = 1.0f", "z := x"));
+    }
+
+    public void testAssignments() throws CompilerException {
+        assertEquals("{(a = 1); (a = 2); (a += 3); (a++); (a--)}", parse("a := 1", "a = 2", "a += 3", "a++", "a--"));
+    }
+
+    public void testForStatementsAreToldApart() throws CompilerException {
+        assertEquals("{(x = 0); for (i = 0), (i < 3), (i++) {(x = i)}; for (r = (0 .. 3)) {(x = (x + 1))}}",
+                parse("x := 0", "for i := 0, i < 3, i++", "    x = i", "for r : 0..3", "    x = x + 1"));
+    }
+
+    public void testIfWhileAndNestedScopes() throws CompilerException {
+        assertEquals("{(x = 1); if (x > 1) {(x = 1)} else {while (x > 0) {(x--)}; (y = 2)}}",
+                parse("x := 1", "if x > 1", "    x = 1", "else", "    while x > 0", "        x--", "    y := 2"));
+    }
+
+    public void testFunctionsAndCalls() throws CompilerException {
+        assertEquals("{f :: (a : INT, b : INT) -> INT {return (a + b)}; (y = f(2, 3)); " +
+                        "g :: () -> INT {return (f(y, y) + 1)}; (h = g)}",
+                parse("f :: (a : int, b : int) -> int", "    return a + b", "y := f(2, 3)", "g :: () -> int",
+                        "    return f(y, y) + 1", "h := g"));
+    }
+
+    public void testErrors() {
+        assertTrue(error("x = 1").endsWith("(1,1) unknown identifier"));
+        assertTrue(error("x := 1", "x := 2").endsWith("(2,1) 'x' is already declared in this scope."));
+        assertTrue(error("x := (1 + 2").endsWith("(1,12) expected ')'"));
+        assertTrue(error("x := 1 +").endsWith("(1,9) expected expression"));
+        assertTrue(error("f :: (a : int) -> int", "    return 1.5").endsWith("expected expression of type: 'int"));
+        assertTrue(error("f :: (a : int) -> int", "    return a", "y := f(2, 3)")
+                .endsWith("(3,6) expected 1 arguments"));
+    }
+
+    public void testMissingScopes() {
+        assertTrue(error("f :: () -> int", "x := 1").endsWith("(1,1) function scope expected"));
+        assertTrue(error("x := 1", "if x > 1", "x = 2").endsWith("(2,1) if scope expected"));
+        assertTrue(error("x := 1", "if x > 1", "    x = 2", "else", "x = 3").endsWith("(4,1) else scope expected"));
+    }
+
+    public void testScopesEndTogetherAtTheEndOfFile() throws CompilerException {
+        assertEquals("{f :: () -> INT {if (1 > 0) {return 1}; return 2}}",
+                parse("f :: () -> int", "    if 1 > 0", "        return 1", "    return 2"));
+        assertEquals("{(x = 1); if (x > 0) {while (x > 0) {(x--)}}}",
+                parse("x := 1", "if x > 0", "    while x > 0", "        x--"));
+        assertEquals("{f :: () -> INT {return 1; {(x = 1)}}}",
+                parse("f :: () -> int", "    return 1", "        x := 1"));
+    }
+
+    /**
+     * Parses with the errors reported to the diagnostics, and the lazy bodies parsed too.
+     */
+    private static String recover(boolean lazy, Diagnostics diagnostics, String... lines) throws CompilerException {
+        Lexer lexer = new Lexer();
+        lexer.lex("test", String.join("\n", lines) + "\n");
+        ASTScope root = (ASTScope) new Parser(lexer.getTokens(), lazy, new ASTFactory(), diagnostics).getRoot();
+        LazyParsingTest.parseBodies(root);
+        return Trees.print(root);
+    }
+
+    public void testRecoveryGivesTheSameTreeEagerAndLazy() throws CompilerException {
+        String[][] sources = {
+                {"f :: () -> int", "    if 1 > 0", "        z := g(1)"},
+                {"f :: () -> int", "    if 1 > 0", "x := 1", "f :: () -> int"},
+                {"f :: () -> int", "    x := 1", "        y := 1 +", "    return 1"},
+                {"x := 1", "g :: () -> int", "y := 2"},
+                {"if 1 > 0", "    if 1 > 0", "        x := 1 +"}};
+        String[] trees = {
+                "{f :: () -> INT {if (1 > 0) {}}}",
+                "{f :: () -> INT {if (1 > 0) {}}; (x = 1)}",
+                "{f :: () -> INT {(x = 1); {}; return 1}}",
+                "{(x = 1); (y = 2)}",
+                "{if (1 > 0) {if (1 > 0) {}}}"};
+        String[] errors = {
+                "[test : error : (2,5) if scope expected, test : error : (3,14) unknown identifier]",
+                "[test : error : (2,5) if scope expected, test : error : (4,1) function scope expected]",
+                "[test : error : (3,17) expected expression]",
+                "[test : error : (2,1) function scope expected]",
+                "[test : error : (2,5) if scope expected, test : error : (3,17) expected expression]"};
+        for (int i = 0; i < sources.length; ++i) {
+            for (boolean lazy : new boolean[]{false, true}) {
+                Diagnostics diagnostics = new Diagnostics();
+                assertEquals(trees[i], recover(lazy, diagnostics, sources[i]));
+                assertEquals(errors[i], diagnostics.getErrors().toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.github.johanrg.frontend;
+
+import com.github.johanrg.TestCase;
+import com.github.johanrg.ast.ASTOperator;
+
+/**
+ * @author johan
+ * @since 2016-08-05.
+ */
+public class PunctuatorTest extends TestCase {
+    private static Symbols.Punctuator match(String text) {
+        return Symbols.matchPunctuator(new StringSource(text), 0);
+    }
+
+    public void testTheLongestSymbolIsMatched() {
+        assertEquals("->", match("->x").symbol);
+        assertEquals("-=", match("-= 1").symbol);
+        assertEquals("--", match("--x").symbol);
+        assertEquals("-", match("-x").symbol);
+        assertEquals("..", match("..3").symbol);
+        assertEquals("==", match("===").symbol);
+        assertEquals("<=", match("<=").symbol);
+        assertNull(match("abc"));
+        assertNull(match("\u00e5"));
+    }
+
+    public void testOperatorsAndDelimitersGetTheirCodes() {
+        Symbols.Punctuator arrow = match("->");
+        assertEquals(Token.Type.DELIMITER, arrow.type);
+        assertEquals(Symbols.Delimiter.ARROW.ordinal(), arrow.code);
+        Symbols.Punctuator add = match("+=");
+        assertEquals(Token.Type.OPERATOR, add.type);
+        assertEquals(ASTOperator.Type.ADD_ASSIGNMENT.ordinal(), add.code);
+    }
+
+    public void testLexerResolvesTheCodes() throws CompilerException {
+        Lexer lexer = new Lexer();
+        lexer.lex("test", "f :: (a : int) -> int\n    return a <= 2 && -a != 0\n");
+        TokenBuffer tokens = lexer.getTokens();
+        assertEquals(Symbols.Delimiter.COLON, tokens.getDelimiter(1));
+        assertEquals(Symbols.Delimiter.COLON, tokens.getDelimiter(2));
+        assertEquals(Symbols.Delimiter.OPEN_PARENTHESES, tokens.getDelimiter(3));
+        assertEquals(Symbols.Delimiter.CLOSE_PARENTHESES, tokens.getDelimiter(7));
+        assertEquals(Symbols.Delimiter.ARROW, tokens.getDelimiter(8));
+        assertEquals(ASTOperator.Type.RELATIONAL_LTE, tokens.getOperator(13));
+        assertEquals(ASTOperator.Type.LOGICAL_AND, tokens.getOperator(15));
+        // NOTE(Johan): unary minus shares its symbol with binary minus, the parser tells them apart.
+        assertEquals(ASTOperator.Type.BINARY_SUB, tokens.getOperator(16));
+        assertEquals(ASTOperator.Type.RELATIONAL_NOT_EQUAL, tokens.getOperator(18));
+    }
+}
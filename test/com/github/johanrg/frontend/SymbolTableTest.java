@@ -0,0 +1,71 @@
+package com.github.johanrg.frontend;
+
+import com.github.johanrg.TestCase;
+
+/**
+ * @author johan
+ * @since 2016-08-05.
+ */
+public class SymbolTableTest extends TestCase {
+    public void testEqualNamesGetTheSameId() {
+        SymbolTable symbols = new SymbolTable();
+        int a = symbols.intern("alpha");
+        int b = symbols.intern("beta");
+        assertEquals(0, a);
+        assertEquals(1, b);
+        assertEquals(a, symbols.intern(new String("alpha")));
+        assertEquals(2, symbols.size());
+        assertEquals("beta", symbols.getName(b));
+    }
+
+    public void testNamesFromTheSourceMeetNamesFromStrings() {
+        SymbolTable symbols = new SymbolTable();
+        Source source = new StringSource("x := alpha + beta");
+        int alpha = symbols.intern(source, 5, 10);
+        assertEquals(alpha, symbols.intern("alpha"));
+        int beta = symbols.intern("beta");
+        assertEquals(beta, symbols.intern(source, 13, 17));
+        assertEquals(2, symbols.size());
+    }
+
+    public void testIdsSurviveGrowing() {
+        SymbolTable symbols = new SymbolTable();
+        for (int i = 0; i < 2000; ++i) {
+            assertEquals(i, symbols.intern("name" + i));
+        }
+        for (int i = 0; i < 2000; ++i) {
+            assertEquals(i, symbols.intern("name" + i));
+            assertEquals("name" + i, symbols.getName(i));
+        }
+        assertEquals(2000, symbols.size());
+    }
+
+    public void testKeywordsAreMatched() {
+        for (Symbols.Keyword keyword : Symbols.Keyword.values()) {
+            String name = keyword.name().toLowerCase();
+            Source source = new StringSource(" " + name + " ");
+            assertSame(keyword, Symbols.match(source, 1, 1 + name.length()));
+        }
+    }
+
+    public void testOtherIdentifiersAreNotKeywords() {
+        for (String name : new String[]{"i", "fi", "iff", "If", "els", "elsewhere", "whale", "form", "fr",
+                "returns", "retur"}) {
+            assertNull(Symbols.match(new StringSource(name), 0, name.length()));
+        }
+    }
+
+    public void testLexerInternsIdentifiersAndKeywords() throws CompilerException {
+        Lexer lexer = new Lexer();
+        lexer.lex("test", "while count\n    count = count - 1\nwhile2 := 0\n");
+        TokenBuffer tokens = lexer.getTokens();
+        assertEquals(Token.Type.KEYWORD, tokens.getType(0));
+        assertEquals(Symbols.Keyword.WHILE, tokens.getKeyword(0));
+        int count = tokens.getSymbol(1);
+        assertEquals(count, tokens.getSymbol(3));
+        assertEquals(count, tokens.getSymbol(5));
+        assertEquals("count", tokens.getSymbols().getName(count));
+        assertEquals(Token.Type.IDENTIFIER, tokens.getType(9));
+        assertEquals("while2", tokens.getData(9));
+    }
+}
@@ -0,0 +1,44 @@
+package com.github.johanrg.frontend;
+
+/**
+ * @author johan
+ * @since 2016-08-05.
+ */
+public class TableLexerTest extends LexerTestCase {
+    private static void assertSameAsStateMachine(String source) throws CompilerException {
+        assertSameTokens(lex(new Lexer(), source), lex(new Lexer(Lexer.Engine.TABLE), source));
+    }
+
+    private static String errors(Lexer.Engine engine, String source) throws CompilerException {
+        Lexer lexer = new Lexer(engine);
+        Diagnostics diagnostics = new Diagnostics();
+        lexer.setDiagnostics(diagnostics);
+        lexer.lex("test", source);
+        return diagnostics.getErrors().toString();
+    }
+
+    public void testTokensAreTheSameAsFromTheStateMachine() throws CompilerException {
+        assertSameAsStateMachine(SOURCE);
+    }
+
+    public void testEdgeCasesAreTheSameAsFromTheStateMachine() throws CompilerException {
+        assertSameAsStateMachine("");
+        assertSameAsStateMachine("x");
+        assertSameAsStateMachine("\n\n\n");
+        assertSameAsStateMachine("// only a comment");
+        assertSameAsStateMachine("a := 1\n\n    \nb := 2\n");
+        assertSameAsStateMachine("f :: () -> int\n    if a\n        return 1\n    return 2\nx := 1.5 + 0.5 * 2.5e3\n");
+        assertSameAsStateMachine("a:=b+c-d*e/f%g^h\n");
+    }
+
+    public void testErrorsAreTheSameAsFromTheStateMachine() throws CompilerException {
+        String source = "a := \"unterminated\nb := 1\nc := 1.2.3\nd := 2\n";
+        String expected = errors(Lexer.Engine.STATE_MACHINE, source);
+        assertFalse(expected.equals("[]"));
+        assertEquals(expected, errors(Lexer.Engine.TABLE, source));
+    }
+
+    public void testErrorIsThrownWithoutDiagnostics() {
+        assertThrows(CompilerException.class, () -> lex(new Lexer(Lexer.Engine.TABLE), "a := \"unterminated\n"));
+    }
+}
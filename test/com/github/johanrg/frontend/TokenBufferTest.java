@@ -0,0 +1,83 @@
+package com.github.johanrg.frontend;
+
+import com.github.johanrg.TestCase;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * @author johan
+ * @since 2016-08-05.
+ */
+public class TokenBufferTest extends TestCase {
+    private static TokenBuffer lex(String source) throws CompilerException {
+        Lexer lexer = new Lexer();
+        lexer.lex("test", source);
+        return lexer.getTokens();
+    }
+
+    public void testTokensAreStoredInOrder() throws CompilerException {
+        TokenBuffer tokens = lex("x := 1 + y\nwhile x\n    x = 0\n");
+        Token.Type[] types = {Token.Type.IDENTIFIER, Token.Type.DELIMITER, Token.Type.OPERATOR, Token.Type.LITERAL,
+                Token.Type.OPERATOR, Token.Type.IDENTIFIER, Token.Type.END_OF_STATEMENT, Token.Type.KEYWORD,
+                Token.Type.IDENTIFIER, Token.Type.END_OF_STATEMENT, Token.Type.IDENTIFIER, Token.Type.OPERATOR,
+                Token.Type.LITERAL, Token.Type.END_OF_STATEMENT, Token.Type.EOF};
+        assertEquals(types.length, tokens.size());
+        for (int i = 0; i < types.length; ++i) {
+            assertEquals(types[i], tokens.getType(i));
+        }
+        assertEquals("x", tokens.getData(0));
+        assertEquals("while", tokens.getData(7));
+        assertEquals(Symbols.Keyword.WHILE, tokens.getKeyword(7));
+        assertEquals(0, tokens.getScopeLevel(9));
+        assertEquals(1, tokens.getScopeLevel(10));
+    }
+
+    public void testRandomAccessMatchesTheTokenObjects() throws CompilerException {
+        TokenBuffer tokens = lex("a := \"text\"\nb := a\n");
+        for (int i = tokens.size() - 1; i >= 0; --i) {
+            Token token = tokens.get(i);
+            assertEquals(tokens.getType(i), token.getType());
+            assertEquals(tokens.getData(i), token.getData());
+            assertEquals(tokens.getScopeLevel(i), token.getScopeLevel());
+            assertEquals(tokens.getOffset(i), token.getLocation().getOffset());
+        }
+        // NOTE(Johan): a string literal starts at its opening quote.
+        assertEquals(5, tokens.getOffset(3));
+        assertEquals("text", tokens.getData(3));
+    }
+
+    public void testGrowsPastTheInitialCapacity() throws CompilerException {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < 1000; ++i) {
+            source.append("v").append(i).append(" := ").append(i).append('\n');
+        }
+        TokenBuffer tokens = lex(source.toString());
+        assertEquals(5001, tokens.size());
+        assertEquals("v999", tokens.getData(4995));
+        assertEquals(DataType.INT, tokens.getDataType(4998));
+        assertEquals(999, tokens.getConstants().getInt(tokens.getConstant(4998)));
+    }
+
+    public void testIndexOfFindsTheFirstTokenAtOrAfterAnOffset() throws CompilerException {
+        TokenBuffer tokens = lex("abc := 12\n");
+        assertEquals(0, tokens.indexOf(0));
+        assertEquals(1, tokens.indexOf(1));
+        assertEquals(2, tokens.indexOf(5));
+        assertEquals(3, tokens.indexOf(6));
+        assertEquals(4, tokens.indexOf(8));
+    }
+
+    public void testIteratorVisitsEveryToken() throws CompilerException {
+        TokenBuffer tokens = lex("x := 1\n");
+        int count = 0;
+        Iterator<Token> iterator = tokens.iterator();
+        while (iterator.hasNext()) {
+            iterator.next();
+            ++count;
+        }
+        assertEquals(tokens.size(), count);
+        assertThrows(NoSuchElementException.class, iterator::next);
+        assertThrows(IndexOutOfBoundsException.class, () -> tokens.get(tokens.size()));
+    }
+}
@@ -0,0 +1,73 @@
+package com.github.johanrg.frontend;
+
+import com.github.johanrg.TestCase;
+import com.github.johanrg.ast.Trees;
+
+/**
+ * @author johan
+ * @since 2016-08-05.
+ */
+public class TokenStreamTest extends TestCase {
+    private static final String SOURCE = "x := 10\n" +
+            "y : int = 3 * (2 - x)\n" +
+            "for i := 0, i < 10, i++\n" +
+            "    y = y + i\n" +
+            "while x > 0\n" +
+            "    x = x - 1\n" +
+            "f :: (a : int) -> int\n" +
+            "    return a + y\n" +
+            "z := f(2)\n";
+
+    private static String lines(int count) {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < count; ++i) {
+            source.append("v").append(i).append(" := ").append(i).append('\n');
+        }
+        return source.toString();
+    }
+
+    public void testStreamedParseMatchesBufferedParse() throws CompilerException {
+        Lexer buffered = new Lexer();
+        buffered.lex("test", SOURCE);
+        Lexer streamed = new Lexer();
+        streamed.open("test", SOURCE);
+        assertEquals(Trees.print(new Parser(buffered.getTokens()).getRoot()),
+                Trees.print(new Parser(streamed).getRoot()));
+    }
+
+    public void testFillLexesOnlyUpToTheIndex() throws CompilerException {
+        Lexer lexer = new Lexer();
+        lexer.open("test", lines(100));
+        TokenBuffer tokens = lexer.fill(3);
+        assertTrue(tokens.size() > 3);
+        assertTrue(tokens.size() < 20);
+        assertEquals(Token.Type.LITERAL, tokens.getType(3));
+        lexer.fill(Integer.MAX_VALUE);
+        assertEquals(501, tokens.size());
+    }
+
+    public void testReleasedTokensAreDropped() throws CompilerException {
+        Lexer lexer = new Lexer();
+        lexer.open("test", lines(1000));
+        TokenBuffer tokens = lexer.fill(0);
+        for (int i = 0; i < 5000; ++i) {
+            lexer.fill(i);
+            lexer.release(i);
+        }
+        assertEquals("v999", tokens.getData(4995));
+        assertThrows(IndexOutOfBoundsException.class, () -> tokens.get(0));
+    }
+
+    public void testTableEngineStreamsTheSameTokens() throws CompilerException {
+        Lexer lexer = new Lexer(Lexer.Engine.TABLE);
+        lexer.open("test", SOURCE);
+        Lexer reference = new Lexer();
+        reference.lex("test", SOURCE);
+        TokenBuffer expected = reference.getTokens();
+        for (int i = 0; i < expected.size(); ++i) {
+            TokenBuffer tokens = lexer.fill(i);
+            assertEquals(expected.getType(i), tokens.getType(i));
+            assertEquals(expected.getOffset(i), tokens.getOffset(i));
+        }
+    }
+}
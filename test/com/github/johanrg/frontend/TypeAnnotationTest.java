@@ -0,0 +1,129 @@
+package com.github.johanrg.frontend;
+
+import com.github.johanrg.TestCase;
+import com.github.johanrg.ast.ASTBinaryOperator;
+import com.github.johanrg.ast.ASTFactory;
+import com.github.johanrg.ast.ASTFunction;
+import com.github.johanrg.ast.ASTNode;
+import com.github.johanrg.ast.ASTOperator;
+import com.github.johanrg.ast.ASTReturnStatement;
+import com.github.johanrg.ast.ASTScope;
+import com.github.johanrg.ast.ASTVariable;
+import com.github.johanrg.ast.ASTWhileStatement;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author johan
+ * @since 2016-08-05.
+ */
+public class TypeAnnotationTest extends TestCase {
+    private TokenBuffer tokens;
+
+    private List<ASTNode> parse(String... lines) throws CompilerException {
+        Lexer lexer = new Lexer();
+        lexer.lex("test", String.join("\n", lines) + "\n");
+        tokens = lexer.getTokens();
+        return ((ASTScope) new Parser(tokens).getRoot()).getStatements();
+    }
+
+    private List<ASTNode> parseShared(Diagnostics diagnostics, String... lines) throws CompilerException {
+        Lexer lexer = new Lexer();
+        lexer.lex("test", String.join("\n", lines) + "\n");
+        tokens = lexer.getTokens();
+        return ((ASTScope) new Parser(tokens, false, new ASTFactory(true), diagnostics).getRoot()).getStatements();
+    }
+
+    private static ASTNode right(ASTNode assignment) {
+        return ((ASTBinaryOperator) assignment).getRight();
+    }
+
+    public void testParsedExpressionsAreAnnotated() throws CompilerException {
+        List<ASTNode> statements = parse("x := 1.5f", "y := x * x", "b := x < y", "f :: (a : int) -> int",
+                "    return a + 1", "z := f(3) + 1");
+        ASTBinaryOperator product = (ASTBinaryOperator) right(statements.get(1));
+        assertEquals(DataType.FLOAT, product.getAnnotatedDataType());
+        assertEquals(DataType.FLOAT, product.getLeft().getAnnotatedDataType());
+        assertEquals(DataType.BOOLEAN, right(statements.get(2)).getAnnotatedDataType());
+        ASTVariable b = (ASTVariable) ((ASTBinaryOperator) statements.get(2)).getLeft();
+        assertEquals(DataType.BOOLEAN, b.getDataType());
+        ASTBinaryOperator sum = (ASTBinaryOperator) right(statements.get(4));
+        assertEquals(DataType.INT, sum.getAnnotatedDataType());
+        assertEquals(DataType.INT, sum.getLeft().getAnnotatedDataType());
+        ASTFunction f = (ASTFunction) statements.get(3);
+        ASTNode returned = ((ASTReturnStatement) ((ASTScope) f.getFunctionStatement()).getStatements().get(0))
+                .getExpression();
+        assertEquals(DataType.INT, returned.getAnnotatedDataType());
+    }
+
+    public void testAnnotatedNodesAreNotVisitedAgain() throws CompilerException {
+        parse("x := 1");
+        Location location = tokens.getLocation(0);
+        ConstantPool constants = tokens.getConstants();
+        ASTFactory factory = new ASTFactory();
+        ASTNode one = factory.literal(constants, constants.addInt(1), location);
+        ASTNode half = factory.literal(constants, constants.addFloat(0.5f), location);
+        ASTNode mismatch = new ASTBinaryOperator(ASTOperator.Type.BINARY_ADD, one, half, location);
+        Diagnostics diagnostics = new Diagnostics();
+        CompilerErrorHandler errors = new CompilerErrorHandler();
+        errors.setDiagnostics(diagnostics);
+        Expression expression = new Expression(factory, errors);
+
+        mismatch.setAnnotatedDataType(DataType.INT);
+        ASTNode sum = new ASTBinaryOperator(ASTOperator.Type.BINARY_MUL, mismatch, one, location);
+        assertEquals(DataType.INT, expression.annotate(sum));
+        assertFalse(diagnostics.hasErrors());
+        assertNull(half.getAnnotatedDataType());
+
+        mismatch.setAnnotatedDataType(null);
+        assertEquals(DataType.INT, expression.annotate(mismatch));
+        assertEquals(1, diagnostics.getErrorCount());
+        assertEquals(DataType.FLOAT, half.getAnnotatedDataType());
+        expression.annotate(mismatch);
+        assertEquals(1, diagnostics.getErrorCount());
+    }
+
+    public void testStatementsAreVoid() throws CompilerException {
+        List<ASTNode> statements = parse("x := 1", "while x > 0", "    x--");
+        Expression expression = new Expression(new ASTFactory(), new CompilerErrorHandler());
+        assertEquals(DataType.VOID, expression.annotate(statements.get(1)));
+        assertEquals(DataType.BOOLEAN, ((ASTWhileStatement) statements.get(1)).getExpression().getAnnotatedDataType());
+    }
+
+    public void testTypeErrors() {
+        assertTrue(ParserTest.error("x := 1", "y := x + 1.5f").endsWith("(2,8) type mismatch"));
+        assertTrue(ParserTest.error("x : int = 1.5f").endsWith("expected expression of type: 'int"));
+        assertTrue(ParserTest.error("f :: (a : int) -> int", "    return a", "y := f(1.5f)")
+                .endsWith("(3,8) argument type mismatch"));
+    }
+
+    public void testErrorsAreReportedWhereTheExpressionIsUsed() {
+        // NOTE(Johan): a reference is the declaration node, which has the location of the declaration.
+        assertTrue(ParserTest.error("a := 1", "if a", "    a = 2").endsWith("(2,4) expected boolean expression"));
+        assertTrue(ParserTest.error("a := 1", "while a", "    a--").endsWith("(2,7) expected boolean expression"));
+        assertTrue(ParserTest.error("f :: (a : int) -> int", "    b := 1.5f", "    return b")
+                .endsWith("(3,12) expected expression of type: 'int"));
+        assertTrue(ParserTest.error("f :: (a : int) -> int", "    return a", "y := 1.5f", "z := f(y)")
+                .endsWith("(4,8) argument type mismatch"));
+        assertTrue(ParserTest.error("f :: () -> void", "    a := 1", "    return a")
+                .endsWith("(3,12) void function can not return a value"));
+    }
+
+    public void testSharedNodesHaveNoLocation() throws CompilerException {
+        List<ASTNode> statements = parseShared(null, "x := 1", "y := x * 2", "z := x * 2");
+        ASTNode product = right(statements.get(1));
+        assertSame(product, right(statements.get(2)));
+        assertNull(product.getLocation());
+        assertNull(((ASTBinaryOperator) product).getRight().getLocation());
+        assertEquals(2, statements.get(1).getLocation().getLine());
+    }
+
+    public void testSharedExpressionsAreCheckedAtEveryUse() throws CompilerException {
+        Diagnostics diagnostics = new Diagnostics();
+        parseShared(diagnostics, "x := 1", "y := x + 1.5f", "z := x + 1.5f", "if x", "    x = 2", "w := x + 1.5f");
+        assertEquals(Arrays.asList("test : error : (2,8) type mismatch", "test : error : (3,8) type mismatch",
+                "test : error : (4,4) expected boolean expression", "test : error : (6,8) type mismatch"),
+                diagnostics.getErrors());
+    }
+}
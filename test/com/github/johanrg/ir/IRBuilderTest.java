@@ -0,0 +1,106 @@
+package com.github.johanrg.ir;
+
+import com.github.johanrg.TestCase;
+import com.github.johanrg.ast.ASTScope;
+import com.github.johanrg.frontend.CompilerException;
+import com.github.johanrg.frontend.Lexer;
+import com.github.johanrg.frontend.Parser;
+
+/**
+ * @author johan
+ * @since 2016-08-05.
+ */
+public class IRBuilderTest extends TestCase {
+    static IRProgram lower(String... lines) throws CompilerException {
+        Lexer lexer = new Lexer();
+        lexer.lex("test", String.join("\n", lines) + "\n");
+        return IRBuilder.lower((ASTScope) new Parser(lexer.getTokens()).getRoot(), lexer.getTokens().getConstants());
+    }
+
+    static String text(String... lines) {
+        return String.join(System.lineSeparator(), lines) + System.lineSeparator();
+    }
+
+    private static int count(IRFunction function, IRInstruction.Op op) {
+        int count = 0;
+        for (IRBlock block : function.getBlocks()) {
+            for (IRInstruction instruction : block.getInstructions()) {
+                count += instruction.getOp() == op ? 1 : 0;
+            }
+        }
+        return count;
+    }
+
+    public void testBranchesMeetInAPhi() throws CompilerException {
+        IRProgram program = lower("f :: (a : int, b : int) -> int", "    c := a", "    if a > b", "        c = b",
+                "    return c");
+        assertEquals(text("f(a : int, b : int) -> int",
+                "  b0:",
+                "    %0 = parameter int a",
+                "    %1 = parameter int b",
+                "    %2 = copy int %0",
+                "    %3 = > boolean %0, %1",
+                "    branch %3, b1, b2",
+                "  b1: ; from b0",
+                "    %4 = copy int %1",
+                "    jump b2",
+                "  b2: ; from b0 b1",
+                "    %5 = phi int %2 b0, %4 b1",
+                "    return %5"), program.getFunctions().get(1).toString());
+    }
+
+    public void testLoopHeadersGetPhisForWhatTheLoopChanges() throws CompilerException {
+        IRProgram program = lower("x := 1", "y := x", "while x < 10", "    x = x + y", "z := x");
+        assertEquals(text("main() -> void",
+                "  b0:",
+                "    %0 = constant int 1",
+                "    %1 = copy int %0",
+                "    %2 = copy int %1",
+                "    jump b1",
+                "  b1: ; from b0 b2",
+                "    %3 = phi int %1 b0, %8 b2",
+                "    %4 = phi int %2 b0, %4 b2",
+                "    %5 = constant int 10",
+                "    %6 = < boolean %3, %5",
+                "    branch %6, b2, b3",
+                "  b2: ; from b1",
+                "    %7 = + int %3, %4",
+                "    %8 = copy int %7",
+                "    jump b1",
+                "  b3: ; from b1",
+                "    %9 = copy int %3",
+                "    return"), program.getMain().toString());
+    }
+
+    public void testRangesCountUpToTheLastValue() throws CompilerException {
+        IRFunction f = lower("f :: (n : int) -> int", "    s := 0", "    for r : 1..n", "        s += r",
+                "    return s").getFunctions().get(1);
+        IRBlock header = f.getBlocks().get(1);
+        assertEquals(2, header.getPredecessors().size());
+        IRInstruction condition = header.getTerminator().getOperand(0);
+        assertEquals("<=", condition.getOperator().getSymbol());
+        assertSame(f.getParameters().get(0), condition.getOperand(1));
+        assertEquals(IRInstruction.Op.PHI, condition.getOperand(0).getOp());
+        assertEquals(2, count(f, IRInstruction.Op.PHI));
+    }
+
+    public void testVariablesOfNestedFunctionsStayInMemory() throws CompilerException {
+        IRProgram program = lower("x := 1", "g :: () -> int", "    return x", "x = 2", "y := g()");
+        assertEquals(2, program.getFunctions().size());
+        assertEquals(2, count(program.getMain(), IRInstruction.Op.STORE));
+        assertEquals(1, count(program.getMain(), IRInstruction.Op.CALL));
+        assertEquals(0, count(program.getMain(), IRInstruction.Op.PHI));
+        IRFunction g = program.getFunctions().get(1);
+        assertEquals("g", g.getName());
+        assertEquals(1, count(g, IRInstruction.Op.LOAD));
+    }
+
+    public void testEveryBlockEndsTheWayItIsLeft() throws CompilerException {
+        IRFunction f = lower("f :: (a : int) -> int", "    if a > 0", "        return 1", "    return 2")
+                .getFunctions().get(1);
+        assertEquals(2, count(f, IRInstruction.Op.RETURN));
+        for (IRBlock block : f.getBlocks()) {
+            assertNotNull(block.getTerminator());
+        }
+    }
+}
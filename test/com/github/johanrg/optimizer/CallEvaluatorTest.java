@@ -0,0 +1,125 @@
+package com.github.johanrg.optimizer;
+
+import com.github.johanrg.TestCase;
+import com.github.johanrg.ast.ASTConstant;
+import com.github.johanrg.ast.ASTFactory;
+import com.github.johanrg.ast.ASTFunction;
+import com.github.johanrg.ast.ASTLiteral;
+import com.github.johanrg.ast.ASTNode;
+import com.github.johanrg.ast.ASTScope;
+import com.github.johanrg.frontend.CompilerException;
+import com.github.johanrg.frontend.ConstantPool;
+import com.github.johanrg.frontend.Lexer;
+import com.github.johanrg.frontend.Location;
+import com.github.johanrg.frontend.Parser;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author johan
+ * @since 2016-08-05.
+ */
+public class CallEvaluatorTest extends TestCase {
+    private final ASTFactory factory = new ASTFactory();
+    private final Map<ASTConstant, ASTLiteral> values = new HashMap<>();
+    private ConstantPool constants;
+    private Location location;
+    private ASTScope root;
+
+    private CallEvaluator parse(int stepBudget, String... lines) throws CompilerException {
+        Lexer lexer = new Lexer();
+        lexer.lex("test", String.join("\n", lines) + "\n");
+        constants = lexer.getTokens().getConstants();
+        root = (ASTScope) new Parser(lexer.getTokens()).getRoot();
+        location = root.getStatements().get(0).getLocation();
+        return new CallEvaluator(factory, constants, values, stepBudget);
+    }
+
+    private ASTFunction function(int index) {
+        return (ASTFunction) root.getStatements().get(index);
+    }
+
+    private Object evaluate(CallEvaluator calls, ASTFunction function, int... arguments) {
+        List<ASTNode> literals = new ArrayList<>();
+        for (int argument : arguments) {
+            literals.add(factory.literal(constants, constants.addInt(argument), location));
+        }
+        ASTLiteral result = calls.evaluate(function, literals, location);
+        return result == null ? null : result.getValue();
+    }
+
+    public void testPureFunctionsAreRun() throws CompilerException {
+        CallEvaluator calls = parse(CallEvaluator.DEFAULT_STEP_BUDGET, "f :: (a : int, b : int) -> int",
+                "    c := a * b", "    if c > 10", "        c = c - 10", "    else", "        c++", "    return c",
+                "g :: (n : int) -> int", "    s := 0", "    for i := 0, i < n, i++", "        s += f(i, 3)",
+                "    return s");
+        assertEquals(5, evaluate(calls, function(0), 3, 5));
+        assertEquals(7, evaluate(calls, function(0), 2, 3));
+        assertEquals(1 + 4 + 7 + 10 + 2, evaluate(calls, function(1), 5));
+    }
+
+    public void testRangesCountUpToTheLastBound() throws CompilerException {
+        CallEvaluator calls = parse(CallEvaluator.DEFAULT_STEP_BUDGET, "sum :: (n : int) -> int", "    s := 0",
+                "    for r : 1..n", "        s += r", "    return s", "root :: (n : int) -> int", "    for r : 0..n",
+                "        if r * r >= n", "            return r", "        n = n", "    return -1");
+        assertTrue(calls.isPure(function(0)));
+        assertEquals(10, evaluate(calls, function(0), 4));
+        assertEquals(0, evaluate(calls, function(0), 0));
+        assertEquals(5, evaluate(calls, function(1), 25));
+        assertEquals(-1, evaluate(calls, function(1), -1));
+    }
+
+    public void testImpureFunctionsAreLeftToRunTime() throws CompilerException {
+        CallEvaluator calls = parse(CallEvaluator.DEFAULT_STEP_BUDGET, "x := 1", "f :: (a : int) -> int",
+                "    return a + x", "g :: (a : int) -> int", "    return f(a)", "h :: (a : int) -> void",
+                "    a++");
+        assertFalse(calls.isPure(function(1)));
+        assertFalse(calls.isPure(function(2)));
+        assertNull(evaluate(calls, function(1), 1));
+        assertNull(evaluate(calls, function(2), 1));
+        assertTrue(calls.isPure(function(3)));
+        assertNull(evaluate(calls, function(3), 1));
+    }
+
+    public void testUndefinedOperationsGiveUp() throws CompilerException {
+        CallEvaluator calls = parse(CallEvaluator.DEFAULT_STEP_BUDGET, "f :: (a : int) -> int", "    return 10 / a",
+                "g :: (a : int) -> int", "    if a > 0", "        return a");
+        assertNull(evaluate(calls, function(0), 0));
+        assertEquals(5, evaluate(calls, function(0), 2));
+        // NOTE(Johan): running off the end of a function has no result.
+        assertNull(evaluate(calls, function(1), 0));
+        assertEquals(3, evaluate(calls, function(1), 3));
+    }
+
+    public void testConstantsNeedAKnownValue() throws CompilerException {
+        CallEvaluator calls = parse(CallEvaluator.DEFAULT_STEP_BUDGET, "k :: 10", "f :: (a : int) -> int",
+                "    return a * k");
+        assertTrue(calls.isPure(function(1)));
+        assertNull(evaluate(calls, function(1), 2));
+        values.put((ASTConstant) root.getIdentifiers().values().iterator().next(),
+                factory.literal(constants, constants.addInt(10), location));
+        assertEquals(20, evaluate(calls, function(1), 2));
+    }
+
+    public void testCallsGiveUpWhenTheStepsRunOut() throws CompilerException {
+        CallEvaluator calls = parse(1000, "f :: (a : int) -> int", "    while a > 0", "        a = a + 1",
+                "    return a", "g :: (n : int) -> int", "    s := 0", "    for r : 1..n", "        s += r",
+                "    return s");
+        assertNull(evaluate(calls, function(0), 1));
+        assertEquals(0, evaluate(calls, function(0), 0));
+        assertEquals(55, evaluate(calls, function(1), 10));
+        assertNull(evaluate(calls, function(1), 1000));
+    }
+
+    public void testResultsAreKeptPerArguments() throws CompilerException {
+        // NOTE(Johan): f takes hundreds of steps, running it for every call in g would take tens of thousands.
+        CallEvaluator calls = parse(2000, "f :: (a : int) -> int", "    s := 0", "    for r : 1..100",
+                "        s += a", "    return s", "g :: (n : int) -> int", "    s := 0", "    for r : 1..n",
+                "        s += f(r % 2)", "    return s");
+        assertEquals(5000, evaluate(calls, function(1), 100));
+        assertEquals(500, evaluate(calls, function(0), 5));
+    }
+}
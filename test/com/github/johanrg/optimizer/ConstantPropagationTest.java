@@ -0,0 +1,71 @@
+package com.github.johanrg.optimizer;
+
+import com.github.johanrg.TestCase;
+import com.github.johanrg.ast.ASTBinaryOperator;
+import com.github.johanrg.ast.ASTFactory;
+import com.github.johanrg.ast.ASTNode;
+import com.github.johanrg.ast.ASTScope;
+import com.github.johanrg.ast.Trees;
+import com.github.johanrg.frontend.CompilerException;
+import com.github.johanrg.frontend.Lexer;
+import com.github.johanrg.frontend.Parser;
+
+import java.util.List;
+
+/**
+ * @author johan
+ * @since 2016-08-05.
+ */
+public class ConstantPropagationTest extends TestCase {
+    private ASTScope root;
+    private PassManager<ASTScope> passes;
+
+    private void parse(ASTFactory factory, String... lines) throws CompilerException {
+        Lexer lexer = new Lexer();
+        lexer.lex("test", String.join("\n", lines) + "\n");
+        root = (ASTScope) new Parser(lexer.getTokens(), false, factory, null).getRoot();
+        passes = PassManager.standard(factory, lexer.getTokens().getConstants());
+    }
+
+    private String optimize(String... lines) throws CompilerException {
+        parse(new ASTFactory(), lines);
+        passes.run(root);
+        return Trees.print(root);
+    }
+
+    public void testConstantsArePropagatedAndFolded() throws CompilerException {
+        assertEquals("{(k = 10); (j = 11); (x = 110); (e = -10); (y = (x + 11))}",
+                optimize("k :: 10", "j :: k + 1", "x := k * j", "e := -k", "y := x + j"));
+    }
+
+    public void testLogicalOperatorsAreCutShort() throws CompilerException {
+        assertEquals("{(k = 10); (x = 1); (c = true); (d = false); (e = (x > 0))}",
+                optimize("k :: 10", "x := 1", "c := k > 5 || x > 0", "d := k < 5 && x > 0", "e := k > 5 && x > 0"));
+    }
+
+    public void testDeadBranchesAreRemoved() throws CompilerException {
+        assertEquals("{(k = 10); (x = 0); {(x = 1)}; {(x = 4)}; while (x > 0) {(x--)}}",
+                optimize("k :: 10", "x := 0", "if k > 5", "    x = 1", "else", "    x = 2", "if k < 5", "    x = 3",
+                        "else", "    x = 4", "while k < 5", "    x++", "if k < 5", "    x = 5", "while x > 0",
+                        "    x--"));
+    }
+
+    public void testSecondRunChangesNothing() throws CompilerException {
+        parse(new ASTFactory(), "k :: 2", "x := k * 3", "if k > 1", "    x = 1");
+        assertTrue(passes.run(root));
+        String once = Trees.print(root);
+        assertFalse(passes.run(root));
+        assertEquals(once, Trees.print(root));
+        assertTrue(passes.report().contains("constant propagation"));
+        assertTrue(passes.report().contains("dead branch elimination"));
+    }
+
+    public void testSharedExpressionsFoldToOneLiteral() throws CompilerException {
+        parse(new ASTFactory(true), "k :: 4", "x := k * 2 + 1", "y := k * 2 + 1");
+        passes.run(root);
+        List<ASTNode> statements = root.getStatements();
+        assertEquals("{(k = 4); (x = 9); (y = 9)}", Trees.print(root));
+        assertSame(((ASTBinaryOperator) statements.get(1)).getRight(),
+                ((ASTBinaryOperator) statements.get(2)).getRight());
+    }
+}
@@ -0,0 +1,107 @@
+package com.github.johanrg.optimizer;
+
+import com.github.johanrg.TestCase;
+import com.github.johanrg.ast.ASTScope;
+import com.github.johanrg.frontend.CompilerException;
+import com.github.johanrg.frontend.Lexer;
+import com.github.johanrg.frontend.Parser;
+import com.github.johanrg.ir.IRBuilder;
+import com.github.johanrg.ir.IRProgram;
+
+/**
+ * @author johan
+ * @since 2016-08-05.
+ */
+public class GlobalValueNumberingTest extends TestCase {
+    private IRProgram program;
+
+    private void lower(String... lines) throws CompilerException {
+        Lexer lexer = new Lexer();
+        lexer.lex("test", String.join("\n", lines) + "\n");
+        program = IRBuilder.lower((ASTScope) new Parser(lexer.getTokens()).getRoot(),
+                lexer.getTokens().getConstants());
+    }
+
+    private static String text(String... lines) {
+        return String.join(System.lineSeparator(), lines) + System.lineSeparator();
+    }
+
+    public void testCopiesAreReplacedByTheValueCopied() throws CompilerException {
+        lower("f :: (a : int, b : int) -> int", "    c := a", "    if a > b", "        c = b", "    return c");
+        assertTrue(new CopyPropagation().run(program));
+        assertEquals(text("f(a : int, b : int) -> int",
+                "  b0:",
+                "    %0 = parameter int a",
+                "    %1 = parameter int b",
+                "    %2 = > boolean %0, %1",
+                "    branch %2, b1, b2",
+                "  b1: ; from b0",
+                "    jump b2",
+                "  b2: ; from b0 b1",
+                "    %3 = phi int %0 b0, %1 b1",
+                "    return %3"), program.getFunctions().get(1).toString());
+    }
+
+    public void testPhisOfValuesTheLoopDoesNotChangeAreRemoved() throws CompilerException {
+        lower("x := 1", "y := x", "while x < 10", "    x = x + y", "z := x");
+        assertTrue(new CopyPropagation().run(program));
+        assertEquals(text("main() -> void",
+                "  b0:",
+                "    %0 = constant int 1",
+                "    jump b1",
+                "  b1: ; from b0 b2",
+                "    %1 = phi int %0 b0, %4 b2",
+                "    %2 = constant int 10",
+                "    %3 = < boolean %1, %2",
+                "    branch %3, b2, b3",
+                "  b2: ; from b1",
+                "    %4 = + int %1, %0",
+                "    jump b1",
+                "  b3: ; from b1",
+                "    return"), program.getMain().toString());
+        assertFalse(new CopyPropagation().run(program));
+    }
+
+    public void testValuesComputedAgainAreRemoved() throws CompilerException {
+        lower("f :: (a : int, b : int) -> int", "    c := a * b", "    d := b * a", "    e := 2 + 3", "    if a > 0",
+                "        c = a * b + 5", "    return c + d + e");
+        new CopyPropagation().run(program);
+        assertTrue(new GlobalValueNumbering().run(program));
+        assertEquals(text("f(a : int, b : int) -> int",
+                "  b0:",
+                "    %0 = parameter int a",
+                "    %1 = parameter int b",
+                "    %2 = * int %0, %1",
+                "    %3 = constant int 5",
+                "    %4 = constant int 0",
+                "    %5 = > boolean %0, %4",
+                "    branch %5, b1, b2",
+                "  b1: ; from b0",
+                "    %6 = + int %2, %3",
+                "    jump b2",
+                "  b2: ; from b0 b1",
+                "    %7 = phi int %2 b0, %6 b1",
+                "    %8 = + int %7, %2",
+                "    %9 = + int %8, %3",
+                "    return %9"), program.getFunctions().get(1).toString());
+        assertFalse(new GlobalValueNumbering().run(program));
+    }
+
+    public void testValuesAreOnlySharedWhereTheyAreAvailable() throws CompilerException {
+        lower("f :: (a : int, b : int) -> int", "    c := 0", "    if a > b", "        c = a - b", "    else",
+                "        c = b - a", "    return c + (a - b)");
+        new CopyPropagation().run(program);
+        new GlobalValueNumbering().run(program);
+        // NOTE(Johan): a - b in one branch doesn't dominate the return, so it's computed again there.
+        String f = program.getFunctions().get(1).toString();
+        assertEquals(2, f.split("= - int %0, %1").length - 1);
+        assertEquals(1, f.split("= - int %1, %0").length - 1);
+    }
+
+    public void testCallsAreNeverNumbered() throws CompilerException {
+        lower("x := 1", "g :: () -> int", "    return x", "y := g() + g()");
+        new GlobalValueNumbering().run(program);
+        String main = program.getMain().toString();
+        assertEquals(2, main.split("call int g").length - 1);
+    }
+}
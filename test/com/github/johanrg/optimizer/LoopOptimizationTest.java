@@ -0,0 +1,170 @@
+package com.github.johanrg.optimizer;
+
+import com.github.johanrg.TestCase;
+import com.github.johanrg.ast.ASTOperator;
+import com.github.johanrg.ast.ASTScope;
+import com.github.johanrg.frontend.CompilerException;
+import com.github.johanrg.frontend.Lexer;
+import com.github.johanrg.frontend.Parser;
+import com.github.johanrg.ir.DominatorTree;
+import com.github.johanrg.ir.IRBlock;
+import com.github.johanrg.ir.IRBuilder;
+import com.github.johanrg.ir.IRFunction;
+import com.github.johanrg.ir.IRInstruction;
+import com.github.johanrg.ir.IRProgram;
+import com.github.johanrg.ir.InductionVariable;
+import com.github.johanrg.ir.Loop;
+
+import java.util.List;
+
+/**
+ * @author johan
+ * @since 2016-08-05.
+ */
+public class LoopOptimizationTest extends TestCase {
+    private IRProgram program;
+
+    /**
+     * Lowers the lines with copies propagated and values numbered, the way the loop passes get them.
+     */
+    private void lower(String... lines) throws CompilerException {
+        Lexer lexer = new Lexer();
+        lexer.lex("test", String.join("\n", lines) + "\n");
+        program = IRBuilder.lower((ASTScope) new Parser(lexer.getTokens()).getRoot(),
+                lexer.getTokens().getConstants());
+        new CopyPropagation().run(program);
+        new GlobalValueNumbering().run(program);
+    }
+
+    private IRFunction function(int index) {
+        return program.getFunctions().get(index);
+    }
+
+    private static Loop loop(IRFunction function) {
+        List<Loop> loops = Loop.find(new DominatorTree(function));
+        assertEquals(1, loops.size());
+        return loops.get(0);
+    }
+
+    private static int count(IRBlock block, ASTOperator.Type operator) {
+        int count = 0;
+        for (IRInstruction instruction : block.getInstructions()) {
+            if (instruction.getOp() == IRInstruction.Op.BINARY && instruction.getOperator() == operator) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    private static int loopCount(IRFunction function) {
+        return Loop.find(new DominatorTree(function)).size();
+    }
+
+    public void testInductionVariablesAreFound() throws CompilerException {
+        lower("f :: (a : int) -> int", "    s := 0", "    for i := 0, i < a, i++", "        s += 2", "    return s");
+        // NOTE(Johan): the steps are constants in the loop until they're hoisted.
+        new LoopInvariantCodeMotion().run(program);
+        Loop loop = loop(function(1));
+        int found = 0;
+        for (IRInstruction instruction : loop.getHeader().getInstructions()) {
+            if (instruction.getOp() == IRInstruction.Op.PHI) {
+                InductionVariable variable = InductionVariable.of(instruction, loop);
+                assertNotNull(variable);
+                assertTrue(variable.isConstant());
+                ++found;
+            }
+        }
+        assertEquals(2, found);
+    }
+
+    public void testInvariantsAreHoisted() throws CompilerException {
+        lower("f :: (a : int, b : int) -> int", "    s := 0", "    for i := 0, i < a, i++", "        s += b * 3 + i",
+                "    return s");
+        IRFunction f = function(1);
+        Loop loop = loop(f);
+        assertEquals(1, count(loop.getLatches().get(0), ASTOperator.Type.BINARY_MUL));
+        assertTrue(new LoopInvariantCodeMotion().run(program));
+        assertEquals(0, count(loop.getLatches().get(0), ASTOperator.Type.BINARY_MUL));
+        assertEquals(1, count(loop.getPreheader(), ASTOperator.Type.BINARY_MUL));
+        assertFalse(new LoopInvariantCodeMotion().run(program));
+    }
+
+    public void testCallsAndStoresAreNotHoisted() throws CompilerException {
+        lower("x := 1", "g :: (a : int) -> int", "    return a + x", "for i := 0, i < 10, i++", "    x = g(2)");
+        new LoopInvariantCodeMotion().run(program);
+        IRBlock body = loop(program.getMain()).getLatches().get(0);
+        boolean call = false;
+        boolean store = false;
+        for (IRInstruction instruction : body.getInstructions()) {
+            call |= instruction.getOp() == IRInstruction.Op.CALL;
+            store |= instruction.getOp() == IRInstruction.Op.STORE;
+        }
+        assertTrue(call);
+        assertTrue(store);
+    }
+
+    public void testMultiplicationsByTheCounterBecomeAdditions() throws CompilerException {
+        lower("f :: (a : int, b : int) -> int", "    s := 0", "    for i := 0, i < a, i++", "        s += i * b",
+                "    return s");
+        new LoopInvariantCodeMotion().run(program);
+        Loop loop = loop(function(1));
+        IRBlock body = loop.getLatches().get(0);
+        assertEquals(1, count(body, ASTOperator.Type.BINARY_MUL));
+        assertTrue(new StrengthReduction().run(program));
+        assertEquals(0, count(body, ASTOperator.Type.BINARY_MUL));
+        assertEquals(3, count(body, ASTOperator.Type.BINARY_ADD));
+        assertEquals(2, count(loop.getPreheader(), ASTOperator.Type.BINARY_MUL));
+    }
+
+    public void testConstantTripCountsAreFolded() throws CompilerException {
+        lower("f :: () -> int", "    x := 0", "    for r : 1..100", "        x += 3", "    return x",
+                "g :: (a : int) -> int", "    x := 0", "    for r : 1..100", "        x += a", "    return x");
+        PassManager.ssa().run(program);
+        IRFunction f = function(1);
+        assertEquals(0, loopCount(f));
+        IRInstruction value = f.getBlocks().get(f.getBlocks().size() - 1).getTerminator().getOperand(0);
+        assertEquals(IRInstruction.Op.CONSTANT, value.getOp());
+        assertEquals(300L, value.getBits());
+        // NOTE(Johan): the sum of a parameter is no induction variable with a constant step, so the loop stays.
+        assertEquals(1, loopCount(function(2)));
+    }
+
+    public void testLoopsThatNeverRunAreRemoved() throws CompilerException {
+        lower("f :: (a : int) -> int", "    i := 5", "    while i < 3", "        a = a * 2", "        i++",
+                "    return a");
+        new LoopInvariantCodeMotion().run(program);
+        assertTrue(new TripCountFolding().run(program));
+        IRFunction f = function(1);
+        assertEquals(0, loopCount(f));
+        // NOTE(Johan): the phis of the header are left with the one value from before the loop.
+        new CopyPropagation().run(program);
+        assertSame(f.getParameters().get(0),
+                f.getBlocks().get(f.getBlocks().size() - 1).getTerminator().getOperand(0));
+    }
+
+    public void testCutLoopsLeaveNothingUnused() throws CompilerException {
+        lower("x := 0", "for i := 0, i < 10, i++", "    x += 2", "y := x", "z := y * 2");
+        PassManager.ssa().run(program);
+        IRFunction main = program.getMain();
+        assertEquals(0, loopCount(main));
+        for (IRBlock block : main.getBlocks()) {
+            for (IRInstruction instruction : block.getInstructions()) {
+                assertTrue(instruction.hasSideEffects());
+            }
+        }
+    }
+
+    public void testDeadCodeIsRemovedWithItsOperands() throws CompilerException {
+        lower("f :: (a : int) -> int", "    return a");
+        IRFunction f = function(1);
+        IRBlock entry = f.getEntry();
+        IRInstruction one = entry.add(IRInstruction.constant(f.getParameters().get(0).getDataType(),
+                program.getConstants().addInt(1), 1));
+        entry.add(IRInstruction.binary(ASTOperator.Type.BINARY_ADD, one.getDataType(), f.getParameters().get(0), one));
+        assertEquals(4, entry.getInstructions().size());
+        assertTrue(new DeadCodeElimination().run(program));
+        assertEquals(2, entry.getInstructions().size());
+        assertNull(one.getBlock());
+        assertFalse(new DeadCodeElimination().run(program));
+    }
+}
@@ -0,0 +1,56 @@
+package com.github.johanrg.optimizer;
+
+import com.github.johanrg.TestCase;
+import com.github.johanrg.ast.ASTFactory;
+import com.github.johanrg.ast.ASTFunction;
+import com.github.johanrg.ast.ASTScope;
+import com.github.johanrg.ast.Trees;
+import com.github.johanrg.frontend.CompilerException;
+import com.github.johanrg.frontend.Lexer;
+import com.github.johanrg.frontend.Parser;
+import com.github.johanrg.frontend.TokenBuffer;
+
+/**
+ * @author johan
+ * @since 2016-08-05.
+ */
+public class TreePassTest extends TestCase {
+    private static final String[] SOURCE = {
+            "f :: () -> int",
+            "    if 1 > 2",
+            "        return 1",
+            "    return 2",
+            "g :: () -> int",
+            "    if 1 > 2",
+            "        return 3",
+            "    return 4",
+            "x := g()"};
+
+    private TokenBuffer tokens;
+
+    private ASTScope parse(boolean lazy) throws CompilerException {
+        Lexer lexer = new Lexer();
+        lexer.lex("test", String.join("\n", SOURCE) + "\n");
+        tokens = lexer.getTokens();
+        return (ASTScope) new Parser(tokens, lazy).getRoot();
+    }
+
+    private boolean run(ASTScope root) throws CompilerException {
+        return PassManager.standard(new ASTFactory(), tokens.getConstants()).run(root);
+    }
+
+    public void testBodiesNotParsedAreLeftAlone() throws CompilerException {
+        ASTScope root = parse(true);
+        ASTFunction f = (ASTFunction) root.getStatements().get(0);
+        assertFalse(f.isBodyParsed());
+        assertTrue(run(root));
+        assertFalse(f.isBodyParsed());
+        assertEquals("{f :: () -> INT ...; g :: () -> INT {return 4}; (x = 4)}", Trees.print(root));
+    }
+
+    public void testParsedBodiesAreRewritten() throws CompilerException {
+        ASTScope root = parse(false);
+        assertTrue(run(root));
+        assertEquals("{f :: () -> INT {return 2}; g :: () -> INT {return 4}; (x = 4)}", Trees.print(root));
+    }
+}